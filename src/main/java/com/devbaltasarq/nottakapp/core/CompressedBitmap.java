@@ -0,0 +1,614 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+
+/** A set of non-negative ints, compressed as in roaring bitmaps.
+  * Ints are split in chunks of 65536 values, by their 16 upper bits.
+  * Each chunk is kept in a container: a sorted array of the 16 lower bits
+  * when there are few values in it, or a plain bitmap of 8 KB otherwise.
+  * Sparse sets take two bytes per value, and dense sets one bit per value,
+  * while AND, OR and AND NOT work chunk by chunk, a word at a time.
+  * @author baltasarq
+  */
+public final class CompressedBitmap {
+    /** The maximum number of values in an array container. */
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    /** Values sharing their 16 upper bits. */
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+        int cardinality();
+        boolean contains(char low);
+        Container add(char low);
+        Container remove(char low);
+        Container copy();
+        void forEach(int high, IntConsumer action);
+        BitmapContainer toBitmap();
+    }
+
+    /** A few values, as a sorted array. */
+    private static final class ArrayContainer implements Container {
+        ArrayContainer(char[] values, int size)
+        {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public int cardinality()
+        {
+            return this.size;
+        }
+
+        @Override
+        public boolean contains(char low)
+        {
+            return Arrays.binarySearch( this.values, 0, this.size, low ) >= 0;
+        }
+
+        @Override
+        public Container add(char low)
+        {
+            final int POS = Arrays.binarySearch( this.values, 0, this.size, low );
+            Container toret = this;
+
+            if ( POS < 0 ) {
+                if ( this.size >= ARRAY_MAX ) {
+                    toret = this.toBitmap().add( low );
+                } else {
+                    final int INSERT_AT = -POS - 1;
+
+                    if ( this.size == this.values.length ) {
+                        this.values = Arrays.copyOf(
+                                            this.values,
+                                            Math.min( ARRAY_MAX,
+                                                      Math.max( 4, this.size * 2 ) ) );
+                    }
+
+                    System.arraycopy( this.values, INSERT_AT,
+                                      this.values, INSERT_AT + 1,
+                                      this.size - INSERT_AT );
+                    this.values[ INSERT_AT ] = low;
+                    ++this.size;
+                }
+            }
+
+            return toret;
+        }
+
+        @Override
+        public Container remove(char low)
+        {
+            final int POS = Arrays.binarySearch( this.values, 0, this.size, low );
+
+            if ( POS >= 0 ) {
+                System.arraycopy( this.values, POS + 1,
+                                  this.values, POS,
+                                  this.size - POS - 1 );
+                --this.size;
+            }
+
+            return this;
+        }
+
+        @Override
+        public Container copy()
+        {
+            return new ArrayContainer( Arrays.copyOf( this.values, this.size ), this.size );
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer action)
+        {
+            for(int i = 0; i < this.size; ++i) {
+                action.accept( high | this.values[ i ] );
+            }
+        }
+
+        @Override
+        public BitmapContainer toBitmap()
+        {
+            final var TORET = new BitmapContainer( new long[ BITMAP_WORDS ], 0 );
+
+            for(int i = 0; i < this.size; ++i) {
+                TORET.add( this.values[ i ] );
+            }
+
+            return TORET;
+        }
+
+        private char[] values;
+        private int size;
+    }
+
+    /** Many values, as a bitmap of 65536 bits. */
+    private static final class BitmapContainer implements Container {
+        BitmapContainer(long[] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public int cardinality()
+        {
+            return this.cardinality;
+        }
+
+        @Override
+        public boolean contains(char low)
+        {
+            return ( this.words[ low >>> 6 ] & ( 1L << low ) ) != 0;
+        }
+
+        @Override
+        public Container add(char low)
+        {
+            final long OLD = this.words[ low >>> 6 ];
+
+            this.words[ low >>> 6 ] = OLD | ( 1L << low );
+
+            if ( OLD != this.words[ low >>> 6 ] ) {
+                ++this.cardinality;
+            }
+
+            return this;
+        }
+
+        @Override
+        public Container remove(char low)
+        {
+            final long OLD = this.words[ low >>> 6 ];
+
+            this.words[ low >>> 6 ] = OLD & ~( 1L << low );
+
+            if ( OLD != this.words[ low >>> 6 ] ) {
+                --this.cardinality;
+            }
+
+            return ( this.cardinality <= ARRAY_MAX ) ? this.toArray() : this;
+        }
+
+        @Override
+        public Container copy()
+        {
+            return new BitmapContainer( this.words.clone(), this.cardinality );
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer action)
+        {
+            for(int i = 0; i < BITMAP_WORDS; ++i) {
+                long word = this.words[ i ];
+
+                while( word != 0 ) {
+                    action.accept( high | ( i << 6 ) | Long.numberOfTrailingZeros( word ) );
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        public BitmapContainer toBitmap()
+        {
+            return this;
+        }
+
+        /** @return the same values, as an array container. */
+        ArrayContainer toArray()
+        {
+            final char[] VALUES = new char[ this.cardinality ];
+            int size = 0;
+
+            for(int i = 0; i < BITMAP_WORDS; ++i) {
+                long word = this.words[ i ];
+
+                while( word != 0 ) {
+                    VALUES[ size++ ] = (char) ( ( i << 6 ) | Long.numberOfTrailingZeros( word ) );
+                    word &= word - 1;
+                }
+            }
+
+            return new ArrayContainer( VALUES, size );
+        }
+
+        private final long[] words;
+        private int cardinality;
+    }
+
+    /** Creates a new, empty bitmap. */
+    public CompressedBitmap()
+    {
+        this.containers = new TreeMap<>();
+    }
+
+    /** Creates a bitmap with the given values.
+      * @param values the values to add.
+      * @return a new bitmap.
+      */
+    public static CompressedBitmap of(int... values)
+    {
+        final var TORET = new CompressedBitmap();
+
+        for(int value: values) {
+            TORET.add( value );
+        }
+
+        return TORET;
+    }
+
+    /** Adds a value.
+      * @param value the value, which must not be negative.
+      */
+    public void add(int value)
+    {
+        final Character HIGH = high( value );
+        final Container CONTAINER = this.containers.get( HIGH );
+
+        if ( CONTAINER == null ) {
+            this.containers.put( HIGH, new ArrayContainer( new char[] { low( value ) }, 1 ) );
+        } else {
+            this.containers.put( HIGH, CONTAINER.add( low( value ) ) );
+        }
+    }
+
+    /** Removes a value, if present.
+      * @param value the value to remove.
+      */
+    public void remove(int value)
+    {
+        final Character HIGH = high( value );
+        final Container CONTAINER = this.containers.get( HIGH );
+
+        if ( CONTAINER != null ) {
+            final Container NEW_CONTAINER = CONTAINER.remove( low( value ) );
+
+            if ( NEW_CONTAINER.cardinality() == 0 ) {
+                this.containers.remove( HIGH );
+            } else {
+                this.containers.put( HIGH, NEW_CONTAINER );
+            }
+        }
+    }
+
+    /** @return true if the value is in the bitmap, false otherwise. */
+    public boolean contains(int value)
+    {
+        final Container CONTAINER = this.containers.get( high( value ) );
+
+        return CONTAINER != null && CONTAINER.contains( low( value ) );
+    }
+
+    /** @return the number of values in the bitmap. */
+    public int cardinality()
+    {
+        int toret = 0;
+
+        for(Container container: this.containers.values()) {
+            toret += container.cardinality();
+        }
+
+        return toret;
+    }
+
+    /** @return true if there are no values, false otherwise. */
+    public boolean isEmpty()
+    {
+        return this.containers.isEmpty();
+    }
+
+    /** @return a copy of this bitmap. */
+    public CompressedBitmap copy()
+    {
+        final var TORET = new CompressedBitmap();
+
+        for(Map.Entry<Character, Container> entry: this.containers.entrySet()) {
+            TORET.containers.put( entry.getKey(), entry.getValue().copy() );
+        }
+
+        return TORET;
+    }
+
+    /** @return a new bitmap with the values both in this and the other. */
+    public CompressedBitmap and(CompressedBitmap other)
+    {
+        final var TORET = new CompressedBitmap();
+
+        for(Map.Entry<Character, Container> entry: this.containers.entrySet()) {
+            final Container OTHER = other.containers.get( entry.getKey() );
+
+            if ( OTHER != null ) {
+                TORET.putIfNotEmpty( entry.getKey(), and( entry.getValue(), OTHER ) );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** @return a new bitmap with the values either in this or the other. */
+    public CompressedBitmap or(CompressedBitmap other)
+    {
+        final var TORET = this.copy();
+
+        for(Map.Entry<Character, Container> entry: other.containers.entrySet()) {
+            final Container MINE = TORET.containers.get( entry.getKey() );
+
+            if ( MINE == null ) {
+                TORET.containers.put( entry.getKey(), entry.getValue().copy() );
+            } else {
+                TORET.containers.put( entry.getKey(), or( MINE, entry.getValue() ) );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** @return a new bitmap with the values in this, but not in the other. */
+    public CompressedBitmap andNot(CompressedBitmap other)
+    {
+        final var TORET = new CompressedBitmap();
+
+        for(Map.Entry<Character, Container> entry: this.containers.entrySet()) {
+            final Container OTHER = other.containers.get( entry.getKey() );
+
+            if ( OTHER == null ) {
+                TORET.containers.put( entry.getKey(), entry.getValue().copy() );
+            } else {
+                TORET.putIfNotEmpty( entry.getKey(), andNot( entry.getValue(), OTHER ) );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Runs an action for each value, in ascending order.
+      * @param action the action to run.
+      */
+    public void forEach(IntConsumer action)
+    {
+        for(Map.Entry<Character, Container> entry: this.containers.entrySet()) {
+            entry.getValue().forEach( entry.getKey() << 16, action );
+        }
+    }
+
+    /** @return the values, in ascending order. */
+    public int[] toArray()
+    {
+        final int[] TORET = new int[ this.cardinality() ];
+        final int[] POS = { 0 };
+
+        this.forEach( (value) -> TORET[ POS[ 0 ]++ ] = value );
+        return TORET;
+    }
+
+    /** @return the approximate memory taken by the values, in bytes. */
+    public long sizeInBytes()
+    {
+        long toret = 0;
+
+        for(Container container: this.containers.values()) {
+            toret += ( container instanceof BitmapContainer ) ?
+                            BITMAP_WORDS * Long.BYTES
+                          : container.cardinality() * Character.BYTES;
+        }
+
+        return toret;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        boolean toret = false;
+
+        if ( other instanceof CompressedBitmap otherBitmap ) {
+            toret = Arrays.equals( this.toArray(), otherBitmap.toArray() );
+        }
+
+        return toret;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode( this.toArray() );
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString( this.toArray() );
+    }
+
+    private void putIfNotEmpty(Character high, Container container)
+    {
+        if ( container.cardinality() > 0 ) {
+            this.containers.put( high, container );
+        }
+    }
+
+    private static Container and(Container a, Container b)
+    {
+        Container toret;
+
+        if ( a instanceof BitmapContainer bitmapA
+          && b instanceof BitmapContainer bitmapB )
+        {
+            final long[] WORDS = new long[ BITMAP_WORDS ];
+            int cardinality = 0;
+
+            for(int i = 0; i < BITMAP_WORDS; ++i) {
+                WORDS[ i ] = bitmapA.words[ i ] & bitmapB.words[ i ];
+                cardinality += Long.bitCount( WORDS[ i ] );
+            }
+
+            final var BITMAP = new BitmapContainer( WORDS, cardinality );
+
+            toret = ( cardinality <= ARRAY_MAX ) ? BITMAP.toArray() : BITMAP;
+        }
+        else
+        if ( a instanceof ArrayContainer arrayA
+          && b instanceof ArrayContainer arrayB )
+        {
+            toret = filterSorted( arrayA, arrayB, true );
+        } else {
+            // Filter the values of the array by the other container
+            final ArrayContainer ARRAY = (ArrayContainer) ( ( a instanceof ArrayContainer ) ? a : b );
+            final Container OTHER = ( ARRAY == a ) ? b : a;
+            final char[] VALUES = new char[ ARRAY.size ];
+            int size = 0;
+
+            for(int i = 0; i < ARRAY.size; ++i) {
+                if ( OTHER.contains( ARRAY.values[ i ] ) ) {
+                    VALUES[ size++ ] = ARRAY.values[ i ];
+                }
+            }
+
+            toret = new ArrayContainer( VALUES, size );
+        }
+
+        return toret;
+    }
+
+    private static Container or(Container a, Container b)
+    {
+        Container toret;
+
+        if ( a instanceof ArrayContainer arrayA
+          && b instanceof ArrayContainer arrayB
+          && arrayA.size + arrayB.size <= ARRAY_MAX )
+        {
+            // Merge the sorted arrays
+            final char[] VALUES = new char[ arrayA.size + arrayB.size ];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+
+            while( i < arrayA.size
+                || j < arrayB.size )
+            {
+                if ( j >= arrayB.size
+                  || ( i < arrayA.size && arrayA.values[ i ] < arrayB.values[ j ] ) )
+                {
+                    VALUES[ size++ ] = arrayA.values[ i++ ];
+                }
+                else
+                if ( i >= arrayA.size
+                  || arrayB.values[ j ] < arrayA.values[ i ] )
+                {
+                    VALUES[ size++ ] = arrayB.values[ j++ ];
+                } else {
+                    VALUES[ size++ ] = arrayA.values[ i++ ];
+                    ++j;
+                }
+            }
+
+            toret = new ArrayContainer( VALUES, size );
+        } else {
+            final long[] WORDS = a.toBitmap().words.clone();
+            final BitmapContainer BITMAP_B = b.toBitmap();
+            int cardinality = 0;
+
+            for(int i = 0; i < BITMAP_WORDS; ++i) {
+                WORDS[ i ] |= BITMAP_B.words[ i ];
+                cardinality += Long.bitCount( WORDS[ i ] );
+            }
+
+            toret = new BitmapContainer( WORDS, cardinality );
+        }
+
+        return toret;
+    }
+
+    private static Container andNot(Container a, Container b)
+    {
+        Container toret;
+
+        if ( a instanceof ArrayContainer arrayA
+          && b instanceof ArrayContainer arrayB )
+        {
+            toret = filterSorted( arrayA, arrayB, false );
+        }
+        else
+        if ( a instanceof ArrayContainer arrayA ) {
+            final char[] VALUES = new char[ arrayA.size ];
+            int size = 0;
+
+            for(int i = 0; i < arrayA.size; ++i) {
+                if ( !b.contains( arrayA.values[ i ] ) ) {
+                    VALUES[ size++ ] = arrayA.values[ i ];
+                }
+            }
+
+            toret = new ArrayContainer( VALUES, size );
+        } else {
+            final long[] WORDS = ( (BitmapContainer) a ).words.clone();
+            final BitmapContainer BITMAP_B = b.toBitmap();
+            int cardinality = 0;
+
+            for(int i = 0; i < BITMAP_WORDS; ++i) {
+                WORDS[ i ] &= ~BITMAP_B.words[ i ];
+                cardinality += Long.bitCount( WORDS[ i ] );
+            }
+
+            final var BITMAP = new BitmapContainer( WORDS, cardinality );
+
+            toret = ( cardinality <= ARRAY_MAX ) ? BITMAP.toArray() : BITMAP;
+        }
+
+        return toret;
+    }
+
+    /** Walks two sorted arrays at once, keeping the values of the first
+      * which are in the second as well, or those which are not.
+      * @param a the values to filter.
+      * @param b the values to look for.
+      * @param inB true to keep the common values, false to keep the others.
+      * @return a new container with the values kept.
+      */
+    private static ArrayContainer filterSorted(ArrayContainer a, ArrayContainer b, boolean inB)
+    {
+        final char[] VALUES = new char[ a.size ];
+        int size = 0;
+        int j = 0;
+
+        for(int i = 0; i < a.size; ++i) {
+            final char VALUE = a.values[ i ];
+
+            while( j < b.size
+                && b.values[ j ] < VALUE )
+            {
+                ++j;
+            }
+
+            if ( ( j < b.size && b.values[ j ] == VALUE ) == inB ) {
+                VALUES[ size++ ] = VALUE;
+            }
+        }
+
+        return new ArrayContainer( VALUES, size );
+    }
+
+    private static Character high(int value)
+    {
+        if ( value < 0 ) {
+            throw new IllegalArgumentException( "negative value: " + value );
+        }
+
+        return (char) ( value >>> 16 );
+    }
+
+    private static char low(int value)
+    {
+        return (char) value;
+    }
+
+    private final TreeMap<Character, Container> containers;
+}
@@ -0,0 +1,134 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+
+/** Stores the body of large notes compressed with deflate.
+  * The header lines are kept as plain text, so reading them stays cheap;
+  * then a marker follows, which never appears in a text file since it
+  * starts with a NUL byte, and finally the compressed body.
+  * Readers detect the marker, so compressed and plain notes can be mixed.
+  * The fastest level is used: logs shrink nearly as much as with
+  * the default level, while being compressed about four times faster.
+  * @author baltasarq
+  */
+public final class CompressedBody {
+    /** The threshold meaning bodies are never compressed. */
+    public static final long NEVER = Long.MAX_VALUE;
+    public static final long KILOBYTE = 1024;
+    private static final byte[] MARKER = { 0, 'N', 'T', 'Z' };
+    static final int MARKER_SIZE = MARKER.length;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private CompressedBody()
+    {
+    }
+
+    /** Converts the threshold in the config to bytes.
+      * @param thresholdKb the threshold in kilobytes, 0 or less to never compress.
+      * @return the threshold in bytes, or NEVER.
+      */
+    public static long thresholdFromKb(int thresholdKb)
+    {
+        return ( thresholdKb > 0 ) ? thresholdKb * KILOBYTE : NEVER;
+    }
+
+    /** Compresses a body, prefixing it with the marker.
+      * @param body the body, in UTF-8.
+      * @return the marker and the compressed body.
+      */
+    static byte[] compress(byte[] body)
+    {
+        final var OUT = new ByteArrayOutputStream( body.length / 4 + MARKER_SIZE );
+
+        OUT.writeBytes( MARKER );
+
+        final var DEFLATER = new Deflater( Deflater.BEST_SPEED );
+
+        try (var out = new DeflaterOutputStream( OUT, DEFLATER, CHUNK_SIZE )) {
+            out.write( body );
+        } catch(IOException exc) {
+            throw new UncheckedIOException( exc );
+        } finally {
+            DEFLATER.end();
+        }
+
+        return OUT.toByteArray();
+    }
+
+    /** Determines whether the body at the given position is compressed.
+      * @param bytes the bytes of the note.
+      * @param offset the position of the body.
+      * @param length the number of valid bytes.
+      * @return true if the marker is there, false otherwise.
+      */
+    static boolean isAt(byte[] bytes, int offset, int length)
+    {
+        return isAt( ByteBuffer.wrap( bytes, offset, Math.max( 0, length - offset ) ) );
+    }
+
+    /** Determines whether the body, from the buffer's position, is compressed.
+      * The position of the buffer is not changed.
+      * @param body the bytes of the body.
+      * @return true if the marker is there, false otherwise.
+      */
+    static boolean isAt(ByteBuffer body)
+    {
+        boolean toret = ( body.remaining() >= MARKER_SIZE );
+
+        for(int i = 0; toret && i < MARKER_SIZE; ++i) {
+            toret = ( body.get( body.position() + i ) == MARKER[ i ] );
+        }
+
+        return toret;
+    }
+
+    /** Decompresses a body, which must start with the marker.
+      * @param body the marker and the compressed body.
+      *             The buffer is consumed.
+      * @return the body, as a string.
+      * @throws IllegalArgumentException if the body is corrupted.
+      */
+    static String decompress(ByteBuffer body)
+    {
+        final var INFLATER = new Inflater();
+        final var OUT = new ByteArrayOutputStream( body.remaining() * 4 );
+        final byte[] CHUNK = new byte[ CHUNK_SIZE ];
+
+        try {
+            body.position( body.position() + MARKER_SIZE );
+            INFLATER.setInput( body );
+
+            while( !INFLATER.finished() ) {
+                final int INFLATED = INFLATER.inflate( CHUNK );
+
+                if ( INFLATED == 0
+                  && ( INFLATER.needsInput() || INFLATER.needsDictionary() ) )
+                {
+                    throw new IllegalArgumentException( "truncated compressed body" );
+                }
+
+                OUT.write( CHUNK, 0, INFLATED );
+            }
+        } catch(DataFormatException exc) {
+            throw new IllegalArgumentException( "corrupted compressed body: "
+                                                + exc.getMessage() );
+        } finally {
+            INFLATER.end();
+        }
+
+        return OUT.toString( StandardCharsets.UTF_8 );
+    }
+}
@@ -35,7 +35,14 @@ public class Config {
         WIDTH,
         HEIGHT,
         TOP,
-        LEFT
+        LEFT,
+        WATCH_MODE,
+        LOAD_CONCURRENCY,
+        BODY_CACHE_MB,
+        DURABILITY,
+        NOTES_LAYOUT,
+        STORAGE,
+        COMPRESS_THRESHOLD_KB
     }
     
     private Config(String appName)
@@ -123,6 +130,27 @@ public class Config {
         return this.configValues.get( key );
     }
     
+    /** @return the associated value as an integer, or the default value
+      *         if it does not exist or it is not a number.
+      * @param key the key to ask for.
+      * @param defaultValue the value to return when missing.
+      */
+    public int getInt(Key key, int defaultValue)
+    {
+        final String VALUE = this.get( key );
+        int toret = defaultValue;
+        
+        if ( VALUE != null ) {
+            try {
+                toret = Integer.parseInt( VALUE.trim() );
+            } catch(NumberFormatException exc) {
+                LOG.warning( "Config: not a number for " + key + ": " + VALUE );
+            }
+        }
+        
+        return toret;
+    }
+    
     /** Adds a new value to the configuration.
       * @param key the key of the value.
       * @param value the new value.
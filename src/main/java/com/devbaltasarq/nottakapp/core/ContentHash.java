@@ -0,0 +1,123 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/** A fast, non-cryptographic hash of the bytes of a note file: 64-bit FNV-1a.
+  * It is computed incrementally, as the bytes are read or written,
+  * and tells whether the contents of a file really changed,
+  * regardless of its modification time.
+  * @author baltasarq
+  */
+public final class ContentHash {
+    /** The value meaning that the hash is not known. */
+    public static final long NONE = 0;
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    public ContentHash()
+    {
+        this.hash = OFFSET_BASIS;
+    }
+
+    /** Adds the given bytes to the hash.
+      * @param bytes the bytes.
+      * @param offset the position of the first byte to add.
+      * @param length the number of bytes to add.
+      * @return this hash.
+      */
+    public ContentHash update(byte[] bytes, int offset, int length)
+    {
+        long h = this.hash;
+
+        for(int i = offset; i < offset + length; ++i) {
+            h ^= bytes[ i ] & 0xFF;
+            h *= PRIME;
+        }
+
+        this.hash = h;
+        return this;
+    }
+
+    /** Adds the remaining bytes in the buffer to the hash.
+      * The position of the buffer is moved to its limit.
+      * @param buffer the buffer.
+      * @return this hash.
+      */
+    public ContentHash update(ByteBuffer buffer)
+    {
+        if ( buffer.hasArray() ) {
+            this.update( buffer.array(),
+                         buffer.arrayOffset() + buffer.position(),
+                         buffer.remaining() );
+            buffer.position( buffer.limit() );
+        } else {
+            final byte[] CHUNK = new byte[ Math.min( CHUNK_SIZE, buffer.remaining() ) ];
+
+            while( buffer.hasRemaining() ) {
+                final int LENGTH = Math.min( CHUNK.length, buffer.remaining() );
+
+                buffer.get( CHUNK, 0, LENGTH );
+                this.update( CHUNK, 0, LENGTH );
+            }
+        }
+
+        return this;
+    }
+
+    /** @return the hash of the bytes added up to now. */
+    public long get()
+    {
+        long toret = this.hash;
+
+        // Avoid NONE as a valid hash
+        if ( toret == NONE ) {
+            toret = OFFSET_BASIS;
+        }
+
+        return toret;
+    }
+
+    /** @return the hash of the given bytes.
+      * @param bytes the bytes to hash.
+      */
+    public static long of(byte[] bytes)
+    {
+        return new ContentHash().update( bytes, 0, bytes.length ).get();
+    }
+
+    /** @return the hash of the contents of the given file.
+      * @param path the path to the file.
+      * @throws IOException if reading goes wrong.
+      */
+    public static long of(Path path) throws IOException
+    {
+        final var TORET = new ContentHash();
+
+        try (final var CHANNEL = FileChannel.open( path, StandardOpenOption.READ ))
+        {
+            final ByteBuffer BUFFER = ByteBuffer.allocate(
+                                        (int) Math.min( CHUNK_SIZE,
+                                                        Math.max( 1, CHANNEL.size() ) ) );
+
+            while( CHANNEL.read( BUFFER ) >= 0 ) {
+                BUFFER.flip();
+                TORET.update( BUFFER );
+                BUFFER.clear();
+            }
+        }
+
+        return TORET.get();
+    }
+
+    private long hash;
+}
@@ -3,6 +3,7 @@
 
 package com.devbaltasarq.nottakapp.core;
 
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.Locale;
 
@@ -135,6 +136,17 @@ public class Date {
                                 this.getDay() );
     }
     
+    /** @return the date the given number of days before this one.
+      * @param days the number of days to go back.
+      */
+    public Date minusDays(int days)
+    {
+        final LocalDate BEFORE = LocalDate.of( this.getYear(), this.getMonth(), this.getDay() )
+                                          .minusDays( days );
+        
+        return new Date( BEFORE.getYear(), BEFORE.getMonthValue(), BEFORE.getDayOfMonth() );
+    }
+    
     /** @return the date given from the system. */
     public static Date fromSystem()
     {
@@ -0,0 +1,144 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+
+/** Finds notes by a date, such as their creation or modification date.
+  * Dates are kept in a sorted map, as yyyymmdd numbers, so ranges of dates
+  * and the most recent notes are found in logarithmic time, without
+  * sorting all notes. Notes on the same day are kept in the order they
+  * were recorded or touched, so the last one touched is the most recent.
+  * The index is kept up to date by the notebook, note by note.
+  * @author baltasarq
+  */
+public final class DateIndex {
+    public DateIndex()
+    {
+        this.byDay = new TreeMap<>();
+        this.days = new HashMap<>();
+    }
+
+    /** Records the date of a note, replacing the previous one.
+      * If the date did not change, the note is kept in its place.
+      * @param id the id of the note.
+      * @param date the current date of the note.
+      */
+    public synchronized void put(Id id, Date date)
+    {
+        final int DAY = keyOf( date );
+        final Integer OLD_DAY = this.days.get( id );
+
+        if ( OLD_DAY == null
+          || OLD_DAY != DAY )
+        {
+            this.touch( id, date );
+        }
+    }
+
+    /** Records the date of a note, as the most recent note of that day.
+      * @param id the id of the note.
+      * @param date the current date of the note.
+      */
+    public synchronized void touch(Id id, Date date)
+    {
+        final int DAY = keyOf( date );
+
+        this.remove( id );
+        this.days.put( id, DAY );
+        this.byDay.computeIfAbsent( DAY, (key) -> new LinkedHashSet<>() ).add( id );
+    }
+
+    /** Forgets about a note.
+      * @param id the id of the note.
+      */
+    public synchronized void remove(Id id)
+    {
+        final Integer OLD_DAY = this.days.remove( id );
+
+        if ( OLD_DAY != null ) {
+            final LinkedHashSet<Id> IDS = this.byDay.get( OLD_DAY );
+
+            IDS.remove( id );
+
+            if ( IDS.isEmpty() ) {
+                this.byDay.remove( OLD_DAY );
+            }
+        }
+    }
+
+    /** @return the number of notes in the index. */
+    public synchronized int count()
+    {
+        return this.days.size();
+    }
+
+    /** Finds the notes with a date in the given range, newest first.
+      * @param from the first day of the range.
+      * @param to the last day of the range, included.
+      * @return the ids of the notes found, maybe empty.
+      */
+    public synchronized List<Id> findBetween(Date from, Date to)
+    {
+        final var TORET = new ArrayList<Id>();
+
+        for(LinkedHashSet<Id> ids: this.byDay.subMap( keyOf( from ), true,
+                                                      keyOf( to ), true )
+                                             .descendingMap().values())
+        {
+            TORET.addAll( ids.reversed() );
+        }
+
+        return TORET;
+    }
+
+    /** Finds the most recent notes, newest first.
+      * @param maxResults the maximum number of ids returned.
+      * @return the ids of the notes found, maybe empty.
+      */
+    public synchronized List<Id> findMostRecent(int maxResults)
+    {
+        final NavigableMap<Integer, LinkedHashSet<Id>> NEWEST_FIRST =
+                                                    this.byDay.descendingMap();
+        final Iterator<LinkedHashSet<Id>> IT_IDS = NEWEST_FIRST.values().iterator();
+        final var TORET = new ArrayList<Id>();
+
+        while( TORET.size() < maxResults
+            && IT_IDS.hasNext() )
+        {
+            final Iterator<Id> IT_ID = IT_IDS.next().reversed().iterator();
+
+            while( TORET.size() < maxResults
+                && IT_ID.hasNext() )
+            {
+                TORET.add( IT_ID.next() );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Converts a date to a number that sorts as the date.
+      * @param date the date to convert.
+      * @return the date as yyyymmdd.
+      */
+    static int keyOf(Date date)
+    {
+        return ( date.getYear() * 10_000 )
+                + ( date.getMonth() * 100 )
+                + date.getDay();
+    }
+
+    private final TreeMap<Integer, LinkedHashSet<Id>> byDay;
+    private final Map<Id, Integer> days;
+}
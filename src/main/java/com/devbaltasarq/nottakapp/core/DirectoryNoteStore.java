@@ -0,0 +1,339 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+
+/** Keeps the notes as files in a directory: the usual notebook format.
+  * Locations are the absolute paths of the files.
+  * Notes are found whatever the layout of the directory, while new notes
+  * are placed following the current layout.
+  * @author baltasarq
+  * @see NotesLayout
+  */
+public final class DirectoryNoteStore implements NoteStore {
+    private static final Logger LOG = Logger.getLogger( DirectoryNoteStore.class.getName() );
+
+    /** Creates a new store for the given directory.
+      * @param dir the notes directory.
+      * @param layout the layout for new notes, or null to take the one
+      *               found when listing the notes for the first time.
+      * @param maxConcurrency the maximum number of shards listed at once.
+      */
+    public DirectoryNoteStore(Path dir, NotesLayout layout, int maxConcurrency)
+    {
+        this.dir = dir.toAbsolutePath();
+        this.layout = layout;
+        this.maxConcurrency = Math.max( 1, maxConcurrency );
+    }
+
+    @Override
+    public String getPath()
+    {
+        return this.dir.toString();
+    }
+
+    /** @return how the note files are laid out, or null if not known yet. */
+    public NotesLayout getLayout()
+    {
+        return this.layout;
+    }
+
+    /** Changes the layout for the note files.
+      * Existing notes are not moved.
+      * @param layout the new layout.
+      */
+    public void setLayout(NotesLayout layout)
+    {
+        this.layout = layout;
+    }
+
+    @Override
+    public String locationFor(Id id)
+    {
+        NotesLayout currentLayout = this.layout;
+
+        if ( currentLayout == null ) {
+            currentLayout = NotesLayout.DEFAULT;
+        }
+
+        return currentLayout.pathFor( this.dir, id ).toString();
+    }
+
+    /** Lists the note files in the directory itself and in its shards,
+      * whatever the layout; the shards are listed in parallel.
+      * A single stat per file is issued; the files are not opened.
+      * When the layout is not known yet, it is decided from the files found.
+      * @return a map of note file paths to their stamps.
+      */
+    @Override
+    public Map<String, FileStamp> list()
+    {
+        final var TORET = new LinkedHashMap<String, FileStamp>();
+        final var SHARDS = new ArrayList<Path>();
+
+        listNoteStamps( this.dir, TORET, SHARDS );
+
+        if ( !SHARDS.isEmpty() ) {
+            final var PERMITS = new Semaphore( this.maxConcurrency );
+            final var FUTURES = new ArrayList<Future<Map<String, FileStamp>>>( SHARDS.size() );
+
+            try (final var EXECUTOR = Executors.newVirtualThreadPerTaskExecutor())
+            {
+                for(Path shard: SHARDS) {
+                    FUTURES.add( EXECUTOR.submit( () -> {
+                        final var STAMPS = new LinkedHashMap<String, FileStamp>();
+
+                        PERMITS.acquire();
+
+                        try {
+                            listNoteStamps( shard, STAMPS, null );
+                        } finally {
+                            PERMITS.release();
+                        }
+
+                        return STAMPS;
+                    }));
+                }
+
+                for(int i = 0; i < FUTURES.size(); ++i) {
+                    try {
+                        TORET.putAll( FUTURES.get( i ).get() );
+                    } catch(ExecutionException exc) {
+                        LOG.warning(
+                                String.format( "unable to list notes in '%s'",
+                                               SHARDS.get( i ) ) );
+                    } catch(InterruptedException exc) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        if ( this.layout == null ) {
+            this.layout = this.detectLayout( TORET );
+        }
+
+        return TORET;
+    }
+
+    /** Lists the note files in a single directory, with their stamps.
+      * @param dir the directory to list.
+      * @param stamps the map in which to store the paths and their stamps.
+      * @param shards the list in which to store the shards found,
+      *               or null when they must not be looked for.
+      */
+    private static void listNoteStamps(
+                            Path dir,
+                            Map<String, FileStamp> stamps,
+                            List<Path> shards)
+    {
+        try (var stream = Files.newDirectoryStream( dir )) {
+            for(Path file: stream) {
+                final String FILE_NAME = file.getFileName().toString();
+
+                try {
+                    final var ATTRS = Files.readAttributes(
+                                            file,
+                                            BasicFileAttributes.class );
+
+                    if ( ATTRS.isRegularFile()
+                      && FILE_NAME.endsWith( NoteProxy.FILE_EXT ) )
+                    {
+                        stamps.put( file.toString(), FileStamp.from( ATTRS ) );
+                    }
+                    else
+                    if ( shards != null
+                      && ATTRS.isDirectory()
+                      && NotesLayout.isShardName( FILE_NAME ) )
+                    {
+                        shards.add( file );
+                    }
+                } catch(IOException exc) {
+                    LOG.warning(
+                            String.format( "error browsing '%s' in '%s'",
+                                                file, dir ) );
+                }
+            }
+        } catch(IOException | DirectoryIteratorException exc) {
+            LOG.warning(
+                    String.format( "unable to list notes in '%s'", dir ) );
+        }
+    }
+
+    /** Decides the layout of the notes directory from the files found in it.
+      * @param stamps the note files found.
+      * @return SHARDED if most notes are in shards, FLAT otherwise.
+      */
+    private NotesLayout detectLayout(Map<String, FileStamp> stamps)
+    {
+        int numSharded = 0;
+
+        for(String notePath: stamps.keySet()) {
+            if ( !this.dir.equals( Path.of( notePath ).getParent() ) ) {
+                ++numSharded;
+            }
+        }
+
+        return ( numSharded * 2 > stamps.size() ) ? NotesLayout.SHARDED
+                                                  : NotesLayout.FLAT;
+    }
+
+    @Override
+    public FileStamp stamp(String location) throws IOException
+    {
+        return FileStamp.from( Path.of( location ) );
+    }
+
+    @Override
+    public NoteDto readHeader(String location) throws IOException
+    {
+        return NoteHeaderReader.read( Path.of( location ) );
+    }
+
+    @Override
+    public NoteFileReader.Hashed read(Id id, String location) throws IOException
+    {
+        return NoteFileReader.readHashed( id, Path.of( location ) );
+    }
+
+    @Override
+    public byte[] readBytes(String location) throws IOException
+    {
+        return Files.readAllBytes( Path.of( location ) );
+    }
+
+    @Override
+    public long hash(String location) throws IOException
+    {
+        return ContentHash.of( Path.of( location ) );
+    }
+
+    @Override
+    public void write(String location, byte[] contents, NoteFileWriter.Durability durability)
+            throws IOException
+    {
+        NoteFileWriter.write( Path.of( location ), contents, durability );
+    }
+
+    @Override
+    public boolean delete(String location) throws IOException
+    {
+        return Files.deleteIfExists( Path.of( location ) );
+    }
+
+    /** Moves a note file, creating its shard if needed.
+      * A shard left empty is deleted.
+      * @param from the current path of the note.
+      * @param to the new path of the note, which must not exist.
+      * @throws IOException if moving goes wrong.
+      */
+    @Override
+    public void move(String from, String to) throws IOException
+    {
+        final Path FROM = Path.of( from );
+        final Path TO = Path.of( to );
+
+        Files.createDirectories( TO.getParent() );
+        Files.move( FROM, TO, StandardCopyOption.ATOMIC_MOVE );
+
+        if ( !this.dir.equals( FROM.getParent() ) ) {
+            try {
+                Files.delete( FROM.getParent() );
+            } catch(IOException exc) {
+                // Not empty
+            }
+        }
+    }
+
+    @Override
+    public NotebookIndex loadIndex()
+    {
+        return NotebookIndex.loadFrom( this.dir );
+    }
+
+    @Override
+    public void saveIndex(NotebookIndex index) throws IOException
+    {
+        index.save( this.dir );
+    }
+
+    /** Moves all note files, and the index, to another directory.
+      * The layout is kept: notes in shards are moved to the same shards
+      * in the new directory. The old directory is deleted if left empty.
+      * @param newDir the new notes directory.
+      * @throws IOException if moving goes wrong.
+      */
+    public void moveTo(Path newDir) throws IOException
+    {
+        Files.createDirectories( newDir );
+
+        for(String notePath: this.list().keySet()) {
+            final Path NOTE_FILE = Path.of( notePath );
+            final Path NEW_FILE = newDir.resolve( this.dir.relativize( NOTE_FILE ) );
+
+            Files.createDirectories( NEW_FILE.getParent() );
+            Files.move(
+                    NOTE_FILE,
+                    NEW_FILE,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        }
+
+        this.removeEmptyShards();
+
+        final Path OLD_INDEX_PATH = this.dir.resolve( NotebookIndex.FILE_NAME );
+
+        if ( Files.exists( OLD_INDEX_PATH ) ) {
+            Files.move(
+                    OLD_INDEX_PATH,
+                    newDir.resolve( NotebookIndex.FILE_NAME ),
+                    StandardCopyOption.REPLACE_EXISTING );
+        }
+
+        Files.deleteIfExists( this.dir );
+    }
+
+    /** Deletes the shards of the notes directory left empty. */
+    void removeEmptyShards()
+    {
+        final DirectoryStream.Filter<Path> SHARD_FILTER = (file) ->
+                                NotesLayout.isShardName( file.getFileName().toString() )
+                                && Files.isDirectory( file );
+
+        try (var stream = Files.newDirectoryStream( this.dir, SHARD_FILTER ))
+        {
+            for(Path shard: stream) {
+                try {
+                    Files.delete( shard );
+                } catch(IOException exc) {
+                    // Not empty
+                }
+            }
+        } catch(IOException | DirectoryIteratorException exc) {
+            LOG.warning( "unable to list shards: " + exc.getMessage() );
+        }
+    }
+
+    private final Path dir;
+    private final int maxConcurrency;
+    private volatile NotesLayout layout;
+}
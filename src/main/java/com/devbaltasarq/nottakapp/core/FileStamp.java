@@ -0,0 +1,38 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+
+/** The cheap metadata of a note file: last modification time and size.
+  * Two equal stamps mean that the header of the note needs no re-reading.
+  * @author baltasarq
+  */
+public record FileStamp(long lastModified, long size) {
+    /** Reads the stamp of the file with a single stat.
+      * @param path the path to the file.
+      * @return a new FileStamp.
+      * @throws IOException if the attributes cannot be read.
+      */
+    public static FileStamp from(Path path) throws IOException
+    {
+        return from( Files.readAttributes( path, BasicFileAttributes.class ) );
+    }
+
+    /** Creates the stamp from already read attributes.
+      * @param ATTRS the attributes of the file.
+      * @return a new FileStamp.
+      */
+    public static FileStamp from(final BasicFileAttributes ATTRS)
+    {
+        return new FileStamp(
+                        ATTRS.lastModifiedTime().toMillis(),
+                        ATTRS.size() );
+    }
+}
@@ -0,0 +1,659 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+
+/** Finds notes by the words in them, ranked by relevance.
+  * The plain text of each note is split into terms, and the postings
+  * of each term are kept in immutable segments, one file each.
+  * Changes are gathered in memory, and written as a new segment once
+  * there are enough of them; a note changed again supersedes its older
+  * versions, which are ignored from then on. When there are too many
+  * segments, they are merged into one, in the background, leaving out
+  * the versions superseded.
+  * Each version keeps the time the note was changed, so the notebook
+  * can find which notes changed while the index was not looking.
+  * Results are ranked with BM25.
+  * The same text is kept in a trigram index, saved when closing,
+  * which finds the notes that may contain any piece of text.
+  * @author baltasarq
+  */
+public final class FullTextIndex implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger( FullTextIndex.class.getName() );
+    public static final String DIR_NAME = "search";
+    public static final String SEGMENT_EXT = ".fts";
+    public static final String TRIGRAMS_FILE = "trigrams.idx";
+    public static final int DEFAULT_FLUSH_DOCS = 1000;
+    public static final int MERGE_FACTOR = 8;
+    /** The stamp of notes not in the index. */
+    public static final long NOT_INDEXED = -1;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** A note found.
+      * @param id the id of the note.
+      * @param score how relevant the note is; greater is better.
+      */
+    public record Hit(Id id, double score) {
+    }
+
+    /** Where the live version of a note is.
+      * @param segment the segment holding the version.
+      * @param ordinal the ordinal of the version in the segment.
+      */
+    private record DocRef(FullTextSegment segment, int ordinal) {
+    }
+
+    /** Opens the index in the given directory, with the default settings.
+      * @param dir the directory for the segments, created if needed.
+      * @throws IOException if the directory cannot be read.
+      */
+    public FullTextIndex(Path dir) throws IOException
+    {
+        this( dir, DEFAULT_FLUSH_DOCS );
+    }
+
+    /** Opens the index in the given directory.
+      * Segments that cannot be read are deleted: their notes
+      * will be found to be missing, and indexed again.
+      * @param dir the directory for the segments, created if needed.
+      * @param flushDocs the number of changes kept in memory before
+      *                  writing a new segment.
+      * @throws IOException if the directory cannot be read.
+      */
+    public FullTextIndex(Path dir, int flushDocs) throws IOException
+    {
+        this.dir = dir;
+        this.flushDocs = flushDocs;
+        this.segments = new ArrayList<>();
+        this.current = new HashMap<>();
+        this.buffer = new LinkedHashMap<>();
+        this.worker = Executors.newSingleThreadExecutor( (task) -> {
+            final var TORET = new Thread( task, "nottakapp-search" );
+
+            TORET.setDaemon( true );
+            return TORET;
+        });
+
+        Files.createDirectories( dir );
+
+        for(Map.Entry<Long, Path> entry: this.listSegments().entrySet()) {
+            try {
+                this.apply( FullTextSegment.load( entry.getValue(), entry.getKey() ) );
+            } catch(IOException exc) {
+                LOG.warning( "discarding search segment: " + exc.getMessage() );
+                Files.deleteIfExists( entry.getValue() );
+            }
+
+            this.nextGeneration = entry.getKey() + 1;
+        }
+
+        this.trigrams = this.loadTrigrams();
+    }
+
+    /** Reads the trigram index, or creates an empty one if it cannot be read.
+      * Notes missing in it, or with older versions in it,
+      * have a different stamp, and so they will be indexed again.
+      */
+    private TrigramIndex loadTrigrams()
+    {
+        final Path PATH = this.dir.resolve( TRIGRAMS_FILE );
+        TrigramIndex toret = new TrigramIndex();
+
+        if ( Files.exists( PATH ) ) {
+            try {
+                toret = TrigramIndex.load( PATH );
+            } catch(IOException exc) {
+                LOG.warning( "discarding trigram index: " + exc.getMessage() );
+            }
+        }
+
+        return toret;
+    }
+
+    /** Finds the segments in the directory, deleting unfinished ones.
+      * @return the path of each segment, by generation.
+      */
+    private TreeMap<Long, Path> listSegments() throws IOException
+    {
+        final var TORET = new TreeMap<Long, Path>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( this.dir )) {
+            for(Path path: files) {
+                final String NAME = path.getFileName().toString();
+
+                if ( NAME.endsWith( SEGMENT_EXT ) ) {
+                    try {
+                        TORET.put( Long.parseLong(
+                                        NAME.substring( 0, NAME.length() - SEGMENT_EXT.length() ) ),
+                                   path );
+                    } catch(NumberFormatException exc) {
+                        LOG.warning( "ignoring file in search index: " + path );
+                    }
+                }
+                else
+                if ( NAME.endsWith( SEGMENT_EXT + ".tmp" ) ) {
+                    Files.deleteIfExists( path );
+                }
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Adds a segment read as the newest one, superseding older versions. */
+    private void apply(FullTextSegment segment)
+    {
+        this.segments.add( segment );
+
+        for(int ordinal = 0; ordinal < segment.getNumDocs(); ++ordinal) {
+            final Id ID = segment.getId( ordinal );
+
+            this.forget( ID );
+
+            if ( !segment.isTombstone( ordinal ) ) {
+                this.current.put( ID, new DocRef( segment, ordinal ) );
+                ++this.numLive;
+                this.totalLength += segment.getLength( ordinal );
+            }
+        }
+    }
+
+    /** Supersedes the live version of a note, if any.
+      * @return true if there was a version, false otherwise.
+      */
+    private boolean forget(Id id)
+    {
+        final DocRef REF = this.current.remove( id );
+        final FullTextSegment.Doc DOC = this.buffer.remove( id );
+        boolean toret = false;
+
+        if ( REF != null ) {
+            REF.segment().supersede( REF.ordinal() );
+            --this.numLive;
+            this.totalLength -= REF.segment().getLength( REF.ordinal() );
+            toret = true;
+        }
+
+        if ( DOC != null
+          && DOC.freqs() != null )
+        {
+            --this.numLive;
+            this.totalLength -= DOC.length();
+            toret = true;
+        }
+
+        return toret;
+    }
+
+    /** Indexes the text of a note, replacing its previous version.
+      * @param id the id of the note.
+      * @param stamp the time the note was changed.
+      * @param text the plain text of the note.
+      * @throws IOException if a new segment had to be written, and failed.
+      */
+    public void put(Id id, long stamp, String text) throws IOException
+    {
+        final var FREQS = new HashMap<String, Integer>();
+        final List<String> TERMS = tokenize( text );
+
+        for(String term: TERMS) {
+            FREQS.merge( term, 1, Integer::sum );
+        }
+
+        this.trigrams.put( id, stamp, text );
+
+        synchronized( this ) {
+            this.forget( id );
+            this.buffer.put( id, new FullTextSegment.Doc( id, stamp, TERMS.size(), FREQS ) );
+            ++this.numLive;
+            this.totalLength += TERMS.size();
+
+            if ( this.buffer.size() >= this.flushDocs ) {
+                this.flush();
+            }
+        }
+    }
+
+    /** Removes a note from the index.
+      * @param id the id of the note.
+      * @throws IOException if a new segment had to be written, and failed.
+      */
+    public synchronized void remove(Id id) throws IOException
+    {
+        this.trigrams.remove( id );
+
+        if ( this.forget( id ) ) {
+            this.buffer.put( id, FullTextSegment.Doc.tombstone( id ) );
+
+            if ( this.buffer.size() >= this.flushDocs ) {
+                this.flush();
+            }
+        }
+    }
+
+    /** Indexes a note in the background, in order with other changes.
+      * @param id the id of the note.
+      * @param stamp the time the note was changed.
+      * @param text reads the plain text of the note, in the background.
+      */
+    public void putLater(Id id, long stamp, Callable<String> text)
+    {
+        this.worker.execute( () -> {
+            if ( !this.closed ) {
+                try {
+                    this.put( id, stamp, text.call() );
+                } catch(Exception exc) {
+                    LOG.warning( "unable to index note " + id + ": " + exc.getMessage() );
+                }
+            }
+        });
+    }
+
+    /** Removes a note in the background, in order with other changes.
+      * @param id the id of the note.
+      */
+    public void removeLater(Id id)
+    {
+        this.worker.execute( () -> {
+            if ( !this.closed ) {
+                try {
+                    this.remove( id );
+                } catch(IOException exc) {
+                    LOG.warning( "unable to unindex note " + id + ": " + exc.getMessage() );
+                }
+            }
+        });
+    }
+
+    /** Waits until all changes given so far are in the index. */
+    public void waitForPending()
+    {
+        try {
+            this.worker.submit( () -> {} ).get();
+        } catch(InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException exc) {
+            LOG.warning( "search worker failed: " + exc.getMessage() );
+        }
+    }
+
+    /** Writes the changes kept in memory as a new segment.
+      * Merging is scheduled if there are too many segments.
+      * @throws IOException if the segment cannot be written.
+      */
+    public synchronized void flush() throws IOException
+    {
+        if ( !this.buffer.isEmpty() ) {
+            final long GENERATION = this.nextGeneration++;
+            final var DOCS = new ArrayList<>( this.buffer.values() );
+            final FullTextSegment SEGMENT = FullTextSegment.write(
+                                                    this.pathFor( GENERATION ),
+                                                    GENERATION,
+                                                    DOCS );
+
+            // The versions in the buffer already superseded the older ones
+            this.buffer.clear();
+            this.segments.add( SEGMENT );
+
+            for(int ordinal = 0; ordinal < SEGMENT.getNumDocs(); ++ordinal) {
+                if ( !SEGMENT.isTombstone( ordinal ) ) {
+                    this.current.put( SEGMENT.getId( ordinal ), new DocRef( SEGMENT, ordinal ) );
+                }
+            }
+
+            if ( this.segments.size() >= MERGE_FACTOR
+              && !this.mergeScheduled
+              && !this.worker.isShutdown() )
+            {
+                this.mergeScheduled = true;
+                this.worker.execute( () -> {
+                    try {
+                        this.merge();
+                    } catch(IOException exc) {
+                        LOG.warning( "unable to merge search segments: " + exc.getMessage() );
+                    }
+                });
+            }
+        }
+    }
+
+    /** Merges all segments into one, leaving out the versions superseded.
+      * The segments are written without holding the lock, so the index
+      * can be searched and changed meanwhile; versions superseded
+      * while merging are taken into account when swapping the segments.
+      * @throws IOException if the new segment cannot be written.
+      */
+    public void merge() throws IOException
+    {
+        final List<FullTextSegment> TO_MERGE;
+        final var SUPERSEDED = new ArrayList<BitSet>();
+
+        synchronized( this ) {
+            this.mergeScheduled = false;
+            TO_MERGE = List.copyOf( this.segments );
+
+            for(FullTextSegment segment: TO_MERGE) {
+                SUPERSEDED.add( segment.copySuperseded() );
+            }
+        }
+
+        if ( TO_MERGE.size() > 1 ) {
+            // Takes the place of the newest segment merged
+            final long GENERATION = TO_MERGE.getLast().getGeneration();
+            final FullTextSegment MERGED = FullTextSegment.merge(
+                                                    this.pathFor( GENERATION ),
+                                                    GENERATION,
+                                                    TO_MERGE,
+                                                    SUPERSEDED );
+            final Set<FullTextSegment> OLD = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+            OLD.addAll( TO_MERGE );
+
+            synchronized( this ) {
+                for(int ordinal = 0; ordinal < MERGED.getNumDocs(); ++ordinal) {
+                    final Id ID = MERGED.getId( ordinal );
+                    final DocRef REF = this.current.get( ID );
+
+                    if ( REF != null
+                      && OLD.contains( REF.segment() ) )
+                    {
+                        this.current.put( ID, new DocRef( MERGED, ordinal ) );
+                    } else {
+                        MERGED.supersede( ordinal );
+                    }
+                }
+
+                this.segments.removeAll( TO_MERGE );
+                this.segments.addFirst( MERGED );
+            }
+
+            for(FullTextSegment segment: TO_MERGE) {
+                if ( segment.getGeneration() != GENERATION ) {
+                    Files.deleteIfExists( segment.getPath() );
+                }
+            }
+        }
+    }
+
+    private Path pathFor(long generation)
+    {
+        return this.dir.resolve( String.format( "%08d", generation ) + SEGMENT_EXT );
+    }
+
+    /** @return the time the indexed version of the note was changed,
+      *         or NOT_INDEXED if the note is not in the index.
+      */
+    public synchronized long stampOf(Id id)
+    {
+        final FullTextSegment.Doc DOC = this.buffer.get( id );
+        final DocRef REF = this.current.get( id );
+        long toret = NOT_INDEXED;
+
+        if ( DOC != null ) {
+            if ( DOC.freqs() != null ) {
+                toret = DOC.stamp();
+            }
+        }
+        else
+        if ( REF != null ) {
+            toret = REF.segment().getStamp( REF.ordinal() );
+        }
+
+        if ( toret != this.trigrams.stampOf( id ) ) {
+            toret = NOT_INDEXED;
+        }
+
+        return toret;
+    }
+
+    /** @return the ids of all notes in the index. */
+    public synchronized Set<Id> getIds()
+    {
+        final Set<Id> TORET = this.trigrams.getIds();
+
+        TORET.addAll( this.current.keySet() );
+
+        for(FullTextSegment.Doc doc: this.buffer.values()) {
+            if ( doc.freqs() != null ) {
+                TORET.add( doc.id() );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** @return the number of notes in the index. */
+    public synchronized int count()
+    {
+        return this.numLive;
+    }
+
+    /** @return the trigram index, for finding any piece of text. */
+    public TrigramIndex getTrigrams()
+    {
+        return this.trigrams;
+    }
+
+    /** @return the number of segments on disk. */
+    public synchronized int getNumSegments()
+    {
+        return this.segments.size();
+    }
+
+    /** Finds the notes most relevant for the given words.
+      * Notes with any of the words are found; those with more of them,
+      * or with rarer ones, rank first.
+      * @param query the words to look for.
+      * @param maxResults the maximum number of notes returned.
+      * @return the notes found, the most relevant first.
+      */
+    public synchronized List<Hit> search(String query, int maxResults)
+    {
+        final var TERMS = new LinkedHashSet<>( tokenize( query ) );
+        final var TOP = new PriorityQueue<Hit>( (h1, h2) -> Double.compare( h1.score(), h2.score() ) );
+        final double AVG_LENGTH = Math.max( 1.0, (double) this.totalLength / Math.max( 1, this.numLive ) );
+        final var IDFS = new HashMap<String, Double>();
+
+        for(String term: TERMS) {
+            IDFS.put( term, this.idf( term ) );
+        }
+
+        // Segments: scores by ordinal
+        for(FullTextSegment segment: this.segments) {
+            final var SCORES = new float[ segment.getNumDocs() ];
+            final var MATCHED = new BitSet( segment.getNumDocs() );
+
+            for(String term: TERMS) {
+                final int TERM_POS = segment.find( term );
+                final double IDF = IDFS.get( term );
+
+                if ( TERM_POS >= 0 ) {
+                    segment.forEachPosting( TERM_POS, (ordinal, freq) -> {
+                        if ( segment.isLive( ordinal ) ) {
+                            SCORES[ ordinal ] += (float) bm25( IDF, freq, segment.getLength( ordinal ), AVG_LENGTH );
+                            MATCHED.set( ordinal );
+                        }
+                    });
+                }
+            }
+
+            for(int ordinal = MATCHED.nextSetBit( 0 ); ordinal >= 0; ordinal = MATCHED.nextSetBit( ordinal + 1 )) {
+                offer( TOP, new Hit( segment.getId( ordinal ), SCORES[ ordinal ] ), maxResults );
+            }
+        }
+
+        // Changes not written yet
+        for(FullTextSegment.Doc doc: this.buffer.values()) {
+            if ( doc.freqs() != null ) {
+                double score = 0;
+
+                for(String term: TERMS) {
+                    final Integer FREQ = doc.freqs().get( term );
+
+                    if ( FREQ != null ) {
+                        score += bm25( IDFS.get( term ), FREQ, doc.length(), AVG_LENGTH );
+                    }
+                }
+
+                if ( score > 0 ) {
+                    offer( TOP, new Hit( doc.id(), score ), maxResults );
+                }
+            }
+        }
+
+        final var TORET = new ArrayList<Hit>( TOP );
+
+        TORET.sort( (h1, h2) -> Double.compare( h2.score(), h1.score() ) );
+        return TORET;
+    }
+
+    /** @return the inverse document frequency of the term. */
+    private double idf(String term)
+    {
+        int docFreq = 0;
+
+        // Superseded versions are counted as well, as an approximation
+        for(FullTextSegment segment: this.segments) {
+            final int TERM_POS = segment.find( term );
+
+            if ( TERM_POS >= 0 ) {
+                docFreq += segment.getDocFreq( TERM_POS );
+            }
+        }
+
+        for(FullTextSegment.Doc doc: this.buffer.values()) {
+            if ( doc.freqs() != null
+              && doc.freqs().containsKey( term ) )
+            {
+                ++docFreq;
+            }
+        }
+
+        docFreq = Math.min( docFreq, this.numLive );
+        return Math.log( 1 + ( this.numLive - docFreq + 0.5 ) / ( docFreq + 0.5 ) );
+    }
+
+    private static double bm25(double idf, int freq, int length, double avgLength)
+    {
+        return idf * ( freq * ( K1 + 1 ) )
+                   / ( freq + K1 * ( 1 - B + B * length / avgLength ) );
+    }
+
+    private static void offer(PriorityQueue<Hit> top, Hit hit, int maxResults)
+    {
+        if ( top.size() < maxResults ) {
+            top.add( hit );
+        }
+        else
+        if ( maxResults > 0
+          && top.peek().score() < hit.score() )
+        {
+            top.poll();
+            top.add( hit );
+        }
+    }
+
+    /** Splits a text in terms: lowercase words, without accents.
+      * Words too short are left out, and words too long are cut.
+      * @param text the text to split.
+      * @return the terms, in order, repeated if they appear more than once.
+      */
+    public static List<String> tokenize(String text)
+    {
+        final var TORET = new ArrayList<String>();
+        final var WORD = new StringBuilder();
+        boolean ascii = true;
+
+        for(int i = 0; i <= text.length(); ++i) {
+            final char CH = ( i < text.length() ) ? text.charAt( i ) : ' ';
+
+            if ( Character.isLetterOrDigit( CH ) ) {
+                WORD.append( Character.toLowerCase( CH ) );
+                ascii &= ( CH < 128 );
+            }
+            else
+            if ( !WORD.isEmpty() ) {
+                String term = WORD.toString();
+
+                if ( !ascii ) {
+                    term = Normalizer.normalize( term, Normalizer.Form.NFD )
+                                     .replaceAll( "\\p{M}", "" );
+                }
+
+                if ( term.length() >= MIN_TERM_LENGTH ) {
+                    TORET.add( term.substring( 0, Math.min( term.length(), MAX_TERM_LENGTH ) ) );
+                }
+
+                WORD.setLength( 0 );
+                ascii = true;
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Stops the background worker, and writes the changes in memory.
+      * Changes given to be done in the background, but not done yet,
+      * are dropped: the notebook finds them again by their stamps.
+      * Call waitForPending() first to have them done.
+      * @throws IOException if the changes cannot be written.
+      */
+    @Override
+    public void close() throws IOException
+    {
+        this.closed = true;
+        this.worker.shutdown();
+
+        try {
+            this.worker.awaitTermination( 1, TimeUnit.MINUTES );
+        } catch(InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.flush();
+        this.trigrams.save( this.dir.resolve( TRIGRAMS_FILE ) );
+    }
+
+    private final Path dir;
+    private final int flushDocs;
+    private final List<FullTextSegment> segments;
+    private final Map<Id, DocRef> current;
+    private final Map<Id, FullTextSegment.Doc> buffer;
+    private final ExecutorService worker;
+    private final TrigramIndex trigrams;
+    private long nextGeneration;
+    private int numLive;
+    private long totalLength;
+    private boolean mergeScheduled;
+    private volatile boolean closed;
+}
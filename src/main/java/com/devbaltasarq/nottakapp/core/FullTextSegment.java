@@ -0,0 +1,493 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+
+/** An immutable part of the full-text index, as kept in a file.
+  * A segment holds a table of documents, each one a version of a note,
+  * and a sorted dictionary of terms, each one with its postings:
+  * the ordinals of the documents having the term, and how many times.
+  * Postings are encoded as varints, ordinals as deltas, so they are small.
+  * Removed notes are kept as tombstones, documents with no terms,
+  * so they hide older versions in older segments.
+  * Which documents are superseded by newer segments is not stored,
+  * but kept in memory by the index, rebuilt when opening it.
+  * @author baltasarq
+  */
+final class FullTextSegment {
+    private static final int MAGIC = 0x4E544654;
+    private static final int VERSION = 1;
+    static final int TOMBSTONE = -1;
+
+    /** A version of a note, to be written in a new segment.
+      * @param id the id of the note.
+      * @param stamp the time the note was changed when indexed.
+      * @param length the number of terms in the note, or TOMBSTONE.
+      * @param freqs the number of times each term appears, or null for tombstones.
+      */
+    record Doc(Id id, long stamp, int length, Map<String, Integer> freqs) {
+        /** Creates a tombstone, for a removed note. */
+        static Doc tombstone(Id id)
+        {
+            return new Doc( id, 0, TOMBSTONE, null );
+        }
+    }
+
+    /** Receives the postings of a term. */
+    interface PostingConsumer {
+        void accept(int ordinal, int freq);
+    }
+
+    private FullTextSegment(
+                    long generation,
+                    Path path,
+                    Id[] ids,
+                    long[] stamps,
+                    int[] lengths,
+                    String[] terms,
+                    int[] docFreqs,
+                    int[] offsets,
+                    byte[] postings)
+    {
+        this.generation = generation;
+        this.path = path;
+        this.ids = ids;
+        this.stamps = stamps;
+        this.lengths = lengths;
+        this.terms = terms;
+        this.docFreqs = docFreqs;
+        this.offsets = offsets;
+        this.postings = postings;
+        this.superseded = new BitSet( ids.length );
+    }
+
+    /** @return the generation of the segment: newer segments have greater ones. */
+    long getGeneration()
+    {
+        return this.generation;
+    }
+
+    /** @return the file of the segment. */
+    Path getPath()
+    {
+        return this.path;
+    }
+
+    /** @return the number of documents, including tombstones. */
+    int getNumDocs()
+    {
+        return this.ids.length;
+    }
+
+    Id getId(int ordinal)
+    {
+        return this.ids[ ordinal ];
+    }
+
+    long getStamp(int ordinal)
+    {
+        return this.stamps[ ordinal ];
+    }
+
+    int getLength(int ordinal)
+    {
+        return this.lengths[ ordinal ];
+    }
+
+    boolean isTombstone(int ordinal)
+    {
+        return this.lengths[ ordinal ] == TOMBSTONE;
+    }
+
+    /** @return true if the document is a live version of a note. */
+    boolean isLive(int ordinal)
+    {
+        return !this.superseded.get( ordinal )
+            && !this.isTombstone( ordinal );
+    }
+
+    /** Marks a document as superseded by a newer version, or removed.
+      * Only the index calls this, while holding its lock.
+      */
+    void supersede(int ordinal)
+    {
+        this.superseded.set( ordinal );
+    }
+
+    /** @return a copy of the documents superseded so far. */
+    BitSet copySuperseded()
+    {
+        return (BitSet) this.superseded.clone();
+    }
+
+    /** @return the number of documents still alive. */
+    int getNumLive()
+    {
+        int toret = 0;
+
+        for(int i = 0; i < this.ids.length; ++i) {
+            if ( this.isLive( i ) ) {
+                ++toret;
+            }
+        }
+
+        return toret;
+    }
+
+    /** Finds a term in the dictionary.
+      * @param term the term to look for.
+      * @return the position of the term, or a negative number if missing.
+      */
+    int find(String term)
+    {
+        return Arrays.binarySearch( this.terms, term );
+    }
+
+    /** @return the number of documents with the term at the given position,
+      *         including those superseded.
+      */
+    int getDocFreq(int termPos)
+    {
+        return this.docFreqs[ termPos ];
+    }
+
+    /** Decodes the postings of the term at the given position.
+      * @param termPos the position of the term, as returned by find().
+      * @param consumer receives each ordinal and frequency, in ascending order.
+      */
+    void forEachPosting(int termPos, PostingConsumer consumer)
+    {
+        final var BUFFER = ByteBuffer.wrap( this.postings );
+        int ordinal = 0;
+
+        BUFFER.position( this.offsets[ termPos ] );
+
+        for(int i = 0; i < this.docFreqs[ termPos ]; ++i) {
+            ordinal += readVarInt( BUFFER );
+            consumer.accept( ordinal, readVarInt( BUFFER ) );
+        }
+    }
+
+    /** Writes a new segment with the given documents.
+      * @param path the file of the segment, replaced atomically.
+      * @param generation the generation of the segment.
+      * @param docs the documents, in the order of their ordinals.
+      * @return the new segment.
+      * @throws IOException if writing fails.
+      */
+    static FullTextSegment write(Path path, long generation, List<Doc> docs)
+            throws IOException
+    {
+        final var POSTINGS_BY_TERM = new TreeMap<String, ByteArrayOutputStream>();
+        final var LAST_ORDINALS = new TreeMap<String, int[]>();
+        final int NUM_DOCS = docs.size();
+        final var IDS = new Id[ NUM_DOCS ];
+        final long[] STAMPS = new long[ NUM_DOCS ];
+        final int[] LENGTHS = new int[ NUM_DOCS ];
+
+        for(int ordinal = 0; ordinal < NUM_DOCS; ++ordinal) {
+            final Doc DOC = docs.get( ordinal );
+
+            IDS[ ordinal ] = DOC.id();
+            STAMPS[ ordinal ] = DOC.stamp();
+            LENGTHS[ ordinal ] = DOC.length();
+
+            if ( DOC.freqs() != null ) {
+                for(Map.Entry<String, Integer> entry: DOC.freqs().entrySet()) {
+                    final int[] LAST = LAST_ORDINALS.computeIfAbsent(
+                                                entry.getKey(),
+                                                (key) -> new int[] { 0, 0 } );
+                    final ByteArrayOutputStream OUT = POSTINGS_BY_TERM.computeIfAbsent(
+                                                entry.getKey(),
+                                                (key) -> new ByteArrayOutputStream() );
+
+                    writeVarInt( OUT, ordinal - LAST[ 0 ] );
+                    writeVarInt( OUT, entry.getValue() );
+                    LAST[ 0 ] = ordinal;
+                    ++LAST[ 1 ];
+                }
+            }
+        }
+
+        final int NUM_TERMS = POSTINGS_BY_TERM.size();
+        final var TERMS = new String[ NUM_TERMS ];
+        final int[] DOC_FREQS = new int[ NUM_TERMS ];
+        final int[] OFFSETS = new int[ NUM_TERMS ];
+        final var ALL_POSTINGS = new ByteArrayOutputStream();
+        int termPos = 0;
+
+        for(Map.Entry<String, ByteArrayOutputStream> entry: POSTINGS_BY_TERM.entrySet()) {
+            TERMS[ termPos ] = entry.getKey();
+            DOC_FREQS[ termPos ] = LAST_ORDINALS.get( entry.getKey() )[ 1 ];
+            OFFSETS[ termPos ] = ALL_POSTINGS.size();
+            entry.getValue().writeTo( ALL_POSTINGS );
+            ++termPos;
+        }
+
+        final var TORET = new FullTextSegment(
+                                    generation, path,
+                                    IDS, STAMPS, LENGTHS,
+                                    TERMS, DOC_FREQS, OFFSETS,
+                                    ALL_POSTINGS.toByteArray() );
+
+        TORET.save();
+        return TORET;
+    }
+
+    /** Merges segments into a new one, leaving out the documents not alive.
+      * Tombstones are left out as well, so the segments merged must
+      * include the oldest one: no older versions can be left to hide.
+      * @param path the file of the new segment, replaced atomically.
+      * @param generation the generation of the new segment.
+      * @param segments the segments to merge, oldest first.
+      * @param superseded a copy of the superseded documents of each segment.
+      * @return the new segment.
+      * @throws IOException if writing fails.
+      */
+    static FullTextSegment merge(
+                        Path path,
+                        long generation,
+                        List<FullTextSegment> segments,
+                        List<BitSet> superseded)
+            throws IOException
+    {
+        final var NEW_ORDINALS = new ArrayList<int[]>( segments.size() );
+        final var IDS = new ArrayList<Id>();
+        final var STAMPS = new ArrayList<Long>();
+        final var LENGTHS = new ArrayList<Integer>();
+        final var ALL_TERMS = new TreeSet<String>();
+
+        // Renumber the documents kept
+        for(int i = 0; i < segments.size(); ++i) {
+            final FullTextSegment SEGMENT = segments.get( i );
+            final BitSet SUPERSEDED = superseded.get( i );
+            final int[] ORDINALS = new int[ SEGMENT.getNumDocs() ];
+
+            for(int ordinal = 0; ordinal < ORDINALS.length; ++ordinal) {
+                ORDINALS[ ordinal ] = -1;
+
+                if ( !SUPERSEDED.get( ordinal )
+                  && !SEGMENT.isTombstone( ordinal ) )
+                {
+                    ORDINALS[ ordinal ] = IDS.size();
+                    IDS.add( SEGMENT.getId( ordinal ) );
+                    STAMPS.add( SEGMENT.getStamp( ordinal ) );
+                    LENGTHS.add( SEGMENT.getLength( ordinal ) );
+                }
+            }
+
+            NEW_ORDINALS.add( ORDINALS );
+            ALL_TERMS.addAll( Arrays.asList( SEGMENT.terms ) );
+        }
+
+        // Copy the postings, term by term
+        final var TERMS = new ArrayList<String>( ALL_TERMS.size() );
+        final var DOC_FREQS = new ArrayList<Integer>( ALL_TERMS.size() );
+        final var OFFSETS = new ArrayList<Integer>( ALL_TERMS.size() );
+        final var ALL_POSTINGS = new ByteArrayOutputStream();
+
+        for(String term: ALL_TERMS) {
+            final int OFFSET = ALL_POSTINGS.size();
+            final int[] LAST = { 0, 0 };
+
+            for(int i = 0; i < segments.size(); ++i) {
+                final FullTextSegment SEGMENT = segments.get( i );
+                final int[] ORDINALS = NEW_ORDINALS.get( i );
+                final int TERM_POS = SEGMENT.find( term );
+
+                if ( TERM_POS >= 0 ) {
+                    SEGMENT.forEachPosting( TERM_POS, (ordinal, freq) -> {
+                        final int NEW_ORDINAL = ORDINALS[ ordinal ];
+
+                        if ( NEW_ORDINAL >= 0 ) {
+                            writeVarInt( ALL_POSTINGS, NEW_ORDINAL - LAST[ 0 ] );
+                            writeVarInt( ALL_POSTINGS, freq );
+                            LAST[ 0 ] = NEW_ORDINAL;
+                            ++LAST[ 1 ];
+                        }
+                    });
+                }
+            }
+
+            if ( LAST[ 1 ] > 0 ) {
+                TERMS.add( term );
+                DOC_FREQS.add( LAST[ 1 ] );
+                OFFSETS.add( OFFSET );
+            }
+        }
+
+        final var TORET = new FullTextSegment(
+                                    generation, path,
+                                    IDS.toArray( Id[]::new ),
+                                    STAMPS.stream().mapToLong( Long::longValue ).toArray(),
+                                    LENGTHS.stream().mapToInt( Integer::intValue ).toArray(),
+                                    TERMS.toArray( String[]::new ),
+                                    DOC_FREQS.stream().mapToInt( Integer::intValue ).toArray(),
+                                    OFFSETS.stream().mapToInt( Integer::intValue ).toArray(),
+                                    ALL_POSTINGS.toByteArray() );
+
+        TORET.save();
+        return TORET;
+    }
+
+    /** Writes the segment to a temporary file, then moves it in place. */
+    private void save() throws IOException
+    {
+        final var BYTES = new ByteArrayOutputStream( this.postings.length + this.ids.length * 40 );
+        final var OUT = new DataOutputStream( BYTES );
+        final var CRC = new CRC32C();
+
+        OUT.writeInt( MAGIC );
+        OUT.writeInt( VERSION );
+        OUT.writeInt( this.ids.length );
+
+        for(int i = 0; i < this.ids.length; ++i) {
+            OUT.writeLong( this.ids[ i ].get().getMostSignificantBits() );
+            OUT.writeLong( this.ids[ i ].get().getLeastSignificantBits() );
+            OUT.writeLong( this.stamps[ i ] );
+            OUT.writeInt( this.lengths[ i ] );
+        }
+
+        OUT.writeInt( this.terms.length );
+
+        for(int i = 0; i < this.terms.length; ++i) {
+            OUT.writeUTF( this.terms[ i ] );
+            OUT.writeInt( this.docFreqs[ i ] );
+            OUT.writeInt( this.offsets[ i ] );
+        }
+
+        OUT.writeInt( this.postings.length );
+        OUT.write( this.postings );
+        OUT.flush();
+
+        CRC.update( BYTES.toByteArray() );
+        OUT.writeLong( CRC.getValue() );
+        OUT.flush();
+
+        final Path TEMP = this.path.resolveSibling( this.path.getFileName() + ".tmp" );
+
+        Files.write( TEMP, BYTES.toByteArray() );
+        Files.move( TEMP, this.path,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /** Reads a segment from its file.
+      * @param path the file of the segment.
+      * @param generation the generation of the segment.
+      * @return the segment read.
+      * @throws IOException if the file cannot be read, or is corrupted.
+      */
+    static FullTextSegment load(Path path, long generation) throws IOException
+    {
+        final byte[] BYTES = Files.readAllBytes( path );
+        final var CRC = new CRC32C();
+
+        if ( BYTES.length < Long.BYTES ) {
+            throw new IOException( "truncated segment: " + path );
+        }
+
+        CRC.update( BYTES, 0, BYTES.length - Long.BYTES );
+
+        if ( CRC.getValue() != ByteBuffer.wrap( BYTES ).getLong( BYTES.length - Long.BYTES ) ) {
+            throw new IOException( "corrupted segment: " + path );
+        }
+
+        final var IN = new DataInputStream( new ByteArrayInputStream( BYTES ) );
+
+        if ( IN.readInt() != MAGIC
+          || IN.readInt() != VERSION )
+        {
+            throw new IOException( "not a segment: " + path );
+        }
+
+        final int NUM_DOCS = IN.readInt();
+        final var IDS = new Id[ NUM_DOCS ];
+        final long[] STAMPS = new long[ NUM_DOCS ];
+        final int[] LENGTHS = new int[ NUM_DOCS ];
+
+        for(int i = 0; i < NUM_DOCS; ++i) {
+            IDS[ i ] = new Id( new UUID( IN.readLong(), IN.readLong() ) );
+            STAMPS[ i ] = IN.readLong();
+            LENGTHS[ i ] = IN.readInt();
+        }
+
+        final int NUM_TERMS = IN.readInt();
+        final var TERMS = new String[ NUM_TERMS ];
+        final int[] DOC_FREQS = new int[ NUM_TERMS ];
+        final int[] OFFSETS = new int[ NUM_TERMS ];
+
+        for(int i = 0; i < NUM_TERMS; ++i) {
+            TERMS[ i ] = IN.readUTF();
+            DOC_FREQS[ i ] = IN.readInt();
+            OFFSETS[ i ] = IN.readInt();
+        }
+
+        final byte[] POSTINGS = new byte[ IN.readInt() ];
+
+        IN.readFully( POSTINGS );
+
+        return new FullTextSegment(
+                            generation, path,
+                            IDS, STAMPS, LENGTHS,
+                            TERMS, DOC_FREQS, OFFSETS,
+                            POSTINGS );
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value)
+    {
+        while( ( value & ~0x7F ) != 0 ) {
+            out.write( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+
+        out.write( value );
+    }
+
+    private static int readVarInt(ByteBuffer buffer)
+    {
+        int toret = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = buffer.get();
+            toret |= ( b & 0x7F ) << shift;
+            shift += 7;
+        } while( ( b & 0x80 ) != 0 );
+
+        return toret;
+    }
+
+    private final long generation;
+    private final Path path;
+    private final Id[] ids;
+    private final long[] stamps;
+    private final int[] lengths;
+    private final String[] terms;
+    private final int[] docFreqs;
+    private final int[] offsets;
+    private final byte[] postings;
+    private final BitSet superseded;
+}
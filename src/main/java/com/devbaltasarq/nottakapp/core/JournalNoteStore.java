@@ -0,0 +1,919 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+
+/** Keeps all notes in a few large files, instead of one file per note.
+  * Each version of a note is appended as a record to the active segment,
+  * and deletions are appended as tombstones. When the active segment
+  * grows beyond its maximum size, a footer listing its records is written,
+  * and a new segment is started.
+  * The position of the last version of each note is kept in memory,
+  * rebuilt from the footers when opened; only the active segment,
+  * which has no footer yet, is scanned record by record.
+  * A compactor copies the versions still alive in segments with too
+  * much garbage to the active segment, and then deletes those segments.
+  * Tombstones count as alive while an older segment still holds
+  * a version of the deleted note; afterwards, they are dropped.
+  * @author baltasarq
+  */
+public final class JournalNoteStore implements NoteStore, AutoCloseable {
+    private static final Logger LOG = Logger.getLogger( JournalNoteStore.class.getName() );
+    public static final String STORAGE_NAME = "journal";
+    public static final String DIR_NAME = "journal";
+    public static final String SEGMENT_EXT = ".seg";
+    public static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+    public static final double MAX_GARBAGE_RATIO = 0.5;
+    public static final long COMPACT_INTERVAL_MILLIS = 60_000;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final int FOOTER_MAGIC = 0x4E544A46;
+    private static final int RECORD_HEADER_SIZE = 1 + 16 + 8 + 4 + 4;
+    private static final int FOOTER_ENTRY_SIZE = 1 + 16 + 8 + 8 + 4;
+    private static final int FOOTER_TRAILER_SIZE = 4 + 8 + 4;
+
+    /** A record in a segment.
+      * @param type either RECORD_PUT or RECORD_DELETE.
+      * @param id the id of the note.
+      * @param offset the position of the record in the segment.
+      * @param lastModified the time the note was written, or deleted.
+      * @param length the length of the contents of the note.
+      */
+    private record Record(byte type, Id id, long offset, long lastModified, int length) {
+        /** @return the size of the whole record in the segment. */
+        long size()
+        {
+            return RECORD_HEADER_SIZE + this.length();
+        }
+    }
+
+    /** Where the last version of a note is.
+      * @param segment the segment holding the version.
+      * @param record the record of the version.
+      */
+    private record Position(Segment segment, Record record) {
+        FileStamp stamp()
+        {
+            return new FileStamp( this.record().lastModified(), this.record().length() );
+        }
+    }
+
+    /** A file of records. Only the active segment is appended to. */
+    private static final class Segment {
+        Segment(int number, Path path, FileChannel channel)
+        {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.records = new ArrayList<>();
+            this.size = 0;
+            this.liveBytes = 0;
+        }
+
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final List<Record> records;
+        long size;
+        long liveBytes;
+    }
+
+    /** Opens the journal in the given directory, with the default segment size.
+      * @param dir the directory for the segments, created if needed.
+      * @throws IOException if the segments cannot be read.
+      */
+    public JournalNoteStore(Path dir) throws IOException
+    {
+        this( dir, DEFAULT_SEGMENT_SIZE );
+    }
+
+    /** Opens the journal in the given directory.
+      * @param dir the directory for the segments, created if needed.
+      * @param segmentSize the size above which a new segment is started.
+      * @throws IOException if the segments cannot be read.
+      */
+    public JournalNoteStore(Path dir, long segmentSize) throws IOException
+    {
+        this.dir = dir.toAbsolutePath();
+        this.segmentSize = segmentSize;
+        this.positions = new ConcurrentHashMap<>();
+        this.tombstones = new HashMap<>();
+        this.putSegments = new HashMap<>();
+        this.segments = new TreeMap<>();
+        this.compacting = new ReentrantLock();
+        this.compactor = null;
+        this.clock = 0;
+
+        Files.createDirectories( this.dir );
+        this.open();
+    }
+
+    /** Reads the records of all segments, rebuilding the positions of notes. */
+    private void open() throws IOException
+    {
+        final var PATHS = new TreeMap<Integer, Path>();
+        final var UNSEALED = new ArrayList<Segment>();
+
+        try (var stream = Files.newDirectoryStream( this.dir, "*" + SEGMENT_EXT )) {
+            for(Path path: stream) {
+                final Integer NUMBER = segmentNumberOf( path );
+
+                if ( NUMBER != null ) {
+                    PATHS.put( NUMBER, path );
+                }
+            }
+        } catch(DirectoryIteratorException exc) {
+            throw exc.getCause();
+        }
+
+        for(Map.Entry<Integer, Path> entry: PATHS.entrySet()) {
+            final var SEGMENT = new Segment(
+                                    entry.getKey(),
+                                    entry.getValue(),
+                                    FileChannel.open( entry.getValue(),
+                                                      StandardOpenOption.READ,
+                                                      StandardOpenOption.WRITE ) );
+            List<Record> records = readFooter( SEGMENT );
+
+            if ( records == null ) {
+                records = scan( SEGMENT );
+                SEGMENT.records.addAll( records );
+                UNSEALED.add( SEGMENT );
+            }
+
+            this.segments.put( SEGMENT.number, SEGMENT );
+
+            for(Record record: records) {
+                this.replay( SEGMENT, record );
+            }
+        }
+
+        // Only the last segment can be left unsealed, as the active one
+        if ( !UNSEALED.isEmpty()
+          && UNSEALED.getLast() == this.segments.lastEntry().getValue() )
+        {
+            this.active = UNSEALED.removeLast();
+        }
+
+        for(Segment segment: UNSEALED) {
+            this.seal( segment );
+        }
+
+        if ( this.active == null ) {
+            this.active = this.newSegment();
+        }
+
+        for(Id id: List.copyOf( this.tombstones.keySet() )) {
+            this.releaseTombstone( id );
+        }
+    }
+
+    /** Applies a record read from a segment to the positions of notes.
+      * A tombstone replaces the previous one for the same note,
+      * and a new version makes it unneeded.
+      */
+    private void replay(Segment segment, Record record)
+    {
+        final Position NEW_POSITION = new Position( segment, record );
+        final Position OLD;
+        final Position OLD_TOMBSTONE;
+
+        if ( record.type() == RECORD_PUT ) {
+            OLD = this.positions.put( record.id(), NEW_POSITION );
+            OLD_TOMBSTONE = this.tombstones.remove( record.id() );
+            this.putSegments.computeIfAbsent(
+                                    record.id(),
+                                    (id) -> new TreeSet<>() ).add( segment.number );
+        } else {
+            OLD = this.positions.remove( record.id() );
+            OLD_TOMBSTONE = this.tombstones.put( record.id(), NEW_POSITION );
+        }
+
+        segment.liveBytes += record.size();
+
+        if ( OLD != null ) {
+            OLD.segment().liveBytes -= OLD.record().size();
+        }
+
+        if ( OLD_TOMBSTONE != null ) {
+            OLD_TOMBSTONE.segment().liveBytes -= OLD_TOMBSTONE.record().size();
+        }
+
+        this.clock = Math.max( this.clock, record.lastModified() );
+    }
+
+    /** Determines whether a segment older than the given one still holds
+      * a version of the note, so a tombstone for it is still needed.
+      * @param id the id of the note.
+      * @param segmentNumber the number of the segment of the tombstone.
+      * @return true if an older segment holds a version, false otherwise.
+      */
+    private boolean hasOlderVersions(Id id, int segmentNumber)
+    {
+        final TreeSet<Integer> NUMBERS = this.putSegments.get( id );
+
+        return NUMBERS != null
+            && NUMBERS.first() < segmentNumber;
+    }
+
+    /** Forgets about the tombstone of a note if no older segment
+      * holds a version of it anymore, so it is garbage from now on.
+      * @param id the id of the note.
+      */
+    private void releaseTombstone(Id id)
+    {
+        final Position TOMBSTONE = this.tombstones.get( id );
+
+        if ( TOMBSTONE != null
+          && !this.hasOlderVersions( id, TOMBSTONE.segment().number ) )
+        {
+            this.tombstones.remove( id );
+            TOMBSTONE.segment().liveBytes -= TOMBSTONE.record().size();
+        }
+    }
+
+    /** Forgets about a segment being deleted, releasing the tombstones
+      * only needed to hide the versions in it.
+      * @param segment the segment to delete.
+      * @param records the records in the segment.
+      */
+    private void forget(Segment segment, List<Record> records)
+    {
+        this.segments.remove( segment.number );
+
+        for(Record record: records) {
+            final TreeSet<Integer> NUMBERS = this.putSegments.get( record.id() );
+
+            if ( NUMBERS != null ) {
+                NUMBERS.remove( segment.number );
+
+                if ( NUMBERS.isEmpty() ) {
+                    this.putSegments.remove( record.id() );
+                }
+            }
+        }
+
+        for(Record record: records) {
+            this.releaseTombstone( record.id() );
+        }
+    }
+
+    @Override
+    public String getPath()
+    {
+        return this.dir.toString();
+    }
+
+    @Override
+    public String locationFor(Id id)
+    {
+        return this.dir.resolve( id.toString() + NoteProxy.FILE_EXT ).toString();
+    }
+
+    @Override
+    public Map<String, FileStamp> list()
+    {
+        final var TORET = new LinkedHashMap<String, FileStamp>();
+
+        for(Map.Entry<Id, Position> entry: this.positions.entrySet()) {
+            TORET.put( this.locationFor( entry.getKey() ), entry.getValue().stamp() );
+        }
+
+        return TORET;
+    }
+
+    /** @return the number of notes stored. */
+    public int count()
+    {
+        return this.positions.size();
+    }
+
+    /** @return the number of segment files. */
+    public synchronized int getNumSegments()
+    {
+        return this.segments.size();
+    }
+
+    @Override
+    public FileStamp stamp(String location) throws IOException
+    {
+        return this.positionOf( location ).stamp();
+    }
+
+    @Override
+    public NoteDto readHeader(String location) throws IOException
+    {
+        final byte[] BYTES = this.readBytes( location );
+
+        return NoteHeaderReader.parse( BYTES, BYTES.length, true ).header();
+    }
+
+    @Override
+    public NoteFileReader.Hashed read(Id id, String location) throws IOException
+    {
+        return NoteFileReader.readHashed( id, this.readBytes( location ) );
+    }
+
+    /** Reads the last version of a note.
+      * If the segment holding it is deleted by the compactor meanwhile,
+      * the version is read again from its new position.
+      */
+    @Override
+    public byte[] readBytes(String location) throws IOException
+    {
+        byte[] toret = null;
+
+        while( toret == null ) {
+            final Position POSITION = this.positionOf( location );
+
+            try {
+                toret = readContents( POSITION.segment(), POSITION.record() );
+            } catch(ClosedChannelException exc) {
+                if ( this.positions.get( POSITION.record().id() ) == POSITION ) {
+                    throw exc;
+                }
+            }
+        }
+
+        return toret;
+    }
+
+    @Override
+    public long hash(String location) throws IOException
+    {
+        return ContentHash.of( this.readBytes( location ) );
+    }
+
+    @Override
+    public synchronized void write(
+                                String location,
+                                byte[] contents,
+                                NoteFileWriter.Durability durability)
+            throws IOException
+    {
+        this.put( idOf( location ), contents, this.tick(), durability );
+    }
+
+    @Override
+    public synchronized boolean delete(String location) throws IOException
+    {
+        final Id ID = idOf( location );
+        final boolean TORET = this.positions.containsKey( ID );
+
+        if ( TORET ) {
+            this.append( RECORD_DELETE, ID, new byte[ 0 ], this.tick(),
+                         NoteFileWriter.Durability.DEFAULT );
+            this.replay( this.active, this.active.records.getLast() );
+        }
+
+        return TORET;
+    }
+
+    @Override
+    public synchronized void move(String from, String to) throws IOException
+    {
+        final Id TO_ID = idOf( to );
+        final Position POSITION = this.positionOf( from );
+
+        if ( this.positions.containsKey( TO_ID ) ) {
+            throw new FileAlreadyExistsException( to );
+        }
+
+        this.put( TO_ID,
+                  this.readBytes( from ),
+                  POSITION.record().lastModified(),
+                  NoteFileWriter.Durability.DEFAULT );
+        this.delete( from );
+    }
+
+    @Override
+    public NotebookIndex loadIndex()
+    {
+        return NotebookIndex.loadFrom( this.dir );
+    }
+
+    @Override
+    public void saveIndex(NotebookIndex index) throws IOException
+    {
+        index.save( this.dir );
+    }
+
+    /** Writes all notes, in their last version, to another store.
+      * This allows to go back to one file per note, exporting to a
+      * DirectoryNoteStore.
+      * @param target the store to write to.
+      * @throws IOException if reading or writing goes wrong.
+      */
+    public void exportTo(NoteStore target) throws IOException
+    {
+        for(Id id: List.copyOf( this.positions.keySet() )) {
+            try {
+                target.write( target.locationFor( id ),
+                              this.readBytes( this.locationFor( id ) ),
+                              NoteFileWriter.Durability.NONE );
+            } catch(NoSuchFileException exc) {
+                // Deleted meanwhile
+            }
+        }
+    }
+
+    /** Adds all notes in another store to this one.
+      * @param source the store to read from.
+      * @throws IOException if reading or writing goes wrong.
+      */
+    public void importFrom(NoteStore source) throws IOException
+    {
+        for(String location: source.list().keySet()) {
+            try {
+                this.write( this.locationFor( idOf( location ) ),
+                            source.readBytes( location ),
+                            NoteFileWriter.Durability.NONE );
+            } catch(IllegalArgumentException | NoSuchElementException exc) {
+                LOG.warning( "skipping unknown file: " + location );
+            }
+        }
+
+        this.force();
+    }
+
+    /** Starts compacting in the background, at regular intervals. */
+    public synchronized void startCompactor()
+    {
+        if ( this.compactor == null ) {
+            this.compactor = Executors.newSingleThreadScheduledExecutor( (task) -> {
+                final var TORET = new Thread( task, "journal-compactor" );
+
+                TORET.setDaemon( true );
+                return TORET;
+            });
+
+            this.compactor.scheduleWithFixedDelay(
+                                () -> this.compactQuietly(),
+                                COMPACT_INTERVAL_MILLIS,
+                                COMPACT_INTERVAL_MILLIS,
+                                TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /** Compacts the segments with too much garbage.
+      * The versions still alive are copied, one at a time, to the active
+      * segment, so writers are only blocked for a single copy.
+      * Tombstones are kept while older segments remain that still
+      * hold versions of the deleted notes, and dropped otherwise.
+      * @return the number of segments deleted.
+      * @throws IOException if reading or writing goes wrong.
+      */
+    public int compact() throws IOException
+    {
+        int toret = 0;
+
+        this.compacting.lock();
+
+        try {
+            for(Segment segment: this.segmentsToCompact()) {
+                final List<Record> RECORDS = readFooter( segment );
+
+                for(Record record: RECORDS) {
+                    synchronized( this ) {
+                        final Position POSITION = this.positions.get( record.id() );
+
+                        if ( record.type() == RECORD_PUT ) {
+                            if ( POSITION != null
+                              && POSITION.segment() == segment
+                              && POSITION.record().offset() == record.offset() )
+                            {
+                                this.put( record.id(),
+                                          readContents( segment, record ),
+                                          record.lastModified(),
+                                          NoteFileWriter.Durability.NONE );
+                            }
+                        }
+                        else {
+                            final Position TOMBSTONE = this.tombstones.get( record.id() );
+
+                            if ( TOMBSTONE != null
+                              && TOMBSTONE.segment() == segment
+                              && TOMBSTONE.record().offset() == record.offset() )
+                            {
+                                if ( this.hasOlderVersions( record.id(), segment.number ) ) {
+                                    this.append( RECORD_DELETE, record.id(), new byte[ 0 ],
+                                                 record.lastModified(),
+                                                 NoteFileWriter.Durability.NONE );
+                                    this.replay( this.active, this.active.records.getLast() );
+                                } else {
+                                    this.tombstones.remove( record.id() );
+                                }
+                            }
+                        }
+                    }
+                }
+
+                synchronized( this ) {
+                    this.active.channel.force( false );
+                    this.forget( segment, RECORDS );
+                }
+
+                segment.channel.close();
+                Files.deleteIfExists( segment.path );
+                ++toret;
+            }
+        } finally {
+            this.compacting.unlock();
+        }
+
+        return toret;
+    }
+
+    /** @return the sealed segments with too much garbage, oldest first. */
+    private synchronized List<Segment> segmentsToCompact()
+    {
+        final var TORET = new ArrayList<Segment>();
+
+        for(Segment segment: this.segments.values()) {
+            if ( segment != this.active
+              && segment.liveBytes <= segment.size * ( 1 - MAX_GARBAGE_RATIO ) )
+            {
+                TORET.add( segment );
+            }
+        }
+
+        return TORET;
+    }
+
+    private void compactQuietly()
+    {
+        try {
+            final int NUM_COMPACTED = this.compact();
+
+            if ( NUM_COMPACTED > 0 ) {
+                LOG.info( "journal segments compacted: " + NUM_COMPACTED );
+            }
+        } catch(IOException exc) {
+            LOG.warning( "unable to compact journal: " + exc.getMessage() );
+        }
+    }
+
+    /** Forces all records appended to disk. */
+    public synchronized void force() throws IOException
+    {
+        this.active.channel.force( false );
+    }
+
+    /** Stops the compactor, and closes all segments.
+      * The active segment is not sealed, so it keeps on being used
+      * when the journal is opened again.
+      */
+    @Override
+    public void close() throws IOException
+    {
+        ScheduledExecutorService currentCompactor;
+
+        synchronized( this ) {
+            currentCompactor = this.compactor;
+            this.compactor = null;
+        }
+
+        if ( currentCompactor != null ) {
+            currentCompactor.shutdown();
+
+            try {
+                currentCompactor.awaitTermination( 1, TimeUnit.MINUTES );
+            } catch(InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized( this ) {
+            this.active.channel.force( false );
+
+            for(Segment segment: this.segments.values()) {
+                segment.channel.close();
+            }
+        }
+    }
+
+    /** Appends a new version of a note, and makes it the last one. */
+    private void put(Id id, byte[] contents, long time, NoteFileWriter.Durability durability)
+            throws IOException
+    {
+        this.append( RECORD_PUT, id, contents, time, durability );
+        this.replay( this.active, this.active.records.getLast() );
+    }
+
+    /** Appends a record to the active segment, starting a new one if full.
+      * The record is not replayed.
+      */
+    private void append(
+                    byte type,
+                    Id id,
+                    byte[] contents,
+                    long time,
+                    NoteFileWriter.Durability durability)
+            throws IOException
+    {
+        if ( this.active.size > 0
+          && this.active.size + RECORD_HEADER_SIZE + contents.length > this.segmentSize )
+        {
+            this.seal( this.active );
+            this.active = this.newSegment();
+
+            if ( this.compactor != null ) {
+                this.compactor.execute( () -> this.compactQuietly() );
+            }
+        }
+
+        final var CRC = new CRC32C();
+        final ByteBuffer BUFFER = ByteBuffer.allocate( RECORD_HEADER_SIZE + contents.length );
+        final var RECORD = new Record( type, id, this.active.size, time, contents.length );
+
+        CRC.update( contents );
+        BUFFER.put( type );
+        BUFFER.putLong( id.get().getMostSignificantBits() );
+        BUFFER.putLong( id.get().getLeastSignificantBits() );
+        BUFFER.putLong( time );
+        BUFFER.putInt( contents.length );
+        BUFFER.putInt( (int) CRC.getValue() );
+        BUFFER.put( contents );
+        BUFFER.flip();
+        writeFully( this.active.channel, BUFFER, this.active.size );
+
+        if ( durability != NoteFileWriter.Durability.NONE ) {
+            this.active.channel.force( false );
+        }
+
+        this.active.size += BUFFER.capacity();
+        this.active.records.add( RECORD );
+    }
+
+    /** Writes the footer of a segment, listing its records.
+      * No more records are appended to it afterwards.
+      */
+    private void seal(Segment segment) throws IOException
+    {
+        final ByteBuffer BUFFER = ByteBuffer.allocate(
+                                    segment.records.size() * FOOTER_ENTRY_SIZE
+                                    + FOOTER_TRAILER_SIZE );
+
+        for(Record record: segment.records) {
+            BUFFER.put( record.type() );
+            BUFFER.putLong( record.id().get().getMostSignificantBits() );
+            BUFFER.putLong( record.id().get().getLeastSignificantBits() );
+            BUFFER.putLong( record.offset() );
+            BUFFER.putLong( record.lastModified() );
+            BUFFER.putInt( record.length() );
+        }
+
+        BUFFER.putInt( segment.records.size() );
+        BUFFER.putLong( segment.size );
+        BUFFER.putInt( FOOTER_MAGIC );
+        BUFFER.flip();
+        writeFully( segment.channel, BUFFER, segment.size );
+        segment.channel.truncate( segment.size + BUFFER.capacity() );
+        segment.channel.force( true );
+        segment.records.clear();
+    }
+
+    /** Creates a new, empty segment, after the last one. */
+    private Segment newSegment() throws IOException
+    {
+        final int NUMBER = this.segments.isEmpty() ? 1 : this.segments.lastKey() + 1;
+        final Path PATH = this.dir.resolve( String.format( "%08d%s", NUMBER, SEGMENT_EXT ) );
+        final var TORET = new Segment(
+                                NUMBER,
+                                PATH,
+                                FileChannel.open( PATH,
+                                                  StandardOpenOption.CREATE,
+                                                  StandardOpenOption.READ,
+                                                  StandardOpenOption.WRITE ) );
+
+        this.segments.put( NUMBER, TORET );
+        return TORET;
+    }
+
+    /** Reads the records listed in the footer of a segment.
+      * @return the records, or null if the segment has no valid footer.
+      */
+    private static List<Record> readFooter(Segment segment) throws IOException
+    {
+        final long FILE_SIZE = segment.channel.size();
+        List<Record> toret = null;
+
+        if ( FILE_SIZE >= FOOTER_TRAILER_SIZE ) {
+            final ByteBuffer TRAILER = ByteBuffer.allocate( FOOTER_TRAILER_SIZE );
+
+            readFully( segment.channel, TRAILER, FILE_SIZE - FOOTER_TRAILER_SIZE );
+
+            final int COUNT = TRAILER.getInt();
+            final long START = TRAILER.getLong();
+
+            if ( TRAILER.getInt() == FOOTER_MAGIC
+              && COUNT >= 0
+              && START >= 0
+              && START + (long) COUNT * FOOTER_ENTRY_SIZE + FOOTER_TRAILER_SIZE == FILE_SIZE )
+            {
+                final ByteBuffer ENTRIES = ByteBuffer.allocate( COUNT * FOOTER_ENTRY_SIZE );
+
+                readFully( segment.channel, ENTRIES, START );
+                toret = new ArrayList<>( COUNT );
+
+                for(int i = 0; i < COUNT; ++i) {
+                    final byte TYPE = ENTRIES.get();
+                    final var ID = new Id( new UUID( ENTRIES.getLong(), ENTRIES.getLong() ) );
+
+                    toret.add( new Record(
+                                    TYPE,
+                                    ID,
+                                    ENTRIES.getLong(),
+                                    ENTRIES.getLong(),
+                                    ENTRIES.getInt() ) );
+                }
+
+                segment.size = START;
+            }
+        }
+
+        return toret;
+    }
+
+    /** Reads the records of a segment with no footer, one by one.
+      * A truncated or corrupted record at the end, left by a crash,
+      * is cut away, along with everything after it.
+      */
+    private static List<Record> scan(Segment segment) throws IOException
+    {
+        final long FILE_SIZE = segment.channel.size();
+        final ByteBuffer HEADER = ByteBuffer.allocate( RECORD_HEADER_SIZE );
+        final var TORET = new ArrayList<Record>();
+        boolean valid = true;
+        long pos = 0;
+
+        while( valid
+            && pos + RECORD_HEADER_SIZE <= FILE_SIZE )
+        {
+            HEADER.clear();
+            readFully( segment.channel, HEADER, pos );
+
+            final byte TYPE = HEADER.get();
+            final var ID = new Id( new UUID( HEADER.getLong(), HEADER.getLong() ) );
+            final long TIME = HEADER.getLong();
+            final int LENGTH = HEADER.getInt();
+            final int CHECKSUM = HEADER.getInt();
+
+            valid = ( TYPE == RECORD_PUT || TYPE == RECORD_DELETE )
+                 && LENGTH >= 0
+                 && pos + RECORD_HEADER_SIZE + LENGTH <= FILE_SIZE;
+
+            if ( valid ) {
+                final var RECORD = new Record( TYPE, ID, pos, TIME, LENGTH );
+                final ByteBuffer CONTENTS = ByteBuffer.allocate( LENGTH );
+                final var CRC = new CRC32C();
+
+                readFully( segment.channel, CONTENTS, pos + RECORD_HEADER_SIZE );
+                CRC.update( CONTENTS.array() );
+                valid = ( (int) CRC.getValue() == CHECKSUM );
+
+                if ( valid ) {
+                    TORET.add( RECORD );
+                    pos += RECORD.size();
+                }
+            }
+        }
+
+        if ( pos < FILE_SIZE ) {
+            LOG.warning( "discarding truncated records in: " + segment.path );
+            segment.channel.truncate( pos );
+        }
+
+        segment.size = pos;
+        return TORET;
+    }
+
+    /** Reads the contents stored in a record, checking them. */
+    private static byte[] readContents(Segment segment, Record record) throws IOException
+    {
+        final ByteBuffer BUFFER = ByteBuffer.allocate( record.length() );
+        final ByteBuffer CHECKSUM = ByteBuffer.allocate( 4 );
+        final var CRC = new CRC32C();
+
+        readFully( segment.channel, CHECKSUM, record.offset() + RECORD_HEADER_SIZE - 4 );
+        readFully( segment.channel, BUFFER, record.offset() + RECORD_HEADER_SIZE );
+        CRC.update( BUFFER.array() );
+
+        if ( (int) CRC.getValue() != CHECKSUM.getInt() ) {
+            throw new IOException( "corrupted record in: " + segment.path );
+        }
+
+        return BUFFER.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+    {
+        while( buffer.hasRemaining() ) {
+            final int READ = channel.read( buffer, position + buffer.position() );
+
+            if ( READ < 0 ) {
+                throw new IOException( "unexpected end of segment" );
+            }
+        }
+
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+    {
+        while( buffer.hasRemaining() ) {
+            channel.write( buffer, position + buffer.position() );
+        }
+    }
+
+    /** @return the position of the last version of the note.
+      * @param location the location of the note.
+      * @throws NoSuchFileException if the note does not exist.
+      */
+    private Position positionOf(String location) throws NoSuchFileException
+    {
+        Position toret = null;
+
+        try {
+            toret = this.positions.get( idOf( location ) );
+        } catch(IllegalArgumentException | NoSuchElementException exc) {
+            // Not a note
+        }
+
+        if ( toret == null ) {
+            throw new NoSuchFileException( location );
+        }
+
+        return toret;
+    }
+
+    /** @return the id of the note at the given location. */
+    private static Id idOf(String location)
+    {
+        return Id.from( Path.of( location ) );
+    }
+
+    /** @return the number of the segment, or null if not a segment. */
+    private static Integer segmentNumberOf(Path path)
+    {
+        final String NAME = path.getFileName().toString();
+        Integer toret = null;
+
+        try {
+            toret = Integer.valueOf( NAME.substring( 0, NAME.length() - SEGMENT_EXT.length() ) );
+        } catch(NumberFormatException exc) {
+            LOG.warning( "skipping unknown file: " + path );
+        }
+
+        return toret;
+    }
+
+    /** @return the next modification time, always greater than the last one. */
+    private long tick()
+    {
+        this.clock = Math.max( System.currentTimeMillis(), this.clock + 1 );
+        return this.clock;
+    }
+
+    private final Path dir;
+    private final long segmentSize;
+    private final Map<Id, Position> positions;
+    private final Map<Id, Position> tombstones;
+    private final Map<Id, TreeSet<Integer>> putSegments;
+    private final TreeMap<Integer, Segment> segments;
+    private final ReentrantLock compacting;
+    private Segment active;
+    private ScheduledExecutorService compactor;
+    private long clock;
+}
@@ -0,0 +1,166 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.devbaltasarq.nottakapp.core.converter.Element;
+import com.devbaltasarq.nottakapp.core.converter.ParseException;
+import com.devbaltasarq.nottakapp.core.converter.elements.Ref;
+
+
+/** Records which notes link to which, by their wiki references.
+  * Each note keeps the files of its references, such as [label|file],
+  * as written; and each file, in lowercase and without extension,
+  * keeps the notes referencing it. References are kept as written,
+  * and not as the notes they point to, since these notes might not
+  * exist yet, or might change their title; so the notes linking to
+  * a note are those referencing its id or its title.
+  * The graph is kept up to date by the notebook, note by note.
+  * @author baltasarq
+  */
+public final class LinkGraph {
+    private static final Logger LOG = Logger.getLogger( LinkGraph.class.getName() );
+
+    public LinkGraph()
+    {
+        this.refs = new HashMap<>();
+        this.sources = new HashMap<>();
+    }
+
+    /** Records the references of a note, replacing the previous ones.
+      * @param id the id of the note.
+      * @param hrefs the files referenced by the note, as written.
+      */
+    public synchronized void put(Id id, Collection<String> hrefs)
+    {
+        final List<String> NEW_REFS = List.copyOf( hrefs );
+
+        if ( !NEW_REFS.equals( this.refs.get( id ) ) ) {
+            this.remove( id );
+            this.refs.put( id, NEW_REFS );
+
+            for(String href: NEW_REFS) {
+                this.sources.computeIfAbsent(
+                                    keyOf( href ),
+                                    (key) -> new LinkedHashSet<>() ).add( id );
+            }
+        }
+    }
+
+    /** Forgets about a note, and the references in it.
+      * References to the note from other notes are kept.
+      * @param id the id of the note.
+      */
+    public synchronized void remove(Id id)
+    {
+        final List<String> OLD_REFS = this.refs.remove( id );
+
+        if ( OLD_REFS != null ) {
+            for(String href: OLD_REFS) {
+                final String KEY = keyOf( href );
+                final Set<Id> IDS = this.sources.get( KEY );
+
+                if ( IDS != null ) {
+                    IDS.remove( id );
+
+                    if ( IDS.isEmpty() ) {
+                        this.sources.remove( KEY );
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return true if the references of the note are known, false otherwise. */
+    public synchronized boolean contains(Id id)
+    {
+        return this.refs.containsKey( id );
+    }
+
+    /** @return the files referenced by the given note, as written,
+      *         maybe none.
+      */
+    public synchronized List<String> getRefs(Id id)
+    {
+        return this.refs.getOrDefault( id, List.of() );
+    }
+
+    /** Finds the notes referencing the given file.
+      * @param href the file, as an id, a title or a file name.
+      * @return the ids of the notes referencing it, maybe none.
+      */
+    public synchronized List<Id> getSources(String href)
+    {
+        final Set<Id> IDS = this.sources.get( keyOf( href ) );
+
+        return ( IDS != null ) ? List.copyOf( IDS ) : List.of();
+    }
+
+    /** @return the number of notes with known references. */
+    public synchronized int count()
+    {
+        return this.refs.size();
+    }
+
+    /** Normalizes a file of a reference, so all ways of writing it
+      * give the same key: without spaces around, without extension,
+      * and in lowercase.
+      * @param href the file, as written.
+      * @return the key for the file.
+      */
+    static String keyOf(String href)
+    {
+        String toret = href.strip();
+
+        if ( toret.endsWith( NoteProxy.FILE_EXT ) ) {
+            toret = toret.substring( 0, toret.length() - NoteProxy.FILE_EXT.length() );
+        }
+
+        return toret.toLowerCase( Locale.ROOT );
+    }
+
+    /** Finds the wiki references in the text of a note.
+      * @param mdText the text of the note, as markdown.
+      * @return the files referenced, in order, maybe none.
+      */
+    public static List<String> findRefs(String mdText)
+    {
+        final var TORET = new ArrayList<String>();
+
+        try {
+            final var PENDING = new ArrayList<Element>();
+
+            PENDING.add( NoteFormatConverter.fromMD( mdText ).getRoot() );
+
+            while( !PENDING.isEmpty() ) {
+                final Element ELEM = PENDING.removeLast();
+
+                if ( ELEM instanceof Ref REF
+                  && !REF.getURL().isBlank() )
+                {
+                    TORET.add( REF.getURL() );
+                }
+
+                PENDING.addAll( ELEM.getAll().reversed() );
+            }
+        } catch(ParseException exc) {
+            LOG.warning( "unable to find references: " + exc.getMessage() );
+        }
+
+        return TORET;
+    }
+
+    private final Map<Id, List<String>> refs;
+    private final Map<String, Set<Id>> sources;
+}
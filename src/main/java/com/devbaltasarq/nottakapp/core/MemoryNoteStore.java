@@ -0,0 +1,200 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/** Keeps the notes in the heap, as the bytes they would have in their files.
+  * Nothing survives the store, so this is useful for tests and benchmarks,
+  * in which the costs of scanning, loading and saving are to be measured
+  * apart from those of the file system.
+  * Modification times are taken from a clock that never repeats a value,
+  * so every write is seen as a change.
+  * @author baltasarq
+  */
+public final class MemoryNoteStore implements NoteStore {
+    public static final String DEFAULT_NAME = "memory";
+
+    /** A note stored.
+      * @param contents the whole note, as in its file.
+      * @param lastModified the last time it was written.
+      */
+    private record Stored(byte[] contents, long lastModified) {
+        FileStamp stamp()
+        {
+            return new FileStamp( this.lastModified(), this.contents().length );
+        }
+    }
+
+    public MemoryNoteStore()
+    {
+        this( DEFAULT_NAME );
+    }
+
+    /** Creates a new, empty store.
+      * @param name the name of the store, used as the root of the locations.
+      */
+    public MemoryNoteStore(String name)
+    {
+        this( name, false );
+    }
+
+    /** Creates a new, empty store.
+      * A read-only store is shown as such, so it is only browsed.
+      * @param name the name of the store, used as the root of the locations.
+      * @param readOnly true if notes are not to be written, false otherwise.
+      */
+    public MemoryNoteStore(String name, boolean readOnly)
+    {
+        this.name = name;
+        this.readOnly = readOnly;
+        this.notes = new ConcurrentHashMap<>();
+        this.clock = new AtomicLong();
+    }
+
+    @Override
+    public String getPath()
+    {
+        return this.name;
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return this.readOnly;
+    }
+
+    @Override
+    public String locationFor(Id id)
+    {
+        return this.name + "/" + id.toString() + NoteProxy.FILE_EXT;
+    }
+
+    @Override
+    public Map<String, FileStamp> list()
+    {
+        final var TORET = new LinkedHashMap<String, FileStamp>();
+
+        for(Map.Entry<String, Stored> entry: this.notes.entrySet()) {
+            TORET.put( entry.getKey(), entry.getValue().stamp() );
+        }
+
+        return TORET;
+    }
+
+    @Override
+    public FileStamp stamp(String location) throws IOException
+    {
+        return this.lookUp( location ).stamp();
+    }
+
+    @Override
+    public NoteDto readHeader(String location) throws IOException
+    {
+        final byte[] BYTES = this.lookUp( location ).contents();
+
+        return NoteHeaderReader.parse( BYTES, BYTES.length, true ).header();
+    }
+
+    @Override
+    public NoteFileReader.Hashed read(Id id, String location) throws IOException
+    {
+        return NoteFileReader.readHashed( id, this.lookUp( location ).contents() );
+    }
+
+    @Override
+    public byte[] readBytes(String location) throws IOException
+    {
+        return this.lookUp( location ).contents().clone();
+    }
+
+    @Override
+    public long hash(String location) throws IOException
+    {
+        return ContentHash.of( this.lookUp( location ).contents() );
+    }
+
+    /** Stores a copy of the contents, so the caller can reuse its array.
+      * The durability is meaningless here, and therefore ignored.
+      */
+    @Override
+    public void write(String location, byte[] contents, NoteFileWriter.Durability durability)
+    {
+        this.notes.put( location, new Stored( contents.clone(), this.tick() ) );
+    }
+
+    @Override
+    public boolean delete(String location)
+    {
+        return ( this.notes.remove( location ) != null );
+    }
+
+    @Override
+    public synchronized void move(String from, String to) throws IOException
+    {
+        final Stored NOTE = this.lookUp( from );
+
+        if ( this.notes.putIfAbsent( to, NOTE ) != null ) {
+            throw new FileAlreadyExistsException( to );
+        }
+
+        this.notes.remove( from );
+    }
+
+    /** The index is not kept: headers are cheap to parse from memory. */
+    @Override
+    public NotebookIndex loadIndex()
+    {
+        return new NotebookIndex();
+    }
+
+    @Override
+    public void saveIndex(NotebookIndex index)
+    {
+        index.markSaved();
+    }
+
+    /** @return the number of notes stored. */
+    public int count()
+    {
+        return this.notes.size();
+    }
+
+    /** Finds the note at the given location.
+      * @param location the location of the note.
+      * @return the note stored.
+      * @throws NoSuchFileException if there is no note there.
+      */
+    private Stored lookUp(String location) throws NoSuchFileException
+    {
+        final Stored TORET = this.notes.get( location );
+
+        if ( TORET == null ) {
+            throw new NoSuchFileException( location );
+        }
+
+        return TORET;
+    }
+
+    /** @return the next modification time, always greater than the last one. */
+    private long tick()
+    {
+        final long NOW = System.currentTimeMillis();
+
+        return this.clock.updateAndGet( (last) -> Math.max( NOW, last + 1 ) );
+    }
+
+    private final String name;
+    private final boolean readOnly;
+    private final Map<String, Stored> notes;
+    private final AtomicLong clock;
+}
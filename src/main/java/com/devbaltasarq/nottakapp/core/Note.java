@@ -64,6 +64,8 @@ public class Note {
         } else {
             this.tags = tags;
         }
+        
+        this.tags.setOnDirty( () -> this.fireDirty() );
     }
         
     /** @return the id of this note. */
@@ -96,7 +98,7 @@ public class Note {
     public void replaceTitle(String newTitle)
     {
         this.title = newTitle;
-        this.dirty = true;
+        this.markDirty();
     }
     
     /** @return the contents of the note. */
@@ -111,7 +113,7 @@ public class Note {
     public void replace(String newText)
     {
         this.text = newText;
-        this.dirty = true;
+        this.markDirty();
     }
     
     /** Appends text to the note.
@@ -120,7 +122,7 @@ public class Note {
     public void append(String newText)
     {
         this.text += newText;
-        this.dirty = true;
+        this.markDirty();
     }
         
     @Override
@@ -153,6 +155,42 @@ public class Note {
         return ( this.dirty || this.tags.isDirty() );
     }
     
+    /** @return a number that changes each time the note is modified. */
+    public long getVersion()
+    {
+        return this.version + this.tags.getVersion();
+    }
+    
+    /** Sets the action to run each time the note, or its tags, are modified.
+      * @param onDirty the action to run, or null for none.
+      */
+    void setOnDirty(Runnable onDirty)
+    {
+        this.onDirty = onDirty;
+    }
+    
+    /** Marks the note as modified. */
+    private void markDirty()
+    {
+        this.dirty = true;
+        ++this.version;
+        this.fireDirty();
+    }
+    
+    /** Runs the action set for modifications, if any. */
+    private void fireDirty()
+    {
+        if ( this.onDirty != null ) {
+            this.onDirty.run();
+        }
+    }
+    
+    /** Sets the modification date to today, as done when saving. */
+    void touch()
+    {
+        this.dateModification = Date.fromSystem();
+    }
+    
     /** Resets the dirty mark, signaling all changed have been saved. */
     public void resetDirty()
     {
@@ -171,7 +209,7 @@ public class Note {
         boolean needsSaving = ( this.isDirty() || ignoreDirty );
         
         if ( needsSaving ) {
-            this.dateModification = Date.fromSystem();
+            this.touch();
             NoteDto.from( this ).save( OUT );
             this.resetDirty();
         }
@@ -205,4 +243,6 @@ public class Note {
     private Date dateModification;
     private String text;
     private boolean dirty;
+    private long version;
+    private Runnable onDirty;
 }
@@ -0,0 +1,241 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+
+/** Keeps the bodies of loaded notes within a memory budget.
+  * Loaded notes are tracked in least-recently-used order. When the estimated
+  * size of all of them exceeds the budget, the least recently used ones are
+  * dropped back to proxy-only state, i.e., header only.
+  * Notes with unsaved changes, and the current note, are never evicted.
+  * The cache is shared by all threads using the notebook, though bodies
+  * are only dropped by the evictor, i.e., in the thread owning the notes.
+  * @author baltasarq
+  */
+public final class NoteBodyCache {
+    public static final long MEGABYTE = 1024L * 1024;
+    public static final int DEFAULT_BUDGET_MB = 64;
+
+    /** A snapshot of the figures of the cache.
+      * @param hits the number of times a note was already in memory.
+      * @param misses the number of times a note had to be loaded.
+      * @param evictions the number of bodies dropped to fit the budget.
+      * @param residentBytes the estimated size of the bodies in memory.
+      * @param budgetBytes the maximum size the bodies should take.
+      */
+    public record Stats(
+                    long hits,
+                    long misses,
+                    long evictions,
+                    long residentBytes,
+                    long budgetBytes)
+    {
+        /** @return the ratio of hits to accesses, between 0 and 1. */
+        public double hitRate()
+        {
+            final long ACCESSES = this.hits() + this.misses();
+
+            return ( ACCESSES == 0 ) ? 0 : ( (double) this.hits() ) / ACCESSES;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(
+                        "hit rate: %.1f%% (%d/%d), evictions: %d, "
+                        + "resident: %d KB of %d KB",
+                        this.hitRate() * 100,
+                        this.hits(),
+                        this.hits() + this.misses(),
+                        this.evictions(),
+                        this.residentBytes() / 1024,
+                        this.budgetBytes() / 1024 );
+        }
+    }
+
+    public NoteBodyCache()
+    {
+        this( DEFAULT_BUDGET_MB * MEGABYTE );
+    }
+
+    /** Creates a new cache.
+      * @param budgetBytes the maximum size the bodies should take.
+      */
+    public NoteBodyCache(long budgetBytes)
+    {
+        this.budgetBytes = budgetBytes;
+        this.residents = new LinkedHashMap<>( 16, 0.75f, true );
+        this.residentBytes = 0;
+        this.current = null;
+        this.evictor = Runnable::run;
+        this.evictionPending = false;
+    }
+
+    /** Sets where bodies are dropped, so they are only dropped by
+      * the thread editing the notes, e.g., EventQueue::invokeLater.
+      * By default, they are dropped by the thread loading a note.
+      * @param evictor the executor dropping bodies.
+      */
+    public synchronized void setEvictor(Executor evictor)
+    {
+        this.evictor = evictor;
+    }
+
+    /** @return the maximum size the bodies should take, in bytes. */
+    public synchronized long getBudget()
+    {
+        return this.budgetBytes;
+    }
+
+    /** Changes the maximum size the bodies should take.
+      * @param budgetBytes the new budget, in bytes.
+      */
+    public synchronized void setBudget(long budgetBytes)
+    {
+        this.budgetBytes = budgetBytes;
+        this.evict();
+    }
+
+    /** Protects a note from eviction, since it is being shown.
+      * @param proxy the current note, or null for none.
+      */
+    public synchronized void setCurrent(NoteProxy proxy)
+    {
+        this.current = proxy;
+        this.evict();
+    }
+
+    /** @param proxy a note.
+      * @return true if the note is the one being shown, false otherwise.
+      */
+    synchronized boolean isCurrent(NoteProxy proxy)
+    {
+        return ( this.current == proxy );
+    }
+
+    /** Signals that the body of a note was found already in memory.
+      * @param proxy the note accessed.
+      */
+    synchronized void onHit(NoteProxy proxy)
+    {
+        ++this.hits;
+        this.track( proxy );
+    }
+
+    /** Signals that the body of a note has just been loaded.
+      * @param proxy the note loaded.
+      */
+    synchronized void onLoaded(NoteProxy proxy)
+    {
+        ++this.misses;
+        this.track( proxy );
+        this.evictLater();
+    }
+
+    /** Starts or keeps tracking a note with its body in memory.
+      * The size of the body is measured again, since it can change.
+      * @param proxy the note with its body loaded.
+      */
+    synchronized void track(NoteProxy proxy)
+    {
+        final long BYTES = proxy.estimateBodyBytes();
+        final Long OLD_BYTES = this.residents.put( proxy, BYTES );
+
+        this.residentBytes += BYTES - ( ( OLD_BYTES == null ) ? 0 : OLD_BYTES );
+    }
+
+    /** Stops tracking a note, for instance, when it is deleted.
+      * @param proxy the note to forget.
+      */
+    synchronized void forget(NoteProxy proxy)
+    {
+        final Long OLD_BYTES = this.residents.remove( proxy );
+
+        if ( OLD_BYTES != null ) {
+            this.residentBytes -= OLD_BYTES;
+        }
+
+        if ( this.current == proxy ) {
+            this.current = null;
+        }
+    }
+
+    /** Has the evictor drop bodies, if over budget.
+      * Loads happen in any thread, so eviction is handed over to the evictor.
+      */
+    private void evictLater()
+    {
+        if ( !this.evictionPending
+          && this.residentBytes > this.budgetBytes )
+        {
+            this.evictionPending = true;
+            this.evictor.execute( () -> {
+                synchronized( this ) {
+                    this.evictionPending = false;
+                    this.evict();
+                }
+            });
+        }
+    }
+
+    /** Drops the least recently used bodies until within the budget. */
+    private void evict()
+    {
+        final Iterator<Map.Entry<NoteProxy, Long>> IT =
+                                            this.residents.entrySet().iterator();
+
+        while( this.residentBytes > this.budgetBytes
+            && IT.hasNext() )
+        {
+            final Map.Entry<NoteProxy, Long> ENTRY = IT.next();
+            final NoteProxy PROXY = ENTRY.getKey();
+
+            if ( !PROXY.isLoaded() ) {
+                IT.remove();
+                this.residentBytes -= ENTRY.getValue();
+            }
+            else
+            if ( PROXY != this.current
+              && PROXY.unload() )
+            {
+                IT.remove();
+                this.residentBytes -= ENTRY.getValue();
+                ++this.evictions;
+            }
+        }
+    }
+
+    /** @return the figures of the cache, at this moment. */
+    public synchronized Stats getStats()
+    {
+        return new Stats(
+                        this.hits,
+                        this.misses,
+                        this.evictions,
+                        this.residentBytes,
+                        this.budgetBytes );
+    }
+
+    /** @return the number of notes with their body in memory. */
+    public synchronized int count()
+    {
+        return this.residents.size();
+    }
+
+    private final Map<NoteProxy, Long> residents;
+    private long budgetBytes;
+    private long residentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private NoteProxy current;
+    private Executor evictor;
+    private boolean evictionPending;
+}
@@ -4,11 +4,17 @@
 package com.devbaltasarq.nottakapp.core;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Scanner;
 
+import com.devbaltasarq.nottakapp.core.merge.ThreeWayMerge;
+
 
 /** Used to pass raw data while I/O.
   * @author baltasarq
@@ -45,7 +51,56 @@ public record NoteDto(
       */
     public void save(final OutputStream OUT) throws IOException
     {
-        OUT.write( this.toString().getBytes() );
+        OUT.write( this.toBytes() );
+    }
+    
+    /** @return the whole note as it is written to a file, in UTF-8. */
+    public byte[] toBytes()
+    {
+        return this.toString().getBytes( StandardCharsets.UTF_8 );
+    }
+    
+    /** Converts the note to the bytes written to a file,
+      * compressing the body if it is large enough.
+      * @param compressThreshold the size of the body, in bytes, from which
+      *                          it is compressed, or CompressedBody.NEVER.
+      * @return the whole note, with the header always in plain UTF-8.
+      * @see CompressedBody
+      */
+    public byte[] toBytes(long compressThreshold)
+    {
+        byte[] toret = null;
+        
+        if ( compressThreshold != CompressedBody.NEVER ) {
+            final byte[] BODY = this.text().getBytes( StandardCharsets.UTF_8 );
+            
+            if ( BODY.length >= compressThreshold ) {
+                final byte[] HEADER = this.withText( "" ).toBytes();
+                final byte[] COMPRESSED = CompressedBody.compress( BODY );
+                
+                toret = new byte[ HEADER.length + COMPRESSED.length ];
+                System.arraycopy( HEADER, 0, toret, 0, HEADER.length );
+                System.arraycopy( COMPRESSED, 0, toret, HEADER.length, COMPRESSED.length );
+            }
+        }
+        
+        if ( toret == null ) {
+            toret = this.toBytes();
+        }
+        
+        return toret;
+    }
+    
+    /** @return the same note, with another text. */
+    private NoteDto withText(String text)
+    {
+        return new NoteDto(
+                        this.id(),
+                        this.title(),
+                        this.tags(),
+                        this.dateCreation(),
+                        this.dateModification(),
+                        text );
     }
     
     /** @return a note with the data inside this. */
@@ -73,23 +128,49 @@ public record NoteDto(
     }
     
     /** Retrieves a note from an InputStream.
+      * Compressed bodies are detected, and decompressed.
       * @param ID the id, previously extracted from the path of the note.
       * @param INPUT the InputStream to read from.
       * @return a new note, with the data retrieved.
       * @throws IllegalArgumentException if parsing dates goes wrong.
+      * @throws UncheckedIOException if reading goes wrong.
+      * @see CompressedBody
       */
     public static NoteDto retrieveFrom(
                             final Id ID,
                             final InputStream INPUT)
             throws IllegalArgumentException
     {
-        final var SCANNER = new Scanner( INPUT );
+        final byte[] BYTES;
+        
+        try {
+            BYTES = INPUT.readAllBytes();
+        } catch(IOException exc) {
+            throw new UncheckedIOException( exc );
+        }
+        
+        final NoteHeaderReader.Parsed PARSED =
+                                NoteHeaderReader.parse( BYTES, BYTES.length, true );
+        
+        return ( CompressedBody.isAt( BYTES, PARSED.bodyOffset(), BYTES.length ) ) ?
+                    NoteFileReader.readHashed( ID, BYTES ).note()
+                  : retrieveFrom( ID, new Scanner( new ByteArrayInputStream( BYTES ) ) );
+    }
+    
+    /** Retrieves a plain note from a Scanner.
+      * @param ID the id, previously extracted from the path of the note.
+      * @param SCANNER the scanner to read from.
+      * @return a new note, with the data retrieved.
+      * @throws IllegalArgumentException if parsing dates goes wrong.
+      */
+    private static NoteDto retrieveFrom(final Id ID, final Scanner SCANNER)
+    {
         final NoteDto META_DATA_DTO = metaDatafromScanner( SCANNER );
-        String text = "";
+        final var TEXT = new StringBuilder();
         
         // Read body
         while ( SCANNER.hasNext() ) {
-            text += SCANNER.nextLine() + "\n";
+            TEXT.append( SCANNER.nextLine() ).append( '\n' );
         }
 
         // Create the note
@@ -99,7 +180,21 @@ public record NoteDto(
                     META_DATA_DTO.tags(),
                     META_DATA_DTO.dateCreation(),
                     META_DATA_DTO.dateModification(),
-                    text );
+                    TEXT.toString() );
+    }
+    
+    /** Retrieves a note from its file, in time linear with its size.
+      * @param ID the id, previously extracted from the path of the note.
+      * @param PATH the path to the note.
+      * @return a new note, with the data retrieved.
+      * @throws IOException if reading goes wrong.
+      * @throws IllegalArgumentException if parsing dates goes wrong.
+      * @see NoteFileReader
+      */
+    public static NoteDto retrieveFrom(final Id ID, final Path PATH)
+            throws IOException
+    {
+        return NoteFileReader.read( ID, PATH );
     }
     
     /** Remove the MD title prefix: "#" for title.
@@ -151,6 +246,27 @@ public record NoteDto(
                         NOTE.get() );
     }
     
+    /** Copies the data in the note, so it can be used from another thread.
+      * The tags are copied as well, since TagSet is mutable.
+      * @param NOTE the note to copy the data from.
+      * @return a new NoteDto, independent of the note.
+      */
+    public static NoteDto snapshotOf(final Note NOTE)
+    {
+        final var TAGS = new TagSet();
+        
+        TAGS.addAllFrom( NOTE.getTags() );
+        TAGS.resetDirty();
+        
+        return new NoteDto(
+                        NOTE.getId(),
+                        NOTE.getTitle(),
+                        TAGS,
+                        NOTE.getCreationDate(),
+                        NOTE.getModificationDate(),
+                        NOTE.get() );
+    }
+    
     /** This is used when there's the need to merge two notes.
       * @param nd1 the first note data to merge.
       * @param nd2 the second note data to merge.
@@ -216,4 +332,82 @@ public record NoteDto(
                         text );
     }
 
+    /** Merges two notes changed concurrently, from the version both come from.
+      * The texts are merged line by line, so only the chunks changed
+      * differently in both notes are marked as conflicts.
+      * Tags added or removed in only one of the notes are added or removed.
+      * When the base is not known, the notes are merged as in merge(nd1, nd2).
+      * @param base the last version saved, common to both notes, or null.
+      * @param mine the note in memory.
+      * @param theirs the note on disk.
+      * @return a resulting NoteDto with the changes in both notes.
+      * @see ThreeWayMerge
+      */
+    public static NoteDto merge(NoteDto base, NoteDto mine, NoteDto theirs)
+    {
+        NoteDto toret;
+
+        if ( base == null ) {
+            toret = merge( mine, theirs );
+        } else {
+            final var TAGS = new TagSet();
+            String title = mine.title();
+            Date created = mine.dateCreation();
+            Date modified = mine.dateModification();
+
+            // The resulting title
+            if ( title.equals( base.title() ) ) {
+                title = theirs.title();
+            }
+            else
+            if ( !title.equals( theirs.title() )
+              && !theirs.title().equals( base.title() ) )
+            {
+                title += " // " + theirs.title();
+            }
+
+            // The resulting dates
+            if ( theirs.dateCreation().isLessThan( created ) ) {
+                created = theirs.dateCreation();
+            }
+
+            if ( modified.isLessThan( theirs.dateModification() ) ) {
+                modified = theirs.dateModification();
+            }
+
+            // The tags: kept in both, or added in any of them
+            for(Tag tag: mine.tags().getAll()) {
+                if ( theirs.tags().contains( tag )
+                  || !base.tags().contains( tag ) )
+                {
+                    TAGS.add( tag );
+                }
+            }
+
+            for(Tag tag: theirs.tags().getAll()) {
+                if ( !base.tags().contains( tag ) ) {
+                    TAGS.add( tag );
+                }
+            }
+
+            // The contents
+            final ThreeWayMerge.Result TEXT = ThreeWayMerge.merge(
+                                                base.text(),
+                                                mine.text(),
+                                                theirs.text(),
+                                                mine.dateModification().toString(),
+                                                theirs.dateModification().toString() );
+
+            toret = new NoteDto(
+                            mine.id(),
+                            title,
+                            TAGS,
+                            created,
+                            modified,
+                            TEXT.text() );
+        }
+
+        return toret;
+    }
+
 }
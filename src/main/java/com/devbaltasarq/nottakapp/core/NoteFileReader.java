@@ -0,0 +1,401 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+
+/** Reads a whole note from its file, in time linear with its size.
+  * The header is parsed from the first bytes, and then the body is decoded
+  * in a single pass: small notes are read into memory, medium notes
+  * are memory-mapped, and notes above the streaming threshold
+  * are decoded in chunks. Mapping only bigger files avoids its cost
+  * for the typical note, and keeps the file free to be replaced.
+  * The content hash of the file is computed along the way.
+  * Compressed bodies are detected, and decompressed.
+  * @author baltasarq
+  */
+public final class NoteFileReader {
+    public static final long STREAMING_THRESHOLD = 16L * 1024 * 1024;
+    public static final long MAPPING_THRESHOLD = 1024L * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private NoteFileReader()
+    {
+    }
+
+    /** Reads the whole note from the given file.
+      * @param id the id, previously extracted from the path of the note.
+      * @param path the path to the note.
+      * @return a new NoteDto with all the data of the note.
+      * @throws IOException if reading goes wrong.
+      * @throws NoSuchElementException if the header is incomplete.
+      * @throws IllegalArgumentException if the header is malformed.
+      */
+    public static NoteDto read(Id id, Path path) throws IOException
+    {
+        return read( id, path, STREAMING_THRESHOLD );
+    }
+
+    /** Reads the whole note from the given file.
+      * @param id the id, previously extracted from the path of the note.
+      * @param path the path to the note.
+      * @param streamingThreshold the size above which the body is streamed.
+      * @return a new NoteDto with all the data of the note.
+      * @throws IOException if reading goes wrong.
+      */
+    static NoteDto read(Id id, Path path, long streamingThreshold)
+            throws IOException
+    {
+        return readHashed( id, path, streamingThreshold ).note();
+    }
+
+    /** A note read, along with the hash of the bytes of its file.
+      * @param note all the data of the note.
+      * @param hash the content hash of the file.
+      */
+    public record Hashed(NoteDto note, long hash) {
+    }
+
+    /** Reads the whole note from the given file, hashing its bytes
+      * at the same time.
+      * @param id the id, previously extracted from the path of the note.
+      * @param path the path to the note.
+      * @return the note read, and the hash of its file.
+      * @throws IOException if reading goes wrong.
+      * @throws NoSuchElementException if the header is incomplete.
+      * @throws IllegalArgumentException if the header is malformed.
+      */
+    static Hashed readHashed(Id id, Path path) throws IOException
+    {
+        return readHashed( id, path, STREAMING_THRESHOLD );
+    }
+
+    /** Reads the whole note from the given file, hashing its bytes
+      * at the same time.
+      * @param id the id, previously extracted from the path of the note.
+      * @param path the path to the note.
+      * @param streamingThreshold the size above which the body is streamed.
+      * @return the note read, and the hash of its file.
+      * @throws IOException if reading goes wrong.
+      */
+    static Hashed readHashed(Id id, Path path, long streamingThreshold)
+            throws IOException
+    {
+        return readHashed( id, path, streamingThreshold, MAPPING_THRESHOLD );
+    }
+
+    /** Reads the whole note from the given file, hashing its bytes
+      * at the same time.
+      * @param id the id, previously extracted from the path of the note.
+      * @param path the path to the note.
+      * @param streamingThreshold the size above which the body is streamed.
+      * @param mappingThreshold the size of the body above which it is mapped.
+      * @return the note read, and the hash of its file.
+      * @throws IOException if reading goes wrong.
+      */
+    static Hashed readHashed(
+                        Id id,
+                        Path path,
+                        long streamingThreshold,
+                        long mappingThreshold)
+            throws IOException
+    {
+        try (final var CHANNEL = FileChannel.open( path, StandardOpenOption.READ ))
+        {
+            final var HASH = new ContentHash();
+            final long SIZE = CHANNEL.size();
+            final NoteHeaderReader.Parsed PARSED = readHeader( CHANNEL, SIZE, HASH );
+            final String TEXT;
+
+            if ( SIZE > streamingThreshold
+              && !isCompressed( CHANNEL, PARSED.bodyOffset() ) )
+            {
+                TEXT = streamBody( CHANNEL, PARSED.bodyOffset(), HASH );
+            } else {
+                TEXT = decodeBody(
+                            bodyBytes( CHANNEL, PARSED.bodyOffset(), SIZE, mappingThreshold ),
+                            HASH );
+            }
+
+            final NoteDto HEADER = PARSED.header();
+            final var NOTE = new NoteDto(
+                                    id,
+                                    HEADER.title(),
+                                    HEADER.tags(),
+                                    HEADER.dateCreation(),
+                                    HEADER.dateModification(),
+                                    normalizeBody( TEXT ) );
+
+            return new Hashed( NOTE, HASH.get() );
+        }
+    }
+
+    /** Reads the whole note from its contents, already in memory.
+      * @param id the id of the note.
+      * @param bytes the whole contents of the note.
+      * @return the note read, and the hash of its contents.
+      * @throws NoSuchElementException if the header is incomplete.
+      * @throws IllegalArgumentException if the header is malformed.
+      */
+    static Hashed readHashed(Id id, byte[] bytes)
+    {
+        final NoteHeaderReader.Parsed PARSED =
+                                NoteHeaderReader.parse( bytes, bytes.length, true );
+        final NoteDto HEADER = PARSED.header();
+        final String TEXT;
+
+        if ( CompressedBody.isAt( bytes, PARSED.bodyOffset(), bytes.length ) ) {
+            TEXT = CompressedBody.decompress(
+                                    ByteBuffer.wrap( bytes,
+                                                     PARSED.bodyOffset(),
+                                                     bytes.length - PARSED.bodyOffset() ) );
+        } else {
+            TEXT = new String(
+                            bytes,
+                            PARSED.bodyOffset(),
+                            bytes.length - PARSED.bodyOffset(),
+                            StandardCharsets.UTF_8 );
+        }
+        final var NOTE = new NoteDto(
+                                id,
+                                HEADER.title(),
+                                HEADER.tags(),
+                                HEADER.dateCreation(),
+                                HEADER.dateModification(),
+                                normalizeBody( TEXT ) );
+
+        return new Hashed( NOTE, ContentHash.of( bytes ) );
+    }
+
+    /** Reads just enough bytes to parse the header.
+      * @param channel the channel to read from, positioned at the start.
+      * @param size the size of the file.
+      * @param hash the hash to add the bytes of the header to.
+      * @return the header parsed, and the position of the body.
+      * @throws IOException if reading goes wrong.
+      */
+    private static NoteHeaderReader.Parsed readHeader(
+                                            FileChannel channel,
+                                            long size,
+                                            ContentHash hash)
+            throws IOException
+    {
+        int capacity = (int) Math.min( size, NoteHeaderReader.PREFIX_SIZE );
+        NoteHeaderReader.Parsed toret = null;
+
+        while( toret == null ) {
+            final byte[] PREFIX = new byte[ capacity ];
+            final ByteBuffer BUFFER = ByteBuffer.wrap( PREFIX );
+
+            int read = 0;
+
+            while( read >= 0
+                && BUFFER.hasRemaining() )
+            {
+                read = channel.read( BUFFER, BUFFER.position() );
+            }
+
+            toret = NoteHeaderReader.parse( PREFIX,
+                                            BUFFER.position(),
+                                            BUFFER.position() >= size );
+
+            if ( toret == null ) {
+                if ( capacity >= NoteHeaderReader.MAX_HEADER_SIZE ) {
+                    throw new NoSuchElementException( "header too long" );
+                }
+
+                capacity = (int) Math.min( size, capacity * 4L );
+            } else {
+                hash.update( PREFIX, 0, toret.bodyOffset() );
+            }
+        }
+
+        return toret;
+    }
+
+    /** Determines whether the body of the note is compressed.
+      * @param channel the channel to read from.
+      * @param offset the position of the body.
+      * @return true if compressed, false otherwise.
+      * @throws IOException if reading goes wrong.
+      * @see CompressedBody
+      */
+    private static boolean isCompressed(FileChannel channel, long offset)
+            throws IOException
+    {
+        final ByteBuffer PREFIX = ByteBuffer.allocate( CompressedBody.MARKER_SIZE );
+
+        while( channel.read( PREFIX, offset + PREFIX.position() ) > 0
+            && PREFIX.hasRemaining() )
+        {
+            // Keep on reading
+        }
+
+        return CompressedBody.isAt( PREFIX.flip() );
+    }
+
+    /** Gets the bytes of the body in one go. Small bodies are read
+      * into memory, while bigger ones are mapped read-only.
+      * @param channel the channel to read from.
+      * @param offset the position of the body.
+      * @param size the size of the file.
+      * @param mappingThreshold the size of the body above which it is mapped.
+      * @return the bytes of the body, maybe none.
+      * @throws IOException if reading goes wrong.
+      */
+    private static ByteBuffer bodyBytes(
+                                FileChannel channel,
+                                long offset,
+                                long size,
+                                long mappingThreshold)
+            throws IOException
+    {
+        final long LENGTH = Math.max( 0, size - offset );
+        final ByteBuffer TORET;
+
+        if ( LENGTH > mappingThreshold ) {
+            TORET = channel.map( FileChannel.MapMode.READ_ONLY, offset, LENGTH );
+        } else {
+            TORET = ByteBuffer.allocate( (int) LENGTH );
+
+            while( TORET.hasRemaining()
+                && channel.read( TORET, offset + TORET.position() ) > 0 )
+            {
+                // Keep on reading
+            }
+
+            TORET.flip();
+        }
+
+        return TORET;
+    }
+
+    /** Decodes the body in one go.
+      * Compressed bodies are decompressed instead.
+      * @param body the bytes of the body.
+      * @param hash the hash to add the bytes of the body to.
+      * @return the body, as a string.
+      */
+    private static String decodeBody(ByteBuffer body, ContentHash hash)
+    {
+        String toret = "";
+
+        if ( body.hasRemaining() ) {
+            hash.update( body.duplicate() );
+
+            if ( CompressedBody.isAt( body ) ) {
+                toret = CompressedBody.decompress( body );
+            } else {
+                toret = StandardCharsets.UTF_8.decode( body ).toString();
+            }
+        }
+
+        return toret;
+    }
+
+    /** Decodes the body in chunks, so huge notes need no mapping.
+      * @param channel the channel to read from.
+      * @param offset the position of the body.
+      * @param hash the hash to add the bytes of the body to.
+      * @return the body, as a string.
+      * @throws IOException if reading goes wrong.
+      */
+    private static String streamBody(FileChannel channel, long offset, ContentHash hash)
+            throws IOException
+    {
+        final var TORET = new StringBuilder(
+                            (int) Math.min( Integer.MAX_VALUE - 8,
+                                            channel.size() - offset ) );
+        final CharsetDecoder DECODER = StandardCharsets.UTF_8.newDecoder()
+                                .onMalformedInput( CodingErrorAction.REPLACE )
+                                .onUnmappableCharacter( CodingErrorAction.REPLACE );
+        final ByteBuffer BYTES = ByteBuffer.allocate( CHUNK_SIZE );
+        final CharBuffer CHARS = CharBuffer.allocate( CHUNK_SIZE );
+        long position = offset;
+        boolean eof = false;
+
+        while( !eof ) {
+            final int READ = channel.read( BYTES, position );
+
+            if ( READ < 0 ) {
+                eof = true;
+            } else {
+                hash.update( BYTES.array(), BYTES.position() - READ, READ );
+                position += READ;
+            }
+
+            // Decode all complete characters, keeping the rest for later
+            BYTES.flip();
+
+            while( DECODER.decode( BYTES, CHARS, eof ).isOverflow() ) {
+                TORET.append( CHARS.flip() );
+                CHARS.clear();
+            }
+
+            TORET.append( CHARS.flip() );
+            CHARS.clear();
+            BYTES.compact();
+        }
+
+        DECODER.flush( CHARS );
+        TORET.append( CHARS.flip() );
+        return TORET.toString();
+    }
+
+    /** Normalizes the body as lines ended with "\n".
+      * Windows line ends are converted, trailing blank lines are removed,
+      * and the last line is always ended with "\n".
+      * @param text the body as read.
+      * @return the normalized body, or an empty string if blank.
+      */
+    static String normalizeBody(String text)
+    {
+        int end = text.length();
+
+        // Find the last line with contents
+        while( end > 0
+            && Character.isWhitespace( text.charAt( end - 1 ) ) )
+        {
+            --end;
+        }
+
+        String toret = "";
+
+        if ( end > 0 ) {
+            final int NEW_LINE_POS = text.indexOf( '\n', end );
+
+            if ( NEW_LINE_POS >= 0 ) {
+                end = NEW_LINE_POS;
+            } else {
+                end = text.length();
+            }
+
+            if ( text.charAt( end - 1 ) == '\r' ) {
+                --end;
+            }
+
+            final var BUILDER = new StringBuilder( end + 1 );
+
+            BUILDER.append( text, 0, end ).append( '\n' );
+            toret = BUILDER.toString();
+
+            if ( toret.indexOf( '\r' ) >= 0 ) {
+                toret = toret.replace( "\r\n", "\n" );
+            }
+        }
+
+        return toret;
+    }
+}
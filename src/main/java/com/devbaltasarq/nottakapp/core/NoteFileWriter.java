@@ -0,0 +1,168 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+
+/** Writes note files atomically.
+  * The contents are written to a temporary file in the same directory,
+  * which is then renamed over the note file, so a crash, or a sync client
+  * reading in the meanwhile, never finds a truncated note.
+  * How much is forced to the disk is set by the durability level.
+  * @author baltasarq
+  */
+public final class NoteFileWriter {
+    private static final Logger LOG = Logger.getLogger( NoteFileWriter.class.getName() );
+    public static final String TEMP_EXT = ".tmp";
+
+    /** How much is forced to disk on each write, from faster to safer. */
+    public enum Durability {
+        /** Nothing is forced: the OS decides when data reaches the disk. */
+        NONE,
+        /** The contents of the file are forced before renaming it. */
+        FILE,
+        /** As FILE, and the directory is forced after the rename as well. */
+        FILE_AND_DIR;
+
+        public static final Durability DEFAULT = FILE;
+
+        /** Parses the durability level, as in the config file.
+          * @param value the name of the level, case insensitive; can be null.
+          * @return the level, or the default one if not valid.
+          */
+        public static Durability parse(String value)
+        {
+            Durability toret = DEFAULT;
+
+            if ( value != null
+              && !value.isBlank() )
+            {
+                try {
+                    toret = valueOf( value.trim().toUpperCase( Locale.ROOT ) );
+                } catch(IllegalArgumentException exc) {
+                    LOG.warning( "unknown durability: " + value );
+                }
+            }
+
+            return toret;
+        }
+    }
+
+    private NoteFileWriter()
+    {
+    }
+
+    /** Writes the given bytes as the new contents of the file.
+      * @param path the path to the file.
+      * @param contents the new contents of the file.
+      * @param durability how much is forced to disk.
+      * @throws IOException if writing goes wrong; the file is left untouched.
+      */
+    public static void write(Path path, byte[] contents, Durability durability)
+            throws IOException
+    {
+        final Path TEMP_PATH = tempPathFor( path );
+
+        try {
+            try (final var CHANNEL = openTemp( TEMP_PATH ))
+            {
+                final ByteBuffer BUFFER = ByteBuffer.wrap( contents );
+
+                while( BUFFER.hasRemaining() ) {
+                    CHANNEL.write( BUFFER );
+                }
+
+                if ( durability != Durability.NONE ) {
+                    CHANNEL.force( true );
+                }
+            }
+
+            moveOver( TEMP_PATH, path );
+        } catch(IOException exc) {
+            Files.deleteIfExists( TEMP_PATH );
+            throw exc;
+        }
+
+        if ( durability == Durability.FILE_AND_DIR ) {
+            forceDir( path.toAbsolutePath().getParent() );
+        }
+    }
+
+    /** Opens the temporary file for writing.
+      * The directory is created if it does not exist yet,
+      * as it happens with a new shard of the notes directory.
+      * @param tempPath the path to the temporary file.
+      * @return the channel to write to.
+      * @throws IOException if opening goes wrong.
+      */
+    private static FileChannel openTemp(Path tempPath) throws IOException
+    {
+        FileChannel toret;
+
+        try {
+            toret = FileChannel.open(
+                                tempPath,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING );
+        } catch(NoSuchFileException exc) {
+            Files.createDirectories( tempPath.toAbsolutePath().getParent() );
+            toret = FileChannel.open(
+                                tempPath,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING );
+        }
+
+        return toret;
+    }
+
+    /** @return the temporary file for the given one: ".name.tmp". */
+    static Path tempPathFor(Path path)
+    {
+        return path.resolveSibling( "." + path.getFileName() + TEMP_EXT );
+    }
+
+    /** Renames the source file over the target one, atomically if possible.
+      * @param source the file to rename.
+      * @param target the file to replace.
+      * @throws IOException if renaming goes wrong.
+      */
+    private static void moveOver(Path source, Path target) throws IOException
+    {
+        try {
+            Files.move( source, target,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+        } catch(AtomicMoveNotSupportedException exc) {
+            Files.move( source, target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /** Forces the entries of a directory to disk, so the rename persists.
+      * Not all systems allow to open a directory; this is then ignored.
+      * @param dir the directory.
+      */
+    private static void forceDir(Path dir)
+    {
+        try (final var CHANNEL = FileChannel.open( dir, StandardOpenOption.READ ))
+        {
+            CHANNEL.force( true );
+        } catch(IOException exc) {
+            LOG.fine( "unable to force directory: " + exc.getMessage() );
+        }
+    }
+}
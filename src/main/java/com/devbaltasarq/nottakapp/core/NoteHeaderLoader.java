@@ -0,0 +1,146 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+
+/** Loads the headers of many notes at once, in parallel.
+  * Each file is read in its own virtual thread, so the latency of
+  * network-backed folders overlaps, while a semaphore limits the number
+  * of files open at the same time.
+  * @author baltasarq
+  */
+public final class NoteHeaderLoader {
+    private static final Logger LOG = Logger.getLogger( NoteHeaderLoader.class.getName() );
+    public static final int DEFAULT_CONCURRENCY = 32;
+
+    /** The outcome of loading the header of a single note.
+      * @param path the path to the note.
+      * @param proxy the proxy loaded, or one with a default header on error.
+      * @param error the problem found, or null if loaded correctly.
+      */
+    public record Result(String path, NoteProxy proxy, Exception error) {
+        /** @return true if the header was read correctly, false otherwise. */
+        public boolean isOk()
+        {
+            return ( this.error() == null );
+        }
+    }
+
+    /** Creates a new loader.
+      * @param maxConcurrency the maximum number of files read at once.
+      *                       With 1 or less, files are read sequentially.
+      */
+    public NoteHeaderLoader(int maxConcurrency)
+    {
+        this.maxConcurrency = Math.max( 1, maxConcurrency );
+    }
+
+    /** @return the maximum number of files read at once. */
+    public int getMaxConcurrency()
+    {
+        return this.maxConcurrency;
+    }
+
+    /** Loads the headers of the given notes.
+      * A failure in one file does not stop the others.
+      * @param notebook the notebook the notes pertain to.
+      * @param paths the paths to the notes.
+      * @return the results, in the same order as the paths.
+      */
+    public List<Result> load(Notebook notebook, List<String> paths)
+    {
+        final var TORET = new ArrayList<Result>( paths.size() );
+
+        if ( this.maxConcurrency == 1
+          || paths.size() < 2 )
+        {
+            for(String path: paths) {
+                TORET.add( loadOne( notebook, path ) );
+            }
+        } else {
+            final var PERMITS = new Semaphore( this.maxConcurrency );
+            final var FUTURES = new ArrayList<Future<Result>>( paths.size() );
+
+            try (final var EXECUTOR = Executors.newVirtualThreadPerTaskExecutor())
+            {
+                for(String path: paths) {
+                    FUTURES.add( EXECUTOR.submit( () -> {
+                        PERMITS.acquire();
+
+                        try {
+                            return loadOne( notebook, path );
+                        } finally {
+                            PERMITS.release();
+                        }
+                    }));
+                }
+
+                for(int i = 0; i < FUTURES.size(); ++i) {
+                    TORET.add( collect( notebook, paths.get( i ), FUTURES.get( i ) ) );
+                }
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Reads the header of a single note, trapping any problem.
+      * @param notebook the notebook the note pertains to.
+      * @param path the path to the note.
+      * @return the result.
+      */
+    private static Result loadOne(Notebook notebook, String path)
+    {
+        Result toret;
+
+        try {
+            toret = new Result( path, NoteProxy.readHeader( notebook, path ), null );
+        } catch(Exception exc) {
+            LOG.warning( String.format( "unable to read header of '%s': %s",
+                                        path, exc ) );
+            toret = new Result( path,
+                                NoteProxy.withDefaultHeader( notebook, path ),
+                                exc );
+        }
+
+        return toret;
+    }
+
+    /** Waits for the result of a single note.
+      * @param notebook the notebook the note pertains to.
+      * @param path the path to the note.
+      * @param future the future result.
+      * @return the result.
+      */
+    private static Result collect(Notebook notebook, String path, Future<Result> future)
+    {
+        Result toret;
+
+        try {
+            toret = future.get();
+        } catch(ExecutionException exc) {
+            toret = new Result( path,
+                                NoteProxy.withDefaultHeader( notebook, path ),
+                                exc );
+        } catch(InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            toret = new Result( path,
+                                NoteProxy.withDefaultHeader( notebook, path ),
+                                exc );
+        }
+
+        return toret;
+    }
+
+    private final int maxConcurrency;
+}
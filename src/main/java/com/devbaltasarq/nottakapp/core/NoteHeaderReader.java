@@ -0,0 +1,294 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+
+/** Reads the header of a note: title, tags, and creation and modification
+  * dates, i.e., the first four lines of the file.
+  * Only a small prefix of the file is read, and it is parsed directly
+  * from the bytes; the body of the note is never touched.
+  * @author baltasarq
+  */
+public final class NoteHeaderReader {
+    public static final int PREFIX_SIZE = 512;
+    public static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int NUM_HEADER_LINES = 4;
+
+    /** The header parsed, and where the body starts.
+      * @param header the header, as a NoteDto with no id and no text.
+      * @param bodyOffset the position of the first byte of the body.
+      */
+    record Parsed(NoteDto header, int bodyOffset) {
+    }
+
+    private NoteHeaderReader()
+    {
+    }
+
+    /** Reads the header of the note in the given file.
+      * A byte channel is used, so entries in a zip file system are
+      * streamed from their start, instead of being extracted.
+      * @param path the path to the note.
+      * @return the header, as a NoteDto with no id and no text.
+      * @throws IOException if reading goes wrong.
+      * @throws NoSuchElementException if there are less than four lines.
+      * @throws IllegalArgumentException if the dates are malformed.
+      */
+    public static NoteDto read(Path path) throws IOException
+    {
+        try (final var CHANNEL = Files.newByteChannel( path, StandardOpenOption.READ ))
+        {
+            byte[] buffer = new byte[ PREFIX_SIZE ];
+            int length = 0;
+            boolean eof = false;
+            Parsed toret = null;
+
+            while( toret == null ) {
+                if ( length == buffer.length ) {
+                    if ( length == MAX_HEADER_SIZE ) {
+                        throw new NoSuchElementException( "header too long" );
+                    }
+
+                    final byte[] BIGGER = new byte[ Math.min( buffer.length * 4,
+                                                              MAX_HEADER_SIZE ) ];
+
+                    System.arraycopy( buffer, 0, BIGGER, 0, length );
+                    buffer = BIGGER;
+                }
+
+                final int READ = CHANNEL.read(
+                                    ByteBuffer.wrap( buffer,
+                                                     length,
+                                                     buffer.length - length ) );
+
+                if ( READ < 0 ) {
+                    eof = true;
+                } else {
+                    length += READ;
+                }
+
+                toret = parse( buffer, length, eof );
+            }
+
+            return toret.header();
+        }
+    }
+
+    /** Parses the header from the first bytes of a note.
+      * @param bytes the bytes of the note.
+      * @param length the number of valid bytes.
+      * @param eof whether there are no more bytes in the note after these.
+      * @return the header parsed, or null if more bytes are needed.
+      * @throws IllegalArgumentException if the dates are malformed.
+      */
+    static Parsed parse(byte[] bytes, int length, boolean eof)
+    {
+        final int[] LINE_ENDS = new int[ NUM_HEADER_LINES ];
+        int pos = skipBom( bytes, length );
+        final int START = pos;
+        int numLines = 0;
+
+        // Locate the end of each header line
+        while( numLines < NUM_HEADER_LINES
+            && pos < length )
+        {
+            if ( bytes[ pos ] == '\n' ) {
+                LINE_ENDS[ numLines ] = pos;
+                ++numLines;
+            }
+
+            ++pos;
+        }
+
+        // The last line can end without a new line
+        if ( numLines == NUM_HEADER_LINES - 1
+          && eof
+          && LINE_ENDS[ numLines - 1 ] < length - 1 )
+        {
+            LINE_ENDS[ numLines ] = length;
+            ++numLines;
+            pos = length;
+        }
+
+        Parsed toret = null;
+
+        if ( numLines == NUM_HEADER_LINES ) {
+            final int TITLE_END = LINE_ENDS[ 0 ];
+            final int TAGS_START = TITLE_END + 1;
+            final int TAGS_END = LINE_ENDS[ 1 ];
+            final int CREATION_START = TAGS_END + 1;
+            final int CREATION_END = LINE_ENDS[ 2 ];
+            final int MODIFICATION_START = CREATION_END + 1;
+            final int MODIFICATION_END = LINE_ENDS[ 3 ];
+
+            toret = new Parsed(
+                        new NoteDto(
+                                null,
+                                parseTitle( bytes, START, TITLE_END ),
+                                parseTags( bytes, TAGS_START, TAGS_END ),
+                                parseDate( bytes, CREATION_START, CREATION_END ),
+                                parseDate( bytes, MODIFICATION_START, MODIFICATION_END ),
+                                "" ),
+                        pos );
+        }
+        else
+        if ( eof ) {
+            throw new NoSuchElementException( "incomplete header" );
+        }
+
+        return toret;
+    }
+
+    /** @return the position after the UTF-8 byte order mark, if present. */
+    private static int skipBom(byte[] bytes, int length)
+    {
+        int toret = 0;
+
+        if ( length >= 3
+          && bytes[ 0 ] == (byte) 0xEF
+          && bytes[ 1 ] == (byte) 0xBB
+          && bytes[ 2 ] == (byte) 0xBF )
+        {
+            toret = 3;
+        }
+
+        return toret;
+    }
+
+    /** @return the position of the first non-blank byte in the range. */
+    private static int trimStart(byte[] bytes, int start, int end)
+    {
+        while( start < end
+            && ( bytes[ start ] & 0xFF ) <= ' ' )
+        {
+            ++start;
+        }
+
+        return start;
+    }
+
+    /** @return the position after the last non-blank byte in the range. */
+    private static int trimEnd(byte[] bytes, int start, int end)
+    {
+        while( end > start
+            && ( bytes[ end - 1 ] & 0xFF ) <= ' ' )
+        {
+            --end;
+        }
+
+        return end;
+    }
+
+    /** Decodes the title, removing the MD title prefix: "#".
+      * @param bytes the bytes of the note.
+      * @param start the first byte of the line.
+      * @param end the end of the line.
+      * @return the title, as in "Title" from "# Title".
+      */
+    private static String parseTitle(byte[] bytes, int start, int end)
+    {
+        start = trimStart( bytes, start, end );
+        end = trimEnd( bytes, start, end );
+
+        if ( start < end
+          && bytes[ start ] == '#' )
+        {
+            start = trimStart( bytes, start + 1, end );
+        }
+
+        return new String( bytes, start, end - start, StandardCharsets.UTF_8 );
+    }
+
+    /** Decodes the comma-separated list of tags.
+      * @param bytes the bytes of the note.
+      * @param start the first byte of the line.
+      * @param end the end of the line.
+      * @return a new TagSet, not marked as dirty.
+      */
+    private static TagSet parseTags(byte[] bytes, int start, int end)
+    {
+        final var TORET = new TagSet();
+        int tagStart = start;
+
+        for(int i = start; i <= end; ++i) {
+            if ( i == end
+              || bytes[ i ] == TagSet.DELIMITER.charAt( 0 ) )
+            {
+                final int FIRST = trimStart( bytes, tagStart, i );
+                final int LAST = trimEnd( bytes, FIRST, i );
+
+                if ( FIRST < LAST ) {
+                    TORET.add( new Tag(
+                                new String( bytes,
+                                            FIRST,
+                                            LAST - FIRST,
+                                            StandardCharsets.UTF_8 ) ) );
+                }
+
+                tagStart = i + 1;
+            }
+        }
+
+        TORET.resetDirty();
+        return TORET;
+    }
+
+    /** Parses a date in ISO format: yyyy-mm-dd, without decoding it.
+      * @param bytes the bytes of the note.
+      * @param start the first byte of the line.
+      * @param end the end of the line.
+      * @return a new Date.
+      * @throws IllegalArgumentException if the format is incorrect.
+      */
+    private static Date parseDate(byte[] bytes, int start, int end)
+    {
+        final int[] PARTS = new int[ 3 ];
+        int numPart = 0;
+        int numDigits = 0;
+
+        start = trimStart( bytes, start, end );
+        end = trimEnd( bytes, start, end );
+
+        for(int i = start; i < end; ++i) {
+            final byte B = bytes[ i ];
+
+            if ( B == '-'
+              && numDigits > 0
+              && numPart < 2 )
+            {
+                ++numPart;
+                numDigits = 0;
+            }
+            else
+            if ( B >= '0' && B <= '9'
+              && numDigits < 9 )
+            {
+                PARTS[ numPart ] = ( PARTS[ numPart ] * 10 ) + ( B - '0' );
+                ++numDigits;
+            } else {
+                numPart = -1;
+                break;
+            }
+        }
+
+        if ( numPart != 2
+          || numDigits == 0 )
+        {
+            throw new IllegalArgumentException(
+                        new String( bytes, start, end - start, StandardCharsets.UTF_8 )
+                        + " does not comply: yyyy-mm-dd" );
+        }
+
+        return new Date( PARTS[ 0 ], PARTS[ 1 ], PARTS[ 2 ] );
+    }
+}
@@ -4,17 +4,12 @@
 package com.devbaltasarq.nottakapp.core;
 
 
-import java.io.File;
-import java.util.Scanner;
 import java.util.NoSuchElementException;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.nio.file.Path;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.io.IOException;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 
 
 /** A proxy for any note.
@@ -26,6 +21,7 @@ public final class NoteProxy {
     private static final Logger LOG = Logger.getLogger( NoteProxy.class.getName() );
     public static final String FILE_EXT = ".md";
     public static final boolean MANDATORY_SAVE = true;
+    private static final long BODY_OVERHEAD_BYTES = 128;
     
     private NoteProxy(
                 Notebook notebook,
@@ -51,7 +47,7 @@ public final class NoteProxy {
         this.id = note.getId();
         this.fileChangedTime = System.currentTimeMillis();
         this.notebook = notebook;
-        this.note = note;
+        this.setLoadedNote( note );
         this.title = note.getTitle();
         this.tags = note.getTags();
         this.creationDate = note.getCreationDate();
@@ -79,8 +75,10 @@ public final class NoteProxy {
     {
         String toret = this.title;
         
-        if ( this.note != null ) {
-            toret = this.note.getTitle();
+        final Note NOTE = this.note;
+        
+        if ( NOTE != null ) {
+            toret = NOTE.getTitle();
         }
         
         return toret;
@@ -91,8 +89,10 @@ public final class NoteProxy {
     {
         TagSet toret = this.tags;
         
-        if ( this.note != null ) {
-            toret = this.note.getTags();
+        final Note NOTE = this.note;
+        
+        if ( NOTE != null ) {
+            toret = NOTE.getTags();
         }
         
         return toret;
@@ -115,61 +115,192 @@ public final class NoteProxy {
     {
         Date toret = this.modificationDate;
         
-        if ( this.note != null ) {
-            toret = this.note.getModificationDate();
+        final Note NOTE = this.note;
+        
+        if ( NOTE != null ) {
+            toret = NOTE.getModificationDate();
         }
         
         return toret;
     }
     
+    /** @return true if the whole note is in memory, false otherwise. */
+    public boolean isLoaded()
+    {
+        return ( this.note != null );
+    }
+    
+    /** @return true if the note is loaded and has unsaved changes. */
+    public boolean isDirty()
+    {
+        final Note NOTE = this.note;
+        
+        return ( NOTE != null && NOTE.isDirty() );
+    }
+    
     /** @return the real note. */
     public Note getNote()
     {
         return this.retrieve();
     }
     
-    /** Determines whether the note must be retrieved.
-      * @return true if the note must be retrieved, false otherwise.
+    /** Determines whether the note is loaded, but its file changed since.
+      * A newer modification time alone is not enough: the contents of the
+      * file must differ as well, since sync clients touch files at will.
+      * @return true if the note is loaded, but its file changed since.
       */
-    private boolean mustRetrieve()
+    public boolean isOutdated()
     {
-        boolean toret = ( this.note == null );
+        boolean toret = false;
         
-        if ( !toret ) {
-            // Maybe the current note is outdated.
-            File noteFile = new File( this.getPath() );
+        if ( this.note != null ) {
+            final NoteStore STORE = this.notebook.getStore();
+            final String PATH = this.getPath();
+            final long FILE_CHANGED_TIME = STORE.lastModified( PATH );
             
-            toret = ( noteFile.lastModified() > this.getFileChangedTime() );
+            if ( FILE_CHANGED_TIME > this.getFileChangedTime() ) {
+                toret = true;
+                
+                if ( this.contentHash != ContentHash.NONE ) {
+                    try {
+                        if ( STORE.hash( PATH ) == this.contentHash ) {
+                            // Only touched
+                            this.fileChangedTime = FILE_CHANGED_TIME;
+                            toret = false;
+                        }
+                    } catch(IOException exc) {
+                        LOG.warning( "unable to hash: " + exc.getMessage() );
+                    }
+                }
+            }
         }
         
         return toret;
     }
     
+    /** @return the hash of the contents of the file, when last read or written,
+      *         or ContentHash.NONE if not known.
+      */
+    public long getContentHash()
+    {
+        return this.contentHash;
+    }
+    
+    /** Determines whether the note must be retrieved.
+      * @return true if the note must be retrieved, false otherwise.
+      */
+    private boolean mustRetrieve()
+    {
+        return ( this.note == null
+              || ( !this.note.isDirty() && this.isOutdated() ) );
+    }
+    
     /** @return the note, loaded from storage, if needed. */
     private Note retrieve()
     {   
+        final NoteBodyCache CACHE = this.notebook.getBodyCache();
+        
         if ( mustRetrieve() ) {
-            try (final var FINPUT = new FileInputStream( this.getPath() ) ) {
-                this.note = Note.retrieveFrom( this.getId(), FINPUT );
-                this.fileChangedTime = new File( this.getPath() ).lastModified();
-            } catch(NoSuchElementException | FileNotFoundException exc)
+            try {
+                final NoteStore STORE = this.notebook.getStore();
+                final String PATH = this.getPath();
+                final long FILE_CHANGED_TIME = STORE.lastModified( PATH );
+                final NoteFileReader.Hashed LOADED = STORE.read( this.getId(), PATH );
+                
+                this.setLoadedNote( LOADED.note().toNote() );
+                this.base = NoteDto.snapshotOf( this.note );
+                this.contentHash = LOADED.hash();
+                this.fileChangedTime = FILE_CHANGED_TIME;
+            } catch(NoSuchElementException | NoSuchFileException exc)
             {
                 LOG.log( Level.WARNING, "no data found in note" );
             } catch(IOException exc) {
                 LOG.log( Level.WARNING, "unable to load: " + exc );
             }
+            
+            if ( this.note != null ) {
+                CACHE.onLoaded( this );
+            }
+        } else {
+            CACHE.onHit( this );
         }
         
         assert this.note != null: "INTERNAL: note is still null!!";
         return this.note;
     }
     
-    /** @return the name of the file. */
+    /** Sets the note loaded, so the notebook knows when it becomes dirty.
+      * @param note the note loaded.
+      */
+    private void setLoadedNote(Note note)
+    {
+        this.note = note;
+        this.note.setOnDirty( () -> this.notebook.markDirty( this ) );
+        
+        if ( this.note.isDirty() ) {
+            this.notebook.markDirty( this );
+        } else {
+            this.notebook.reindex( this );
+        }
+    }
+    
+    /** Drops the body of the note, keeping only its header.
+      * The note is retrieved again from storage when needed.
+      * Notes with unsaved changes, and the note being shown, are never unloaded.
+      * The dropped note no longer marks this one as dirty.
+      * The header is kept before the body is dropped, so other threads
+      * always find either of them.
+      * @return true if the body was dropped, false otherwise.
+      */
+    boolean unload()
+    {
+        final Note NOTE = this.note;
+        boolean toret = false;
+        
+        if ( NOTE != null
+          && !NOTE.isDirty()
+          && !this.notebook.getBodyCache().isCurrent( this ) )
+        {
+            this.title = NOTE.getTitle();
+            this.tags = NOTE.getTags();
+            this.modificationDate = NOTE.getModificationDate();
+            NOTE.setOnDirty( null );
+            this.note = null;
+            this.base = null;
+            toret = true;
+        }
+        
+        return toret;
+    }
+    
+    /** @return the approximate memory taken by the body of the note. */
+    long estimateBodyBytes()
+    {
+        final Note NOTE = this.note;
+        long toret = 0;
+        
+        if ( NOTE != null ) {
+            final NoteDto BASE = this.base;
+            
+            toret = BODY_OVERHEAD_BYTES
+                        + 2L * ( NOTE.get().length()
+                                 + NOTE.getTitle().length() );
+            
+            // The base is shared with the note until it is edited
+            if ( BASE != null
+              && BASE.text() != NOTE.get() )
+            {
+                toret += 2L * BASE.text().length();
+            }
+        }
+        
+        return toret;
+    }
+    
+    /** @return the location of the note in the store of the notebook. */
     public String buildPath()
     {
-        String toret =  this.getId().toString() + FILE_EXT;
-
-        return new File( this.notebook.getPath(), toret ).getAbsolutePath();
+        return this.notebook.getStore().locationFor( this.getId() );
     }
     
     /** Saves the note,  provided the note has been loaded and it is dirty.
@@ -203,34 +334,37 @@ public final class NoteProxy {
     public boolean save(String pathToNotesDir, boolean ignoreDirty) throws IOException
     {
         boolean toret = false;
-        boolean needsSave = ( ( this.note != null && this.note.isDirty() ) 
-                              || ignoreDirty );
+        boolean needsSave = ( this.hasUnsavedChanges() || ignoreDirty );
         
         if ( this.note != null ) {
             final String PATH = this.buildPath();
-            long currentFileChangedTime = new File( PATH ).lastModified();
+            final NoteDto DISK_NOTE = this.retrieveIfChangedOnDisk( PATH );
 
-            // Chk file on disk
-            if ( this.fileChangedTime < currentFileChangedTime ) {
-                // The note has changed on disk
-                try (final var FILE_IN = new FileInputStream( PATH ) ) {
-                    final var DISK_NOTE =
-                                NoteDto.retrieveFrom( this.getId(), FILE_IN );
-                    final var THIS_NOTE = NoteDto.from( this.getNote() );
-                    final var NEW_NOTE = NoteDto.merge( THIS_NOTE, DISK_NOTE );
-                    this.note = NEW_NOTE.toNote();
-                    toret = true;
-                } catch(IOException | IllegalArgumentException exc) {
-                    // The note on disk was changed but it is corrupted.
-                    LOG.warning( "note on disk more updated but corrupted" );
-                }
+            // The note has changed on disk
+            if ( DISK_NOTE != null ) {
+                final var THIS_NOTE = NoteDto.from( this.note );
+                final var NEW_NOTE = NoteDto.merge( this.base, THIS_NOTE, DISK_NOTE );
+                this.setLoadedNote( NEW_NOTE.toNote() );
+                this.base = DISK_NOTE;
+                toret = true;
             }
 
             // Normal save
             if ( needsSave ) {
-                try (final var FILE_OUT = new FileOutputStream( PATH )) {
-                    this.note.save( FILE_OUT, needsSave );
-                    this.fileChangedTime = new File( PATH ).lastModified();
+                try {
+                    this.note.touch();
+                    
+                    final byte[] BYTES = NoteDto.from( this.note ).toBytes(
+                                            this.notebook.getCompressThreshold() );
+                    
+                    this.notebook.getStore().write(
+                                    PATH,
+                                    BYTES,
+                                    this.notebook.getDurability() );
+                    this.note.resetDirty();
+                    this.base = NoteDto.snapshotOf( this.note );
+                    this.contentHash = ContentHash.of( BYTES );
+                    this.fileChangedTime = this.notebook.getStore().lastModified( PATH );
                 } catch(IOException exc) {
                     String errorMsg = "unable to save note: "
                                             + this.getId()
@@ -238,19 +372,185 @@ public final class NoteProxy {
                     LOG.severe( errorMsg );
                     throw new IOException( errorMsg );
                 }
+                
+                this.notebook.onSaved( this );
+                this.notebook.getBodyCache().track( this );
             }
         }
 
         return toret;
     }
     
+    /** @return true if there are changes not yet written, nor being written. */
+    private boolean hasUnsavedChanges()
+    {
+        return ( this.note != null
+              && this.note.isDirty()
+              && this.note.getVersion() != this.writtenVersion );
+    }
+    
+    /** Reads the note on disk, provided it changed since last read or written.
+      * Files just touched, with the same contents, do not count as changed.
+      * @param path the path to the note.
+      * @return the note on disk, or null if unchanged or corrupted.
+      */
+    private NoteDto retrieveIfChangedOnDisk(String path)
+    {
+        final NoteStore STORE = this.notebook.getStore();
+        final long FILE_CHANGED_TIME = STORE.lastModified( path );
+        NoteDto toret = null;
+        
+        if ( this.fileChangedTime < FILE_CHANGED_TIME ) {
+            try {
+                final NoteFileReader.Hashed DISK_NOTE = STORE.read( this.getId(), path );
+                
+                if ( DISK_NOTE.hash() == this.contentHash ) {
+                    // Only touched
+                    this.fileChangedTime = FILE_CHANGED_TIME;
+                } else {
+                    toret = DISK_NOTE.note();
+                }
+            } catch(IOException | IllegalArgumentException | NoSuchElementException exc) {
+                // The note on disk was changed but it is corrupted.
+                LOG.warning( "note on disk more updated but corrupted" );
+            }
+        }
+        
+        return toret;
+    }
+    
+    /** The contents of a note captured to be written in the background.
+      * @param contents a copy of the contents of the note.
+      * @param version the version of the note when captured.
+      */
+    record SaveSnapshot(NoteDto contents, long version) {
+    }
+    
+    /** The outcome of writing a snapshot of the note.
+      * @param snapshot the snapshot to write.
+      * @param written what was written: the snapshot, maybe merged.
+      * @param merged true if the note on disk had changed, and was merged.
+      * @param fileChangedTime the last time the file was changed, when written.
+      * @param contentHash the hash of the contents written.
+      */
+    record SaveOutcome(
+                SaveSnapshot snapshot,
+                NoteDto written,
+                boolean merged,
+                long fileChangedTime,
+                long contentHash)
+    {
+    }
+    
+    /** Captures the contents of the note, so they can be written
+      * in the background, while the note is still being edited.
+      * This must be called in the thread owning the note.
+      * @return the snapshot, or null if there is nothing to save.
+      */
+    SaveSnapshot snapshotForSave()
+    {
+        SaveSnapshot toret = null;
+        
+        if ( this.hasUnsavedChanges() ) {
+            this.note.touch();
+            toret = new SaveSnapshot(
+                                NoteDto.snapshotOf( this.note ),
+                                this.note.getVersion() );
+        }
+        
+        return toret;
+    }
+    
+    /** Writes a snapshot of the note, merging it with the note on disk
+      * if that one changed since it was read or written.
+      * This is meant to be called from the writer thread,
+      * and the note itself is not touched.
+      * When merged, the note is not considered up to date with its file
+      * until the merged contents are applied with completeSave().
+      * @param snapshot the snapshot to write.
+      * @return the outcome, to be applied with completeSave().
+      * @throws IOException if writing goes wrong.
+      * @see NoteProxy#completeSave
+      */
+    SaveOutcome writeSnapshot(SaveSnapshot snapshot) throws IOException
+    {
+        final String PATH = this.buildPath();
+        final NoteDto DISK_NOTE = this.retrieveIfChangedOnDisk( PATH );
+        final boolean MERGED = ( DISK_NOTE != null );
+        NoteDto toWrite = snapshot.contents();
+        
+        if ( MERGED ) {
+            toWrite = NoteDto.merge( this.base, toWrite, DISK_NOTE );
+        }
+        
+        final byte[] BYTES = toWrite.toBytes( this.notebook.getCompressThreshold() );
+        
+        try {
+            this.notebook.getStore().write(
+                            PATH,
+                            BYTES,
+                            this.notebook.getDurability() );
+        } catch(IOException exc) {
+            final String ERROR_MSG = "unable to save note: "
+                                        + this.getId()
+                                        + "\n" + exc.getMessage();
+            LOG.severe( ERROR_MSG );
+            throw new IOException( ERROR_MSG );
+        }
+        
+        final long FILE_CHANGED_TIME = this.notebook.getStore().lastModified( PATH );
+        final long CONTENT_HASH = ContentHash.of( BYTES );
+        
+        if ( !MERGED ) {
+            this.contentHash = CONTENT_HASH;
+            this.fileChangedTime = FILE_CHANGED_TIME;
+        }
+        
+        // Whatever the note becomes, it comes from the snapshot
+        this.base = snapshot.contents();
+        this.writtenVersion = snapshot.version();
+        return new SaveOutcome(
+                        snapshot,
+                        toWrite,
+                        MERGED,
+                        FILE_CHANGED_TIME,
+                        CONTENT_HASH );
+    }
+    
+    /** Applies the outcome of writing a snapshot to the note.
+      * The note is marked as clean, or replaced by the merged one,
+      * unless it was modified after the snapshot was taken; in that case,
+      * it will be merged again with the note on disk when saved.
+      * This must be called in the thread owning the note.
+      * @param outcome the outcome of writeSnapshot().
+      */
+    void completeSave(SaveOutcome outcome)
+    {
+        if ( this.note != null
+          && this.note.getVersion() == outcome.snapshot().version() )
+        {
+            if ( outcome.merged() ) {
+                this.setLoadedNote( outcome.written().toNote() );
+                this.base = NoteDto.snapshotOf( this.note );
+                this.fileChangedTime = outcome.fileChangedTime();
+                this.contentHash = outcome.contentHash();
+                this.writtenVersion = -1;
+            }
+            
+            this.note.resetDirty();
+        }
+        
+        this.notebook.onSaved( this );
+        this.notebook.getBodyCache().track( this );
+    }
+    
     /** Delete the note. */
     public void delete()
     {
-        final Path PATH = Path.of( this.getPath() );
+        final String PATH = this.getPath();
 
         try {
-            if ( !Files.deleteIfExists( PATH ) ) {
+            if ( !this.notebook.getStore().delete( PATH ) ) {
                 LOG.warning(
                     String.format( "unable to delete note at: '%s'", PATH ));
             }
@@ -285,36 +585,95 @@ public final class NoteProxy {
     }
     
     /** Loads only part of a note, i.e., title, dates and tags.
+      * Problems reading the note are logged, and a default header is used.
       * @param notebook the notebook this proxy pertains to.
       * @param path the path to the note.
       * @return a new NoteProxy object.
       */
     public static NoteProxy semiLoad(Notebook notebook, String path)
     {
-        NoteDto noteDto = new NoteDto();
-        long fileChangedTime = new File( path ).lastModified();
-        final Id ID = Id.from( Path.of( path ) );
+        NoteProxy toret;
         
-        try (final var SCANNER = new Scanner( new FileInputStream( path ) ))
-        {
-            noteDto = NoteDto.metaDatafromScanner( SCANNER );
+        try {
+            toret = readHeader( notebook, path );
         } catch(IllegalArgumentException exc)
         {
             LOG.log( Level.SEVERE, "illegal format: " + exc );
+            toret = withDefaultHeader( notebook, path );
         }
-        catch(NoSuchElementException | FileNotFoundException exc)
+        catch(NoSuchElementException | IOException exc)
         {
             LOG.log( Level.WARNING, "no data found in note" );
+            toret = withDefaultHeader( notebook, path );
         }
         
+        return toret;
+    }
+    
+    /** Loads only part of a note, i.e., title, dates and tags.
+      * @param notebook the notebook this proxy pertains to.
+      * @param path the path to the note.
+      * @return a new NoteProxy object.
+      * @throws IOException if the note cannot be read.
+      * @throws NoSuchElementException if the header is incomplete.
+      * @throws IllegalArgumentException if the header is malformed.
+      */
+    static NoteProxy readHeader(Notebook notebook, String path) throws IOException
+    {
+        final NoteStore STORE = notebook.getStore();
+        final long FILE_CHANGED_TIME = STORE.lastModified( path );
+        final Id ID = Id.from( Path.of( path ) );
+        final NoteDto NOTE_DTO = STORE.readHeader( path );
+        
         return new NoteProxy(
                         notebook,
                         ID,
-                        fileChangedTime,
-                        noteDto.title(),
-                        noteDto.dateCreation(),
-                        noteDto.dateModification(),
-                        noteDto.tags() );
+                        FILE_CHANGED_TIME,
+                        NOTE_DTO.title(),
+                        NOTE_DTO.dateCreation(),
+                        NOTE_DTO.dateModification(),
+                        NOTE_DTO.tags() );
+    }
+    
+    /** Creates a proxy with a default header, for unreadable notes.
+      * @param notebook the notebook this proxy pertains to.
+      * @param path the path to the note.
+      * @return a new NoteProxy object.
+      */
+    static NoteProxy withDefaultHeader(Notebook notebook, String path)
+    {
+        final var NOTE_DTO = new NoteDto();
+        
+        return new NoteProxy(
+                        notebook,
+                        Id.from( Path.of( path ) ),
+                        notebook.getStore().lastModified( path ),
+                        NOTE_DTO.title(),
+                        NOTE_DTO.dateCreation(),
+                        NOTE_DTO.dateModification(),
+                        NOTE_DTO.tags() );
+    }
+    
+    /** Creates a NoteProxy from the header stored in the notebook index.
+      * @param notebook the notebook this proxy pertains to.
+      * @param entry the entry in the index.
+      * @return a new NoteProxy object.
+      */
+    static NoteProxy fromIndex(Notebook notebook, NotebookIndex.Entry entry)
+    {
+        final var TAGS = new TagSet();
+        
+        TAGS.addAllFrom( entry.tags() );
+        TAGS.resetDirty();
+        
+        return new NoteProxy(
+                        notebook,
+                        entry.id(),
+                        entry.stamp().lastModified(),
+                        entry.title(),
+                        entry.creation(),
+                        entry.modification(),
+                        TAGS );
     }
     
     /** Creates a NoteProxy from an existing note.
@@ -328,11 +687,14 @@ public final class NoteProxy {
     }
     
     private Id id;
-    private long fileChangedTime;
+    private volatile long fileChangedTime;
+    private volatile long contentHash = ContentHash.NONE;
+    private volatile long writtenVersion = -1;
+    private volatile NoteDto base;
     private final Notebook notebook;
-    private final String title;
-    private final TagSet tags;
+    private volatile String title;
+    private volatile TagSet tags;
     private final Date creationDate;
-    private final Date modificationDate;
-    private Note note;
+    private volatile Date modificationDate;
+    private volatile Note note;
 }
@@ -0,0 +1,207 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+
+/** Writes notes to disk in the background: write-behind.
+  * The contents of a note are captured when it is enqueued, in the thread
+  * owning the notes, and written later by a single writer thread, so the
+  * owner thread never waits for the disk. Repeated saves of the same note
+  * pending to be written are collapsed into a single write.
+  * The outcome of each write is applied back to the note in the thread
+  * owning the notes, through the given executor. When closing, the outcomes
+  * not applied yet are applied directly, since close() is called
+  * in that very thread.
+  * @author baltasarq
+  */
+public final class NoteSaveQueue implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger( NoteSaveQueue.class.getName() );
+
+    /** Creates a new queue.
+      * @param applier runs tasks in the thread owning the notes,
+      *                e.g., EventQueue::invokeLater for Swing.
+      */
+    public NoteSaveQueue(Executor applier)
+    {
+        this.applier = applier;
+        this.pending = new LinkedHashMap<>();
+        this.outcomes = new ConcurrentLinkedQueue<>();
+        this.mergeListeners = new CopyOnWriteArrayList<>();
+        this.writer = Executors.newSingleThreadExecutor( (r) -> {
+            final var TORET = new Thread( r, "note-writer" );
+
+            TORET.setDaemon( true );
+            return TORET;
+        });
+    }
+
+    /** Schedules the note to be written, if it has unsaved changes.
+      * This must be called in the thread owning the notes.
+      * @param proxy the note to save.
+      */
+    public void enqueue(NoteProxy proxy)
+    {
+        final NoteProxy.SaveSnapshot SNAPSHOT = proxy.snapshotForSave();
+
+        if ( SNAPSHOT != null ) {
+            synchronized( this.pending ) {
+                if ( this.pending.put( proxy, SNAPSHOT ) != null ) {
+                    ++this.numCoalesced;
+                }
+            }
+
+            this.writer.execute( () -> this.writePending() );
+        }
+    }
+
+    /** Forgets about the pending write of a note, e.g., when deleted.
+      * @param proxy the note whose write must not happen.
+      * @return a future completed when any write already started is done.
+      */
+    public CompletableFuture<Void> discard(NoteProxy proxy)
+    {
+        synchronized( this.pending ) {
+            this.pending.remove( proxy );
+        }
+
+        return this.flush();
+    }
+
+    /** A barrier for the pending writes.
+      * Note that the outcomes of the writes are applied afterwards,
+      * in the thread owning the notes.
+      * @return a future completed when all the notes enqueued up to now
+      *         have been written to disk.
+      */
+    public CompletableFuture<Void> flush()
+    {
+        return CompletableFuture.runAsync( () -> {}, this.writer );
+    }
+
+    /** Adds a listener for notes merged with changes found on disk.
+      * Listeners are called in the thread owning the notes.
+      * @param listener a lambda accepting the note merged.
+      */
+    public void addMergeListener(Consumer<NoteProxy> listener)
+    {
+        this.mergeListeners.add( listener );
+    }
+
+    /** @return the number of saves collapsed into a previous one. */
+    public long getNumCoalesced()
+    {
+        synchronized( this.pending ) {
+            return this.numCoalesced;
+        }
+    }
+
+    /** @return the number of notes actually written. */
+    public long getNumWritten()
+    {
+        synchronized( this.pending ) {
+            return this.numWritten;
+        }
+    }
+
+    /** Writes all notes pending, in the writer thread.
+      * Several tasks can be scheduled for a single batch,
+      * so the later ones simply find nothing to do.
+      */
+    private void writePending()
+    {
+        final List<Map.Entry<NoteProxy, NoteProxy.SaveSnapshot>> BATCH;
+
+        synchronized( this.pending ) {
+            BATCH = new ArrayList<>( this.pending.entrySet() );
+            this.pending.clear();
+        }
+
+        for(Map.Entry<NoteProxy, NoteProxy.SaveSnapshot> entry: BATCH) {
+            final NoteProxy PROXY = entry.getKey();
+
+            try {
+                final NoteProxy.SaveOutcome OUTCOME =
+                                    PROXY.writeSnapshot( entry.getValue() );
+
+                synchronized( this.pending ) {
+                    ++this.numWritten;
+                }
+
+                this.outcomes.add( () -> this.apply( PROXY, OUTCOME ) );
+                this.applier.execute( () -> this.applyOutcomes() );
+            } catch(IOException exc) {
+                // The note is still dirty, so it is saved again later
+                LOG.warning( "write-behind failed: " + exc.getMessage() );
+            }
+        }
+    }
+
+    /** Applies the outcomes of the writes done, in order,
+      * in the thread owning the notes. Outcomes already applied
+      * are not found anymore, so tasks scheduled late do nothing.
+      */
+    private void applyOutcomes()
+    {
+        Runnable outcome = this.outcomes.poll();
+
+        while( outcome != null ) {
+            outcome.run();
+            outcome = this.outcomes.poll();
+        }
+    }
+
+    /** Applies the outcome of a write, in the thread owning the notes.
+      * @param proxy the note written.
+      * @param outcome the outcome of writing it.
+      */
+    private void apply(NoteProxy proxy, NoteProxy.SaveOutcome outcome)
+    {
+        proxy.completeSave( outcome );
+
+        if ( outcome.merged() ) {
+            LOG.info( "note merged with changes on disk: " + proxy.getId() );
+
+            for(Consumer<NoteProxy> listener: this.mergeListeners) {
+                listener.accept( proxy );
+            }
+        }
+    }
+
+    /** Writes all pending notes, and stops the writer thread.
+      * This waits for the disk, and must be called in the thread owning
+      * the notes: the outcomes of the writes are applied before returning,
+      * so saving all notes or the index afterwards finds them up to date.
+      */
+    @Override
+    public void close()
+    {
+        this.flush().join();
+        this.writer.shutdown();
+        this.applyOutcomes();
+    }
+
+    private final Executor applier;
+    private final ExecutorService writer;
+    private final Map<NoteProxy, NoteProxy.SaveSnapshot> pending;
+    private final Queue<Runnable> outcomes;
+    private final List<Consumer<NoteProxy>> mergeListeners;
+    private long numCoalesced;
+    private long numWritten;
+}
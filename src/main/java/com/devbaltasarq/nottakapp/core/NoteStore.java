@@ -0,0 +1,134 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.util.Map;
+
+
+/** Where the notes of a notebook are kept.
+  * Each note is stored at a location, a string decided by the store,
+  * whose last part is the file name of the note: "<id>.md".
+  * The stamp of a location tells whether the note there changed,
+  * and its content hash, whether its contents really did.
+  * Stores must allow to be used from several threads at once.
+  * @author baltasarq
+  * @see DirectoryNoteStore
+  * @see MemoryNoteStore
+  * @see JournalNoteStore
+  * @see ZipNoteStore
+  */
+public interface NoteStore {
+    /** @return the path of the store, as shown to the user. */
+    String getPath();
+
+    /** @return true if notes cannot be written, false otherwise. */
+    default boolean isReadOnly()
+    {
+        return false;
+    }
+
+    /** Determines the location of a note.
+      * @param id the id of the note.
+      * @return the location in which the note is, or is going to be, stored.
+      */
+    String locationFor(Id id);
+
+    /** Lists all notes in the store, with their stamps.
+      * Problems with single notes are logged, and those notes skipped.
+      * @return a map of locations to stamps.
+      */
+    Map<String, FileStamp> list();
+
+    /** Reads the stamp of a note.
+      * @param location the location of the note.
+      * @return the stamp.
+      * @throws IOException if the note does not exist, or cannot be read.
+      */
+    FileStamp stamp(String location) throws IOException;
+
+    /** @return the last time the note was changed, or 0 if it does not exist.
+      * @param location the location of the note.
+      */
+    default long lastModified(String location)
+    {
+        long toret = 0;
+
+        try {
+            toret = this.stamp( location ).lastModified();
+        } catch(IOException exc) {
+            // Missing
+        }
+
+        return toret;
+    }
+
+    /** Reads just the header of a note.
+      * @param location the location of the note.
+      * @return the header, as a NoteDto with no id and no text.
+      * @throws IOException if reading goes wrong.
+      * @throws java.util.NoSuchElementException if the header is incomplete.
+      * @throws IllegalArgumentException if the header is malformed.
+      */
+    NoteDto readHeader(String location) throws IOException;
+
+    /** Reads the whole note, hashing its contents at the same time.
+      * @param id the id of the note.
+      * @param location the location of the note.
+      * @return the note, and the hash of its contents.
+      * @throws IOException if reading goes wrong.
+      * @throws java.util.NoSuchElementException if the header is incomplete.
+      * @throws IllegalArgumentException if the header is malformed.
+      */
+    NoteFileReader.Hashed read(Id id, String location) throws IOException;
+
+    /** Reads the contents of a note, as they would be in its file.
+      * @param location the location of the note.
+      * @return the whole note, as in NoteDto.toBytes().
+      * @throws IOException if reading goes wrong.
+      */
+    byte[] readBytes(String location) throws IOException;
+
+    /** Hashes the contents of a note, without parsing them.
+      * @param location the location of the note.
+      * @return the content hash.
+      * @throws IOException if reading goes wrong.
+      * @see ContentHash
+      */
+    long hash(String location) throws IOException;
+
+    /** Replaces the contents of a note, or creates it.
+      * Readers must never find a partially written note.
+      * @param location the location of the note.
+      * @param contents the whole note, as in NoteDto.toBytes().
+      * @param durability how much is forced to the storage.
+      * @throws IOException if writing goes wrong; the note is left untouched.
+      */
+    void write(String location, byte[] contents, NoteFileWriter.Durability durability)
+            throws IOException;
+
+    /** Deletes a note.
+      * @param location the location of the note.
+      * @return true if deleted, false if it did not exist.
+      * @throws IOException if deleting goes wrong.
+      */
+    boolean delete(String location) throws IOException;
+
+    /** Moves a note to another location, keeping its stamp.
+      * @param from the current location of the note.
+      * @param to the new location of the note, which must not be taken.
+      * @throws IOException if moving goes wrong.
+      */
+    void move(String from, String to) throws IOException;
+
+    /** @return the index of headers stored, or an empty one if none. */
+    NotebookIndex loadIndex();
+
+    /** Stores the changes in the index of headers.
+      * @param index the index to store.
+      * @throws IOException if writing goes wrong.
+      */
+    void saveIndex(NotebookIndex index) throws IOException;
+}
@@ -6,36 +6,99 @@ package com.devbaltasarq.nottakapp.core;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.FileFilter;
-import java.nio.file.DirectoryIteratorException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Map;
+import java.util.Objects;
 import java.util.List;
 import java.util.Set;
+import java.util.NoSuchElementException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.logging.Logger;
 
 
+
 /** Represents the collection of notes in secondary memory.
+  * A notebook can be used from many threads: the notes are kept
+  * in a concurrent map, so looking them up never blocks, and every
+  * change is made while holding a single lock, so changes are never
+  * interleaved. Lists of notes and ids returned are snapshots,
+  * so they can be iterated while the notebook changes.
+  * The set of notes is also published as an immutable snapshot
+  * after each change, so readers get it without copying nor reading
+  * from disk; notes changed on disk are only picked up by update().
   * @author baltasarq
   */
 public final class Notebook {
     private static final Logger LOG = Logger.getLogger( Notebook.class.getName() );
-    private Notebook(String path)
+    private Notebook(NoteStore store, int loadConcurrency)
     {
-        this.path = path;
-        this.notesIndexed = new HashMap<>();
+        this.store = store;
+        this.headerLoader = new NoteHeaderLoader( loadConcurrency );
+        this.notesIndexed = new ConcurrentHashMap<>();
+        this.fileStamps = new HashMap<>();
+        this.dirtyNotes = new LinkedHashSet<>();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        this.index = store.loadIndex();
+        this.bodyCache = new NoteBodyCache();
+        this.durability = NoteFileWriter.Durability.DEFAULT;
+        this.compressThreshold = CompressedBody.NEVER;
+        this.titleIndex = new TitleIndex();
+        this.tagIndex = new TagIndex();
+        this.creationIndex = new DateIndex();
+        this.modificationIndex = new DateIndex();
+        this.linkGraph = new LinkGraph();
+        this.pendingRefs = new HashSet<>();
+        this.writeLock = new Object();
+        this.snapshot = NotebookSnapshot.EMPTY;
     }
     
     /** Adds a new note.
       * @param note the note object to add.
       */
     public void add(NoteProxy note)
+    {
+        synchronized( this.writeLock ) {
+            this.register( note );
+            this.publishSnapshot();
+        }
+    }
+    
+    /** Adds a note to all indexes, without publishing a new snapshot.
+      * @param note the note object to add.
+      */
+    private void register(NoteProxy note)
     {
         this.notesIndexed.put( note.getId(), note );
+        this.titleIndex.put( note.getId(), note.getTitle() );
+        this.tagIndex.put( note.getId(), note.getTags().getAll() );
+        this.creationIndex.put( note.getId(), note.getCreationDate() );
+        this.modificationIndex.put( note.getId(), note.getModificationDate() );
+        
+        if ( note.isLoaded() ) {
+            this.bodyCache.track( note );
+            this.putRefs( note.getId(), LinkGraph.findRefs( note.getNote().get() ) );
+        } else {
+            this.pendingRefs.add( note.getId() );
+        }
+    }
+    
+    /** Publishes the current set of notes as a new snapshot.
+      * Must be called while holding the write lock.
+      */
+    private void publishSnapshot()
+    {
+        this.snapshot = new NotebookSnapshot( this.snapshot.getVersion() + 1,
+                                              this.notesIndexed );
     }
     
     /** Removes a given note.
@@ -43,22 +106,46 @@ public final class Notebook {
      */
     public void delete(NoteProxy note)
     {
-        this.notesIndexed.remove( note.getId(), note );
+        // The file goes first, without the lock, so a scan meanwhile
+        // can only find it gone, and never bring the note back
         note.delete();
+
+        synchronized( this.writeLock ) {
+            if ( this.notesIndexed.remove( note.getId(), note ) ) {
+                this.unindex( note.getId() );
+                this.publishSnapshot();
+            }
+        
+            this.fileStamps.remove( note.getPath() );
+            this.index.remove( note.getId() );
+            this.dirtyNotes.remove( note );
+            this.bodyCache.forget( note );
+        }
+    }
+    
+    /** Gets the notes as they are now, without reading from disk.
+      * Call update() beforehand to pick up changes in the files.
+      * @return the latest snapshot of the notes, which never changes.
+      */
+    public NotebookSnapshot getSnapshot()
+    {
+        return this.snapshot;
     }
     
-    /** @return a list containing all the notes. */
+    /** @return an unmodifiable list containing all the notes.
+      * @see #getSnapshot()
+      */
     public List<NoteProxy> getAllNotes()
     {
-        this.update();
-        return new ArrayList<>( this.notesIndexed.values() );
+        return this.snapshot.getNotes();
     }
     
-    /** @return a set containing the ids for all notes. */
+    /** @return an unmodifiable set with the ids for all notes.
+      * @see #getSnapshot()
+      */
     public Set<Id> getAllIds()
     {
-        this.update();
-        return this.notesIndexed.keySet();
+        return this.snapshot.getIds();
     }
     
     /** Gets the corresponding proxy for the id.
@@ -70,10 +157,473 @@ public final class Notebook {
         return this.notesIndexed.get( id );
     }
     
+    /** Finds the notes with the given title.
+      * @param title the title to look for.
+      * @param ignoreCase true to find titles whatever their case.
+      * @return the notes found, maybe none.
+      * @see TitleIndex
+      */
+    public List<NoteProxy> lookUpByTitle(String title, boolean ignoreCase)
+    {
+        return this.proxiesFor( ignoreCase ? this.titleIndex.findIgnoringCase( title )
+                                           : this.titleIndex.find( title ) );
+    }
+    
+    /** Finds the notes whose titles start with the given prefix,
+      * whatever its case, sorted by title.
+      * @param prefix the start of the titles.
+      * @param maxResults the maximum number of notes returned.
+      * @return the notes found, maybe none.
+      */
+    public List<NoteProxy> lookUpByTitlePrefix(String prefix, int maxResults)
+    {
+        return this.proxiesFor( this.titleIndex.findByPrefix( prefix, maxResults ) );
+    }
+    
+    /** Finds the note a wiki reference, such as [label|file], points to.
+      * The file can be the name of the file of the note, its id,
+      * or its title; titles with the same case are preferred.
+      * @param href the file in the reference.
+      * @return the note referenced, or null if not found.
+      */
+    public NoteProxy resolveRef(String href)
+    {
+        String target = href.strip();
+        NoteProxy toret = null;
+        
+        if ( target.endsWith( NoteProxy.FILE_EXT ) ) {
+            target = target.substring( 0, target.length() - NoteProxy.FILE_EXT.length() );
+        }
+        
+        final Id ID = idFrom( target );
+        
+        if ( ID != null ) {
+            toret = this.lookUp( ID );
+        }
+        
+        if ( toret == null ) {
+            List<NoteProxy> found = this.lookUpByTitle( target, false );
+            
+            if ( found.isEmpty() ) {
+                found = this.lookUpByTitle( target, true );
+            }
+            
+            if ( !found.isEmpty() ) {
+                toret = found.getFirst();
+            }
+        }
+        
+        return toret;
+    }
+    
+    /** Finds the notes with wiki references to the given one.
+      * Only the notes referencing its id or title are checked.
+      * @param proxy the note referenced.
+      * @return the notes referencing it, maybe none.
+      * @see LinkGraph
+      */
+    public List<NoteProxy> getBacklinks(NoteProxy proxy)
+    {
+        final var TORET = new ArrayList<NoteProxy>();
+        final var SOURCES = new LinkedHashSet<Id>();
+        final Set<String> KEYS = Set.of( LinkGraph.keyOf( proxy.getId().toString() ),
+                                         LinkGraph.keyOf( proxy.getTitle() ) );
+
+        this.findPendingRefsLater();
+
+        for(String key: KEYS) {
+            SOURCES.addAll( this.linkGraph.getSources( key ) );
+        }
+
+        // Titles can be shared, so check the note is the one referenced
+        for(NoteProxy source: this.proxiesFor( List.copyOf( SOURCES ) )) {
+            if ( this.linkGraph.getRefs( source.getId() ).stream().anyMatch(
+                            (href) -> KEYS.contains( LinkGraph.keyOf( href ) )
+                                   && this.resolveRef( href ) == proxy ) )
+            {
+                TORET.add( source );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Finds the notes the wiki references in the given one point to.
+      * References to notes not found are left out.
+      * @param proxy the note with the references.
+      * @return the notes referenced, without repetitions, maybe none.
+      */
+    public List<NoteProxy> getLinks(NoteProxy proxy)
+    {
+        final var TORET = new LinkedHashSet<NoteProxy>();
+
+        this.findPendingRefsLater();
+
+        for(String href: this.linkGraph.getRefs( proxy.getId() )) {
+            final NoteProxy TARGET = this.resolveRef( href );
+
+            if ( TARGET != null ) {
+                TORET.add( TARGET );
+            }
+        }
+
+        return new ArrayList<>( TORET );
+    }
+
+    /** Records the references of a note in the link graph.
+      * @param id the id of the note.
+      * @param refs the files referenced, as written.
+      */
+    private void putRefs(Id id, List<String> refs)
+    {
+        this.linkGraph.put( id, refs );
+        this.pendingRefs.remove( id );
+    }
+
+    /** Starts finding the references of the notes of which only the header
+      * was read, in the background, unless that is already being done.
+      * Until finished, the link graph lacks the references of those notes.
+      * @return the thread finding the references, or null if none pending.
+      */
+    private Thread findPendingRefsLater()
+    {
+        Thread toret = null;
+
+        synchronized( this.writeLock ) {
+            if ( this.refsFinder != null
+              && this.refsFinder.isAlive() )
+            {
+                toret = this.refsFinder;
+            }
+            else
+            if ( !this.pendingRefs.isEmpty() ) {
+                this.refsFinder = Thread.ofVirtual()
+                                        .name( "nottakapp-refs" )
+                                        .start( () -> this.findPendingRefs() );
+                toret = this.refsFinder;
+            }
+        }
+
+        return toret;
+    }
+
+    /** Finds the references of all notes, and waits until finished.
+      * Links and backlinks are complete afterwards.
+      */
+    public void waitForPendingRefs()
+    {
+        final Thread FINDER = this.findPendingRefsLater();
+
+        if ( FINDER != null ) {
+            try {
+                FINDER.join();
+            } catch(InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Finds the references of the notes of which only the header was read.
+      * Each note is read without holding the lock, which is only taken
+      * to record its references. These are kept in the index of headers,
+      * so they are read just once.
+      */
+    private void findPendingRefs()
+    {
+        final List<Id> IDS;
+
+        synchronized( this.writeLock ) {
+            IDS = List.copyOf( this.pendingRefs );
+        }
+
+        for(Id id: IDS) {
+            final NoteProxy PROXY = this.notesIndexed.get( id );
+            List<String> refs = null;
+
+            if ( PROXY != null ) {
+                try {
+                    refs = LinkGraph.findRefs( this.store.read( id, PROXY.getPath() ).note().text() );
+                } catch(IOException exc) {
+                    LOG.warning( "unable to read references of " + id + ": " + exc.getMessage() );
+                }
+            }
+
+            synchronized( this.writeLock ) {
+                // Skip notes removed, or saved with new references, meanwhile
+                if ( this.pendingRefs.remove( id )
+                  && refs != null
+                  && this.notesIndexed.get( id ) == PROXY )
+                {
+                    final NotebookIndex.Entry ENTRY = this.index.get( id );
+
+                    this.putRefs( id, refs );
+
+                    if ( ENTRY != null ) {
+                        this.index.put( new NotebookIndex.Entry(
+                                                ENTRY.id(), ENTRY.stamp(),
+                                                ENTRY.title(), ENTRY.tags(),
+                                                ENTRY.creation(), ENTRY.modification(),
+                                                refs ) );
+                    }
+                }
+            }
+        }
+    }
+
+    /** Finds the notes matching a boolean query on tags.
+      * An empty list of tags is not taken into account.
+      * @param allOf the tags the notes must have, all of them.
+      * @param anyOf the tags the notes must have, at least one of them.
+      * @param noneOf the tags the notes must not have, none of them.
+      * @return the notes found, maybe none.
+      * @see TagIndex
+      */
+    public List<NoteProxy> lookUpByTags(
+                                Collection<Tag> allOf,
+                                Collection<Tag> anyOf,
+                                Collection<Tag> noneOf)
+    {
+        return this.proxiesFor( this.tagIndex.find( allOf, anyOf, noneOf ) );
+    }
+    
+    /** @return the number of notes for each tag, sorted by tag. */
+    public Map<Tag, Integer> getTagCounts()
+    {
+        return this.tagIndex.getCounts();
+    }
+    
+    /** Finds the most recently modified notes.
+      * @param maxResults the maximum number of notes returned.
+      * @return the notes found, newest first.
+      * @see DateIndex
+      */
+    public List<NoteProxy> getRecentNotes(int maxResults)
+    {
+        return this.proxiesFor( this.modificationIndex.findMostRecent( maxResults ) );
+    }
+    
+    /** Finds the notes modified in the given range of days.
+      * @param from the first day.
+      * @param to the last day, included.
+      * @return the notes found, newest first.
+      */
+    public List<NoteProxy> lookUpModifiedBetween(Date from, Date to)
+    {
+        return this.proxiesFor( this.modificationIndex.findBetween( from, to ) );
+    }
+    
+    /** Finds the notes created in the given range of days.
+      * @param from the first day.
+      * @param to the last day, included.
+      * @return the notes found, newest first.
+      */
+    public List<NoteProxy> lookUpCreatedBetween(Date from, Date to)
+    {
+        return this.proxiesFor( this.creationIndex.findBetween( from, to ) );
+    }
+    
+    /** Finds the notes most relevant for the given words.
+      * Changes not indexed yet in the background are not taken into account.
+      * @param query the words to look for.
+      * @param maxResults the maximum number of notes returned.
+      * @return the notes found, the most relevant first,
+      *         or none if there is no full-text index.
+      * @see FullTextIndex
+      */
+    public List<NoteProxy> search(String query, int maxResults)
+    {
+        final FullTextIndex SEARCH_INDEX = this.searchIndex;
+        final var IDS = new ArrayList<Id>();
+
+        if ( SEARCH_INDEX != null ) {
+            for(FullTextIndex.Hit hit: SEARCH_INDEX.search( query, maxResults )) {
+                IDS.add( hit.id() );
+            }
+        }
+
+        return this.proxiesFor( IDS );
+    }
+    
+    /** Finds the notes containing the given text, ignoring case,
+      * in their title or body.
+      * @param fragment the text to look for.
+      * @param maxResults the maximum number of notes returned.
+      * @return the notes found, or none if there is no full-text index.
+      * @see Notebook#lookUpPattern
+      */
+    public List<NoteProxy> lookUpText(String fragment, int maxResults)
+    {
+        return this.lookUpPattern(
+                        Pattern.compile( fragment,
+                                         Pattern.LITERAL
+                                         | Pattern.CASE_INSENSITIVE
+                                         | Pattern.UNICODE_CASE ),
+                        maxResults );
+    }
+
+    /** Finds the notes matching the given pattern, in their title or body.
+      * The trigram index of the full-text index gives the notes that
+      * may match, and only these are read, and checked.
+      * Changes not indexed yet in the background are not taken into account.
+      * @param pattern the regular expression to match.
+      * @param maxResults the maximum number of notes returned.
+      * @return the notes found, or none if there is no full-text index.
+      * @see TrigramIndex
+      */
+    public List<NoteProxy> lookUpPattern(Pattern pattern, int maxResults)
+    {
+        final FullTextIndex SEARCH_INDEX = this.searchIndex;
+        final var TORET = new ArrayList<NoteProxy>();
+
+        if ( SEARCH_INDEX != null ) {
+            final Iterator<NoteProxy> IT_CANDIDATES = this.proxiesFor(
+                            SEARCH_INDEX.getTrigrams().findCandidates( pattern ) ).iterator();
+
+            while( TORET.size() < maxResults
+                && IT_CANDIDATES.hasNext() )
+            {
+                final NoteProxy PROXY = IT_CANDIDATES.next();
+
+                if ( pattern.matcher( this.matchableText( PROXY ) ).find() ) {
+                    TORET.add( PROXY );
+                }
+            }
+        }
+
+        return TORET;
+    }
+
+    /** @return the title and body of a note, read if not loaded,
+      *         or an empty text if it cannot be read.
+      */
+    private String matchableText(NoteProxy proxy)
+    {
+        String toret = "";
+
+        try {
+            if ( proxy.isLoaded() ) {
+                final Note NOTE = proxy.getNote();
+
+                toret = NOTE.getTitle() + "\n" + NOTE.get();
+            } else {
+                final NoteDto NOTE = this.store.read( proxy.getId(), proxy.getPath() ).note();
+
+                toret = NOTE.title() + "\n" + NOTE.text();
+            }
+        } catch(IOException exc) {
+            LOG.warning( "unable to read note " + proxy.getId() + ": " + exc.getMessage() );
+        }
+
+        return toret;
+    }
+
+    /** @return the notes for the given ids, skipping those gone. */
+    private List<NoteProxy> proxiesFor(List<Id> ids)
+    {
+        final var TORET = new ArrayList<NoteProxy>( ids.size() );
+        
+        for(Id id: ids) {
+            final NoteProxy PROXY = this.notesIndexed.get( id );
+            
+            if ( PROXY != null ) {
+                TORET.add( PROXY );
+            }
+        }
+        
+        return TORET;
+    }
+    
+    /** @return the cache keeping the loaded bodies within a memory budget. */
+    public NoteBodyCache getBodyCache()
+    {
+        return this.bodyCache;
+    }
+    
+    /** @return how much is forced to disk when writing notes. */
+    public NoteFileWriter.Durability getDurability()
+    {
+        return this.durability;
+    }
+    
+    /** Changes how much is forced to disk when writing notes.
+      * @param durability the new durability level.
+      */
+    public void setDurability(NoteFileWriter.Durability durability)
+    {
+        this.durability = durability;
+    }
+    
+    /** @return the size of the body from which notes are written compressed. */
+    public long getCompressThreshold()
+    {
+        return this.compressThreshold;
+    }
+    
+    /** Changes the size of the body from which notes are written compressed.
+      * @param compressThreshold the size in bytes, or CompressedBody.NEVER.
+      * @see CompressedBody
+      */
+    public void setCompressThreshold(long compressThreshold)
+    {
+        this.compressThreshold = compressThreshold;
+    }
+    
     /** @return the path to the directory in which the note files live. */
     public String getPath()
     {
-        return this.path;
+        return this.store.getPath();
+    }
+    
+    /** @return the store in which the notes are kept. */
+    public NoteStore getStore()
+    {
+        return this.store;
+    }
+    
+    /** @return true if the notes can only be browsed, false otherwise. */
+    public boolean isReadOnly()
+    {
+        return this.store.isReadOnly();
+    }
+    
+    /** @return how the note files are laid out in the notes directory. */
+    public NotesLayout getLayout()
+    {
+        NotesLayout toret = NotesLayout.DEFAULT;
+        
+        if ( this.store instanceof DirectoryNoteStore DIR_STORE
+          && DIR_STORE.getLayout() != null )
+        {
+            toret = DIR_STORE.getLayout();
+        }
+        
+        return toret;
+    }
+    
+    /** Moves the note files in place, so they follow the given layout.
+      * This must not be called while notes are being saved in the
+      * background, since their paths change.
+      * Files that cannot be moved are left in place, and moved again
+      * when the notebook is restored.
+      * Only notes kept in a directory have a layout.
+      * @param layout the new layout.
+      */
+    public void migrateTo(NotesLayout layout)
+    {
+        synchronized( this.writeLock ) {
+            if ( this.store instanceof DirectoryNoteStore DIR_STORE ) {
+                if ( DIR_STORE.getLayout() != layout ) {
+                    DIR_STORE.setLayout( layout );
+                
+                    final Map<String, FileStamp> STAMPS = this.relocate( this.fileStamps );
+                
+                    this.fileStamps.clear();
+                    this.fileStamps.putAll( STAMPS );
+                }
+            } else {
+                LOG.warning( "no layout for notes in: " + this.getPath() );
+            }
+        }
     }
     
     /** Saves all the notes in the notebook. */
@@ -82,14 +632,13 @@ public final class Notebook {
         this.saveAll( this.getPath() );
     }
     
-    /** Saves all the notes in the notebook.
+    /** Saves all the notes in the notebook with unsaved changes.
+      * Only the notes that were modified are visited.
       * @param pathToNotesDir the directory in which to save notes.
       */
     public void saveAll(String pathToNotesDir)
     {
-        this.update();
-
-        for(NoteProxy noteProxy: this.notesIndexed.values()) {
+        for(NoteProxy noteProxy: this.getDirtyNotes()) {
             try {
                 noteProxy.save( pathToNotesDir );
             } catch(IOException exc) {
@@ -97,59 +646,551 @@ public final class Notebook {
                                                 noteProxy.getId() ) );
             }
         }
+
+        this.saveIndex();
     }
     
-    private static List<String> loadNotePathsFrom(String path)
+    /** @return the notes with unsaved changes. */
+    public List<NoteProxy> getDirtyNotes()
     {
-        final var TORET = new ArrayList<String>();
-        final var DIR = new File( path );
-        final FileFilter FF = 
-                    (file) -> file.getName().endsWith( NoteProxy.FILE_EXT );
+        synchronized( this.writeLock ) {
+            return new ArrayList<>( this.dirtyNotes );
+        }
+    }
+    
+    /** Records a note with unsaved changes.
+      * @param proxy the note modified.
+      */
+    void markDirty(NoteProxy proxy)
+    {
+        synchronized( this.writeLock ) {
+            this.dirtyNotes.add( proxy );
+            this.reindex( proxy );
+        }
+    }
+    
+    /** Updates the title, tags and dates of a note in the indexes,
+      * provided the note belongs to the notebook.
+      * @param proxy the note, maybe with a new title, tags or dates.
+      */
+    void reindex(NoteProxy proxy)
+    {
+        synchronized( this.writeLock ) {
+            if ( this.notesIndexed.get( proxy.getId() ) == proxy ) {
+                this.titleIndex.put( proxy.getId(), proxy.getTitle() );
+                this.tagIndex.put( proxy.getId(), proxy.getTags().getAll() );
+                this.modificationIndex.put( proxy.getId(), proxy.getModificationDate() );
+            }
+        }
+    }
+
+    /** Writes the index of headers to disk, if it changed. */
+    public void saveIndex()
+    {
+        synchronized( this.writeLock ) {
+            if ( this.index.isDirty() ) {
+                try {
+                    this.store.saveIndex( this.index );
+                } catch(IOException exc) {
+                    LOG.warning( "unable to save index: " + exc.getMessage() );
+                }
+            }
+        }
+    }
+
+    /** Records the header of a note that has just been written.
+      * @param proxy the note saved.
+      */
+    void onSaved(NoteProxy proxy)
+    {
+        synchronized( this.writeLock ) {
+            if ( !proxy.isDirty() ) {
+                this.dirtyNotes.remove( proxy );
+            }
+        
+            this.reindex( proxy );
+        
+            if ( this.notesIndexed.get( proxy.getId() ) == proxy ) {
+                final FullTextIndex SEARCH_INDEX = this.searchIndex;
+            
+                this.modificationIndex.touch( proxy.getId(), proxy.getModificationDate() );
+            
+                if ( SEARCH_INDEX != null
+                  && proxy.isLoaded() )
+                {
+                    final NoteDto SNAPSHOT = NoteDto.snapshotOf( proxy.getNote() );
+                
+                    SEARCH_INDEX.putLater( proxy.getId(),
+                                           proxy.getFileChangedTime(),
+                                           () -> searchableText( SNAPSHOT ) );
+                }
+            }
+        
+            if ( proxy.isLoaded()
+              && this.notesIndexed.get( proxy.getId() ) == proxy )
+            {
+                this.putRefs( proxy.getId(), LinkGraph.findRefs( proxy.getNote().get() ) );
+            }
         
-        for (final File fileEntry : DIR.listFiles( FF )) {
             try {
-                TORET.add( fileEntry.getCanonicalPath() );
+                final var STAMP = this.store.stamp( proxy.getPath() );
+                final boolean REFS_KNOWN = this.linkGraph.contains( proxy.getId() )
+                                        && !this.pendingRefs.contains( proxy.getId() );
+                final List<String> REFS = REFS_KNOWN ? this.linkGraph.getRefs( proxy.getId() ) : null;
+
+                // So the scan does not take our own save for a change on disk
+                this.fileStamps.put( proxy.getPath(), STAMP );
+                this.index.put( indexEntryFor( proxy, STAMP, REFS ) );
             } catch(IOException exc) {
-                LOG.warning(
-                        String.format( "error browsing '%s' in '%s'",
-                                            fileEntry, path ) );
+                this.index.remove( proxy.getId() );
             }
         }
-        
-        return TORET;
+    }
+
+    /** Builds the index entry for the header of a note.
+      * @param proxy the note.
+      * @param stamp the stamp of its file, matching the header.
+      * @param refs the files referenced by the note, or null if not known.
+      * @return a new entry for the index.
+      */
+    private static NotebookIndex.Entry indexEntryFor(
+                                            NoteProxy proxy,
+                                            FileStamp stamp,
+                                            List<String> refs)
+    {
+        return new NotebookIndex.Entry(
+                                proxy.getId(),
+                                stamp,
+                                proxy.getTitle(),
+                                proxy.getTags().toString(),
+                                proxy.getCreationDate(),
+                                proxy.getModificationDate(),
+                                refs );
     }
     
-    /** Reads the metadata for notes in the path, and picks the new ones. */
+    /** Moves the note files not following the layout to their places.
+      * Files that cannot be moved, or whose place is already taken,
+      * are left where they are, and are not returned.
+      * @param stamps the note files, with their stamps.
+      * @return the note files in their places, with their stamps.
+      */
+    private Map<String, FileStamp> relocate(Map<String, FileStamp> stamps)
+    {
+        final var TORET = new LinkedHashMap<String, FileStamp>();
+
+        for(Map.Entry<String, FileStamp> entry: stamps.entrySet()) {
+            final String NOTE_PATH = entry.getKey();
+            final Id ID = idFrom( NOTE_PATH );
+            String notePath = NOTE_PATH;
+
+            if ( ID != null ) {
+                final String TARGET = this.store.locationFor( ID );
+
+                if ( !TARGET.equals( NOTE_PATH ) ) {
+                    notePath = null;
+
+                    try {
+                        this.store.move( NOTE_PATH, TARGET );
+                        notePath = TARGET;
+                    } catch(IOException exc) {
+                        LOG.warning(
+                                String.format( "unable to move '%s' to '%s': %s",
+                                               NOTE_PATH, TARGET, exc ) );
+                    }
+                }
+            }
+
+            if ( notePath != null ) {
+                TORET.put( notePath, entry.getValue() );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Reads the metadata for new or changed notes in the path.
+      * Files whose modification time and size did not change since the
+      * last scan are not opened at all, and proxies for files that are
+      * gone from the directory are dropped.
+      * Headers are read without holding the lock, so writers are only
+      * blocked while the results are recorded.
+      * Listeners are notified of the changes found, as a single batch.
+      */
     public void update()
     {
-        final List<String> NOTE_PATHS = loadNotePathsFrom( this.getPath() );
-        final var PROXIES = new ArrayList<NoteProxy>( NOTE_PATHS.size() );
+        final Map<String, FileStamp> STAMPS = new LinkedHashMap<>();
+        final Map<String, FileStamp> CURRENT_STAMPS = this.store.list();
+
+        synchronized( this.writeLock ) {
+            // The notes whose files have disappeared
+            for(String oldPath: this.fileStamps.keySet()) {
+                if ( !CURRENT_STAMPS.containsKey( oldPath ) ) {
+                    STAMPS.put( oldPath, null );
+                }
+            }
+        }
+
+        STAMPS.putAll( CURRENT_STAMPS );
+        this.fireChanges( this.updateStamps( STAMPS ) );
+    }
+
+    /** Reads the metadata only for the given note files.
+      * This is used when the files that changed are already known,
+      * so the whole directory does not need to be listed.
+      * Listeners are notified of the changes found, as a single batch.
+      * @param notePaths the paths of the note files to check.
+      */
+    public void update(Collection<String> notePaths)
+    {
+        final Map<String, FileStamp> STAMPS = new LinkedHashMap<>();
+
+        for(String notePath: notePaths) {
+            FileStamp stamp = null;
+
+            try {
+                stamp = this.store.stamp( notePath );
+            } catch(IOException exc) {
+                // The file is gone
+            }
+
+            STAMPS.put( notePath, stamp );
+        }
+
+        this.fireChanges( this.updateStamps( STAMPS ) );
+    }
+
+    /** Compares the stamps of note files with the cached ones, and loads
+      * the headers of new or changed files without holding the lock.
+      * @param stamps the current stamps of the files, null for those gone.
+      * @return the changes found.
+      */
+    private List<NotebookChange> updateStamps(Map<String, FileStamp> stamps)
+    {
+        final Map<String, FileStamp> EXPECTED;
+        final var TORET = new ArrayList<NotebookChange>();
+
+        synchronized( this.writeLock ) {
+            EXPECTED = this.findChangedStamps( stamps );
+        }
+
+        if ( !EXPECTED.isEmpty() ) {
+            final List<NoteHeaderLoader.Result> RESULTS =
+                                this.headerLoader.load( this, toLoad( stamps, EXPECTED ) );
+
+            synchronized( this.writeLock ) {
+                this.commitStamps( stamps, EXPECTED, RESULTS, TORET );
+
+                if ( !TORET.isEmpty() ) {
+                    this.publishSnapshot();
+                }
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Compares the stamps of note files with the cached ones.
+      * The headers of new or changed files are loaded in parallel.
+      * @param stamps the current stamps of the files, null for those gone.
+      * @param changes the list in which to record the changes found.
+      */
+    private void applyStamps(
+                        Map<String, FileStamp> stamps,
+                        List<NotebookChange> changes)
+    {
+        final Map<String, FileStamp> EXPECTED = this.findChangedStamps( stamps );
+
+        this.commitStamps(
+                    stamps,
+                    EXPECTED,
+                    this.headerLoader.load( this, toLoad( stamps, EXPECTED ) ),
+                    changes );
+    }
+
+    /** Finds the files whose stamps differ from the cached ones.
+      * @param stamps the current stamps of the files, null for those gone.
+      * @return the cached stamps of the files changed, null for new files.
+      */
+    private Map<String, FileStamp> findChangedStamps(Map<String, FileStamp> stamps)
+    {
+        final Map<String, FileStamp> TORET = new HashMap<>();
 
-        // Read all proxies
-        for(String subPath: NOTE_PATHS) {
-            PROXIES.add( NoteProxy.semiLoad( this, subPath ) );
+        for(Map.Entry<String, FileStamp> entry: stamps.entrySet()) {
+            final String NOTE_PATH = entry.getKey();
+            final FileStamp STAMP = entry.getValue();
+            final FileStamp OLD_STAMP = this.fileStamps.get( NOTE_PATH );
+
+            if ( STAMP == null ?
+                        OLD_STAMP != null
+                      : !STAMP.equals( OLD_STAMP ) )
+            {
+                TORET.put( NOTE_PATH, OLD_STAMP );
+            }
         }
 
-        // Copy the old proxies
-        final var OLD_NOTES = new HashMap<Id, NoteProxy>( this.notesIndexed );
-        this.notesIndexed.clear();
+        return TORET;
+    }
 
-        // Pick those new proxies
-        for(NoteProxy noteProxy: PROXIES) {
-            // Add it if was not already present
-            final var OLD_NOTE = OLD_NOTES.get( noteProxy.getId() );
-            var newNote = noteProxy;
+    /** @return the paths of the notes whose headers must be read,
+      *         among the files changed.
+      * @param stamps the current stamps of the files, null for those gone.
+      * @param changed the files changed.
+      */
+    private static List<String> toLoad(
+                                    Map<String, FileStamp> stamps,
+                                    Map<String, FileStamp> changed)
+    {
+        final var TORET = new ArrayList<String>();
 
-            if ( OLD_NOTE != null ) {
-                newNote = OLD_NOTE;
+        for(String notePath: stamps.keySet()) {
+            if ( changed.containsKey( notePath )
+              && stamps.get( notePath ) != null
+              && idFrom( notePath ) != null )
+            {
+                TORET.add( notePath );
             }
+        }
+
+        return TORET;
+    }
+
+    /** Records the new stamps and headers of the files changed.
+      * Files whose cached stamps changed meanwhile, for instance
+      * because a note was saved, are left as they are.
+      * No snapshot is published: callers do it once for the whole batch.
+      * @param stamps the current stamps of the files, null for those gone.
+      * @param expected the cached stamps of the files changed, when found.
+      * @param results the headers of the notes loaded.
+      * @param changes the list in which to record the changes found.
+      */
+    private void commitStamps(
+                        Map<String, FileStamp> stamps,
+                        Map<String, FileStamp> expected,
+                        List<NoteHeaderLoader.Result> results,
+                        List<NotebookChange> changes)
+    {
+        for(Map.Entry<String, FileStamp> entry: stamps.entrySet()) {
+            final String NOTE_PATH = entry.getKey();
+            final FileStamp STAMP = entry.getValue();
+            final Id ID = idFrom( NOTE_PATH );
+
+            if ( expected.containsKey( NOTE_PATH )
+              && Objects.equals( expected.get( NOTE_PATH ), this.fileStamps.get( NOTE_PATH ) ) )
+            {
+                if ( STAMP == null ) {
+                    this.fileStamps.remove( NOTE_PATH );
+
+                    if ( ID != null ) {
+                        this.dropProxy( ID );
+                        changes.add( new NotebookChange(
+                                                NotebookChange.Kind.DELETED,
+                                                ID,
+                                                NOTE_PATH ) );
+                    }
+                }
+                else
+                if ( ID == null ) {
+                    if ( expected.get( NOTE_PATH ) == null ) {
+                        LOG.warning( "skipping unknown file: " + NOTE_PATH );
+                    }
 
-            this.add( newNote );
+                    this.fileStamps.put( NOTE_PATH, STAMP );
+                }
+            }
         }
 
-        PROXIES.clear();
-        OLD_NOTES.clear();
-        NOTE_PATHS.clear();
+        for(NoteHeaderLoader.Result result: results) {
+            final String NOTE_PATH = result.path();
+            final FileStamp STAMP = stamps.get( NOTE_PATH );
+            final FileStamp OLD_STAMP = expected.get( NOTE_PATH );
+
+            if ( Objects.equals( OLD_STAMP, this.fileStamps.get( NOTE_PATH ) ) ) {
+                final var KIND = ( OLD_STAMP != null ) ?
+                                            NotebookChange.Kind.MODIFIED
+                                          : NotebookChange.Kind.CREATED;
+
+                this.fileStamps.put( NOTE_PATH, STAMP );
+                this.refreshProxy( result, STAMP );
+                changes.add( new NotebookChange(
+                                            KIND,
+                                            result.proxy().getId(),
+                                            NOTE_PATH ) );
+            }
+        }
+    }
+
+    /** Forgets about a note whose file is gone.
+      * Notes with unsaved changes are kept, though.
+      * @param id the id of the note.
+      */
+    private void dropProxy(Id id)
+    {
+        final NoteProxy PROXY = this.notesIndexed.get( id );
+
+        this.index.remove( id );
+
+        if ( PROXY != null
+          && !PROXY.isDirty() )
+        {
+            this.notesIndexed.remove( id );
+            this.unindex( id );
+            this.bodyCache.forget( PROXY );
+        }
+    }
+
+    /** Removes a note gone from all indexes.
+      * @param id the id of the note.
+      */
+    private void unindex(Id id)
+    {
+        final FullTextIndex SEARCH_INDEX = this.searchIndex;
+
+        this.titleIndex.remove( id );
+        this.tagIndex.remove( id );
+        this.creationIndex.remove( id );
+        this.modificationIndex.remove( id );
+        this.linkGraph.remove( id );
+        this.pendingRefs.remove( id );
+
+        if ( SEARCH_INDEX != null ) {
+            SEARCH_INDEX.removeLater( id );
+        }
+    }
+
+    /** Extracts the id of a note from the name of its file.
+      * @param notePath the path to the note file.
+      * @return the id, or null if the file is not named after an id.
+      */
+    private static Id idFrom(String notePath)
+    {
+        Id toret = null;
+
+        try {
+            toret = Id.from( Path.of( notePath ) );
+        } catch(IllegalArgumentException | NoSuchElementException exc) {
+            // Not a note
+        }
+
+        return toret;
+    }
+
+    /** Adds a listener for changes in the notes on disk.
+      * Listeners are called with each batch of changes, in the thread
+      * in which the update was run.
+      * @param listener a lambda accepting a list of changes.
+      */
+    public void addChangeListener(Consumer<List<NotebookChange>> listener)
+    {
+        this.changeListeners.add( listener );
+    }
+
+    /** Removes a listener for changes in the notes on disk.
+      * @param listener the listener to remove.
+      */
+    public void removeChangeListener(Consumer<List<NotebookChange>> listener)
+    {
+        this.changeListeners.remove( listener );
+    }
+
+    /** Notifies all listeners about a batch of changes.
+      * @param changes the batch of changes, ignored if empty.
+      */
+    private void fireChanges(List<NotebookChange> changes)
+    {
+        if ( !changes.isEmpty() ) {
+            final List<NotebookChange> BATCH = List.copyOf( changes );
+
+            for(Consumer<List<NotebookChange>> listener: this.changeListeners)
+            {
+                listener.accept( BATCH );
+            }
+        }
+    }
+
+    /** Picks the header of a new or changed note file.
+      * Loaded notes are kept, since they detect changes on disk by themselves
+      * when retrieved or saved.
+      * @param result the result of loading the header of the note.
+      * @param stamp the stamp of the note file.
+      */
+    private void refreshProxy(NoteHeaderLoader.Result result, FileStamp stamp)
+    {
+        final NoteProxy NEW_PROXY = result.proxy();
+        final NoteProxy OLD_PROXY = this.notesIndexed.get( NEW_PROXY.getId() );
+
+        if ( result.isOk() ) {
+            this.index.put( indexEntryFor( NEW_PROXY, stamp, null ) );
+        } else {
+            this.index.remove( NEW_PROXY.getId() );
+        }
+
+        if ( OLD_PROXY == null
+          || !OLD_PROXY.isLoaded() )
+        {
+            this.register( NEW_PROXY );
+        }
+
+        if ( result.isOk() ) {
+            this.indexTextLater( NEW_PROXY );
+        }
+    }
+
+    /** Indexes the text of a note as stored, in the background.
+      * Nothing is done if there is no full-text index.
+      * @param proxy the note to index.
+      */
+    private void indexTextLater(NoteProxy proxy)
+    {
+        final FullTextIndex SEARCH_INDEX = this.searchIndex;
+        final Id ID = proxy.getId();
+        final String LOCATION = proxy.getPath();
+
+        if ( SEARCH_INDEX != null ) {
+            SEARCH_INDEX.putLater( ID,
+                                   proxy.getFileChangedTime(),
+                                   () -> searchableText( this.store.read( ID, LOCATION ).note() ) );
+        }
+    }
+
+    /** Builds the text to index for a note: its title, tags and body.
+      * The body is indexed as markdown, since marks are not letters
+      * and so they are never part of the words found by the index.
+      * @param note the data of the note.
+      * @return the text to index.
+      */
+    private static String searchableText(NoteDto note)
+    {
+        return note.title() + "\n" + note.tags() + "\n" + note.text();
+    }
+
+    /** Attaches a full-text index, kept up to date from then on.
+      * The notes changed, or removed, while the index was not attached
+      * are found by their stamps, and indexed again in the background.
+      * @param searchIndex the full-text index.
+      */
+    public void attachSearchIndex(FullTextIndex searchIndex)
+    {
+        final Set<Id> GONE = searchIndex.getIds();
+
+        this.searchIndex = searchIndex;
+
+        for(NoteProxy proxy: this.notesIndexed.values()) {
+            GONE.remove( proxy.getId() );
+
+            if ( searchIndex.stampOf( proxy.getId() ) != proxy.getFileChangedTime() ) {
+                this.indexTextLater( proxy );
+            }
+        }
+
+        for(Id id: GONE) {
+            searchIndex.removeLater( id );
+        }
+    }
+
+    /** @return the full-text index, or null if none is attached. */
+    public FullTextIndex getSearchIndex()
+    {
+        return this.searchIndex;
     }
 
     /** Reads all files from the notes directory, loading the metadata.
@@ -157,6 +1198,33 @@ public final class Notebook {
       * @return a new Notebook object, with all the notes read.
       */
     public static Notebook restoreFrom(String path)
+    {
+        return restoreFrom( path, NoteHeaderLoader.DEFAULT_CONCURRENCY );
+    }
+
+    /** Reads all files from the notes directory, loading the metadata.
+      * @param path the path to read the notes from.
+      * @param loadConcurrency the maximum number of notes read at once.
+      * @return a new Notebook object, with all the notes read.
+      */
+    public static Notebook restoreFrom(String path, int loadConcurrency)
+    {
+        return restoreFrom( path, loadConcurrency, null );
+    }
+
+    /** Reads all files from the notes directory, loading the metadata.
+      * Note files are found whatever their layout; those not following
+      * the given layout are moved in place.
+      * @param path the path to read the notes from.
+      * @param loadConcurrency the maximum number of notes read at once.
+      * @param layout the layout for the note files,
+      *               or null to keep the one found.
+      * @return a new Notebook object, with all the notes read.
+      */
+    public static Notebook restoreFrom(
+                                String path,
+                                int loadConcurrency,
+                                NotesLayout layout)
     {
         File dir = new File( path );
         
@@ -167,51 +1235,119 @@ public final class Notebook {
         }
         
         // Read the entries of the notebook
-        final String PATH = dir.getAbsolutePath();
-        final var TORET = new Notebook( PATH );
+        final var STORE = new DirectoryNoteStore(
+                                        dir.toPath(),
+                                        layout,
+                                        loadConcurrency );
         
-        for(String subPath: loadNotePathsFrom( PATH )) {
-            TORET.add( NoteProxy.semiLoad( TORET, subPath ) );
-        }
+        return restoreFrom( STORE, loadConcurrency );
+    }
 
+    /** Reads all notes in the store, loading the metadata.
+      * @param store the store in which the notes are kept.
+      * @param loadConcurrency the maximum number of notes read at once.
+      * @return a new Notebook object, with all the notes read.
+      */
+    public static Notebook restoreFrom(NoteStore store, int loadConcurrency)
+    {
+        final var TORET = new Notebook( store, loadConcurrency );
+        
+        TORET.restore();
         return TORET;
     }
+
+    /** Loads all notes, taking the headers from the index when possible.
+      * Only the notes whose files are not in the index, or whose stamps
+      * differ from the ones in the index, are opened.
+      */
+    private void restore()
+    {
+        final Map<String, FileStamp> STAMPS = this.relocate( this.store.list() );
+        final Map<String, FileStamp> TO_LOAD = new LinkedHashMap<>();
+        final var FOUND = new HashSet<Id>( STAMPS.size() );
+
+        for(Map.Entry<String, FileStamp> entry: STAMPS.entrySet()) {
+            final String NOTE_PATH = entry.getKey();
+            final FileStamp STAMP = entry.getValue();
+            final Id ID = idFrom( NOTE_PATH );
+            final NotebookIndex.Entry INDEXED = ( ID != null ) ?
+                                                    this.index.get( ID )
+                                                  : null;
+
+            if ( INDEXED != null
+              && INDEXED.stamp().equals( STAMP ) )
+            {
+                this.register( NoteProxy.fromIndex( this, INDEXED ) );
+                this.fileStamps.put( NOTE_PATH, STAMP );
+
+                if ( INDEXED.hasRefs() ) {
+                    this.putRefs( ID, INDEXED.refs() );
+                }
+            } else {
+                TO_LOAD.put( NOTE_PATH, STAMP );
+            }
+
+            if ( ID != null ) {
+                FOUND.add( ID );
+            }
+        }
+
+        this.applyStamps( TO_LOAD, new ArrayList<>() );
+        this.publishSnapshot();
+
+        // Forget about notes no longer present
+        for(NotebookIndex.Entry entry: List.copyOf( this.index.getAll() )) {
+            if ( !FOUND.contains( entry.id() ) ) {
+                this.index.remove( entry.id() );
+            }
+        }
+
+        this.saveIndex();
+    }
     
     /** Moves all notes to a new path.
+      * The layout is kept: notes in shards are moved to the same shards
+      * in the new path.
       * @param newPath
       * @param notebook
-      * @throws IOException if writing goes wrong.
+      * @throws IOException if writing goes wrong,
+      *                     or the notes are not kept in a directory.
       */
     public static void moveTo(String newPath, Notebook notebook) throws IOException
     {
-        final String FILE_FILTER = "*{" + NoteProxy.FILE_EXT + "}";
         final Path OLD_PATH = Path.of( notebook.getPath() );
         
+        if ( !( notebook.store instanceof DirectoryNoteStore DIR_STORE ) ) {
+            throw new IOException( "notes cannot be moved from: " + OLD_PATH );
+        }
+        
         if ( !OLD_PATH.toString().equals( newPath ) ) {
             for(NoteProxy proxy: notebook.notesIndexed.values()) {
                 proxy.save( OLD_PATH.toString(), NoteProxy.MANDATORY_SAVE );
             }
             
-            Files.createDirectories( Path.of( newPath ) );
-            
-            try (var stream = Files.newDirectoryStream( OLD_PATH, FILE_FILTER ))
-            {
-                for (Path noteFile: stream) {
-                    String fileName = noteFile.getFileName().toString();
-                    Files.move(
-                            noteFile,
-                            Path.of( newPath , fileName ),
-                            StandardCopyOption.REPLACE_EXISTING,
-                            StandardCopyOption.ATOMIC_MOVE );
-                }
-            } catch (DirectoryIteratorException exc) {
-                throw new IOException( exc.getMessage() );
-            }
-            
-            Files.deleteIfExists( OLD_PATH );
+            DIR_STORE.moveTo( Path.of( newPath ) );
         }
     }
     
     private final Map<Id, NoteProxy> notesIndexed;
-    private final String path;
+    private final Map<String, FileStamp> fileStamps;
+    private final Set<NoteProxy> dirtyNotes;
+    private final List<Consumer<List<NotebookChange>>> changeListeners;
+    private final NotebookIndex index;
+    private final NoteHeaderLoader headerLoader;
+    private final NoteBodyCache bodyCache;
+    private volatile NoteFileWriter.Durability durability;
+    private volatile long compressThreshold;
+    private final TitleIndex titleIndex;
+    private final TagIndex tagIndex;
+    private final DateIndex creationIndex;
+    private final DateIndex modificationIndex;
+    private final LinkGraph linkGraph;
+    private final Set<Id> pendingRefs;
+    private final Object writeLock;
+    private Thread refsFinder;
+    private volatile NotebookSnapshot snapshot;
+    private volatile FullTextIndex searchIndex;
+    private final NoteStore store;
 }
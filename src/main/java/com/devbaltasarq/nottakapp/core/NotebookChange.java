@@ -0,0 +1,19 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+/** A change detected in the notes of a notebook.
+  * @param kind whether the note was created, modified or deleted.
+  * @param id the id of the note affected.
+  * @param path the path to the file of the note.
+  * @author baltasarq
+  */
+public record NotebookChange(Kind kind, Id id, String path) {
+    public enum Kind {
+        CREATED,
+        MODIFIED,
+        DELETED
+    }
+}
@@ -0,0 +1,430 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+
+/** A compact, binary index of the headers of all notes in a notebook.
+  * It lives in the notes directory, as a hidden file, so the notebook
+  * can be restored without opening every note.
+  * The format is: magic, version and number of entries, followed by
+  * the entries. Each entry holds the id, the last modification time and
+  * size of the file, the title, the tags, both dates, and the files
+  * referenced by the note, if known.
+  * After the entries, a log of changes can follow: each record is a kind,
+  * put or remove, and then the entry or the id. A few changes are appended
+  * to the log instead of rewriting the whole index, which is compacted
+  * when the log grows too long.
+  * @author baltasarq
+  */
+public final class NotebookIndex {
+    private static final Logger LOG = Logger.getLogger( NotebookIndex.class.getName() );
+    public static final String FILE_NAME = ".nottakapp.idx";
+    private static final int MAGIC = 0x4E54494B;
+    private static final int VERSION = 3;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final int MIN_LOG_RECORDS = 64;
+
+    /** The header of a note, as stored in the index.
+      * @param id the id of the note.
+      * @param stamp the stamp of the file when the header was read.
+      * @param title the title of the note.
+      * @param tags the tags of the note, as a comma-separated string.
+      * @param creation the creation date.
+      * @param modification the modification date.
+      * @param refs the files of the wiki references in the note,
+      *             or null if not known, since only the header was read.
+      */
+    public record Entry(
+                    Id id,
+                    FileStamp stamp,
+                    String title,
+                    String tags,
+                    Date creation,
+                    Date modification,
+                    List<String> refs)
+    {
+        /** Creates an entry without the references of the note. */
+        public Entry(
+                    Id id,
+                    FileStamp stamp,
+                    String title,
+                    String tags,
+                    Date creation,
+                    Date modification)
+        {
+            this( id, stamp, title, tags, creation, modification, null );
+        }
+
+        /** @return true if the references of the note are known. */
+        public boolean hasRefs()
+        {
+            return this.refs != null;
+        }
+    }
+
+    public NotebookIndex()
+    {
+        this.entries = new HashMap<>();
+        this.changes = new LinkedHashMap<>();
+        this.numLogRecords = 0;
+        this.appendable = false;
+    }
+
+    /** @return the entry for the given note, or null if not indexed.
+      * @param id the id of the note.
+      */
+    public Entry get(Id id)
+    {
+        return this.entries.get( id );
+    }
+
+    /** Indexes the header of a note.
+      * @param entry the header to store.
+      */
+    public void put(Entry entry)
+    {
+        if ( !entry.equals( this.entries.put( entry.id(), entry ) ) ) {
+            this.changes.put( entry.id(), entry );
+        }
+    }
+
+    /** Removes a note from the index.
+      * @param id the id of the note.
+      */
+    public void remove(Id id)
+    {
+        if ( this.entries.remove( id ) != null ) {
+            this.changes.put( id, null );
+        }
+    }
+
+    /** @return all the entries. */
+    public Collection<Entry> getAll()
+    {
+        return this.entries.values();
+    }
+
+    /** @return the number of notes indexed. */
+    public int count()
+    {
+        return this.entries.size();
+    }
+
+    /** @return true if it changed since loaded or saved, false otherwise. */
+    public boolean isDirty()
+    {
+        return !this.changes.isEmpty();
+    }
+
+    /** Forgets the changes, as if saved, for indexes kept only in memory. */
+    void markSaved()
+    {
+        this.changes.clear();
+    }
+
+    /** Writes the changes in the index in the given directory.
+      * When there are just a few changes, they are appended to the log
+      * in the existing file. Otherwise, the whole index is rewritten.
+      * @param dir the notes directory.
+      * @throws IOException if writing goes wrong.
+      */
+    public void save(Path dir) throws IOException
+    {
+        final int MAX_LOG_RECORDS = Math.max( MIN_LOG_RECORDS,
+                                              this.entries.size() / 4 );
+
+        if ( this.appendable
+          && this.numLogRecords + this.changes.size() <= MAX_LOG_RECORDS
+          && Files.exists( dir.resolve( FILE_NAME ) ) )
+        {
+            this.appendChanges( dir );
+        } else {
+            this.rewrite( dir );
+        }
+
+        this.changes.clear();
+    }
+
+    /** Appends the changes to the log at the end of the index file.
+      * @param dir the notes directory.
+      * @throws IOException if writing goes wrong.
+      */
+    private void appendChanges(Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( FILE_NAME );
+
+        try (final var OUT = new DataOutputStream(
+                                new BufferedOutputStream(
+                                    Files.newOutputStream(
+                                            PATH,
+                                            StandardOpenOption.WRITE,
+                                            StandardOpenOption.APPEND ),
+                                    1 << 12 ) ))
+        {
+            for(Map.Entry<Id, Entry> change: this.changes.entrySet()) {
+                final Entry ENTRY = change.getValue();
+
+                if ( ENTRY != null ) {
+                    OUT.writeByte( RECORD_PUT );
+                    writeEntry( OUT, ENTRY );
+                } else {
+                    OUT.writeByte( RECORD_REMOVE );
+                    writeId( OUT, change.getKey() );
+                }
+
+                ++this.numLogRecords;
+            }
+        }
+    }
+
+    /** Writes the whole index, with an empty log.
+      * A temporary file is written and then moved into place,
+      * so a crash never leaves a truncated index behind.
+      * @param dir the notes directory.
+      * @throws IOException if writing goes wrong.
+      */
+    private void rewrite(Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( FILE_NAME );
+        final Path TEMP_PATH = dir.resolve( FILE_NAME + ".tmp" );
+
+        try (final var OUT = new DataOutputStream(
+                                new BufferedOutputStream(
+                                    Files.newOutputStream( TEMP_PATH ),
+                                    1 << 16 ) ))
+        {
+            OUT.writeInt( MAGIC );
+            OUT.writeInt( VERSION );
+            OUT.writeInt( this.entries.size() );
+
+            for(Entry entry: this.entries.values()) {
+                writeEntry( OUT, entry );
+            }
+        }
+
+        Files.move( TEMP_PATH, PATH,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+        this.numLogRecords = 0;
+        this.appendable = true;
+    }
+
+    /** Reads the index from the given directory.
+      * The file is read into memory, and decoded in a single pass.
+      * It is not mapped, so it can be replaced while the notebook is open.
+      * A truncated record at the end of the log, left by a crash,
+      * is ignored, and the index is rewritten when next saved.
+      * @param dir the notes directory.
+      * @return the index read, or an empty index if missing or corrupted.
+      */
+    public static NotebookIndex loadFrom(Path dir)
+    {
+        final var TORET = new NotebookIndex();
+        final Path PATH = dir.resolve( FILE_NAME );
+
+        try {
+            final ByteBuffer BUFFER = ByteBuffer.wrap( Files.readAllBytes( PATH ) );
+
+            if ( BUFFER.getInt() != MAGIC
+              || BUFFER.getInt() != VERSION )
+            {
+                throw new IOException( "unknown index format" );
+            }
+
+            final int COUNT = BUFFER.getInt();
+
+            for(int i = 0; i < COUNT; ++i) {
+                final Entry ENTRY = readEntry( BUFFER );
+
+                TORET.entries.put( ENTRY.id(), ENTRY );
+            }
+
+            TORET.appendable = TORET.readLog( BUFFER );
+        } catch(NoSuchFileException exc) {
+            // No index yet
+        } catch(IOException | BufferUnderflowException | IllegalArgumentException exc)
+        {
+            LOG.warning( "discarding corrupted index: " + exc.getMessage() );
+            TORET.entries.clear();
+            TORET.numLogRecords = 0;
+        }
+
+        return TORET;
+    }
+
+    /** Replays the log of changes after the entries.
+      * @param buffer the buffer positioned at the start of the log.
+      * @return true if the log was complete, false if truncated.
+      */
+    private boolean readLog(ByteBuffer buffer)
+    {
+        boolean toret = true;
+
+        while( toret
+            && buffer.hasRemaining() )
+        {
+            final int START = buffer.position();
+
+            try {
+                final byte KIND = buffer.get();
+
+                if ( KIND == RECORD_PUT ) {
+                    final Entry ENTRY = readEntry( buffer );
+
+                    this.entries.put( ENTRY.id(), ENTRY );
+                }
+                else
+                if ( KIND == RECORD_REMOVE ) {
+                    this.entries.remove( readId( buffer ) );
+                } else {
+                    throw new IllegalArgumentException( "bad record kind" );
+                }
+
+                ++this.numLogRecords;
+            } catch(BufferUnderflowException | IllegalArgumentException exc) {
+                LOG.warning( "ignoring truncated index log at: " + START );
+                toret = false;
+            }
+        }
+
+        return toret;
+    }
+
+    private static void writeId(DataOutputStream out, Id id) throws IOException
+    {
+        final UUID ID = id.get();
+
+        out.writeLong( ID.getMostSignificantBits() );
+        out.writeLong( ID.getLeastSignificantBits() );
+    }
+
+    private static Id readId(ByteBuffer buffer)
+    {
+        return new Id( new UUID( buffer.getLong(), buffer.getLong() ) );
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry)
+            throws IOException
+    {
+        writeId( out, entry.id() );
+        out.writeLong( entry.stamp().lastModified() );
+        out.writeLong( entry.stamp().size() );
+        writeString( out, entry.title() );
+        writeString( out, entry.tags() );
+        out.writeInt( packDate( entry.creation() ) );
+        out.writeInt( packDate( entry.modification() ) );
+
+        if ( entry.hasRefs() ) {
+            out.writeInt( entry.refs().size() );
+
+            for(String href: entry.refs()) {
+                writeString( out, href );
+            }
+        } else {
+            out.writeInt( -1 );
+        }
+    }
+
+    private static Entry readEntry(ByteBuffer buffer)
+    {
+        final Id ID = readId( buffer );
+        final var STAMP = new FileStamp( buffer.getLong(), buffer.getLong() );
+        final String TITLE = readString( buffer );
+        final String TAGS = readString( buffer );
+        final Date CREATION = unpackDate( buffer.getInt() );
+        final Date MODIFICATION = unpackDate( buffer.getInt() );
+        final int NUM_REFS = buffer.getInt();
+        List<String> refs = null;
+
+        if ( NUM_REFS >= 0 ) {
+            if ( NUM_REFS > buffer.remaining() / Integer.BYTES ) {
+                throw new IllegalArgumentException( "bad number of references" );
+            }
+
+            refs = new ArrayList<>( NUM_REFS );
+
+            for(int i = 0; i < NUM_REFS; ++i) {
+                refs.add( readString( buffer ) );
+            }
+        }
+
+        return new Entry( ID, STAMP, TITLE, TAGS, CREATION, MODIFICATION, refs );
+    }
+
+    private static void writeString(DataOutputStream out, String str)
+            throws IOException
+    {
+        final byte[] BYTES = str.getBytes( StandardCharsets.UTF_8 );
+
+        out.writeInt( BYTES.length );
+        out.write( BYTES );
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        final int LENGTH = buffer.getInt();
+
+        if ( LENGTH < 0
+          || LENGTH > buffer.remaining() )
+        {
+            throw new IllegalArgumentException( "bad string length" );
+        }
+
+        final String TORET;
+
+        if ( buffer.hasArray() ) {
+            TORET = new String( buffer.array(),
+                                buffer.arrayOffset() + buffer.position(),
+                                LENGTH,
+                                StandardCharsets.UTF_8 );
+            buffer.position( buffer.position() + LENGTH );
+        } else {
+            final byte[] BYTES = new byte[ LENGTH ];
+
+            buffer.get( BYTES );
+            TORET = new String( BYTES, StandardCharsets.UTF_8 );
+        }
+
+        return TORET;
+    }
+
+    private static int packDate(Date date)
+    {
+        return ( date.getYear() * 10000 )
+                + ( date.getMonth() * 100 )
+                + date.getDay();
+    }
+
+    private static Date unpackDate(int packed)
+    {
+        return new Date( packed / 10000, ( packed / 100 ) % 100, packed % 100 );
+    }
+
+    private final Map<Id, Entry> entries;
+    private final Map<Id, Entry> changes;
+    private int numLogRecords;
+    private boolean appendable;
+}
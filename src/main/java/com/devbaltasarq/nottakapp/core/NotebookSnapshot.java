@@ -0,0 +1,78 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/** An immutable view of the notes in a notebook, at a given moment.
+  * The notebook builds a new snapshot each time notes are added
+  * or removed, and hands out the latest one, so getting it costs
+  * nothing, and reading it never blocks, nor reads from disk.
+  * The version tells snapshots apart: it grows with each change
+  * in the set of notes. The notes themselves are the proxies
+  * of the notebook, so their titles and contents are always current.
+  * @author baltasarq
+  */
+public final class NotebookSnapshot {
+    /** The snapshot of a notebook without notes. */
+    static final NotebookSnapshot EMPTY = new NotebookSnapshot( 0, Map.of() );
+
+    /** Creates a new snapshot.
+      * @param version the version of the set of notes.
+      * @param notes the notes, by id, which are copied.
+      */
+    NotebookSnapshot(long version, Map<Id, NoteProxy> notes)
+    {
+        this.version = version;
+        this.notes = Map.copyOf( notes );
+        this.allNotes = List.copyOf( this.notes.values() );
+    }
+
+    /** @return the version of the set of notes, greater for newer ones. */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /** Gets the corresponding proxy for the id.
+      * @param id the id for the note.
+      * @return the note for the given id, or null.
+      */
+    public NoteProxy lookUp(Id id)
+    {
+        return this.notes.get( id );
+    }
+
+    /** @return an unmodifiable list with all the notes, in no given order. */
+    public List<NoteProxy> getNotes()
+    {
+        return this.allNotes;
+    }
+
+    /** @return an unmodifiable set with the ids of all notes. */
+    public Set<Id> getIds()
+    {
+        return this.notes.keySet();
+    }
+
+    /** @return the number of notes. */
+    public int count()
+    {
+        return this.allNotes.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "snapshot #%d with %d notes", this.version, this.count() );
+    }
+
+    private final long version;
+    private final Map<Id, NoteProxy> notes;
+    private final List<NoteProxy> allNotes;
+}
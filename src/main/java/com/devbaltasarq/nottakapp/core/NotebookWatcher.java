@@ -0,0 +1,271 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+
+/** Watches the notes directory, and feeds the notebook with the changes.
+  * Events are coalesced into batches: a batch is delivered when the
+  * directory has been quiet for a while, or when the batch is too old.
+  * When too many events pile up, or the watch service overflows,
+  * a single full scan replaces the pending events.
+  * Whenever the watch service is not available or not reliable,
+  * the directory is polled at regular intervals instead.
+  * @author baltasarq
+  */
+public final class NotebookWatcher implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger( NotebookWatcher.class.getName() );
+    public static final String MODE_POLL = "poll";
+    public static final long QUIET_PERIOD_MILLIS = 300;
+    public static final long MAX_BATCH_DELAY_MILLIS = 2000;
+    public static final long POLL_INTERVAL_MILLIS = 5000;
+    public static final int MAX_PENDING_EVENTS = 4096;
+
+    /** Creates a new watcher.
+      * @param notebook the notebook to feed with changes.
+      * @param applier the executor in which the notebook is updated,
+      *                and therefore, in which listeners are called.
+      * @param forcePolling whether to poll even if watching is available.
+      */
+    public NotebookWatcher(Notebook notebook, Executor applier, boolean forcePolling)
+    {
+        this.notebook = notebook;
+        this.applier = applier;
+        this.forcePolling = forcePolling;
+        this.pending = new LinkedHashSet<>();
+        this.fullScanPending = false;
+        this.watchService = null;
+        this.thread = null;
+        this.running = false;
+    }
+
+    /** Starts watching in a background thread. */
+    public synchronized void start()
+    {
+        if ( !this.running ) {
+            this.running = true;
+            this.thread = new Thread( () -> this.run(), "notebook-watcher" );
+            this.thread.setDaemon( true );
+            this.thread.start();
+        }
+    }
+
+    /** Stops watching. Pending events are discarded. */
+    @Override
+    public synchronized void close()
+    {
+        this.running = false;
+
+        if ( this.watchService != null ) {
+            try {
+                this.watchService.close();
+            } catch(IOException exc) {
+                LOG.warning( "closing watch service: " + exc.getMessage() );
+            }
+        }
+
+        if ( this.thread != null ) {
+            this.thread.interrupt();
+            this.thread = null;
+        }
+    }
+
+    /** @return true if the directory is being polled instead of watched. */
+    public boolean isPolling()
+    {
+        return ( this.watchService == null );
+    }
+
+    private void run()
+    {
+        final Path DIR = Path.of( this.notebook.getPath() );
+
+        if ( !this.forcePolling ) {
+            try {
+                final WatchService WATCH_SERVICE =
+                                FileSystems.getDefault().newWatchService();
+
+                register( WATCH_SERVICE, DIR );
+
+                try (var stream = Files.newDirectoryStream( DIR )) {
+                    for(Path file: stream) {
+                        if ( isShard( file ) ) {
+                            register( WATCH_SERVICE, file );
+                        }
+                    }
+                }
+
+                synchronized( this ) {
+                    this.watchService = WATCH_SERVICE;
+                }
+            } catch(IOException | UnsupportedOperationException exc) {
+                LOG.warning( "unable to watch notes dir, polling instead: "
+                                + exc.getMessage() );
+            }
+        }
+
+        try {
+            if ( this.isPolling() ) {
+                this.poll();
+            } else {
+                this.watch();
+            }
+        } catch(InterruptedException | ClosedWatchServiceException exc) {
+            // Closed
+        }
+    }
+
+    /** Watches a single directory: watch services are not recursive.
+      * @param watchService the watch service.
+      * @param dir the directory to watch.
+      * @throws IOException if the directory cannot be watched.
+      */
+    private static void register(WatchService watchService, Path dir)
+            throws IOException
+    {
+        dir.register( watchService,
+                      StandardWatchEventKinds.ENTRY_CREATE,
+                      StandardWatchEventKinds.ENTRY_MODIFY,
+                      StandardWatchEventKinds.ENTRY_DELETE );
+    }
+
+    /** @return true if the path is a shard of the notes directory.
+      * @param path the path to check.
+      */
+    private static boolean isShard(Path path)
+    {
+        return ( NotesLayout.isShardName( path.getFileName().toString() )
+              && Files.isDirectory( path ) );
+    }
+
+    /** Polls the directory at regular intervals.
+      * The notebook only re-reads the files whose stamps changed.
+      * @throws InterruptedException when closed.
+      */
+    private void poll() throws InterruptedException
+    {
+        while( this.running ) {
+            Thread.sleep( POLL_INTERVAL_MILLIS );
+            this.applier.execute( () -> this.notebook.update() );
+        }
+    }
+
+    /** Waits for events from the watch service, delivering them in batches.
+      * @throws InterruptedException when closed.
+      */
+    private void watch() throws InterruptedException
+    {
+        while( this.running ) {
+            // Wait for the first event in the batch
+            WatchKey key = this.watchService.take();
+            final long BATCH_START = System.currentTimeMillis();
+
+            // Coalesce until quiet, or until the batch is too old
+            while( key != null ) {
+                this.collect( (Path) key.watchable(), key );
+
+                if ( System.currentTimeMillis() - BATCH_START
+                                                    > MAX_BATCH_DELAY_MILLIS )
+                {
+                    break;
+                }
+
+                key = this.watchService.poll(
+                                        QUIET_PERIOD_MILLIS,
+                                        TimeUnit.MILLISECONDS );
+            }
+
+            this.deliver();
+        }
+    }
+
+    /** Picks the events in the key, discarding non-note files.
+      * New shards are watched as well; since notes could have been
+      * created in them before being watched, a full scan follows.
+      * @param dir the directory, or shard, signaled.
+      * @param key the key signaled by the watch service.
+      */
+    private void collect(Path dir, WatchKey key)
+    {
+        for(WatchEvent<?> evt: key.pollEvents()) {
+            if ( evt.kind() == StandardWatchEventKinds.OVERFLOW ) {
+                this.fullScanPending = true;
+            }
+            else
+            if ( evt.kind() == StandardWatchEventKinds.ENTRY_CREATE
+              && evt.context() instanceof Path fileName
+              && isShard( dir.resolve( fileName ) ) )
+            {
+                try {
+                    register( this.watchService, dir.resolve( fileName ) );
+                } catch(IOException exc) {
+                    LOG.warning( "unable to watch shard: " + exc.getMessage() );
+                }
+
+                this.fullScanPending = true;
+            }
+            else
+            if ( !this.fullScanPending
+              && evt.context() instanceof Path fileName
+              && fileName.toString().endsWith( NoteProxy.FILE_EXT ) )
+            {
+                this.pending.add( dir.resolve( fileName ).toString() );
+
+                if ( this.pending.size() > MAX_PENDING_EVENTS ) {
+                    this.fullScanPending = true;
+                }
+            }
+        }
+
+        if ( this.fullScanPending ) {
+            this.pending.clear();
+        }
+
+        if ( !key.reset() ) {
+            LOG.warning( "notes dir no longer accessible" );
+        }
+    }
+
+    /** Hands the current batch over to the notebook. */
+    private void deliver()
+    {
+        if ( this.fullScanPending ) {
+            this.applier.execute( () -> this.notebook.update() );
+        }
+        else
+        if ( !this.pending.isEmpty() ) {
+            final List<String> BATCH = List.copyOf( this.pending );
+
+            this.applier.execute( () -> this.notebook.update( BATCH ) );
+        }
+
+        this.pending.clear();
+        this.fullScanPending = false;
+    }
+
+    private final Notebook notebook;
+    private final Executor applier;
+    private final boolean forcePolling;
+    private final Set<String> pending;
+    private boolean fullScanPending;
+    private volatile boolean running;
+    private volatile WatchService watchService;
+    private Thread thread;
+}
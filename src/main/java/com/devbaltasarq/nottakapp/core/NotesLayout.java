@@ -0,0 +1,82 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+
+/** How the note files are laid out inside the notes directory.
+  * With hundreds of thousands of notes, a single flat directory becomes
+  * slow to list and to sync, so notes can be spread among subdirectories
+  * named after the first characters of their ids: "ab/ab12...ef.md".
+  * Since ids are random, the notes are evenly distributed.
+  * @author baltasarq
+  */
+public enum NotesLayout {
+    /** All notes in the notes directory itself. */
+    FLAT,
+    /** Notes in subdirectories, after the first two characters of their ids. */
+    SHARDED;
+
+    private static final Logger LOG = Logger.getLogger( NotesLayout.class.getName() );
+    public static final NotesLayout DEFAULT = FLAT;
+    public static final int SHARD_NAME_LENGTH = 2;
+
+    /** Determines the path for a note.
+      * @param dir the notes directory.
+      * @param id the id of the note.
+      * @return the path to the file of the note, following this layout.
+      */
+    public Path pathFor(Path dir, Id id)
+    {
+        final String ID = id.toString();
+        Path toret = dir;
+
+        if ( this == SHARDED ) {
+            toret = toret.resolve( ID.substring( 0, SHARD_NAME_LENGTH ) );
+        }
+
+        return toret.resolve( ID + NoteProxy.FILE_EXT );
+    }
+
+    /** Determines whether the directory can hold notes in a sharded layout.
+      * @param name the name of the directory.
+      * @return true if named after the first characters of an id.
+      */
+    public static boolean isShardName(String name)
+    {
+        boolean toret = ( name.length() == SHARD_NAME_LENGTH );
+
+        for(int i = 0; toret && i < name.length(); ++i) {
+            toret = ( Character.digit( name.charAt( i ), 16 ) >= 0
+                   && !Character.isUpperCase( name.charAt( i ) ) );
+        }
+
+        return toret;
+    }
+
+    /** Parses the layout, as in the config file.
+      * @param value the name of the layout, case insensitive; can be null.
+      * @return the layout, or null if missing or not valid.
+      */
+    public static NotesLayout parse(String value)
+    {
+        NotesLayout toret = null;
+
+        if ( value != null
+          && !value.isBlank() )
+        {
+            try {
+                toret = valueOf( value.trim().toUpperCase( Locale.ROOT ) );
+            } catch(IllegalArgumentException exc) {
+                LOG.warning( "unknown notes layout: " + value );
+            }
+        }
+
+        return toret;
+    }
+}
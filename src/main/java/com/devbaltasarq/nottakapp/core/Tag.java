@@ -37,7 +37,7 @@ public class Tag {
         if ( !strTag.isEmpty() ) {
             strTag = strTag.substring( 0, 1 ).toUpperCase()
                        + strTag.substring( 1 );
-            strTag = strTag.replaceAll( ",", "" );
+            strTag = strTag.replace( ",", "" );
         }
         
         return strTag;
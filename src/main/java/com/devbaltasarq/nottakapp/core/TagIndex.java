@@ -0,0 +1,229 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/** Finds notes by their tags, combining them with AND, OR and NOT.
+  * Each note is given a small number, its ordinal, and each tag
+  * keeps the ordinals of its notes in a compressed bitmap,
+  * so boolean queries are just operations among bitmaps.
+  * Ordinals of notes removed are reused, so bitmaps stay dense.
+  * The index is kept up to date by the notebook, note by note.
+  * @author baltasarq
+  */
+public final class TagIndex {
+    /** The notes of tags nobody uses; never modified. */
+    private static final CompressedBitmap EMPTY = new CompressedBitmap();
+
+    public TagIndex()
+    {
+        this.postings = new HashMap<>();
+        this.tagsOf = new HashMap<>();
+        this.ordinals = new HashMap<>();
+        this.ids = new ArrayList<>();
+        this.freeOrdinals = new ArrayDeque<>();
+        this.allNotes = new CompressedBitmap();
+    }
+
+    /** Records the tags of a note, replacing the previous ones.
+      * @param id the id of the note.
+      * @param tags the current tags of the note.
+      */
+    public synchronized void put(Id id, Collection<Tag> tags)
+    {
+        final Set<Tag> NEW_TAGS = new HashSet<>( tags );
+        final Set<Tag> OLD_TAGS = this.tagsOf.put( id, NEW_TAGS );
+
+        if ( !NEW_TAGS.equals( OLD_TAGS ) ) {
+            final int ORDINAL = this.ordinalFor( id );
+
+            if ( OLD_TAGS != null ) {
+                for(Tag tag: OLD_TAGS) {
+                    if ( !NEW_TAGS.contains( tag ) ) {
+                        this.removeFromPosting( tag, ORDINAL );
+                    }
+                }
+            }
+
+            for(Tag tag: NEW_TAGS) {
+                if ( OLD_TAGS == null
+                  || !OLD_TAGS.contains( tag ) )
+                {
+                    this.postings.computeIfAbsent(
+                                        tag,
+                                        (key) -> new CompressedBitmap() ).add( ORDINAL );
+                }
+            }
+        }
+    }
+
+    /** Forgets about a note.
+      * @param id the id of the note.
+      */
+    public synchronized void remove(Id id)
+    {
+        final Set<Tag> OLD_TAGS = this.tagsOf.remove( id );
+        final Integer ORDINAL = this.ordinals.remove( id );
+
+        if ( ORDINAL != null ) {
+            for(Tag tag: OLD_TAGS) {
+                this.removeFromPosting( tag, ORDINAL );
+            }
+
+            this.allNotes.remove( ORDINAL );
+            this.ids.set( ORDINAL, null );
+            this.freeOrdinals.add( ORDINAL );
+        }
+    }
+
+    private int ordinalFor(Id id)
+    {
+        Integer toret = this.ordinals.get( id );
+
+        if ( toret == null ) {
+            toret = this.freeOrdinals.poll();
+
+            if ( toret == null ) {
+                toret = this.ids.size();
+                this.ids.add( id );
+            } else {
+                this.ids.set( toret, id );
+            }
+
+            this.ordinals.put( id, toret );
+            this.allNotes.add( toret );
+        }
+
+        return toret;
+    }
+
+    private void removeFromPosting(Tag tag, int ordinal)
+    {
+        final CompressedBitmap NOTES = this.postings.get( tag );
+
+        if ( NOTES != null ) {
+            NOTES.remove( ordinal );
+
+            if ( NOTES.isEmpty() ) {
+                this.postings.remove( tag );
+            }
+        }
+    }
+
+    /** @return the number of notes in the index. */
+    public synchronized int count()
+    {
+        return this.ordinals.size();
+    }
+
+    /** @return the number of notes with the given tag. */
+    public synchronized int count(Tag tag)
+    {
+        final CompressedBitmap NOTES = this.postings.get( tag );
+
+        return ( NOTES != null ) ? NOTES.cardinality() : 0;
+    }
+
+    /** @return the number of notes for each tag, sorted by tag. */
+    public synchronized Map<Tag, Integer> getCounts()
+    {
+        final var TORET = new TreeMap<Tag, Integer>( Comparator.comparing( Tag::get ) );
+
+        for(Map.Entry<Tag, CompressedBitmap> entry: this.postings.entrySet()) {
+            TORET.put( entry.getKey(), entry.getValue().cardinality() );
+        }
+
+        return TORET;
+    }
+
+    /** Finds the notes matching a boolean query on tags.
+      * An empty list of tags is not taken into account,
+      * so no tags at all match all notes.
+      * @param allOf the tags the notes must have, all of them.
+      * @param anyOf the tags the notes must have, at least one of them.
+      * @param noneOf the tags the notes must not have, none of them.
+      * @return the ids of the notes found, maybe empty.
+      */
+    public synchronized List<Id> find(
+                                Collection<Tag> allOf,
+                                Collection<Tag> anyOf,
+                                Collection<Tag> noneOf)
+    {
+        final CompressedBitmap FOUND = this.match( allOf, anyOf, noneOf );
+        final var TORET = new ArrayList<Id>( FOUND.cardinality() );
+
+        FOUND.forEach( (ordinal) -> TORET.add( this.ids.get( ordinal ) ) );
+        return TORET;
+    }
+
+    /** Counts the notes matching a boolean query on tags,
+      * without building the list of them.
+      * @return the number of notes found.
+      * @see TagIndex#find
+      */
+    public synchronized int count(
+                                Collection<Tag> allOf,
+                                Collection<Tag> anyOf,
+                                Collection<Tag> noneOf)
+    {
+        return this.match( allOf, anyOf, noneOf ).cardinality();
+    }
+
+    private CompressedBitmap match(
+                                Collection<Tag> allOf,
+                                Collection<Tag> anyOf,
+                                Collection<Tag> noneOf)
+    {
+        CompressedBitmap toret = null;
+
+        for(Tag tag: allOf) {
+            toret = ( toret == null ) ? this.postingOf( tag )
+                                      : toret.and( this.postingOf( tag ) );
+        }
+
+        if ( !anyOf.isEmpty() ) {
+            CompressedBitmap any = EMPTY;
+
+            for(Tag tag: anyOf) {
+                any = any.or( this.postingOf( tag ) );
+            }
+
+            toret = ( toret == null ) ? any : toret.and( any );
+        }
+
+        if ( toret == null ) {
+            toret = this.allNotes;
+        }
+
+        for(Tag tag: noneOf) {
+            toret = toret.andNot( this.postingOf( tag ) );
+        }
+
+        return toret;
+    }
+
+    private CompressedBitmap postingOf(Tag tag)
+    {
+        return this.postings.getOrDefault( tag, EMPTY );
+    }
+
+    private final Map<Tag, CompressedBitmap> postings;
+    private final Map<Id, Set<Tag>> tagsOf;
+    private final Map<Id, Integer> ordinals;
+    private final List<Id> ids;
+    private final ArrayDeque<Integer> freeOrdinals;
+    private final CompressedBitmap allNotes;
+}
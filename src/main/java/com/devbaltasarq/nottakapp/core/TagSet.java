@@ -32,7 +32,7 @@ public class TagSet {
     public void add(Tag tag)
     {
         this.tags.add( tag );
-        this.dirty = true;
+        this.markDirty();
     }
     
     /** Adds all tags from another TagSet.
@@ -87,7 +87,7 @@ public class TagSet {
     public void clear()
     {
         this.tags.clear();
-        this.dirty = true;
+        this.markDirty();
     }
     
     /** @return whether it has changed or not. */
@@ -103,6 +103,31 @@ public class TagSet {
         this.dirty = false;
     }
     
+    /** Sets the action to run each time the set is modified.
+      * @param onDirty the action to run, or null for none.
+      */
+    void setOnDirty(Runnable onDirty)
+    {
+        this.onDirty = onDirty;
+    }
+    
+    /** Marks the set as modified. */
+    private void markDirty()
+    {
+        this.dirty = true;
+        ++this.version;
+        
+        if ( this.onDirty != null ) {
+            this.onDirty.run();
+        }
+    }
+    
+    /** @return a number that changes each time the set is modified. */
+    public long getVersion()
+    {
+        return this.version;
+    }
+    
     /** @return the number of tags. */
     public int count()
     {
@@ -126,5 +151,7 @@ public class TagSet {
     }
     
     private boolean dirty;
+    private long version;
+    private Runnable onDirty;
     private final Set<Tag> tags;
 }
@@ -0,0 +1,161 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+
+/** Finds notes by their titles, in logarithmic time.
+  * Titles are kept in a sorted map, case-folded, so case-insensitive
+  * and prefix lookups are just ranges of keys; the original titles are
+  * kept as well, for exact lookups. Notes with the same title share a key.
+  * The index is kept up to date by the notebook, note by note.
+  * @author baltasarq
+  */
+public final class TitleIndex {
+    /** The greatest char, to close ranges of prefixes. */
+    private static final char MAX_CHAR = Character.MAX_VALUE;
+
+    public TitleIndex()
+    {
+        this.byFoldedTitle = new TreeMap<>();
+        this.titles = new HashMap<>();
+    }
+
+    /** Records the title of a note, replacing the previous one.
+      * @param id the id of the note.
+      * @param title the current title of the note.
+      */
+    public synchronized void put(Id id, String title)
+    {
+        final String OLD_TITLE = this.titles.put( id, title );
+
+        if ( !title.equals( OLD_TITLE ) ) {
+            if ( OLD_TITLE != null ) {
+                this.removeFromKey( fold( OLD_TITLE ), id );
+            }
+
+            this.byFoldedTitle.computeIfAbsent(
+                                    fold( title ),
+                                    (key) -> new LinkedHashSet<>() ).add( id );
+        }
+    }
+
+    /** Forgets about a note.
+      * @param id the id of the note.
+      */
+    public synchronized void remove(Id id)
+    {
+        final String OLD_TITLE = this.titles.remove( id );
+
+        if ( OLD_TITLE != null ) {
+            this.removeFromKey( fold( OLD_TITLE ), id );
+        }
+    }
+
+    private void removeFromKey(String key, Id id)
+    {
+        final Set<Id> IDS = this.byFoldedTitle.get( key );
+
+        if ( IDS != null ) {
+            IDS.remove( id );
+
+            if ( IDS.isEmpty() ) {
+                this.byFoldedTitle.remove( key );
+            }
+        }
+    }
+
+    /** @return the title recorded for the note, or null if none. */
+    public synchronized String getTitle(Id id)
+    {
+        return this.titles.get( id );
+    }
+
+    /** @return the number of notes in the index. */
+    public synchronized int count()
+    {
+        return this.titles.size();
+    }
+
+    /** Finds the notes with exactly the given title.
+      * @param title the title to look for, with the same case.
+      * @return the ids of the notes found, maybe empty.
+      */
+    public synchronized List<Id> find(String title)
+    {
+        final var TORET = new ArrayList<Id>();
+
+        for(Id id: this.byFoldedTitle.getOrDefault( fold( title ), Set.of() )) {
+            if ( this.titles.get( id ).strip().equals( title.strip() ) ) {
+                TORET.add( id );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Finds the notes with the given title, whatever its case.
+      * @param title the title to look for.
+      * @return the ids of the notes found, maybe empty.
+      */
+    public synchronized List<Id> findIgnoringCase(String title)
+    {
+        return new ArrayList<>( this.byFoldedTitle.getOrDefault( fold( title ), Set.of() ) );
+    }
+
+    /** Finds the notes whose titles start with the given prefix,
+      * whatever its case, sorted by title.
+      * @param prefix the start of the titles.
+      * @param maxResults the maximum number of ids returned.
+      * @return the ids of the notes found, maybe empty.
+      */
+    public synchronized List<Id> findByPrefix(String prefix, int maxResults)
+    {
+        final String FROM = fold( prefix );
+        final SortedMap<String, Set<Id>> RANGE =
+                                this.byFoldedTitle.subMap( FROM, FROM + MAX_CHAR );
+        final Iterator<Set<Id>> IT_IDS = RANGE.values().iterator();
+        final var TORET = new ArrayList<Id>();
+
+        while( TORET.size() < maxResults
+            && IT_IDS.hasNext() )
+        {
+            final Iterator<Id> IT_ID = IT_IDS.next().iterator();
+
+            while( TORET.size() < maxResults
+                && IT_ID.hasNext() )
+            {
+                TORET.add( IT_ID.next() );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Folds the case of a title, so it can be compared ignoring case.
+      * Surrounding spaces are ignored as well.
+      * @param title the title to fold.
+      * @return the folded title.
+      */
+    static String fold(String title)
+    {
+        return title.strip()
+                    .toUpperCase( Locale.ROOT )
+                    .toLowerCase( Locale.ROOT );
+    }
+
+    private final TreeMap<String, Set<Id>> byFoldedTitle;
+    private final Map<Id, String> titles;
+}
@@ -0,0 +1,531 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+
+/** Narrows the notes that may contain a piece of text, or match a pattern.
+  * Each note is given a small number, its ordinal, and each trigram
+  * (three consecutive characters, in lowercase) keeps the ordinals of the
+  * notes containing it in a compressed bitmap. Only notes with all the
+  * trigrams of the text looked for can contain it, so these are the
+  * candidates; they still have to be checked, since the trigrams
+  * can be in the note, though not together.
+  * Characters beyond the first 1024 of unicode share trigrams,
+  * which only means more candidates.
+  * @author baltasarq
+  */
+public final class TrigramIndex {
+    private static final int MAGIC = 0x4E545447;
+    private static final int VERSION = 1;
+    private static final int TRIGRAM_LENGTH = 3;
+    /** The notes of trigrams nobody has; never modified. */
+    private static final CompressedBitmap EMPTY = new CompressedBitmap();
+
+    public TrigramIndex()
+    {
+        this.postings = new HashMap<>();
+        this.ordinals = new HashMap<>();
+        this.ids = new ArrayList<>();
+        this.stamps = new ArrayList<>();
+        this.freeOrdinals = new ArrayDeque<>();
+        this.allNotes = new CompressedBitmap();
+    }
+
+    /** Records the text of a note, replacing the previous one.
+      * @param id the id of the note.
+      * @param stamp the time the note was changed.
+      * @param text the text of the note.
+      */
+    public void put(Id id, long stamp, String text)
+    {
+        final Set<Integer> TRIGRAMS = trigramsOf( text );
+
+        synchronized( this ) {
+            final boolean KNOWN = this.ordinals.containsKey( id );
+            final int ORDINAL = this.ordinalFor( id );
+
+            if ( KNOWN ) {
+                this.removePostings( ORDINAL );
+            }
+
+            this.stamps.set( ORDINAL, stamp );
+
+            for(int trigram: TRIGRAMS) {
+                this.postings.computeIfAbsent(
+                                    trigram,
+                                    (key) -> new CompressedBitmap() ).add( ORDINAL );
+            }
+        }
+    }
+
+    /** Forgets about a note.
+      * @param id the id of the note.
+      */
+    public synchronized void remove(Id id)
+    {
+        final Integer ORDINAL = this.ordinals.remove( id );
+
+        if ( ORDINAL != null ) {
+            this.removePostings( ORDINAL );
+            this.allNotes.remove( ORDINAL );
+            this.ids.set( ORDINAL, null );
+            this.stamps.set( ORDINAL, FullTextIndex.NOT_INDEXED );
+            this.freeOrdinals.add( ORDINAL );
+        }
+    }
+
+    private int ordinalFor(Id id)
+    {
+        Integer toret = this.ordinals.get( id );
+
+        if ( toret == null ) {
+            toret = this.freeOrdinals.poll();
+
+            if ( toret == null ) {
+                toret = this.ids.size();
+                this.ids.add( id );
+                this.stamps.add( FullTextIndex.NOT_INDEXED );
+            } else {
+                this.ids.set( toret, id );
+            }
+
+            this.ordinals.put( id, toret );
+            this.allNotes.add( toret );
+        }
+
+        return toret;
+    }
+
+    /** Removes a note from all postings.
+      * Trigrams are not kept by note, since that would take as much
+      * memory as the postings themselves, so all postings are visited.
+      */
+    private void removePostings(int ordinal)
+    {
+        final Iterator<CompressedBitmap> IT_NOTES = this.postings.values().iterator();
+
+        while( IT_NOTES.hasNext() ) {
+            final CompressedBitmap NOTES = IT_NOTES.next();
+
+            NOTES.remove( ordinal );
+
+            if ( NOTES.isEmpty() ) {
+                IT_NOTES.remove();
+            }
+        }
+    }
+
+    /** @return the time the indexed version of the note was changed,
+      *         or FullTextIndex.NOT_INDEXED if the note is not in the index.
+      */
+    public synchronized long stampOf(Id id)
+    {
+        final Integer ORDINAL = this.ordinals.get( id );
+
+        return ( ORDINAL != null ) ? this.stamps.get( ORDINAL ) : FullTextIndex.NOT_INDEXED;
+    }
+
+    /** @return the ids of all notes in the index. */
+    public synchronized Set<Id> getIds()
+    {
+        return new HashSet<>( this.ordinals.keySet() );
+    }
+
+    /** @return the number of notes in the index. */
+    public synchronized int count()
+    {
+        return this.ordinals.size();
+    }
+
+    /** Finds the notes that may contain the given text, ignoring case.
+      * A text shorter than a trigram narrows nothing: all notes are found.
+      * @param fragment the text to look for.
+      * @return the ids of the candidate notes, maybe empty.
+      */
+    public synchronized List<Id> findCandidates(String fragment)
+    {
+        return this.idsOf( this.match( List.of( fragment ) ) );
+    }
+
+    /** Finds the notes that may match the given pattern.
+      * Only the literal text the pattern requires is taken into account,
+      * so patterns without it, or with alternatives, find all notes.
+      * @param pattern the regular expression to match.
+      * @return the ids of the candidate notes, maybe empty.
+      * @see TrigramIndex#requiredLiterals
+      */
+    public synchronized List<Id> findCandidates(Pattern pattern)
+    {
+        return this.idsOf( this.match( requiredLiterals( pattern ) ) );
+    }
+
+    private CompressedBitmap match(List<String> literals)
+    {
+        CompressedBitmap toret = this.allNotes;
+
+        for(String literal: literals) {
+            for(int trigram: trigramsOf( literal )) {
+                toret = toret.and( this.postings.getOrDefault( trigram, EMPTY ) );
+            }
+        }
+
+        return toret;
+    }
+
+    private List<Id> idsOf(CompressedBitmap notes)
+    {
+        final var TORET = new ArrayList<Id>( notes.cardinality() );
+
+        notes.forEach( (ordinal) -> TORET.add( this.ids.get( ordinal ) ) );
+        return TORET;
+    }
+
+    /** Finds the trigrams in a text.
+      * @param text the text to split.
+      * @return the trigrams, each one as a number, without repetitions.
+      */
+    static Set<Integer> trigramsOf(String text)
+    {
+        final var TORET = new HashSet<Integer>();
+        int trigram = 0;
+
+        for(int i = 0; i < text.length(); ++i) {
+            final int CH = Character.toLowerCase( text.charAt( i ) ) & 0x3FF;
+
+            trigram = ( ( trigram << 10 ) | CH ) & 0x3FFFFFFF;
+
+            if ( i >= TRIGRAM_LENGTH - 1 ) {
+                TORET.add( trigram );
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Finds the pieces of literal text any match of a pattern contains.
+      * Only text outside groups and classes is taken into account,
+      * and characters made optional by a quantifier are left out.
+      * Patterns with alternatives, quotes or comments give no text,
+      * since they could match without any of it.
+      * @param pattern the regular expression.
+      * @return the pieces of literal text, maybe none.
+      */
+    static List<String> requiredLiterals(Pattern pattern)
+    {
+        final String REGEX = pattern.pattern();
+        final var TORET = new ArrayList<String>();
+
+        if ( ( pattern.flags() & Pattern.LITERAL ) != 0 ) {
+            TORET.add( REGEX );
+        }
+        else
+        if ( ( pattern.flags() & Pattern.COMMENTS ) == 0 ) {
+            final var RUN = new StringBuilder();
+            boolean valid = true;
+            int depth = 0;
+            int i = 0;
+
+            while( valid
+                && i < REGEX.length() )
+            {
+                final char CH = REGEX.charAt( i );
+                final boolean IN_GROUP = ( depth > 0 );
+
+                if ( CH == '\\' ) {
+                    final char NEXT = ( i + 1 < REGEX.length() ) ? REGEX.charAt( i + 1 ) : '\\';
+
+                    if ( Character.isLetterOrDigit( NEXT ) ) {
+                        // Classes, anchors, back references or quotes
+                        valid = ( NEXT != 'Q' );
+                        endRun( TORET, RUN );
+                    }
+                    else
+                    if ( !IN_GROUP ) {
+                        RUN.append( NEXT );
+                    }
+
+                    i += 2;
+                }
+                else
+                if ( CH == '[' ) {
+                    endRun( TORET, RUN );
+                    i = skipClass( REGEX, i );
+                }
+                else
+                if ( CH == '(' ) {
+                    final int END_FLAGS = REGEX.indexOf( ':', i );
+
+                    // Comments turned on in the pattern itself, as in (?x)
+                    valid = !REGEX.startsWith( "(?", i )
+                         || REGEX.substring( i, END_FLAGS < 0 ? REGEX.length() : END_FLAGS )
+                                 .chars().noneMatch( (flag) -> flag == 'x' );
+                    endRun( TORET, RUN );
+                    ++depth;
+                    ++i;
+                }
+                else
+                if ( CH == ')' ) {
+                    depth = Math.max( 0, depth - 1 );
+                    ++i;
+                }
+                else
+                if ( CH == '|' ) {
+                    valid = IN_GROUP;
+                    ++i;
+                }
+                else
+                if ( CH == '?'
+                  || CH == '*'
+                  || CH == '{' )
+                {
+                    // The last character might not be there
+                    if ( !RUN.isEmpty() ) {
+                        RUN.setLength( RUN.length() - 1 );
+                    }
+
+                    endRun( TORET, RUN );
+                    i = ( CH == '{' ) ? Math.max( i + 1, REGEX.indexOf( '}', i ) + 1 ) : i + 1;
+                }
+                else
+                if ( CH == '+' ) {
+                    endRun( TORET, RUN );
+                    ++i;
+                }
+                else
+                if ( CH == '.'
+                  || CH == '^'
+                  || CH == '$' )
+                {
+                    endRun( TORET, RUN );
+                    ++i;
+                }
+                else {
+                    if ( !IN_GROUP ) {
+                        RUN.append( CH );
+                    }
+
+                    ++i;
+                }
+            }
+
+            endRun( TORET, RUN );
+
+            if ( !valid ) {
+                TORET.clear();
+            }
+        }
+
+        return TORET;
+    }
+
+    /** Keeps the literal text found so far, if long enough to narrow. */
+    private static void endRun(List<String> literals, StringBuilder run)
+    {
+        if ( run.length() >= TRIGRAM_LENGTH ) {
+            literals.add( run.toString() );
+        }
+
+        run.setLength( 0 );
+    }
+
+    /** @return the position after the class starting at the given one. */
+    private static int skipClass(String regex, int start)
+    {
+        int toret = start + 1;
+
+        // A ']' just after the opening, or its negation, is part of the class
+        if ( toret < regex.length()
+          && regex.charAt( toret ) == '^' )
+        {
+            ++toret;
+        }
+
+        if ( toret < regex.length()
+          && regex.charAt( toret ) == ']' )
+        {
+            ++toret;
+        }
+
+        while( toret < regex.length()
+            && regex.charAt( toret ) != ']' )
+        {
+            toret += ( regex.charAt( toret ) == '\\' ) ? 2 : 1;
+        }
+
+        return toret + 1;
+    }
+
+    /** Writes the index to a temporary file, then moves it in place.
+      * @param path the file for the index.
+      * @throws IOException if the file cannot be written.
+      */
+    public synchronized void save(Path path) throws IOException
+    {
+        final var BYTES = new ByteArrayOutputStream();
+        final var OUT = new DataOutputStream( BYTES );
+        final var CRC = new CRC32C();
+
+        OUT.writeInt( MAGIC );
+        OUT.writeInt( VERSION );
+        OUT.writeInt( this.ids.size() );
+
+        for(int i = 0; i < this.ids.size(); ++i) {
+            final Id ID = this.ids.get( i );
+            final UUID BITS = ( ID != null ) ? ID.get() : new UUID( 0, 0 );
+
+            OUT.writeBoolean( ID != null );
+            OUT.writeLong( BITS.getMostSignificantBits() );
+            OUT.writeLong( BITS.getLeastSignificantBits() );
+            OUT.writeLong( this.stamps.get( i ) );
+        }
+
+        OUT.writeInt( this.postings.size() );
+
+        for(Map.Entry<Integer, CompressedBitmap> entry: this.postings.entrySet()) {
+            final int[] ORDINALS = entry.getValue().toArray();
+            int last = 0;
+
+            OUT.writeInt( entry.getKey() );
+            OUT.writeInt( ORDINALS.length );
+
+            for(int ordinal: ORDINALS) {
+                writeVarInt( OUT, ordinal - last );
+                last = ordinal;
+            }
+        }
+
+        OUT.flush();
+        CRC.update( BYTES.toByteArray() );
+        OUT.writeLong( CRC.getValue() );
+        OUT.flush();
+
+        final Path TEMP = path.resolveSibling( path.getFileName() + ".tmp" );
+
+        Files.write( TEMP, BYTES.toByteArray() );
+        Files.move( TEMP, path,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /** Reads an index from its file.
+      * @param path the file of the index.
+      * @return the index read.
+      * @throws IOException if the file cannot be read, or is corrupted.
+      */
+    public static TrigramIndex load(Path path) throws IOException
+    {
+        final byte[] BYTES = Files.readAllBytes( path );
+        final var CRC = new CRC32C();
+
+        if ( BYTES.length < Long.BYTES ) {
+            throw new IOException( "truncated trigram index: " + path );
+        }
+
+        CRC.update( BYTES, 0, BYTES.length - Long.BYTES );
+
+        if ( CRC.getValue() != ByteBuffer.wrap( BYTES ).getLong( BYTES.length - Long.BYTES ) ) {
+            throw new IOException( "corrupted trigram index: " + path );
+        }
+
+        final var IN = new DataInputStream( new ByteArrayInputStream( BYTES ) );
+        final var TORET = new TrigramIndex();
+
+        if ( IN.readInt() != MAGIC
+          || IN.readInt() != VERSION )
+        {
+            throw new IOException( "not a trigram index: " + path );
+        }
+
+        final int NUM_IDS = IN.readInt();
+
+        for(int i = 0; i < NUM_IDS; ++i) {
+            final boolean LIVE = IN.readBoolean();
+            final var ID = new Id( new UUID( IN.readLong(), IN.readLong() ) );
+            final long STAMP = IN.readLong();
+
+            if ( LIVE ) {
+                TORET.ids.add( ID );
+                TORET.ordinals.put( ID, i );
+                TORET.allNotes.add( i );
+            } else {
+                TORET.ids.add( null );
+                TORET.freeOrdinals.add( i );
+            }
+
+            TORET.stamps.add( STAMP );
+        }
+
+        final int NUM_TRIGRAMS = IN.readInt();
+
+        for(int i = 0; i < NUM_TRIGRAMS; ++i) {
+            final var NOTES = new CompressedBitmap();
+            final int TRIGRAM = IN.readInt();
+            final int NUM_NOTES = IN.readInt();
+            int ordinal = 0;
+
+            for(int j = 0; j < NUM_NOTES; ++j) {
+                ordinal += readVarInt( IN );
+                NOTES.add( ordinal );
+            }
+
+            TORET.postings.put( TRIGRAM, NOTES );
+        }
+
+        return TORET;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while( ( value & ~0x7F ) != 0 ) {
+            out.write( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+
+        out.write( value );
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int toret = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = in.readByte();
+            toret |= ( b & 0x7F ) << shift;
+            shift += 7;
+        } while( ( b & 0x80 ) != 0 );
+
+        return toret;
+    }
+
+    private final Map<Integer, CompressedBitmap> postings;
+    private final Map<Id, Integer> ordinals;
+    private final List<Id> ids;
+    private final List<Long> stamps;
+    private final ArrayDeque<Integer> freeOrdinals;
+    private final CompressedBitmap allNotes;
+}
@@ -0,0 +1,278 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+
+/** Gives read-only access to a notebook archived as a zip file,
+  * without extracting it.
+  * The zip file system of the JDK reads the central directory when opened,
+  * so listing the notes and their stamps reads no entry at all.
+  * Headers are read streaming just the first bytes of their entries.
+  * Notes can be either at the root of the archive, or inside a single
+  * directory, as when the notes directory itself was archived;
+  * whatever the layout they follow.
+  * Since the archive cannot be written, the index of headers can be
+  * kept apart, so headers are not read again when opened the next time.
+  * @author baltasarq
+  */
+public final class ZipNoteStore implements NoteStore, AutoCloseable {
+    private static final Logger LOG = Logger.getLogger( ZipNoteStore.class.getName() );
+    public static final String FILE_EXT = ".zip";
+
+    /** Opens the archive, with no index of headers.
+      * @param archive the path to the zip file.
+      * @throws IOException if the archive cannot be opened.
+      */
+    public ZipNoteStore(Path archive) throws IOException
+    {
+        this( archive, null );
+    }
+
+    /** Opens the archive.
+      * @param archive the path to the zip file.
+      * @param indexDir the directory in which to keep the index of headers,
+      *                 or null to keep none.
+      * @throws IOException if the archive cannot be opened.
+      */
+    public ZipNoteStore(Path archive, Path indexDir) throws IOException
+    {
+        this.archive = archive.toAbsolutePath();
+        this.indexDir = indexDir;
+        this.locations = new ConcurrentHashMap<>();
+        this.fileSystem = FileSystems.newFileSystem(
+                                    this.archive,
+                                    Map.of( "accessMode", "readOnly" ) );
+        this.root = findNotesRoot( this.fileSystem.getPath( "/" ) );
+    }
+
+    /** Finds the directory holding the notes.
+      * @param top the root of the archive.
+      * @return the root itself, or its only directory if there are
+      *         no notes at the root.
+      */
+    private static Path findNotesRoot(Path top) throws IOException
+    {
+        final var DIRS = new ArrayList<Path>();
+        boolean hasNotes = false;
+
+        try (var stream = Files.newDirectoryStream( top )) {
+            for(Path entry: stream) {
+                final String NAME = entry.getFileName().toString();
+
+                if ( NAME.endsWith( NoteProxy.FILE_EXT ) ) {
+                    hasNotes = true;
+                }
+                else
+                if ( Files.isDirectory( entry )
+                  && !NotesLayout.isShardName( NAME ) )
+                {
+                    DIRS.add( entry );
+                }
+            }
+        } catch(DirectoryIteratorException exc) {
+            throw exc.getCause();
+        }
+
+        return ( !hasNotes && DIRS.size() == 1 ) ? DIRS.getFirst() : top;
+    }
+
+    @Override
+    public String getPath()
+    {
+        return this.archive.toString();
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
+
+    /** The location of a note is the path of its entry in the archive.
+      * Notes are never relocated, so the location found when listing is kept.
+      */
+    @Override
+    public String locationFor(Id id)
+    {
+        String toret = this.locations.get( id );
+
+        if ( toret == null ) {
+            toret = this.root.resolve( id.toString() + NoteProxy.FILE_EXT ).toString();
+        }
+
+        return toret;
+    }
+
+    /** Lists the notes in the archive, taking their stamps from
+      * the central directory; no entry is read.
+      * @return a map of entry paths to their stamps.
+      */
+    @Override
+    public Map<String, FileStamp> list()
+    {
+        final var TORET = new LinkedHashMap<String, FileStamp>();
+        final var SHARDS = new ArrayList<Path>();
+
+        this.listNoteStamps( this.root, TORET, SHARDS );
+
+        for(Path shard: SHARDS) {
+            this.listNoteStamps( shard, TORET, null );
+        }
+
+        return TORET;
+    }
+
+    /** Lists the notes in a single directory of the archive.
+      * @param dir the directory to list.
+      * @param stamps the map in which to store the entries and their stamps.
+      * @param shards the list in which to store the shards found,
+      *               or null when they must not be looked for.
+      */
+    private void listNoteStamps(Path dir, Map<String, FileStamp> stamps, List<Path> shards)
+    {
+        try (var stream = Files.newDirectoryStream( dir )) {
+            for(Path entry: stream) {
+                final String NAME = entry.getFileName().toString();
+
+                try {
+                    final var ATTRS = Files.readAttributes(
+                                                entry,
+                                                BasicFileAttributes.class );
+
+                    if ( ATTRS.isRegularFile()
+                      && NAME.endsWith( NoteProxy.FILE_EXT ) )
+                    {
+                        final String LOCATION = entry.toString();
+
+                        stamps.put( LOCATION, FileStamp.from( ATTRS ) );
+                        this.locations.put( Id.from( entry ), LOCATION );
+                    }
+                    else
+                    if ( shards != null
+                      && ATTRS.isDirectory()
+                      && NotesLayout.isShardName( NAME ) )
+                    {
+                        shards.add( entry );
+                    }
+                } catch(IOException | IllegalArgumentException | NoSuchElementException exc) {
+                    LOG.warning(
+                            String.format( "error browsing '%s' in '%s'",
+                                                entry, this.archive ) );
+                }
+            }
+        } catch(IOException | DirectoryIteratorException exc) {
+            LOG.warning(
+                    String.format( "unable to list notes in '%s' of '%s'",
+                                   dir, this.archive ) );
+        }
+    }
+
+    @Override
+    public FileStamp stamp(String location) throws IOException
+    {
+        return FileStamp.from( this.entryFor( location ) );
+    }
+
+    @Override
+    public NoteDto readHeader(String location) throws IOException
+    {
+        return NoteHeaderReader.read( this.entryFor( location ) );
+    }
+
+    @Override
+    public NoteFileReader.Hashed read(Id id, String location) throws IOException
+    {
+        return NoteFileReader.readHashed( id, this.readBytes( location ) );
+    }
+
+    @Override
+    public byte[] readBytes(String location) throws IOException
+    {
+        return Files.readAllBytes( this.entryFor( location ) );
+    }
+
+    @Override
+    public long hash(String location) throws IOException
+    {
+        return ContentHash.of( this.readBytes( location ) );
+    }
+
+    @Override
+    public void write(String location, byte[] contents, NoteFileWriter.Durability durability)
+            throws IOException
+    {
+        throw readOnly( location );
+    }
+
+    @Override
+    public boolean delete(String location) throws IOException
+    {
+        throw readOnly( location );
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException
+    {
+        throw readOnly( from );
+    }
+
+    @Override
+    public NotebookIndex loadIndex()
+    {
+        return ( this.indexDir != null ) ? NotebookIndex.loadFrom( this.indexDir )
+                                         : new NotebookIndex();
+    }
+
+    @Override
+    public void saveIndex(NotebookIndex index) throws IOException
+    {
+        if ( this.indexDir != null ) {
+            Files.createDirectories( this.indexDir );
+            index.save( this.indexDir );
+        } else {
+            index.markSaved();
+        }
+    }
+
+    /** Closes the archive. */
+    @Override
+    public void close() throws IOException
+    {
+        this.fileSystem.close();
+    }
+
+    /** @return the path of the entry at the given location. */
+    private Path entryFor(String location)
+    {
+        return this.fileSystem.getPath( location );
+    }
+
+    private AccessDeniedException readOnly(String location)
+    {
+        return new AccessDeniedException( location, null, "read-only archive: " + this.archive );
+    }
+
+    private final Path archive;
+    private final Path indexDir;
+    private final Path root;
+    private final FileSystem fileSystem;
+    private final Map<Id, String> locations;
+}
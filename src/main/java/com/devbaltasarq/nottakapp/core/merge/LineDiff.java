@@ -0,0 +1,192 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core.merge;
+
+
+import java.util.Arrays;
+
+
+/** Finds the longest common subsequence of two sequences of lines.
+  * This is Myers' O(ND) difference algorithm, in its linear space version:
+  * the middle snake of the shortest edit script is found, and then both
+  * halves are solved recursively. Only two vectors of diagonals are
+  * allocated, and reused throughout.
+  * Lines are given as ints, i.e., one number for each different line,
+  * so comparisons are cheap.
+  * @author baltasarq
+  */
+public final class LineDiff {
+    /** Matches the lines of both sequences.
+      * @param a the first sequence of lines.
+      * @param b the second sequence of lines.
+      * @return for each line in a, the position of the same line in b,
+      *         or -1 if not part of the common subsequence.
+      */
+    public static int[] match(int[] a, int[] b)
+    {
+        final var DIFF = new LineDiff( a, b );
+
+        DIFF.compare( 0, a.length, 0, b.length );
+        return DIFF.matches;
+    }
+
+    private LineDiff(int[] a, int[] b)
+    {
+        final int SIZE = a.length + b.length + 2;
+
+        this.a = a;
+        this.b = b;
+        this.matches = new int[ a.length ];
+        this.offset = SIZE;
+        this.forward = new int[ 2 * SIZE + 1 ];
+        this.backward = new int[ 2 * SIZE + 1 ];
+
+        Arrays.fill( this.matches, -1 );
+    }
+
+    /** Matches the lines in the given ranges of both sequences.
+      * @param aLo the first line in a.
+      * @param aHi the position after the last line in a.
+      * @param bLo the first line in b.
+      * @param bHi the position after the last line in b.
+      */
+    private void compare(int aLo, int aHi, int bLo, int bHi)
+    {
+        // Common prefix
+        while( aLo < aHi
+            && bLo < bHi
+            && this.a[ aLo ] == this.b[ bLo ] )
+        {
+            this.matches[ aLo++ ] = bLo++;
+        }
+
+        // Common suffix
+        while( aLo < aHi
+            && bLo < bHi
+            && this.a[ aHi - 1 ] == this.b[ bHi - 1 ] )
+        {
+            this.matches[ --aHi ] = --bHi;
+        }
+
+        if ( aLo < aHi
+          && bLo < bHi )
+        {
+            final int[] SNAKE = this.middleSnake( aLo, aHi, bLo, bHi );
+            final int X = aLo + SNAKE[ 0 ];
+            final int Y = bLo + SNAKE[ 1 ];
+            final int U = aLo + SNAKE[ 2 ];
+            final int V = bLo + SNAKE[ 3 ];
+
+            this.compare( aLo, X, bLo, Y );
+
+            for(int i = 0; i < U - X; ++i) {
+                this.matches[ X + i ] = Y + i;
+            }
+
+            this.compare( U, aHi, V, bHi );
+        }
+    }
+
+    /** Finds the middle snake of the shortest edit script for the ranges.
+      * The ranges must be non-empty, and differ in their first
+      * and last lines, so the script has two edits at least.
+      * @return the start and end of the snake, relative to the ranges,
+      *         as { x, y, u, v }.
+      */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi)
+    {
+        final int N = aHi - aLo;
+        final int M = bHi - bLo;
+        final int DELTA = N - M;
+        final boolean ODD = ( DELTA & 1 ) != 0;
+        final int MAX_D = ( N + M + 1 ) / 2;
+        final int[] VF = this.forward;
+        final int[] VB = this.backward;
+        final int OFF = this.offset;
+
+        VF[ OFF + 1 ] = 0;
+        VB[ OFF + 1 ] = 0;
+
+        for(int d = 0; d <= MAX_D; ++d) {
+            // Forward paths, from the start
+            for(int k = -d; k <= d; k += 2) {
+                int x;
+
+                if ( k == -d
+                  || ( k != d && VF[ OFF + k - 1 ] < VF[ OFF + k + 1 ] ) )
+                {
+                    x = VF[ OFF + k + 1 ];
+                } else {
+                    x = VF[ OFF + k - 1 ] + 1;
+                }
+
+                int y = x - k;
+                final int X_START = x;
+                final int Y_START = y;
+
+                while( x < N
+                    && y < M
+                    && this.a[ aLo + x ] == this.b[ bLo + y ] )
+                {
+                    ++x;
+                    ++y;
+                }
+
+                VF[ OFF + k ] = x;
+
+                if ( ODD
+                  && k >= DELTA - ( d - 1 )
+                  && k <= DELTA + ( d - 1 )
+                  && x + VB[ OFF + DELTA - k ] >= N )
+                {
+                    return new int[] { X_START, Y_START, x, y };
+                }
+            }
+
+            // Backward paths, from the end
+            for(int k = -d; k <= d; k += 2) {
+                int x;
+
+                if ( k == -d
+                  || ( k != d && VB[ OFF + k - 1 ] < VB[ OFF + k + 1 ] ) )
+                {
+                    x = VB[ OFF + k + 1 ];
+                } else {
+                    x = VB[ OFF + k - 1 ] + 1;
+                }
+
+                int y = x - k;
+                final int X_START = x;
+                final int Y_START = y;
+
+                while( x < N
+                    && y < M
+                    && this.a[ aHi - 1 - x ] == this.b[ bHi - 1 - y ] )
+                {
+                    ++x;
+                    ++y;
+                }
+
+                VB[ OFF + k ] = x;
+
+                if ( !ODD
+                  && k >= DELTA - d
+                  && k <= DELTA + d
+                  && x + VF[ OFF + DELTA - k ] >= N )
+                {
+                    return new int[] { N - x, M - y, N - X_START, M - Y_START };
+                }
+            }
+        }
+
+        throw new IllegalStateException( "INTERNAL: no middle snake found" );
+    }
+
+    private final int[] a;
+    private final int[] b;
+    private final int[] matches;
+    private final int[] forward;
+    private final int[] backward;
+    private final int offset;
+}
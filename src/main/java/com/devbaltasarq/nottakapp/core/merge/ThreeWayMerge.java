@@ -0,0 +1,207 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core.merge;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/** Merges two versions of a text, derived from a common base, line by line.
+  * Both versions are diffed against the base. The lines of the base kept
+  * in both versions are anchors; between anchors, the chunk changed in
+  * only one version is taken, and chunks changed in both, differently,
+  * are conflicts, surrounded by markers.
+  * @author baltasarq
+  */
+public final class ThreeWayMerge {
+    public static final String MARK_MINE = "<<<<<<<";
+    public static final String MARK_SEPARATOR = "=======";
+    public static final String MARK_THEIRS = ">>>>>>>";
+
+    /** The outcome of a merge.
+      * @param text the text merged, including the markers of any conflicts.
+      * @param numConflicts the number of conflicting chunks.
+      */
+    public record Result(String text, int numConflicts) {
+        /** @return true if some chunks conflicted, false otherwise. */
+        public boolean hasConflicts()
+        {
+            return ( this.numConflicts() > 0 );
+        }
+    }
+
+    /** Merges two versions of a text.
+      * @param base the common base of both versions.
+      * @param mine the first version.
+      * @param theirs the second version.
+      * @return the result of the merge.
+      */
+    public static Result merge(String base, String mine, String theirs)
+    {
+        return merge( base, mine, theirs, "mine", "theirs" );
+    }
+
+    /** Merges two versions of a text.
+      * @param base the common base of both versions.
+      * @param mine the first version.
+      * @param theirs the second version.
+      * @param mineLabel the label for the first version in conflicts.
+      * @param theirsLabel the label for the second version in conflicts.
+      * @return the result of the merge.
+      */
+    public static Result merge(
+                        String base,
+                        String mine,
+                        String theirs,
+                        String mineLabel,
+                        String theirsLabel)
+    {
+        final var MERGE = new ThreeWayMerge( base, mine, theirs );
+
+        return MERGE.run( mineLabel, theirsLabel );
+    }
+
+    private ThreeWayMerge(String base, String mine, String theirs)
+    {
+        this.lines = new ArrayList<>();
+        this.lineIds = new HashMap<>();
+        this.base = this.toIds( base );
+        this.mine = this.toIds( mine );
+        this.theirs = this.toIds( theirs );
+        this.endsWithNewLine = mine.isEmpty() || mine.endsWith( "\n" );
+    }
+
+    /** Splits the text into lines, and gives each different line a number.
+      * @param text the text to split.
+      * @return the numbers of the lines of the text.
+      */
+    private int[] toIds(String text)
+    {
+        int[] toret = new int[ 16 ];
+        int count = 0;
+        int start = 0;
+
+        while( start < text.length() ) {
+            int end = text.indexOf( '\n', start );
+
+            if ( end < 0 ) {
+                end = text.length();
+            }
+
+            final String LINE = text.substring( start, end );
+            Integer id = this.lineIds.get( LINE );
+
+            if ( id == null ) {
+                id = this.lines.size();
+                this.lines.add( LINE );
+                this.lineIds.put( LINE, id );
+            }
+
+            if ( count == toret.length ) {
+                toret = Arrays.copyOf( toret, count * 2 );
+            }
+
+            toret[ count++ ] = id;
+            start = end + 1;
+        }
+
+        return Arrays.copyOf( toret, count );
+    }
+
+    /** Walks the base from anchor to anchor, merging the chunks between. */
+    private Result run(String mineLabel, String theirsLabel)
+    {
+        final int[] MATCH_MINE = LineDiff.match( this.base, this.mine );
+        final int[] MATCH_THEIRS = LineDiff.match( this.base, this.theirs );
+        final var TEXT = new StringBuilder();
+        int numConflicts = 0;
+        int posBase = 0;
+        int posMine = 0;
+        int posTheirs = 0;
+
+        while( posBase <= this.base.length ) {
+            // Find the next line of the base kept in both versions
+            int anchor = posBase;
+
+            while( anchor < this.base.length
+                && ( MATCH_MINE[ anchor ] < 0 || MATCH_THEIRS[ anchor ] < 0 ) )
+            {
+                ++anchor;
+            }
+
+            final int END_MINE = ( anchor < this.base.length ) ?
+                                        MATCH_MINE[ anchor ] : this.mine.length;
+            final int END_THEIRS = ( anchor < this.base.length ) ?
+                                        MATCH_THEIRS[ anchor ] : this.theirs.length;
+            final boolean MINE_UNCHANGED = equalRanges(
+                                            this.mine, posMine, END_MINE,
+                                            this.base, posBase, anchor );
+            final boolean THEIRS_UNCHANGED = equalRanges(
+                                            this.theirs, posTheirs, END_THEIRS,
+                                            this.base, posBase, anchor );
+
+            if ( MINE_UNCHANGED ) {
+                this.append( TEXT, this.theirs, posTheirs, END_THEIRS );
+            }
+            else
+            if ( THEIRS_UNCHANGED
+              || equalRanges( this.mine, posMine, END_MINE,
+                              this.theirs, posTheirs, END_THEIRS ) )
+            {
+                this.append( TEXT, this.mine, posMine, END_MINE );
+            } else {
+                ++numConflicts;
+                TEXT.append( MARK_MINE ).append( ' ' ).append( mineLabel ).append( '\n' );
+                this.append( TEXT, this.mine, posMine, END_MINE );
+                TEXT.append( MARK_SEPARATOR ).append( '\n' );
+                this.append( TEXT, this.theirs, posTheirs, END_THEIRS );
+                TEXT.append( MARK_THEIRS ).append( ' ' ).append( theirsLabel ).append( '\n' );
+            }
+
+            // The anchor itself
+            if ( anchor < this.base.length ) {
+                this.append( TEXT, this.base, anchor, anchor + 1 );
+            }
+
+            posBase = anchor + 1;
+            posMine = END_MINE + 1;
+            posTheirs = END_THEIRS + 1;
+        }
+
+        if ( !this.endsWithNewLine
+          && !TEXT.isEmpty() )
+        {
+            TEXT.setLength( TEXT.length() - 1 );
+        }
+
+        return new Result( TEXT.toString(), numConflicts );
+    }
+
+    /** Appends the lines in the given range, each one ended with "\n". */
+    private void append(StringBuilder text, int[] ids, int from, int to)
+    {
+        for(int i = from; i < to; ++i) {
+            text.append( this.lines.get( ids[ i ] ) ).append( '\n' );
+        }
+    }
+
+    /** @return true if both ranges hold the same lines, false otherwise. */
+    private static boolean equalRanges(
+                                int[] a, int aFrom, int aTo,
+                                int[] b, int bFrom, int bTo)
+    {
+        return Arrays.equals( a, aFrom, aTo, b, bFrom, bTo );
+    }
+
+    private final List<String> lines;
+    private final Map<String, Integer> lineIds;
+    private final int[] base;
+    private final int[] mine;
+    private final int[] theirs;
+    private final boolean endsWithNewLine;
+}
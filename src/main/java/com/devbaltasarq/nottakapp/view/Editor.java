@@ -7,6 +7,7 @@ package com.devbaltasarq.nottakapp.view;
 import java.awt.Component;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.swing.JCheckBox;
 import javax.swing.JEditorPane;
@@ -19,6 +20,8 @@ import javax.swing.text.html.HTMLEditorKit;
 import com.devbaltasarq.nottakapp.core.Note;
 import com.devbaltasarq.nottakapp.core.NoteFormatConverter;
 import com.devbaltasarq.nottakapp.core.NoteProxy;
+import com.devbaltasarq.nottakapp.core.NoteSaveQueue;
+import com.devbaltasarq.nottakapp.core.NotebookChange;
 import com.devbaltasarq.nottakapp.core.converter.DOMRunner;
 import com.devbaltasarq.nottakapp.core.converter.ParseException;
 import com.devbaltasarq.nottakapp.core.converter.Element;
@@ -39,13 +42,29 @@ public class Editor {
     }
     
     public Editor(EditorView view)
+    {
+        this( view, null );
+    }
+    
+    /** Creates a new editor.
+      * @param view the view for the editor.
+      * @param saveQueue the queue to save notes in the background,
+      *                  or null to save them right away.
+      */
+    public Editor(EditorView view, NoteSaveQueue saveQueue)
     {
         this.noteProxy = null;
         this.dirty = false;
+        this.readOnly = false;
         this.editorView = view;
+        this.saveQueue = saveQueue;
         this.loadTextFromNote();
         this.editorView.onFocusLost( () -> this.saveTextToNote() );
         this.editorView.onContentsChanged( () -> this.onContentsChanged() );
+        
+        if ( this.saveQueue != null ) {
+            this.saveQueue.addMergeListener( (note) -> this.onNoteMerged( note ) );
+        }
     }
     
     /** @return the view of the editor. */
@@ -111,6 +130,7 @@ public class Editor {
             final Note NOTE = this.noteProxy.getNote();
             
             this.getView().setNoteStatus();
+            this.getView().setEditable( !this.readOnly );
             this.getView().setTitle( NOTE.getTitle() );
             this.getView().setTags( NOTE.getTags() );
             this.getView().setDates(
@@ -126,7 +146,9 @@ public class Editor {
     public void saveTextToNote()
     {
         if ( this.noteProxy != null ) {
-            if ( this.isDirty() ) {
+            if ( this.isDirty()
+              && !this.readOnly )
+            {
                 final Map<Integer, Boolean> CHK_VALUES =
                         CheckBoxValuesExtraction
                                 .extractCheckboxStates( this.getEditor() );
@@ -137,14 +159,19 @@ public class Editor {
                 NOTE.getTags().replaceWith( this.getView().getTags() );
                 NOTE.replace( mdFromHtml( CONTENTS, CHK_VALUES ) );
                 
-                try {
-                    if ( this.noteProxy.save() ) {
-                        this.loadTextFromNote();
-                    }
-                    
+                if ( this.saveQueue != null ) {
+                    this.saveQueue.enqueue( this.noteProxy );
                     this.dirty = false;
-                } catch(IOException exc) {
-                    LOG.warning( "saving note: " + exc.getMessage() );
+                } else {
+                    try {
+                        if ( this.noteProxy.save() ) {
+                            this.loadTextFromNote();
+                        }
+
+                        this.dirty = false;
+                    } catch(IOException exc) {
+                        LOG.warning( "saving note: " + exc.getMessage() );
+                    }
                 }
             }
         } else {
@@ -178,6 +205,15 @@ public class Editor {
         return toret;
     }
     
+    /** Allows or forbids changing the notes shown.
+      * @param readOnly true to only show the notes, false to edit them.
+      */
+    public void setReadOnly(boolean readOnly)
+    {
+        this.readOnly = readOnly;
+        this.loadTextFromNote();
+    }
+    
     /** Change the text in the editor.
       * @param note the note to show in the editor.
       */
@@ -194,6 +230,43 @@ public class Editor {
         return this.noteProxy;
     }
     
+    /** Reloads the note being edited, if it was changed on disk.
+      * Nothing is done when there are pending edits in the editor,
+      * since those will be merged with the note on disk when saved.
+      * @param changes a batch of changes in the notebook.
+      */
+    public void onNotebookChanges(List<NotebookChange> changes)
+    {
+        if ( this.noteProxy != null
+          && !this.isDirty() )
+        {
+            for(NotebookChange change: changes) {
+                if ( change.kind() == NotebookChange.Kind.MODIFIED
+                  && change.id().equals( this.noteProxy.getId() )
+                  && this.noteProxy.isOutdated() )
+                {
+                    LOG.info( "note changed on disk, reloading: "
+                                + change.id() );
+                    this.loadTextFromNote();
+                    break;
+                }
+            }
+        }
+    }
+    
+    /** Reloads the note being edited, if it was merged with the note on disk
+      * while saved in the background.
+      * @param note the note merged.
+      */
+    private void onNoteMerged(NoteProxy note)
+    {
+        if ( note == this.noteProxy
+          && !this.isDirty() )
+        {
+            this.loadTextFromNote();
+        }
+    }
+    
     /** Called when the note has been changed. */
     private void onContentsChanged()
     {
@@ -202,7 +275,9 @@ public class Editor {
     
     private NoteProxy noteProxy;
     private boolean dirty;
+    private boolean readOnly;
     private final EditorView editorView;
+    private final NoteSaveQueue saveQueue;
     
     private static class CheckBoxValuesExtraction {
         /** This should not be needed... but it is.
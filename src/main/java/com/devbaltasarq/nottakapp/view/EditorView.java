@@ -184,6 +184,16 @@ public class EditorView extends JPanel {
         this.revalidate();
     }
     
+    /** Allows or forbids editing the note shown.
+      * @param editable true to allow editing, false otherwise.
+      */
+    public void setEditable(boolean editable)
+    {
+        this.edTitle.setEditable( editable );
+        this.edTags.setEditable( editable );
+        this.editor.setEditable( editable );
+    }
+    
     /** Sets a focus listener so the data is saved.
       * @param action something to do when focus is lost.
       */
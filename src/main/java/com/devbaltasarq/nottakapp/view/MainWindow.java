@@ -6,17 +6,36 @@ package com.devbaltasarq.nottakapp.view;
 
 import java.awt.event.WindowListener;
 import java.awt.event.WindowEvent;
+import java.awt.EventQueue;
 import java.awt.Point;
 import java.awt.Font;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import com.devbaltasarq.nottakapp.core.LogWriter;
 import com.devbaltasarq.nottakapp.core.AppInfo;
+import com.devbaltasarq.nottakapp.core.CompressedBody;
 import com.devbaltasarq.nottakapp.core.Config;
+import com.devbaltasarq.nottakapp.core.DirectoryNoteStore;
+import com.devbaltasarq.nottakapp.core.FullTextIndex;
+import com.devbaltasarq.nottakapp.core.JournalNoteStore;
 import com.devbaltasarq.nottakapp.core.Notebook;
+import com.devbaltasarq.nottakapp.core.NotebookWatcher;
+import com.devbaltasarq.nottakapp.core.NoteHeaderLoader;
+import com.devbaltasarq.nottakapp.core.NoteBodyCache;
+import com.devbaltasarq.nottakapp.core.NoteFileWriter;
+import com.devbaltasarq.nottakapp.core.NotesLayout;
 import com.devbaltasarq.nottakapp.core.NoteProxy;
+import com.devbaltasarq.nottakapp.core.NoteSaveQueue;
+import com.devbaltasarq.nottakapp.core.NoteStore;
+import com.devbaltasarq.nottakapp.core.MemoryNoteStore;
+import com.devbaltasarq.nottakapp.core.ZipNoteStore;
 import com.devbaltasarq.nottakapp.core.Note;
 
 
@@ -25,6 +44,7 @@ import com.devbaltasarq.nottakapp.core.Note;
   */
 public class MainWindow {
     private static final Logger LOG = Logger.getLogger( MainWindow.class.getName() );
+    private static final String ARCHIVES_DIR_NAME = "archives";
     
     public MainWindow()
     {
@@ -32,13 +52,40 @@ public class MainWindow {
         
         this.working = false;
         this.config = Config.restore( AppInfo.NAME );
-        this.notebook = Notebook.restoreFrom( this.config.get( Config.Key.DATA_DIR_PATH ) );
+        this.store = this.openStore();
+        this.notebook = this.restoreNotebook();
+        this.notebook.getBodyCache().setBudget(
+                                NoteBodyCache.MEGABYTE * this.config.getInt(
+                                        Config.Key.BODY_CACHE_MB,
+                                        NoteBodyCache.DEFAULT_BUDGET_MB ) );
+        this.notebook.getBodyCache().setEvictor( EventQueue::invokeLater );
+        this.notebook.setDurability( NoteFileWriter.Durability.parse(
+                                this.config.get( Config.Key.DURABILITY ) ) );
+        this.notebook.setCompressThreshold( CompressedBody.thresholdFromKb(
+                                this.config.getInt(
+                                        Config.Key.COMPRESS_THRESHOLD_KB, 0 ) ) );
+        this.searchIndex = this.openSearchIndex();
         this.currentNote = null;
         
+        if ( this.searchIndex != null ) {
+            this.notebook.attachSearchIndex( this.searchIndex );
+        }
+        
         this.view = new MainWindowView( FONT );
-        this.editor = new Editor( this.view.getEditorView() );
+        this.saveQueue = new NoteSaveQueue( EventQueue::invokeLater );
+        this.editor = new Editor( this.view.getEditorView(), this.saveQueue );
         this.notesTree = new NotesTree( this.view.getNotesTreeView(), this.notebook );
         this.notesTree.setSelectedAction( (note) -> this.selectedTreeNode( note ) );
+        this.notebook.addChangeListener(
+                                (changes) -> EventQueue.invokeLater(
+                                        () -> this.editor.onNotebookChanges( changes ) ) );
+        
+        // Scanning happens in the thread of the watcher, off the UI
+        this.watcher = new NotebookWatcher(
+                                this.notebook,
+                                Runnable::run,
+                                NotebookWatcher.MODE_POLL.equalsIgnoreCase(
+                                    this.config.get( Config.Key.WATCH_MODE ) ) );
         this.logViewer = new LogWriter(
                                 LOG, 
                                    (str) ->
@@ -51,33 +98,221 @@ public class MainWindow {
         this.view.getOpNewNote().addActionListener( (o) -> this.newNote() );
         this.view.getOpViewLog().addActionListener(
                                         (o) -> this.getView().showLog() );
+        this.view.getOpShowAll().addActionListener(
+                    (o) -> this.notesTree.setFilter( NotesTree.Filter.ALL ) );
+        this.view.getOpShowRecent().addActionListener(
+                    (o) -> this.notesTree.setFilter( NotesTree.Filter.RECENT ) );
+        this.view.getOpShowToday().addActionListener(
+                    (o) -> this.notesTree.setFilter( NotesTree.Filter.TODAY ) );
+        this.view.getOpShowLastWeek().addActionListener(
+                    (o) -> this.notesTree.setFilter( NotesTree.Filter.LAST_WEEK ) );
+        this.view.getOpShowLastMonth().addActionListener(
+                    (o) -> this.notesTree.setFilter( NotesTree.Filter.LAST_MONTH ) );
         this.view.getOpDeleteNote().addActionListener(
                                         (o) -> this.deleteCurrentNote() );
+        this.view.getOpSearch().addActionListener( (o) -> this.search() );
         
         this.view.getOpPreferences().addActionListener(
                                         (o) -> this.showPreferences() );
         
+        // Archived notebooks can only be browsed
+        if ( this.notebook.isReadOnly() ) {
+            this.editor.setReadOnly( true );
+            this.view.getOpNewNote().setEnabled( false );
+            this.view.getOpDeleteNote().setEnabled( false );
+        }
+        
         this.view.addWindowListener( this.mainWindowListener );
         this.applyConfig();
     }
     
+    /** Opens the store for the notes, unless they are plain files.
+      * An archive that cannot be opened is shown as an empty notebook,
+      * also read-only, so its path is never used as a directory.
+      * @return the archive, if the data path is a zip file, the journal,
+      *         if the notes are to be kept in one, or null otherwise.
+      */
+    private NoteStore openStore()
+    {
+        final Path DATA_PATH = Path.of( this.config.get( Config.Key.DATA_DIR_PATH ) );
+        NoteStore toret = null;
+
+        if ( Files.isRegularFile( DATA_PATH )
+          && DATA_PATH.getFileName().toString().toLowerCase().endsWith(
+                                                    ZipNoteStore.FILE_EXT ) )
+        {
+            toret = this.openArchive( DATA_PATH );
+
+            if ( toret == null ) {
+                JOptionPane.showMessageDialog(
+                                null,
+                                "Unable to open the archive: " + DATA_PATH,
+                                AppInfo.TITLE,
+                                JOptionPane.ERROR_MESSAGE );
+                toret = new MemoryNoteStore( DATA_PATH.toString(), true );
+            }
+        }
+        else
+        if ( JournalNoteStore.STORAGE_NAME.equalsIgnoreCase(
+                                    this.config.get( Config.Key.STORAGE ) ) )
+        {
+            toret = this.openJournal( DATA_PATH );
+        }
+
+        return toret;
+    }
+
+    /** Opens an archived notebook, only for browsing it.
+      * The index of headers is kept in the config directory.
+      * @param archive the path to the zip file.
+      * @return the archive, or null if it cannot be opened.
+      */
+    private ZipNoteStore openArchive(Path archive)
+    {
+        final Path INDEX_DIR = Path.of(
+                                    this.config.get( Config.Key.CONFIG_DIR ),
+                                    ARCHIVES_DIR_NAME,
+                                    Integer.toHexString(
+                                        archive.toAbsolutePath().hashCode() ) );
+        ZipNoteStore toret = null;
+
+        try {
+            toret = new ZipNoteStore( archive, INDEX_DIR );
+        } catch(IOException exc) {
+            LOG.warning( "unable to open archive: " + exc.getMessage() );
+        }
+
+        return toret;
+    }
+
+    /** Opens the journal, importing the note files the first time.
+      * @param dataDir the notes directory, in which the journal is kept.
+      * @return the journal, or null if it cannot be opened.
+      */
+    private JournalNoteStore openJournal(Path dataDir)
+    {
+        final int CONCURRENCY = this.config.getInt(
+                                        Config.Key.LOAD_CONCURRENCY,
+                                        NoteHeaderLoader.DEFAULT_CONCURRENCY );
+        JournalNoteStore toret = null;
+
+        try {
+            toret = new JournalNoteStore(
+                                dataDir.resolve( JournalNoteStore.DIR_NAME ) );
+
+            if ( toret.count() == 0 ) {
+                toret.importFrom( new DirectoryNoteStore(
+                                            dataDir,
+                                            null,
+                                            CONCURRENCY ) );
+            }
+
+            toret.startCompactor();
+        } catch(IOException exc) {
+            LOG.warning( "unable to open journal, using note files: "
+                         + exc.getMessage() );
+            toret = null;
+        }
+
+        return toret;
+    }
+
+    /** Restores the notebook, either from its store or the notes directory. */
+    private Notebook restoreNotebook()
+    {
+        final int CONCURRENCY = this.config.getInt(
+                                        Config.Key.LOAD_CONCURRENCY,
+                                        NoteHeaderLoader.DEFAULT_CONCURRENCY );
+        final Notebook TORET;
+
+        if ( this.store != null ) {
+            TORET = Notebook.restoreFrom( this.store, CONCURRENCY );
+        } else {
+            TORET = Notebook.restoreFrom(
+                                this.config.get( Config.Key.DATA_DIR_PATH ),
+                                CONCURRENCY,
+                                NotesLayout.parse(
+                                        this.config.get( Config.Key.NOTES_LAYOUT ) ) );
+        }
+
+        return TORET;
+    }
+
+    /** Opens the full-text index of the notebook.
+      * The index is kept in the config directory, so archives can be searched.
+      * @return the index, or null if it cannot be opened.
+      */
+    private FullTextIndex openSearchIndex()
+    {
+        final Path INDEX_DIR = Path.of(
+                                    this.config.get( Config.Key.CONFIG_DIR ),
+                                    FullTextIndex.DIR_NAME,
+                                    Integer.toHexString(
+                                        Path.of( this.config.get( Config.Key.DATA_DIR_PATH ) )
+                                            .toAbsolutePath().hashCode() ) );
+        FullTextIndex toret = null;
+
+        try {
+            toret = new FullTextIndex( INDEX_DIR );
+        } catch(IOException exc) {
+            LOG.warning( "unable to open search index: " + exc.getMessage() );
+        }
+
+        return toret;
+    }
+
+    /** Closes the full-text index, if any, once all notes are saved. */
+    private void closeSearchIndex()
+    {
+        if ( this.searchIndex != null ) {
+            try {
+                this.searchIndex.close();
+            } catch(IOException exc) {
+                LOG.warning( "unable to close search index: " + exc.getMessage() );
+            }
+        }
+    }
+
+    /** Closes the store, if any, once all notes are saved. */
+    private void closeStore()
+    {
+        if ( this.store instanceof AutoCloseable closeable ) {
+            try {
+                closeable.close();
+            } catch(Exception exc) {
+                LOG.warning( "unable to close notes store: " + exc.getMessage() );
+            }
+        }
+    }
+
     /** Makes the window visible. */
     public void show()
     {
         LOG.info( String.format( "View shown: %s",  AppInfo.TITLE ));
+        this.notesTree.refresh();
+        this.notesTree.expandAll();
         this.getView().setVisible( true );
+
+        if ( !this.notebook.isReadOnly() ) {
+            this.watcher.start();
+        }
     }
     
     /** Unique end point for the app. */
     public void quit()
     {
+        this.watcher.close();
         this.getEditor().saveTextToNote();
         this.saveConfig();
         
         this.getView().setVisible( false );
         this.getView().dispose();
-                
+        
+        this.saveQueue.close();
         this.notebook.saveAll();
+        this.closeSearchIndex();
+        this.closeStore();
+        LOG.info( "Note bodies cache: " + this.notebook.getBodyCache().getStats() );
         LOG.info( String.format( "View hidden: %s", AppInfo.TITLE ));
     }
     
@@ -104,15 +339,20 @@ public class MainWindow {
     {
         if ( !this.working ) {
             this.working = true;
+            this.editor.setNote( null );
+            this.saveQueue.discard( this.currentNote ).join();
             this.notebook.delete( this.currentNote );
             this.notesTree.refresh();
-            this.editor.setNote( null );
             this.working = false;
         }
     }
     
     public void showPreferences()
     {
+        // The notebook can be moved: no writes must be left behind
+        this.getEditor().saveTextToNote();
+        this.saveQueue.flush().join();
+        
         var dlg = new Preferences( this.getView(), this.config, this.notebook );
         
         dlg.run();
@@ -120,10 +360,62 @@ public class MainWindow {
 
     public void selectedTreeNode(NoteProxy note)
     {
+        this.notebook.getBodyCache().setCurrent( note );
         this.updateEditor( note );
         this.currentNote = note;
     }
     
+    /** Asks for some words, an exact text or a regular expression,
+      * and shows the notes having them.
+      */
+    public void search()
+    {
+        final String QUERY = JOptionPane.showInputDialog(
+                                    this.view,
+                                    "Words to look for, \"exact text\" or /regular expression/:",
+                                    "Search",
+                                    JOptionPane.QUESTION_MESSAGE );
+        
+        if ( QUERY != null
+          && !QUERY.isBlank() )
+        {
+            final String TRIMMED = QUERY.trim();
+            
+            try {
+                if ( TRIMMED.length() > 2
+                  && TRIMMED.startsWith( "\"" )
+                  && TRIMMED.endsWith( "\"" ) )
+                {
+                    this.notesTree.lookUp( Pattern.compile(
+                                    TRIMMED.substring( 1, TRIMMED.length() - 1 ),
+                                    Pattern.LITERAL
+                                    | Pattern.CASE_INSENSITIVE
+                                    | Pattern.UNICODE_CASE ) );
+                }
+                else
+                if ( TRIMMED.length() > 2
+                  && TRIMMED.startsWith( "/" )
+                  && TRIMMED.endsWith( "/" ) )
+                {
+                    this.notesTree.lookUp( Pattern.compile(
+                                    TRIMMED.substring( 1, TRIMMED.length() - 1 ) ) );
+                } else {
+                    this.notesTree.search( QUERY );
+                }
+                
+                this.view.getStatusBar().setText( String.format(
+                                        "%d notes found",
+                                        this.notesTree.getRoot().getChildCount() ) );
+            } catch(PatternSyntaxException exc) {
+                JOptionPane.showMessageDialog(
+                                this.view,
+                                "Invalid regular expression: " + exc.getDescription(),
+                                "Search",
+                                JOptionPane.ERROR_MESSAGE );
+            }
+        }
+    }
+    
     /** Shows app's info. */
     public void about()
     {
@@ -160,35 +452,6 @@ public class MainWindow {
         return this.editor;
     }
     
-    /** Update the whole view. */
-    public void update()
-    {
-        final String MSG_UPDATING = "Updating view...";
-        
-        LOG.info( MSG_UPDATING );
-        this.setStatus( MSG_UPDATING );
-        LOG.entering( "MainWindow", "update" );
-        
-        new Runnable() {
-            public void run() {
-                final var SELF = MainWindow.this;
-                
-                SELF.notebook.update();
-                SELF.notesTree.refresh();
-                SELF.notesTree.expandAll();
-            }
-        }.run();
-
-        this.updateEditor( this.currentNote );
-        
-        if ( this.currentNote == null ) {
-            LOG.info( "no node selected." );
-        }
-        
-        this.setStatus();
-        LOG.exiting( "MainWindow", "update" );
-    }
-    
     /** Updates the editor with the contents of the note.
       * @param noteProxy the proxy for this note.
       */
@@ -242,9 +505,13 @@ public class MainWindow {
     private NoteProxy currentNote;
     private final MainWindowView view;
     private final Editor editor;
+    private final NoteSaveQueue saveQueue;
     private final LogWriter logViewer;
     private final NotesTree notesTree;
+    private final NoteStore store;
+    private final FullTextIndex searchIndex;
     private final Notebook notebook;
+    private final NotebookWatcher watcher;
     private final Config config;
     private final WindowListener mainWindowListener = new WindowListener() {
         @Override
@@ -261,7 +528,6 @@ public class MainWindow {
         @Override
         public void windowActivated(WindowEvent evt)
         {
-            MainWindow.this.update();
         }
 
         @Override
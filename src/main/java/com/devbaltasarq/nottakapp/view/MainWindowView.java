@@ -13,6 +13,8 @@ import javax.swing.JComponent;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.ButtonGroup;
 import javax.swing.JTree;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -171,9 +173,16 @@ public class MainWindowView extends JFrame {
                 KeyStroke.getKeyStroke( KeyEvent.VK_F5,
                                             InputEvent.CTRL_DOWN_MASK ));
 
+        this.opSearch = new JMenuItem( "Search..." );
+        this.opSearch.setMnemonic( 's' );
+        this.opSearch.setAccelerator(
+                KeyStroke.getKeyStroke( KeyEvent.VK_F,
+                                            InputEvent.CTRL_DOWN_MASK ));
+
         EDIT.setMnemonic( 'e' );
         EDIT.add( this.opNewNote );
         EDIT.add( this.opDeleteNote );
+        EDIT.add( this.opSearch );
         EDIT.add( this.opPreferences );
         
         this.opViewLog = new JMenuItem( "View log" );
@@ -181,7 +190,32 @@ public class MainWindowView extends JFrame {
         this.opViewLog.setAccelerator(
                 KeyStroke.getKeyStroke( KeyEvent.VK_F2,
                                             InputEvent.CTRL_DOWN_MASK ));
+        this.opShowAll = new JRadioButtonMenuItem( "All notes", true );
+        this.opShowAll.setMnemonic( 'a' );
+        this.opShowRecent = new JRadioButtonMenuItem( "Recent notes" );
+        this.opShowRecent.setMnemonic( 'r' );
+        this.opShowToday = new JRadioButtonMenuItem( "Modified today" );
+        this.opShowToday.setMnemonic( 't' );
+        this.opShowLastWeek = new JRadioButtonMenuItem( "Modified this week" );
+        this.opShowLastWeek.setMnemonic( 'w' );
+        this.opShowLastMonth = new JRadioButtonMenuItem( "Modified this month" );
+        this.opShowLastMonth.setMnemonic( 'm' );
+        
+        final var SHOW_GROUP = new ButtonGroup();
+        
+        SHOW_GROUP.add( this.opShowAll );
+        SHOW_GROUP.add( this.opShowRecent );
+        SHOW_GROUP.add( this.opShowToday );
+        SHOW_GROUP.add( this.opShowLastWeek );
+        SHOW_GROUP.add( this.opShowLastMonth );
+        
         VIEW.setMnemonic( 'v' );
+        VIEW.add( this.opShowAll );
+        VIEW.add( this.opShowRecent );
+        VIEW.add( this.opShowToday );
+        VIEW.add( this.opShowLastWeek );
+        VIEW.add( this.opShowLastMonth );
+        VIEW.addSeparator();
         VIEW.add( this.opViewLog );
         
         TORET.add( FILE );
@@ -245,6 +279,42 @@ public class MainWindowView extends JFrame {
         return this.opViewLog;
     }
     
+    /** @return the search option. */
+    public JMenuItem getOpSearch()
+    {
+        return this.opSearch;
+    }
+    
+    /** @return the option to show all notes. */
+    public JMenuItem getOpShowAll()
+    {
+        return this.opShowAll;
+    }
+    
+    /** @return the option to show the recent notes. */
+    public JMenuItem getOpShowRecent()
+    {
+        return this.opShowRecent;
+    }
+    
+    /** @return the option to show the notes modified today. */
+    public JMenuItem getOpShowToday()
+    {
+        return this.opShowToday;
+    }
+    
+    /** @return the option to show the notes modified this week. */
+    public JMenuItem getOpShowLastWeek()
+    {
+        return this.opShowLastWeek;
+    }
+    
+    /** @return the option to show the notes modified this month. */
+    public JMenuItem getOpShowLastMonth()
+    {
+        return this.opShowLastMonth;
+    }
+    
     /** @return the about option. */
     public JMenuItem getOpAbout()
     {
@@ -282,6 +352,12 @@ public class MainWindowView extends JFrame {
     private JMenuItem opDeleteNote;
     private JMenuItem opPreferences;
     private JMenuItem opViewLog;
+    private JMenuItem opSearch;
+    private JMenuItem opShowAll;
+    private JMenuItem opShowRecent;
+    private JMenuItem opShowToday;
+    private JMenuItem opShowLastWeek;
+    private JMenuItem opShowLastMonth;
     private EditorView editorView;
     private JSplitPane mainSplitPanel;
     private JTextField statusBar;
@@ -8,10 +8,21 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import java.util.function.Consumer;
 
+import com.devbaltasarq.nottakapp.core.Date;
+import com.devbaltasarq.nottakapp.core.Id;
 import com.devbaltasarq.nottakapp.core.NoteProxy;
 import com.devbaltasarq.nottakapp.core.Notebook;
+import com.devbaltasarq.nottakapp.core.NotebookChange;
+import java.awt.EventQueue;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 import java.util.logging.Logger;
 
 
@@ -20,6 +31,43 @@ import java.util.logging.Logger;
   */
 public class NotesTree {
     private static final Logger LOG = Logger.getLogger( NotesTree.class.getName() );
+    /** The number of notes shown in the recent notes view. */
+    public static final int MAX_RECENT = 50;
+    /** The number of notes shown when searching. */
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    /** Which notes are shown, and in which order. */
+    public enum Filter {
+        /** All notes, sorted by title. */
+        ALL( -1 ),
+        /** The most recently modified notes, newest first. */
+        RECENT( -1 ),
+        /** The notes modified today, newest first. */
+        TODAY( 0 ),
+        /** The notes modified in the last seven days, newest first. */
+        LAST_WEEK( 6 ),
+        /** The notes modified in the last thirty days, newest first. */
+        LAST_MONTH( 29 ),
+        /** The notes found by searching their text, most relevant first. */
+        SEARCH( -1 ),
+        /** The notes containing a text, or matching a pattern. */
+        MATCH( -1 );
+
+        Filter(int daysBack)
+        {
+            this.daysBack = daysBack;
+        }
+
+        /** @return the number of days before today in the window,
+          *         or a negative number if this is not a time window.
+          */
+        public int getDaysBack()
+        {
+            return this.daysBack;
+        }
+
+        private final int daysBack;
+    }
 
     public NotesTree(Notebook nb)
     {
@@ -29,6 +77,13 @@ public class NotesTree {
     public NotesTree(NotesTreeView notesTree, Notebook nb)
     {
         this.notebook = nb;
+        this.filter = Filter.ALL;
+        this.query = "";
+        this.pattern = Pattern.compile( "" );
+        this.nodes = new HashMap<>();
+        this.generation = 0;
+        this.queryRunner = Executors.newSingleThreadExecutor(
+                                Thread.ofVirtual().name( "nottakapp-tree" ).factory() );
         this.notesTree = notesTree;
         this.notesTree.addTreeSelectionListener(
                         (evt) -> {
@@ -45,6 +100,10 @@ public class NotesTree {
                             }
                         });
         this.notesTree.addFocusListener( this.focusListener );
+        
+        // The notebook can change in any thread
+        this.notebook.addChangeListener(
+                        (changes) -> EventQueue.invokeLater( () -> this.applyChanges( changes ) ) );
     }
    
     /** @return the corresponding view. */
@@ -68,6 +127,7 @@ public class NotesTree {
     public void removeAll()
     {
         this.getRoot().removeAllChildren();
+        this.nodes.clear();
     }
     
     /** @return the notebook shown. */
@@ -86,6 +146,7 @@ public class NotesTree {
         final var ROOT = this.getRoot();
         
         MODEL.insertNodeInto( NEW_NODE, ROOT, ROOT.getChildCount() );
+        this.nodes.put( note.getId(), NEW_NODE );
         this.expandAll();
     }
     
@@ -98,21 +159,242 @@ public class NotesTree {
         MODEL.reload();
     }
     
+    /** @return the notes shown at the moment. */
+    public Filter getFilter()
+    {
+        return this.filter;
+    }
+    
+    /** Changes the notes shown, and refreshes the tree.
+      * @param filter the new filter.
+      */
+    public void setFilter(Filter filter)
+    {
+        this.filter = filter;
+        this.refresh();
+        this.expandAll();
+    }
+    
+    /** Shows the notes found by searching their text.
+      * @param query the words to look for.
+      */
+    public void search(String query)
+    {
+        this.query = query;
+        this.setFilter( Filter.SEARCH );
+    }
+    
+    /** Shows the notes containing a text, or matching a pattern.
+      * @param pattern the regular expression to match.
+      */
+    public void lookUp(Pattern pattern)
+    {
+        this.pattern = pattern;
+        this.setFilter( Filter.MATCH );
+    }
+    
     public void refresh()
     {
-        final var ALL_NOTES_PROXY = this.notebook.getAllNotes();
+        ++this.generation;
+        this.show( this.notesFor( this.filter, this.query, this.pattern ) );
+    }
+    
+    /** Looks up the notes for the current filter in the background,
+      * and shows them, unless the tree was refreshed meanwhile.
+      * Only the latest of the pending refreshes is looked up.
+      */
+    private void refreshLater()
+    {
+        final long GENERATION = ++this.generation;
+        final Filter FILTER = this.filter;
+        final String QUERY = this.query;
+        final Pattern PATTERN = this.pattern;
         
+        this.queryRunner.execute( () -> {
+            if ( GENERATION == this.generation ) {
+                final List<NoteProxy> NOTES = this.notesFor( FILTER, QUERY, PATTERN );
+                
+                EventQueue.invokeLater( () -> {
+                    if ( GENERATION == this.generation ) {
+                        this.show( NOTES );
+                        this.expandAll();
+                    }
+                });
+            }
+        });
+    }
+    
+    /** Replaces the notes in the tree.
+      * @param notes the notes to show, already sorted.
+      */
+    private void show(List<NoteProxy> notes)
+    {
         this.removeAll();
-        ALL_NOTES_PROXY.sort(
-                (np1, np2) -> np1.getTitle().compareTo( np2.getTitle() ) );
         
-        for(NoteProxy np: ALL_NOTES_PROXY) {
+        for(NoteProxy np: notes) {
             this.add( np );
         }
         
         this.update();
     }
     
+    /** Gets the notes for a filter, already sorted.
+      * Views based on dates are answered by the indexes of the notebook,
+      * so only the notes shown are visited.
+      * This can be called from any thread.
+      * @param filter the filter.
+      * @param query the words to look for, when searching.
+      * @param pattern the pattern to match, when matching.
+      * @return the notes to show.
+      */
+    private List<NoteProxy> notesFor(Filter filter, String query, Pattern pattern)
+    {
+        final List<NoteProxy> TORET;
+        
+        if ( filter == Filter.ALL ) {
+            TORET = new ArrayList<>( this.notebook.getSnapshot().getNotes() );
+            TORET.sort( (np1, np2) -> np1.getTitle().compareTo( np2.getTitle() ) );
+        }
+        else
+        if ( filter == Filter.RECENT ) {
+            TORET = this.notebook.getRecentNotes( MAX_RECENT );
+        }
+        else
+        if ( filter == Filter.SEARCH ) {
+            TORET = this.notebook.search( query, MAX_SEARCH_RESULTS );
+        }
+        else
+        if ( filter == Filter.MATCH ) {
+            TORET = this.notebook.lookUpPattern( pattern, MAX_SEARCH_RESULTS );
+        } else {
+            final Date TODAY = Date.fromSystem();
+            
+            TORET = this.notebook.lookUpModifiedBetween(
+                                        TODAY.minusDays( filter.getDaysBack() ),
+                                        TODAY );
+        }
+        
+        return TORET;
+    }
+    
+
+    /** Applies a batch of changes in the notebook to the tree.
+      * When all notes are shown, only the affected nodes are touched,
+      * and the model is reloaded at most once, when nodes had to be added,
+      * removed or moved. Otherwise, the notes shown are looked up again,
+      * out of the event thread.
+      * @param changes the list of changes.
+      */
+    public void applyChanges(List<NotebookChange> changes)
+    {
+        if ( this.filter == Filter.ALL ) {
+            this.applyChangesByTitle( changes );
+        } else {
+            // Notes come and go with their dates: ask the indexes again
+            this.refreshLater();
+        }
+    }
+    
+    private void applyChangesByTitle(List<NotebookChange> changes)
+    {
+        final var MODEL = (DefaultTreeModel) this.getView().getModel();
+        final var ROOT = this.getRoot();
+        boolean structureChanged = false;
+        
+        for(NotebookChange change: changes) {
+            final DefaultMutableTreeNode NODE = this.nodes.get( change.id() );
+            final NoteProxy PROXY = this.notebook.lookUp( change.id() );
+            
+            if ( PROXY == null
+              || change.kind() == NotebookChange.Kind.DELETED )
+            {
+                if ( NODE != null ) {
+                    ROOT.remove( NODE );
+                    this.nodes.remove( change.id() );
+                    structureChanged = true;
+                }
+            }
+            else
+            if ( NODE != null
+              && this.isInPlace( NODE, PROXY ) )
+            {
+                NODE.setUserObject( PROXY );
+                
+                if ( !structureChanged ) {
+                    MODEL.nodeChanged( NODE );
+                }
+            } else {
+                if ( NODE != null ) {
+                    ROOT.remove( NODE );
+                }
+                
+                final var NEW_NODE = new DefaultMutableTreeNode( PROXY );
+                
+                ROOT.insert( NEW_NODE, this.insertionPointFor( PROXY ) );
+                this.nodes.put( change.id(), NEW_NODE );
+                structureChanged = true;
+            }
+        }
+        
+        if ( structureChanged ) {
+            this.update();
+            this.expandAll();
+        }
+    }
+    
+    /** Checks whether the node is still sorted among its siblings.
+      * @param node the node of the note.
+      * @param proxy the note, probably with a new title.
+      * @return true if it can stay in the same position, false otherwise.
+      */
+    private boolean isInPlace(DefaultMutableTreeNode node, NoteProxy proxy)
+    {
+        final var PREVIOUS = node.getPreviousSibling();
+        final var NEXT = node.getNextSibling();
+        final String TITLE = proxy.getTitle();
+        boolean toret = true;
+        
+        if ( PREVIOUS != null ) {
+            toret = ( ( (NoteProxy) PREVIOUS.getUserObject() )
+                                        .getTitle().compareTo( TITLE ) <= 0 );
+        }
+        
+        if ( toret
+          && NEXT != null )
+        {
+            toret = ( ( (NoteProxy) NEXT.getUserObject() )
+                                        .getTitle().compareTo( TITLE ) >= 0 );
+        }
+        
+        return toret;
+    }
+    
+    /** Finds the position of a note, so the children stay sorted by title.
+      * @param proxy the note to insert.
+      * @return the position in which to insert it.
+      */
+    private int insertionPointFor(NoteProxy proxy)
+    {
+        final var ROOT = this.getRoot();
+        final String TITLE = proxy.getTitle();
+        int low = 0;
+        int high = ROOT.getChildCount();
+        
+        while( low < high ) {
+            final int MIDDLE = ( low + high ) >>> 1;
+            final var NODE = (DefaultMutableTreeNode) ROOT.getChildAt( MIDDLE );
+            final var OTHER = (NoteProxy) NODE.getUserObject();
+            
+            if ( OTHER.getTitle().compareTo( TITLE ) <= 0 ) {
+                low = MIDDLE + 1;
+            } else {
+                high = MIDDLE;
+            }
+        }
+        
+        return low;
+    }
+    
     /** Replaces the selected action event.
       * @param action a lambda accepting a node.
       */
@@ -122,6 +404,12 @@ public class NotesTree {
     }
     
     private final Notebook notebook;
+    private Filter filter;
+    private String query;
+    private Pattern pattern;
+    private final Map<Id, DefaultMutableTreeNode> nodes;
+    private final Executor queryRunner;
+    private volatile long generation;
     private final NotesTreeView notesTree;
     private Consumer<NoteProxy> selectedAction = (n) -> {};
     private final FocusListener focusListener = new FocusListener() {
@@ -0,0 +1,101 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the compressed bitmaps.
+  * @author baltasarq
+  */
+public class CompressedBitmapTest {
+    @Test
+    public void testAddRemove()
+    {
+        final var BITMAP = CompressedBitmap.of( 5, 1, 70_000, 1 );
+
+        assertEquals( 3, BITMAP.cardinality() );
+        assertArrayEquals( new int[] { 1, 5, 70_000 }, BITMAP.toArray() );
+        assertTrue( BITMAP.contains( 70_000 ) );
+        assertFalse( BITMAP.contains( 4 ) );
+
+        BITMAP.remove( 70_000 );
+        BITMAP.remove( 2 );
+
+        assertArrayEquals( new int[] { 1, 5 }, BITMAP.toArray() );
+        assertThrows( IllegalArgumentException.class, () -> BITMAP.add( -1 ) );
+    }
+
+    @Test
+    public void testOperationsMatchBitSet()
+    {
+        final var RND = new Random( 42 );
+
+        // Sparse and dense chunks, so both kinds of containers are mixed
+        for(int density: new int[] { 2, 20, 200 }) {
+            final var A = new CompressedBitmap();
+            final var B = new CompressedBitmap();
+            final var EXPECTED_A = new BitSet();
+            final var EXPECTED_B = new BitSet();
+
+            for(int i = 0; i < 200_000; ++i) {
+                if ( RND.nextInt( density ) == 0 ) {
+                    A.add( i );
+                    EXPECTED_A.set( i );
+                }
+
+                if ( RND.nextInt( 200 / density + 1 ) == 0 ) {
+                    B.add( i );
+                    EXPECTED_B.set( i );
+                }
+            }
+
+            final var AND = (BitSet) EXPECTED_A.clone();
+            final var OR = (BitSet) EXPECTED_A.clone();
+            final var AND_NOT = (BitSet) EXPECTED_A.clone();
+
+            AND.and( EXPECTED_B );
+            OR.or( EXPECTED_B );
+            AND_NOT.andNot( EXPECTED_B );
+
+            assertArrayEquals( EXPECTED_A.stream().toArray(), A.toArray() );
+            assertArrayEquals( AND.stream().toArray(), A.and( B ).toArray() );
+            assertArrayEquals( OR.stream().toArray(), A.or( B ).toArray() );
+            assertArrayEquals( AND_NOT.stream().toArray(), A.andNot( B ).toArray() );
+            assertEquals( OR.cardinality(), B.or( A ).cardinality() );
+        }
+    }
+
+    @Test
+    public void testShrinksWhenEmptied()
+    {
+        final var BITMAP = new CompressedBitmap();
+
+        for(int i = 0; i < 10_000; ++i) {
+            BITMAP.add( i );
+        }
+
+        assertEquals( 8192, BITMAP.sizeInBytes() );
+
+        for(int i = 0; i < 10_000; i += 2) {
+            BITMAP.remove( i );
+        }
+
+        assertEquals( 5_000, BITMAP.cardinality() );
+        assertEquals( 8192, BITMAP.sizeInBytes() );
+
+        for(int i = 1; i < 2_000; i += 2) {
+            BITMAP.remove( i );
+        }
+
+        assertEquals( 4_000 * Character.BYTES, BITMAP.sizeInBytes() );
+        assertTrue( BITMAP.contains( 2_001 ) );
+        assertFalse( BITMAP.contains( 2_002 ) );
+    }
+}
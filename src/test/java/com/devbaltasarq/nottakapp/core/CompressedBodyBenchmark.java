@@ -0,0 +1,88 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+
+/** Shows the throughput of saving and loading large notes,
+  * such as pasted logs, both plain and with their bodies compressed.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.CompressedBodyBenchmark [bodyMb]
+  * @author baltasarq
+  */
+public class CompressedBodyBenchmark {
+    private static final int ROUNDS = 5;
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    private static String logBody(int sizeMb)
+    {
+        final var TORET = new StringBuilder();
+
+        for(int i = 0; TORET.length() < sizeMb * MEGABYTE; ++i) {
+            TORET.append( "2025-01-02 10:" ).append( i % 60 )
+                 .append( " INFO [worker-" ).append( i % 8 )
+                 .append( "] processed request " ).append( i )
+                 .append( " in " ).append( i % 97 ).append( " ms\n" );
+        }
+
+        return TORET.toString();
+    }
+
+    private static void measure(String name, NoteDto note, Path path, long threshold)
+            throws IOException
+    {
+        final double BODY_MB = note.text().length() / MEGABYTE;
+
+        for(int round = 1; round <= ROUNDS; ++round) {
+            long start = System.nanoTime();
+            final byte[] BYTES = note.toBytes( threshold );
+
+            NoteFileWriter.write( path, BYTES, NoteFileWriter.Durability.NONE );
+            final long SAVE = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            NoteFileReader.read( note.id(), path );
+            final long LOAD = System.nanoTime() - start;
+
+            System.out.printf( "#%d %s: %.1f MB on disk, save %.0f MB/s, load %.0f MB/s%n",
+                               round, name,
+                               Files.size( path ) / MEGABYTE,
+                               BODY_MB / ( SAVE / 1e9 ),
+                               BODY_MB / ( LOAD / 1e9 ) );
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        final int BODY_MB = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 8;
+        final Path DIR = Files.createTempDirectory( "nottakapp" );
+        final var NOTE = new NoteDto(
+                                new Id(),
+                                "Pasted log",
+                                new TagSet(),
+                                Date.fromSystem(),
+                                Date.fromSystem(),
+                                logBody( BODY_MB ) );
+
+        try {
+            final Path PATH = DIR.resolve( NOTE.id() + NoteProxy.FILE_EXT );
+
+            measure( "plain", NOTE, PATH, CompressedBody.NEVER );
+            measure( "compressed", NOTE, PATH, CompressedBody.KILOBYTE );
+        } finally {
+            try (Stream<Path> files = Files.walk( DIR )) {
+                for(Path path: files.sorted( Comparator.reverseOrder() ).toList()) {
+                    Files.delete( path );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for finding notes by their dates.
+  * @author baltasarq
+  */
+public class DateIndexTest {
+    @Test
+    public void testFindBetween()
+    {
+        final var INDEX = new DateIndex();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        INDEX.put( ID1, new Date( 2024, 12, 31 ) );
+        INDEX.put( ID2, new Date( 2025, 1, 15 ) );
+        INDEX.put( ID3, new Date( 2025, 2, 1 ) );
+
+        assertEquals( List.of( ID3, ID2 ),
+                      INDEX.findBetween( new Date( 2025, 1, 1 ), new Date( 2025, 2, 1 ) ) );
+        assertEquals( List.of( ID1 ),
+                      INDEX.findBetween( new Date( 2024, 12, 31 ), new Date( 2024, 12, 31 ) ) );
+        assertTrue( INDEX.findBetween( new Date( 2025, 3, 1 ), new Date( 2025, 4, 1 ) ).isEmpty() );
+    }
+
+    @Test
+    public void testMostRecent()
+    {
+        final var INDEX = new DateIndex();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+        final var TODAY = new Date( 2025, 3, 10 );
+
+        INDEX.put( ID1, TODAY );
+        INDEX.put( ID2, TODAY );
+        INDEX.put( ID3, TODAY.minusDays( 20 ) );
+
+        assertEquals( List.of( ID2, ID1, ID3 ), INDEX.findMostRecent( 10 ) );
+
+        // Same day: put keeps the place, while touch makes it the newest
+        INDEX.put( ID1, TODAY );
+        assertEquals( List.of( ID2 ), INDEX.findMostRecent( 1 ) );
+        INDEX.touch( ID1, TODAY );
+        assertEquals( List.of( ID1, ID2 ), INDEX.findMostRecent( 2 ) );
+
+        INDEX.remove( ID1 );
+        INDEX.put( ID3, TODAY.minusDays( -1 ) );
+
+        assertEquals( 2, INDEX.count() );
+        assertEquals( List.of( ID3, ID2 ), INDEX.findMostRecent( 10 ) );
+    }
+
+    @Test
+    public void testMinusDays()
+    {
+        assertEquals( "2024-02-28", new Date( 2024, 3, 1 ).minusDays( 2 ).toString() );
+        assertEquals( "2024-12-25", new Date( 2025, 1, 1 ).minusDays( 7 ).toString() );
+    }
+
+    @Test
+    public void testNotebookRecentNotes() throws IOException
+    {
+        final var NOTEBOOK = Notebook.restoreFrom( new MemoryNoteStore(), 1 );
+        final var OLD_NOTE = new Note(
+                                new Id(),
+                                new Date( 2020, 5, 1 ),
+                                new Date( 2020, 5, 2 ),
+                                "Old",
+                                null,
+                                "" );
+        final var NEW_NOTE = new Note( "New" );
+
+        NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, OLD_NOTE ) );
+        NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NEW_NOTE ) );
+
+        final NoteProxy OLD_PROXY = NOTEBOOK.lookUp( OLD_NOTE.getId() );
+        final NoteProxy NEW_PROXY = NOTEBOOK.lookUp( NEW_NOTE.getId() );
+        final Date TODAY = Date.fromSystem();
+
+        assertEquals( List.of( NEW_PROXY, OLD_PROXY ), NOTEBOOK.getRecentNotes( 5 ) );
+        assertEquals( List.of( NEW_PROXY ),
+                      NOTEBOOK.lookUpModifiedBetween( TODAY.minusDays( 6 ), TODAY ) );
+        assertEquals( List.of( OLD_PROXY ),
+                      NOTEBOOK.lookUpCreatedBetween( new Date( 2020, 1, 1 ),
+                                                     new Date( 2020, 12, 31 ) ) );
+
+        // Saving the old note makes it the most recent one
+        OLD_NOTE.replaceTitle( "Old, edited" );
+        OLD_PROXY.save();
+
+        assertEquals( List.of( OLD_PROXY, NEW_PROXY ), NOTEBOOK.getRecentNotes( 5 ) );
+        assertEquals( List.of( OLD_PROXY ),
+                      NOTEBOOK.lookUpCreatedBetween( new Date( 2020, 1, 1 ),
+                                                     new Date( 2020, 12, 31 ) ) );
+    }
+}
@@ -0,0 +1,81 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+/** Shows the time taken by ranked searches over many notes,
+  * with words following a skewed distribution, as in real text.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.FullTextIndexBenchmark [numNotes]
+  * @author baltasarq
+  */
+public class FullTextIndexBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int QUERIES = 100;
+    private static final int MAX_RESULTS = 20;
+    private static final int NUM_WORDS = 20_000;
+    private static final int WORDS_PER_NOTE = 100;
+
+    public static void main(String[] args) throws IOException
+    {
+        final int NUM_NOTES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 100_000;
+        final Path DIR = Files.createTempDirectory( "nottakapp-search" );
+        final var RND = new Random( 42 );
+        final var WORDS = new String[ NUM_WORDS ];
+
+        for(int i = 0; i < NUM_WORDS; ++i) {
+            WORDS[ i ] = "w" + Integer.toString( i, 36 );
+        }
+
+        try (var index = new FullTextIndex( DIR )) {
+            long start = System.nanoTime();
+
+            for(int i = 0; i < NUM_NOTES; ++i) {
+                final var TEXT = new StringBuilder();
+
+                // Skewed, so a few words are in most notes
+                for(int j = 0; j < WORDS_PER_NOTE; ++j) {
+                    TEXT.append( WORDS[ (int) ( NUM_WORDS * Math.pow( RND.nextDouble(), 4 ) ) ] );
+                    TEXT.append( ' ' );
+                }
+
+                index.put( new Id(), i, TEXT.toString() );
+            }
+
+            index.flush();
+            index.waitForPending();
+
+            System.out.printf( "%d notes indexed in %.1f ms, in %d segments%n",
+                               NUM_NOTES,
+                               ( System.nanoTime() - start ) / 1_000_000.0,
+                               index.getNumSegments() );
+
+            for(int round = 1; round <= ROUNDS; ++round) {
+                int found = 0;
+
+                start = System.nanoTime();
+
+                for(int i = 0; i < QUERIES; ++i) {
+                    final String QUERY = WORDS[ i % 10 ]
+                                         + " " + WORDS[ 100 + i ]
+                                         + " " + WORDS[ 5000 + i ];
+
+                    found += index.search( QUERY, MAX_RESULTS ).size();
+                }
+
+                System.out.printf( "#%d %.2f ms per query (%d notes found per query)%n",
+                                   round,
+                                   ( System.nanoTime() - start ) / 1_000_000.0 / QUERIES,
+                                   found / QUERIES );
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the full-text index.
+  * @author baltasarq
+  */
+public class FullTextIndexTest {
+    private static List<Id> idsOf(List<FullTextIndex.Hit> hits)
+    {
+        return hits.stream().map( FullTextIndex.Hit::id ).toList();
+    }
+
+    private static boolean isSegment(Path path)
+    {
+        return path.getFileName().toString().endsWith( FullTextIndex.SEGMENT_EXT );
+    }
+
+    @Test
+    public void testTokenize()
+    {
+        assertEquals( List.of( "cafe", "con", "leche", "x86", "cafe" ),
+                      FullTextIndex.tokenize( "Café con LECHE, a x86; ¡café!" ) );
+        assertTrue( FullTextIndex.tokenize( " - a . " ).isEmpty() );
+    }
+
+    @Test
+    public void testSearchSurvivesReopen(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        try (final var INDEX = new FullTextIndex( dir, 2 )) {
+            INDEX.put( ID1, 10, "Bread recipe: flour, water and salt" );
+            INDEX.put( ID2, 20, "Salt, salt and more salt" );
+            INDEX.put( ID3, 30, "Meeting minutes" );
+
+            assertEquals( 1, INDEX.getNumSegments() );
+            assertEquals( List.of( ID2, ID1 ), idsOf( INDEX.search( "salt", 10 ) ) );
+            assertEquals( List.of( ID3 ), idsOf( INDEX.search( "MINUTES", 10 ) ) );
+        }
+
+        try (final var INDEX = new FullTextIndex( dir, 2 )) {
+            assertEquals( 3, INDEX.count() );
+            assertEquals( 30, INDEX.stampOf( ID3 ) );
+            assertEquals( FullTextIndex.NOT_INDEXED, INDEX.stampOf( new Id() ) );
+            assertEquals( List.of( ID1 ), idsOf( INDEX.search( "flour", 10 ) ) );
+            assertEquals( List.of( ID2 ), idsOf( INDEX.search( "salt", 1 ) ) );
+        }
+    }
+
+    @Test
+    public void testUpdateRemoveAndMerge(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        try (final var INDEX = new FullTextIndex( dir, 1 )) {
+            INDEX.put( ID1, 1, "first draft" );
+            INDEX.put( ID2, 1, "another draft" );
+            INDEX.put( ID1, 2, "final version" );
+            INDEX.remove( ID2 );
+
+            assertEquals( 4, INDEX.getNumSegments() );
+            assertTrue( INDEX.search( "draft", 10 ).isEmpty() );
+            assertEquals( List.of( ID1 ), idsOf( INDEX.search( "final", 10 ) ) );
+
+            INDEX.merge();
+
+            assertEquals( 1, INDEX.getNumSegments() );
+            assertEquals( 1, INDEX.count() );
+            assertEquals( List.of( ID1 ), idsOf( INDEX.search( "version", 10 ) ) );
+        }
+
+        try (var files = Files.list( dir )) {
+            assertEquals( 1, files.filter( FullTextIndexTest::isSegment ).count() );
+        }
+
+        try (final var INDEX = new FullTextIndex( dir, 1 )) {
+            assertEquals( 2, INDEX.stampOf( ID1 ) );
+            assertEquals( FullTextIndex.NOT_INDEXED, INDEX.stampOf( ID2 ) );
+            assertTrue( INDEX.search( "draft", 10 ).isEmpty() );
+        }
+    }
+
+    @Test
+    public void testCorruptedSegmentIsDropped(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+
+        try (final var INDEX = new FullTextIndex( dir, 1 )) {
+            INDEX.put( ID, 1, "some words" );
+        }
+
+        try (var files = Files.list( dir )) {
+            final Path SEGMENT = files.filter( FullTextIndexTest::isSegment )
+                                      .findFirst().orElseThrow();
+
+            Files.write( SEGMENT, new byte[] { 1, 2, 3 } );
+        }
+
+        try (final var INDEX = new FullTextIndex( dir, 1 )) {
+            assertEquals( FullTextIndex.NOT_INDEXED, INDEX.stampOf( ID ) );
+            assertTrue( INDEX.search( "words", 10 ).isEmpty() );
+        }
+    }
+
+    @Test
+    public void testNotebookKeepsIndexUpToDate(@TempDir Path dir) throws IOException
+    {
+        final Path NOTES_DIR = Files.createDirectory( dir.resolve( "notes" ) );
+        final Path INDEX_DIR = dir.resolve( "search" );
+        final var ID = new Id();
+
+        Files.writeString( NOTES_DIR.resolve( ID + NoteProxy.FILE_EXT ),
+                           "# Holidays\nTravel\n2025-01-01\n2025-01-02\n"
+                           + "Book the **flights** to Lisbon.\n" );
+
+        try (final var INDEX = new FullTextIndex( INDEX_DIR )) {
+            final var NOTEBOOK = Notebook.restoreFrom( NOTES_DIR.toString() );
+
+            // Notes already there are indexed when attaching the index
+            NOTEBOOK.attachSearchIndex( INDEX );
+            INDEX.waitForPending();
+
+            assertEquals( List.of( NOTEBOOK.lookUp( ID ) ), NOTEBOOK.search( "flights", 10 ) );
+            assertEquals( List.of( NOTEBOOK.lookUp( ID ) ), NOTEBOOK.search( "travel", 10 ) );
+
+            // Saved notes are indexed again
+            final var NOTE = new Note( "Shopping" );
+
+            NOTE.replace( "Milk and eggs" );
+            NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+            NOTEBOOK.lookUp( NOTE.getId() ).save();
+            INDEX.waitForPending();
+
+            assertEquals( List.of( NOTEBOOK.lookUp( NOTE.getId() ) ),
+                          NOTEBOOK.search( "eggs", 10 ) );
+
+            NOTEBOOK.delete( NOTEBOOK.lookUp( NOTE.getId() ) );
+            INDEX.waitForPending();
+
+            assertTrue( NOTEBOOK.search( "eggs", 10 ).isEmpty() );
+        }
+
+        // Nothing to do when attaching again
+        try (final var INDEX = new FullTextIndex( INDEX_DIR )) {
+            final var NOTEBOOK = Notebook.restoreFrom( NOTES_DIR.toString() );
+
+            NOTEBOOK.attachSearchIndex( INDEX );
+
+            assertEquals( 1, INDEX.count() );
+            assertEquals( 1, NOTEBOOK.search( "lisbon", 10 ).size() );
+        }
+    }
+}
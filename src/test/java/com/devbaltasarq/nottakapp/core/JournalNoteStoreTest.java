@@ -0,0 +1,218 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for notebooks kept in an append-only journal.
+  * @author baltasarq
+  */
+public class JournalNoteStoreTest {
+    private static final long SMALL_SEGMENT_SIZE = 1024;
+
+    private static Path[] segmentsIn(Path dir) throws IOException
+    {
+        try (Stream<Path> files = Files.list( dir )) {
+            return files.filter( (path) -> path.toString().endsWith( JournalNoteStore.SEGMENT_EXT ) )
+                        .sorted()
+                        .toArray( Path[]::new );
+        }
+    }
+
+    @Test
+    public void testWriteAndReopen(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        try (final var STORE = new JournalNoteStore( dir, SMALL_SEGMENT_SIZE )) {
+            TestNotes.writeNote( STORE, ID1, "First", "Some text.\n".repeat( 50 ) );
+            TestNotes.writeNote( STORE, ID2, "Second", "Some text.\n".repeat( 50 ) );
+            TestNotes.writeNote( STORE, ID1, "First changed", "Other text.\n" );
+            TestNotes.writeNote( STORE, ID3, "Third", "" );
+            STORE.delete( STORE.locationFor( ID3 ) );
+
+            assertTrue( STORE.getNumSegments() > 1 );
+        }
+
+        // Sealed segments are read from their footers, the last one scanned
+        try (final var STORE = new JournalNoteStore( dir, SMALL_SEGMENT_SIZE )) {
+            assertEquals( 2, STORE.count() );
+            assertEquals( "First changed", STORE.readHeader( STORE.locationFor( ID1 ) ).title() );
+            assertArrayEquals( TestNotes.noteBytes( "Second", "Some text.\n".repeat( 50 ) ),
+                               STORE.readBytes( STORE.locationFor( ID2 ) ) );
+            assertEquals( 0, STORE.lastModified( STORE.locationFor( ID3 ) ) );
+        }
+    }
+
+    @Test
+    public void testTruncatedRecordDiscarded(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        try (final var STORE = new JournalNoteStore( dir )) {
+            TestNotes.writeNote( STORE, ID1, "First", "Some text.\n" );
+            TestNotes.writeNote( STORE, ID2, "Second", "Some text.\n" );
+        }
+
+        final Path SEGMENT = segmentsIn( dir )[ 0 ];
+
+        try (var channel = FileChannel.open( SEGMENT, StandardOpenOption.WRITE )) {
+            channel.truncate( channel.size() - 3 );
+        }
+
+        try (final var STORE = new JournalNoteStore( dir )) {
+            assertEquals( 1, STORE.count() );
+            assertEquals( "First", STORE.readHeader( STORE.locationFor( ID1 ) ).title() );
+
+            // The journal can still be appended to
+            TestNotes.writeNote( STORE, ID2, "Second again", "" );
+        }
+
+        try (final var STORE = new JournalNoteStore( dir )) {
+            assertEquals( 2, STORE.count() );
+            assertEquals( "Second again", STORE.readHeader( STORE.locationFor( ID2 ) ).title() );
+        }
+    }
+
+    @Test
+    public void testCompactKeepsLastVersions(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        try (final var STORE = new JournalNoteStore( dir, SMALL_SEGMENT_SIZE )) {
+            TestNotes.writeNote( STORE, ID3, "Third", "Some text.\n".repeat( 20 ) );
+
+            for(int i = 0; i < 20; ++i) {
+                TestNotes.writeNote( STORE, ID1, "First " + i, "Some text.\n".repeat( 20 ) );
+            }
+
+            TestNotes.writeNote( STORE, ID2, "Second", "" );
+            STORE.delete( STORE.locationFor( ID3 ) );
+
+            final int NUM_SEGMENTS = STORE.getNumSegments();
+
+            assertTrue( STORE.compact() > 0 );
+            assertTrue( STORE.getNumSegments() < NUM_SEGMENTS );
+            assertEquals( 2, STORE.count() );
+            assertEquals( "First 19", STORE.readHeader( STORE.locationFor( ID1 ) ).title() );
+        }
+
+        try (final var STORE = new JournalNoteStore( dir, SMALL_SEGMENT_SIZE )) {
+            assertEquals( 2, STORE.count() );
+            assertEquals( "First 19", STORE.readHeader( STORE.locationFor( ID1 ) ).title() );
+            assertEquals( "Second", STORE.readHeader( STORE.locationFor( ID2 ) ).title() );
+            assertEquals( 0, STORE.lastModified( STORE.locationFor( ID3 ) ) );
+        }
+    }
+
+    @Test
+    public void testCompactSettlesTombstones(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+        final var ID4 = new Id();
+
+        try (final var STORE = new JournalNoteStore( dir, SMALL_SEGMENT_SIZE )) {
+            // The first segment is kept, with a version of a note deleted later
+            TestNotes.writeNote( STORE, ID4, "Fourth", "Some text.\n".repeat( 40 ) );
+            TestNotes.writeNote( STORE, ID1, "First", "Some text.\n" );
+            TestNotes.writeNote( STORE, ID2, "Second", "Some text.\n".repeat( 80 ) );
+            STORE.delete( STORE.locationFor( ID1 ) );
+            TestNotes.writeNote( STORE, ID2, "Second changed", "Some text.\n".repeat( 83 ) );
+
+            // The tombstone is copied forward alone, to a segment of its own
+            assertEquals( 1, STORE.compact() );
+            TestNotes.writeNote( STORE, ID3, "Third", "Some text.\n".repeat( 84 ) );
+            assertEquals( 0, STORE.compact() );
+            TestNotes.writeNote( STORE, ID3, "Third changed", "Some text.\n".repeat( 84 ) );
+            STORE.compact();
+            assertEquals( 0, STORE.compact() );
+
+            // Once the old version is gone, so is the tombstone
+            STORE.delete( STORE.locationFor( ID4 ) );
+            TestNotes.writeNote( STORE, ID2, "Second again", "Some text.\n".repeat( 80 ) );
+            TestNotes.writeNote( STORE, ID3, "Third again", "Some text.\n".repeat( 84 ) );
+
+            int rounds = 0;
+            while( STORE.compact() > 0
+                && rounds < 10 )
+            {
+                ++rounds;
+            }
+
+            assertTrue( rounds < 10 );
+            assertEquals( 2, STORE.count() );
+        }
+
+        try (final var STORE = new JournalNoteStore( dir, SMALL_SEGMENT_SIZE )) {
+            assertEquals( 2, STORE.count() );
+            assertEquals( 0, STORE.lastModified( STORE.locationFor( ID1 ) ) );
+            assertEquals( 0, STORE.lastModified( STORE.locationFor( ID4 ) ) );
+            assertEquals( "Third again", STORE.readHeader( STORE.locationFor( ID3 ) ).title() );
+        }
+    }
+
+    @Test
+    public void testNotebookInJournal(@TempDir Path dir) throws IOException
+    {
+        final var NOTE = new Note( "New note" );
+
+        try (final var STORE = new JournalNoteStore( dir )) {
+            final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+
+            NOTE.replace( "Contents.\n" );
+            NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+            NOTEBOOK.saveAll();
+        }
+
+        try (final var STORE = new JournalNoteStore( dir )) {
+            final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+
+            assertEquals( "New note", NOTEBOOK.lookUp( NOTE.getId() ).getTitle() );
+            assertEquals( "Contents.\n", NOTEBOOK.lookUp( NOTE.getId() ).getNote().get() );
+        }
+    }
+
+    @Test
+    public void testExportAndImport(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+        final Path NOTES_DIR = dir.resolve( "notes" );
+        final var DIR_STORE = new DirectoryNoteStore( NOTES_DIR, NotesLayout.FLAT, 1 );
+
+        Files.createDirectories( NOTES_DIR );
+
+        try (final var STORE = new JournalNoteStore( dir.resolve( "journal" ) )) {
+            TestNotes.writeNote( STORE, ID, "First", "Some text.\n" );
+            STORE.exportTo( DIR_STORE );
+        }
+
+        assertArrayEquals( TestNotes.noteBytes( "First", "Some text.\n" ),
+                           Files.readAllBytes( Path.of( DIR_STORE.locationFor( ID ) ) ) );
+
+        try (final var STORE = new JournalNoteStore( dir.resolve( "imported" ) )) {
+            STORE.importFrom( DIR_STORE );
+
+            assertEquals( 1, STORE.count() );
+            assertEquals( "First", STORE.readHeader( STORE.locationFor( ID ) ).title() );
+        }
+    }
+}
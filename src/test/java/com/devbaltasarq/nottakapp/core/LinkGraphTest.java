@@ -0,0 +1,108 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the graph of links among notes.
+  * @author baltasarq
+  */
+public class LinkGraphTest {
+    @Test
+    public void testFindRefs()
+    {
+        assertEquals( List.of( "Plans", "abc.md" ),
+                      LinkGraph.findRefs( "See [the plans|Plans], and **[this|abc.md]**.\n"
+                                          + "Also [a web page](https://example.com)." ) );
+        assertTrue( LinkGraph.findRefs( "No links here." ).isEmpty() );
+    }
+
+    @Test
+    public void testForwardAndReverse()
+    {
+        final var GRAPH = new LinkGraph();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        GRAPH.put( ID1, List.of( "Plans", "Ideas.md" ) );
+        GRAPH.put( ID2, List.of( "plans " ) );
+
+        assertEquals( List.of( "Plans", "Ideas.md" ), GRAPH.getRefs( ID1 ) );
+        assertEquals( List.of( ID1, ID2 ), GRAPH.getSources( "PLANS" ) );
+        assertEquals( List.of( ID1 ), GRAPH.getSources( "ideas" ) );
+
+        GRAPH.put( ID1, List.of( "Ideas" ) );
+
+        assertEquals( List.of( ID2 ), GRAPH.getSources( "Plans" ) );
+        assertEquals( List.of( ID1 ), GRAPH.getSources( "Ideas.md" ) );
+
+        GRAPH.remove( ID2 );
+
+        assertTrue( GRAPH.getSources( "Plans" ).isEmpty() );
+        assertTrue( GRAPH.getRefs( ID2 ).isEmpty() );
+        assertEquals( 1, GRAPH.count() );
+    }
+
+    @Test
+    public void testNotebookBacklinks(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        Files.writeString( dir.resolve( ID1 + NoteProxy.FILE_EXT ),
+                           "# Plans\n\n2025-01-01\n2025-01-02\nTo do.\n" );
+        Files.writeString( dir.resolve( ID2 + NoteProxy.FILE_EXT ),
+                           "# Monday\n\n2025-01-01\n2025-01-02\nSee [the plans|Plans].\n" );
+        Files.writeString( dir.resolve( ID3 + NoteProxy.FILE_EXT ),
+                           "# Tuesday\n\n2025-01-01\n2025-01-02\nSee [monday|" + ID2 + NoteProxy.FILE_EXT + "].\n" );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy PLANS = NOTEBOOK.lookUp( ID1 );
+        final NoteProxy MONDAY = NOTEBOOK.lookUp( ID2 );
+        final NoteProxy TUESDAY = NOTEBOOK.lookUp( ID3 );
+
+        // Only headers were read, so references are found in the background
+        NOTEBOOK.waitForPendingRefs();
+
+        assertEquals( List.of( MONDAY ), NOTEBOOK.getBacklinks( PLANS ) );
+        assertEquals( List.of( TUESDAY ), NOTEBOOK.getBacklinks( MONDAY ) );
+        assertEquals( List.of( PLANS ), NOTEBOOK.getLinks( MONDAY ) );
+        assertTrue( NOTEBOOK.getBacklinks( TUESDAY ).isEmpty() );
+
+        // Saving a note updates its references
+        PLANS.getNote().replace( "Back to [monday|Monday]." );
+        PLANS.save();
+
+        assertEquals( Set.of( PLANS, TUESDAY ), Set.copyOf( NOTEBOOK.getBacklinks( MONDAY ) ) );
+
+        MONDAY.getNote().replace( "Nothing planned." );
+        MONDAY.save();
+
+        assertTrue( NOTEBOOK.getBacklinks( PLANS ).isEmpty() );
+
+        // References are kept in the index of headers
+        NOTEBOOK.saveIndex();
+
+        final NotebookIndex INDEX = NotebookIndex.loadFrom( dir );
+
+        assertEquals( List.of( "Monday" ), INDEX.get( ID1 ).refs() );
+        assertEquals( List.of(), INDEX.get( ID2 ).refs() );
+
+        final var RESTORED = Notebook.restoreFrom( dir.toString() );
+
+        assertEquals( Set.of( RESTORED.lookUp( ID1 ), RESTORED.lookUp( ID3 ) ),
+                      Set.copyOf( RESTORED.getBacklinks( RESTORED.lookUp( ID2 ) ) ) );
+    }
+}
@@ -0,0 +1,105 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for notebooks kept in memory, through the NoteStore interface.
+  * @author baltasarq
+  */
+public class MemoryNoteStoreTest {
+    @Test
+    public void testRestoreAndLoad() throws IOException
+    {
+        final var STORE = new MemoryNoteStore();
+        final var ID = new Id();
+
+        TestNotes.writeNote( STORE, ID, "First", "Some text.\n" );
+
+        final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+        final NoteProxy PROXY = NOTEBOOK.lookUp( ID );
+
+        assertEquals( "First", PROXY.getTitle() );
+        assertFalse( PROXY.isLoaded() );
+        assertEquals( "Some text.\n", PROXY.getNote().get() );
+        assertEquals( STORE.hash( PROXY.getPath() ), PROXY.getContentHash() );
+    }
+
+    @Test
+    public void testSaveAndReload() throws IOException
+    {
+        final var STORE = new MemoryNoteStore();
+        final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+        final var NOTE = new Note( "New note" );
+
+        NOTE.replace( "Contents.\n" );
+        NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+        NOTEBOOK.lookUp( NOTE.getId() ).save( NOTEBOOK.getPath(), NoteProxy.MANDATORY_SAVE );
+
+        assertEquals( 1, STORE.count() );
+
+        final var REOPENED = Notebook.restoreFrom( STORE, 1 );
+
+        assertEquals( "New note", REOPENED.lookUp( NOTE.getId() ).getTitle() );
+        assertEquals( "Contents.\n", REOPENED.lookUp( NOTE.getId() ).getNote().get() );
+    }
+
+    @Test
+    public void testReadOnly()
+    {
+        final var NOTEBOOK = Notebook.restoreFrom( new MemoryNoteStore( "notes.zip", true ), 1 );
+
+        assertTrue( NOTEBOOK.isReadOnly() );
+        assertTrue( NOTEBOOK.getAllIds().isEmpty() );
+        assertFalse( new MemoryNoteStore().isReadOnly() );
+    }
+
+    @Test
+    public void testUpdatePicksChanges() throws IOException
+    {
+        final var STORE = new MemoryNoteStore();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+
+        TestNotes.writeNote( STORE, ID1, "First", "Some text.\n" );
+        final String LOCATION2 = TestNotes.writeNote( STORE, ID2, "Second", "Some text.\n" );
+
+        final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+
+        NOTEBOOK.addChangeListener( (changes) -> BATCHES.add( changes ) );
+        TestNotes.writeNote( STORE, ID1, "First changed", "Other text.\n" );
+        STORE.delete( LOCATION2 );
+        NOTEBOOK.update();
+
+        assertEquals( 1, BATCHES.size() );
+        assertEquals( 2, BATCHES.get( 0 ).size() );
+        assertEquals( "First changed", NOTEBOOK.lookUp( ID1 ).getTitle() );
+        assertNull( NOTEBOOK.lookUp( ID2 ) );
+    }
+
+    @Test
+    public void testMove() throws IOException
+    {
+        final var STORE = new MemoryNoteStore();
+        final String FROM = TestNotes.writeNote( STORE, new Id(), "First", "" );
+        final String TO = TestNotes.writeNote( STORE, new Id(), "Second", "" );
+        final FileStamp STAMP = STORE.stamp( FROM );
+
+        assertThrows( IOException.class, () -> STORE.move( FROM, TO ) );
+        STORE.delete( TO );
+        STORE.move( FROM, TO );
+
+        assertEquals( STAMP, STORE.stamp( TO ) );
+        assertEquals( 0, STORE.lastModified( FROM ) );
+        assertEquals( "First", STORE.readHeader( TO ).title() );
+    }
+}
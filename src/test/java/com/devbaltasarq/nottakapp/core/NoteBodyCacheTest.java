@@ -0,0 +1,132 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the memory budget of loaded note bodies.
+  * @author baltasarq
+  */
+public class NoteBodyCacheTest {
+    private static final String BODY = "x".repeat( 4096 ) + "\n";
+
+    private static Id writeNote(Path dir, String title) throws IOException
+    {
+        final var TORET = new Id();
+
+        TestNotes.writeNote( dir, TORET, title, BODY );
+        return TORET;
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed(@TempDir Path dir) throws IOException
+    {
+        final Id ID1 = writeNote( dir, "One" );
+        final Id ID2 = writeNote( dir, "Two" );
+        final Id ID3 = writeNote( dir, "Three" );
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteBodyCache CACHE = NOTEBOOK.getBodyCache();
+        final NoteProxy P1 = NOTEBOOK.lookUp( ID1 );
+        final NoteProxy P2 = NOTEBOOK.lookUp( ID2 );
+        final NoteProxy P3 = NOTEBOOK.lookUp( ID3 );
+
+        CACHE.setBudget( 20_000 );
+        P1.getNote();
+        P2.getNote();
+        P1.getNote();
+        P3.getNote();
+
+        // Two bodies fit: the least recently used one, P2, is gone
+        assertTrue( P1.isLoaded() );
+        assertFalse( P2.isLoaded() );
+        assertTrue( P3.isLoaded() );
+        assertEquals( "Two", P2.getTitle() );
+        assertEquals( BODY, P2.getNote().get() );
+
+        final NoteBodyCache.Stats STATS = CACHE.getStats();
+
+        assertEquals( 1, STATS.hits() );
+        assertEquals( 4, STATS.misses() );
+        assertEquals( 2, STATS.evictions() );
+        assertTrue( STATS.residentBytes() <= STATS.budgetBytes() );
+    }
+
+    @Test
+    public void testKeepsDirtyAndCurrent(@TempDir Path dir) throws IOException
+    {
+        final Id ID1 = writeNote( dir, "One" );
+        final Id ID2 = writeNote( dir, "Two" );
+        final Id ID3 = writeNote( dir, "Three" );
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteBodyCache CACHE = NOTEBOOK.getBodyCache();
+        final NoteProxy P1 = NOTEBOOK.lookUp( ID1 );
+        final NoteProxy P2 = NOTEBOOK.lookUp( ID2 );
+        final NoteProxy P3 = NOTEBOOK.lookUp( ID3 );
+
+        P1.getNote().replaceTitle( "Changed" );
+        CACHE.setCurrent( P2 );
+        P2.getNote();
+        P3.getNote();
+        CACHE.setBudget( 0 );
+
+        assertTrue( P1.isLoaded() );
+        assertTrue( P2.isLoaded() );
+        assertFalse( P3.isLoaded() );
+        assertEquals( "Changed", P1.getTitle() );
+    }
+
+    @Test
+    public void testEvictedNoteIsDetached(@TempDir Path dir) throws IOException
+    {
+        final Id ID1 = writeNote( dir, "One" );
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy P1 = NOTEBOOK.lookUp( ID1 );
+        final Note NOTE = P1.getNote();
+
+        NOTEBOOK.getBodyCache().setBudget( 0 );
+        assertFalse( P1.isLoaded() );
+
+        // Changes in the dropped note do not reach the notebook
+        NOTE.replaceTitle( "Stale" );
+        assertFalse( NOTEBOOK.getDirtyNotes().contains( P1 ) );
+        assertEquals( "One", P1.getTitle() );
+    }
+
+    @Test
+    public void testEvictsInEvictor(@TempDir Path dir) throws IOException
+    {
+        final Id ID1 = writeNote( dir, "One" );
+        final Id ID2 = writeNote( dir, "Two" );
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteBodyCache CACHE = NOTEBOOK.getBodyCache();
+        final NoteProxy P1 = NOTEBOOK.lookUp( ID1 );
+        final NoteProxy P2 = NOTEBOOK.lookUp( ID2 );
+        final List<Runnable> PENDING = new ArrayList<>();
+
+        CACHE.setEvictor( PENDING::add );
+        CACHE.setBudget( 0 );
+        CACHE.setCurrent( P2 );
+        P1.getNote();
+        P2.getNote();
+
+        // Nothing is dropped until the evictor runs
+        assertTrue( P1.isLoaded() );
+        assertTrue( P2.isLoaded() );
+        assertEquals( 1, PENDING.size() );
+        assertFalse( P2.unload() );
+
+        PENDING.forEach( Runnable::run );
+        assertFalse( P1.isLoaded() );
+        assertTrue( P2.isLoaded() );
+    }
+}
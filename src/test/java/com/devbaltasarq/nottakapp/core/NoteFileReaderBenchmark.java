@@ -0,0 +1,63 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/** Shows how the time to load a note grows with its size.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.NoteFileReaderBenchmark
+  * The time per MB should stay roughly constant as sizes double.
+  * @author baltasarq
+  */
+public class NoteFileReaderBenchmark {
+    private static final int ROUNDS = 5;
+    private static final String HEADER = "# Meeting log\nWork\n2025-01-02\n2025-01-03\n";
+    private static final String LINE = "12:00:01 Someone said something worth logging.\n";
+
+    private static double timeLoad(Path path, long streamingThreshold) throws IOException
+    {
+        long best = Long.MAX_VALUE;
+
+        for(int i = 0; i < ROUNDS; ++i) {
+            final long START = System.nanoTime();
+
+            NoteFileReader.read( new Id(), path, streamingThreshold );
+            best = Math.min( best, System.nanoTime() - START );
+        }
+
+        return best / 1_000_000.0;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        final Path PATH = Files.createTempFile( "nottakapp", NoteProxy.FILE_EXT );
+
+        try {
+            System.out.println( "    size     mapped   ms/MB   streamed   ms/MB" );
+
+            for(int sizeKb = 256; sizeKb <= 64 * 1024; sizeKb *= 2) {
+                final int NUM_LINES = ( sizeKb * 1024 ) / LINE.length();
+
+                Files.writeString( PATH, HEADER + LINE.repeat( NUM_LINES ) );
+
+                final double MB = Files.size( PATH ) / ( 1024.0 * 1024.0 );
+                final double MAPPED = timeLoad( PATH, Long.MAX_VALUE );
+                final double STREAMED = timeLoad( PATH, 0 );
+
+                System.out.printf( "%6d KB %8.2f ms %6.2f %8.2f ms %6.2f%n",
+                                   sizeKb,
+                                   MAPPED, MAPPED / MB,
+                                   STREAMED, STREAMED / MB );
+            }
+        } finally {
+            Files.deleteIfExists( PATH );
+        }
+    }
+}
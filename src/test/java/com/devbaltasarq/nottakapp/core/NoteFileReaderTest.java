@@ -0,0 +1,121 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the linear reader of whole notes.
+  * @author baltasarq
+  */
+public class NoteFileReaderTest {
+    private static final String HEADER = "# Título\nWork\n2025-01-02\n2025-01-03\n";
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "",
+        "One line",
+        "One line\n",
+        "First\n\nThird  \n\n  \n",
+        "Windows\r\nlines\r\n",
+        "Ñandú, ümlaut & 漢字\n",
+    })
+    public void testSameAsScanner(String body, @TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+        final var ID = new Id();
+        final byte[] BYTES = ( HEADER + body ).getBytes( StandardCharsets.UTF_8 );
+
+        Files.write( PATH, BYTES );
+
+        final NoteDto EXPECTED = NoteDto.retrieveFrom(
+                                        ID,
+                                        new ByteArrayInputStream( BYTES ) );
+        final NoteDto READ = NoteFileReader.read( ID, PATH );
+        final NoteDto MAPPED = NoteFileReader.readHashed(
+                                        ID, PATH,
+                                        NoteFileReader.STREAMING_THRESHOLD, 0 ).note();
+        final NoteDto STREAMED = NoteFileReader.read( ID, PATH, 0 );
+
+        assertEquals( EXPECTED.title(), READ.title() );
+        assertEquals( EXPECTED.dateModification(), READ.dateModification() );
+        assertEquals( EXPECTED.text(), READ.text() );
+        assertEquals( EXPECTED.text(), MAPPED.text() );
+        assertEquals( EXPECTED.text(), STREAMED.text() );
+        assertEquals( ID, READ.id() );
+    }
+
+    @Test
+    public void testBigBody(@TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+        final String BODY = "A line of text in a long log.\n".repeat( 100_000 );
+
+        Files.writeString( PATH, HEADER + BODY );
+
+        assertEquals( BODY, NoteFileReader.read( new Id(), PATH ).text() );
+        assertEquals( BODY, NoteFileReader.read( new Id(), PATH, 1024 ).text() );
+    }
+
+    @Test
+    public void testOverwriteAfterReading(@TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+        final var ID = new Id();
+
+        Files.writeString( PATH, HEADER + "Before.\n" );
+        assertEquals( "Before.\n", NoteFileReader.read( ID, PATH ).text() );
+
+        // Nothing keeps the file busy after reading it
+        NoteFileWriter.write( PATH,
+                              ( HEADER + "After.\n" ).getBytes( StandardCharsets.UTF_8 ),
+                              NoteFileWriter.Durability.DEFAULT );
+        assertEquals( "After.\n", NoteFileReader.read( ID, PATH ).text() );
+
+        Files.delete( PATH );
+        assertFalse( Files.exists( PATH ) );
+    }
+
+    @Test
+    public void testCompressedBody(@TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+        final var ID = new Id();
+        final NoteDto NOTE = NoteDto.retrieveFrom(
+                                ID,
+                                new ByteArrayInputStream(
+                                    ( HEADER + "A line of text in a long log.\n".repeat( 10_000 ) )
+                                                .getBytes( StandardCharsets.UTF_8 ) ) );
+        final byte[] BYTES = NOTE.toBytes( 1024 );
+
+        Files.write( PATH, BYTES );
+
+        assertTrue( BYTES.length < NOTE.toBytes().length / 10 );
+        assertEquals( NOTE.title(), NoteHeaderReader.read( PATH ).title() );
+        assertEquals( NOTE.text(), NoteFileReader.read( ID, PATH ).text() );
+        assertEquals( NOTE.text(), NoteFileReader.read( ID, PATH, 0 ).text() );
+        assertEquals( NOTE.text(), NoteFileReader.readHashed( ID, BYTES ).note().text() );
+        assertEquals( NOTE.text(),
+                      NoteDto.retrieveFrom( ID, new ByteArrayInputStream( BYTES ) ).text() );
+        assertEquals( ContentHash.of( BYTES ), NoteFileReader.readHashed( ID, PATH ).hash() );
+
+        // Small bodies are kept as plain text
+        final var SMALL = new NoteDto( ID, "Small", new TagSet(),
+                                       Date.fromSystem(), Date.fromSystem(),
+                                       "Short.\n" );
+
+        assertArrayEquals( SMALL.toBytes(), SMALL.toBytes( 1024 ) );
+    }
+}
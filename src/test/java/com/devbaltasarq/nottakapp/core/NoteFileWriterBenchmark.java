@@ -0,0 +1,89 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/** Shows the latency of writing a note with each durability level,
+  * compared to writing over the live file, as done before.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.NoteFileWriterBenchmark [writes] [dir]
+  * Pass a directory in the disk of interest, since /tmp is often in memory.
+  * @author baltasarq
+  */
+public class NoteFileWriterBenchmark {
+    private static final String NOTE = "# Shopping\nHome\n2025-01-02\n2025-01-03\n"
+                                        + "- Something to buy, and its price.\n".repeat( 100 );
+
+    /** Writes the note many times, and sorts the latencies found.
+      * @param path the path to the note.
+      * @param writes the number of writes.
+      * @param durability the durability level, or null to write in place.
+      * @return the sorted latencies, in microseconds.
+      */
+    private static long[] timeWrites(Path path, int writes, NoteFileWriter.Durability durability)
+            throws IOException
+    {
+        final byte[] CONTENTS = NOTE.getBytes( StandardCharsets.UTF_8 );
+        final long[] TORET = new long[ writes ];
+
+        for(int i = 0; i < writes; ++i) {
+            final long START = System.nanoTime();
+
+            if ( durability == null ) {
+                try (final var OUT = new FileOutputStream( path.toFile() )) {
+                    OUT.write( CONTENTS );
+                }
+            } else {
+                NoteFileWriter.write( path, CONTENTS, durability );
+            }
+
+            TORET[ i ] = ( System.nanoTime() - START ) / 1000;
+        }
+
+        Arrays.sort( TORET );
+        return TORET;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        final int WRITES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 200;
+        final Path DIR = ( args.length > 1 ) ?
+                                Path.of( args[ 1 ] )
+                              : Files.createTempDirectory( "nottakapp" );
+        final Path PATH = DIR.resolve( new Id().toString() + NoteProxy.FILE_EXT );
+
+        try {
+            System.out.printf( "%d writes of %d bytes in %s%n",
+                               WRITES, NOTE.length(), DIR );
+            System.out.println( "mode           median us    p99 us" );
+
+            timeWrites( PATH, WRITES, null );       // warm up
+
+            final long[] IN_PLACE = timeWrites( PATH, WRITES, null );
+            System.out.printf( "%-12s %10d %9d%n", "IN_PLACE",
+                               IN_PLACE[ WRITES / 2 ],
+                               IN_PLACE[ ( WRITES * 99 ) / 100 ] );
+
+            for(NoteFileWriter.Durability durability: NoteFileWriter.Durability.values())
+            {
+                final long[] LATENCIES = timeWrites( PATH, WRITES, durability );
+
+                System.out.printf( "%-12s %10d %9d%n", durability,
+                                   LATENCIES[ WRITES / 2 ],
+                                   LATENCIES[ ( WRITES * 99 ) / 100 ] );
+            }
+        } finally {
+            Files.deleteIfExists( PATH );
+        }
+    }
+}
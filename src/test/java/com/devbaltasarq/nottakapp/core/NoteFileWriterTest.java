@@ -0,0 +1,74 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the atomic writes of note files.
+  * @author baltasarq
+  */
+public class NoteFileWriterTest {
+    @ParameterizedTest
+    @EnumSource( NoteFileWriter.Durability.class )
+    public void testReplacesContents(
+                            NoteFileWriter.Durability durability,
+                            @TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+
+        Files.writeString( PATH, "old contents, longer than the new ones" );
+        NoteFileWriter.write( PATH,
+                              "new: ñú".getBytes( StandardCharsets.UTF_8 ),
+                              durability );
+
+        assertEquals( "new: ñú", Files.readString( PATH ) );
+        assertFalse( Files.exists( NoteFileWriter.tempPathFor( PATH ) ) );
+
+        try (final var FILES = Files.list( dir )) {
+            assertEquals( 1, FILES.count() );
+        }
+    }
+
+    @Test
+    public void testFailureKeepsOriginal(@TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+
+        // A directory in the way of the rename makes it fail
+        Files.createDirectory( PATH );
+        Files.writeString( PATH.resolve( "inside" ), "x" );
+
+        assertThrows( IOException.class,
+                      () -> NoteFileWriter.write(
+                                        PATH,
+                                        new byte[] { 1, 2, 3 },
+                                        NoteFileWriter.Durability.NONE ) );
+        assertTrue( Files.isDirectory( PATH ) );
+        assertFalse( Files.exists( NoteFileWriter.tempPathFor( PATH ) ) );
+    }
+
+    @Test
+    public void testParseDurability()
+    {
+        assertEquals( NoteFileWriter.Durability.FILE_AND_DIR,
+                      NoteFileWriter.Durability.parse( " file_and_dir " ) );
+        assertEquals( NoteFileWriter.Durability.NONE,
+                      NoteFileWriter.Durability.parse( "None" ) );
+        assertEquals( NoteFileWriter.Durability.DEFAULT,
+                      NoteFileWriter.Durability.parse( null ) );
+        assertEquals( NoteFileWriter.Durability.DEFAULT,
+                      NoteFileWriter.Durability.parse( "always" ) );
+    }
+}
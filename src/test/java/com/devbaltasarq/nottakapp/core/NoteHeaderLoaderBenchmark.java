@@ -0,0 +1,100 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+/** Compares sequential and parallel loading of note headers.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.NoteHeaderLoaderBenchmark \
+  *          [numNotes] [concurrency] [dir]
+  * Pass a directory in a network-backed folder to see the effect of latency.
+  * @author baltasarq
+  */
+public class NoteHeaderLoaderBenchmark {
+    private static final int DEFAULT_NUM_NOTES = 50_000;
+    private static final int ROUNDS = 3;
+
+    private static List<String> writeNotes(Path dir, int numNotes) throws IOException
+    {
+        final var TORET = new ArrayList<String>( numNotes );
+        final String BODY = "Some text for the body of the note.\n".repeat( 20 );
+
+        for(int i = 0; i < numNotes; ++i) {
+            final Path PATH = dir.resolve( new Id().toString()
+                                           + NoteProxy.FILE_EXT );
+
+            Files.writeString( PATH,
+                               "# Note " + i
+                               + "\nWork, Home"
+                               + "\n2025-01-01"
+                               + "\n2025-01-02"
+                               + "\n" + BODY );
+            TORET.add( PATH.toString() );
+        }
+
+        return TORET;
+    }
+
+    private static long timeLoad(NoteHeaderLoader loader, Notebook notebook, List<String> paths)
+    {
+        long best = Long.MAX_VALUE;
+
+        for(int i = 0; i < ROUNDS; ++i) {
+            final long START = System.nanoTime();
+            final int LOADED = loader.load( notebook, paths ).size();
+            final long ELAPSED = System.nanoTime() - START;
+
+            if ( LOADED != paths.size() ) {
+                throw new IllegalStateException( "missing results" );
+            }
+
+            best = Math.min( best, ELAPSED );
+        }
+
+        return best / 1_000_000;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        final int NUM_NOTES = ( args.length > 0 ) ?
+                                    Integer.parseInt( args[ 0 ] )
+                                  : DEFAULT_NUM_NOTES;
+        final int CONCURRENCY = ( args.length > 1 ) ?
+                                    Integer.parseInt( args[ 1 ] )
+                                  : NoteHeaderLoader.DEFAULT_CONCURRENCY;
+        final Path DIR = ( args.length > 2 ) ?
+                                    Files.createTempDirectory( Path.of( args[ 2 ] ), "nottakapp" )
+                                  : Files.createTempDirectory( "nottakapp" );
+
+        try {
+            System.out.println( "Writing " + NUM_NOTES + " notes in " + DIR );
+            final List<String> PATHS = writeNotes( DIR, NUM_NOTES );
+            final var NOTEBOOK = Notebook.restoreFrom( DIR.toString() );
+
+            final long SEQ_MILLIS = timeLoad( new NoteHeaderLoader( 1 ), NOTEBOOK, PATHS );
+            final long PAR_MILLIS = timeLoad( new NoteHeaderLoader( CONCURRENCY ), NOTEBOOK, PATHS );
+
+            System.out.printf( "sequential: %6d ms%n", SEQ_MILLIS );
+            System.out.printf( "parallel (%d): %6d ms%n", CONCURRENCY, PAR_MILLIS );
+            System.out.printf( "speed-up: %.2fx%n",
+                               ( (double) SEQ_MILLIS ) / Math.max( 1, PAR_MILLIS ) );
+        } finally {
+            try (Stream<Path> files = Files.walk( DIR )) {
+                for(Path path: files.sorted( Comparator.reverseOrder() ).toList()) {
+                    Files.deleteIfExists( path );
+                }
+            }
+        }
+    }
+}
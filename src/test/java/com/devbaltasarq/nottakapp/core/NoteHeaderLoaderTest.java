@@ -0,0 +1,70 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the parallel loading of note headers.
+  * @author baltasarq
+  */
+public class NoteHeaderLoaderTest {
+    private static final int NUM_NOTES = 200;
+
+    private static List<String> writeNotes(Path dir) throws IOException
+    {
+        final var TORET = new ArrayList<String>( NUM_NOTES );
+
+        for(int i = 0; i < NUM_NOTES; ++i) {
+            final Path PATH = TestNotes.writeNote( dir, new Id(), "Note " + i, TestNotes.TEXT );
+
+            TORET.add( PATH.toString() );
+        }
+
+        return TORET;
+    }
+
+    @Test
+    public void testOrderIsKept(@TempDir Path dir) throws IOException
+    {
+        final List<String> PATHS = writeNotes( dir );
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final var RESULTS = new NoteHeaderLoader( 8 ).load( NOTEBOOK, PATHS );
+
+        assertEquals( NUM_NOTES, RESULTS.size() );
+
+        for(int i = 0; i < NUM_NOTES; ++i) {
+            assertTrue( RESULTS.get( i ).isOk() );
+            assertEquals( PATHS.get( i ), RESULTS.get( i ).path() );
+            assertEquals( "Note " + i, RESULTS.get( i ).proxy().getTitle() );
+        }
+    }
+
+    @Test
+    public void testFailuresDoNotAbort(@TempDir Path dir) throws IOException
+    {
+        final List<String> PATHS = writeNotes( dir );
+        final Path BROKEN = dir.resolve( new Id().toString() + NoteProxy.FILE_EXT );
+
+        Files.writeString( BROKEN, "# Only a title" );
+        PATHS.add( NUM_NOTES / 2, BROKEN.toString() );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final var RESULTS = new NoteHeaderLoader( 8 ).load( NOTEBOOK, PATHS );
+
+        assertEquals( NUM_NOTES + 1, RESULTS.size() );
+        assertFalse( RESULTS.get( NUM_NOTES / 2 ).isOk() );
+        assertNotNull( RESULTS.get( NUM_NOTES / 2 ).proxy() );
+        assertEquals( 1, RESULTS.stream().filter( r -> !r.isOk() ).count() );
+    }
+}
@@ -0,0 +1,112 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the reader of note headers.
+  * @author baltasarq
+  */
+public class NoteHeaderReaderTest {
+    private static NoteDto read(Path dir, String contents) throws IOException
+    {
+        final Path PATH = dir.resolve( "note.md" );
+
+        Files.writeString( PATH, contents, StandardCharsets.UTF_8 );
+        return NoteHeaderReader.read( PATH );
+    }
+
+    @Test
+    public void testHeader(@TempDir Path dir) throws IOException
+    {
+        final NoteDto HEADER = read( dir,
+                                     "# Ñandú notes\n"
+                                     + "work, home ,\n"
+                                     + "2025-01-02\n"
+                                     + "2025-11-30\n"
+                                     + "Body.\n" );
+
+        assertEquals( "Ñandú notes", HEADER.title() );
+        assertEquals( 2, HEADER.tags().count() );
+        assertTrue( HEADER.tags().contains( new Tag( "Work" ) ) );
+        assertTrue( HEADER.tags().contains( new Tag( "Home" ) ) );
+        assertFalse( HEADER.tags().isDirty() );
+        assertEquals( "2025-01-02", HEADER.dateCreation().toString() );
+        assertEquals( "2025-11-30", HEADER.dateModification().toString() );
+    }
+
+    @Test
+    public void testWindowsNewLinesAndBom(@TempDir Path dir) throws IOException
+    {
+        final NoteDto HEADER = read( dir,
+                                     "\uFEFF# Title\r\n"
+                                     + "\r\n"
+                                     + "2025-01-02\r\n"
+                                     + "2025-01-03\r\n" );
+
+        assertEquals( "Title", HEADER.title() );
+        assertEquals( 0, HEADER.tags().count() );
+        assertEquals( "2025-01-03", HEADER.dateModification().toString() );
+    }
+
+    @Test
+    public void testNoBody(@TempDir Path dir) throws IOException
+    {
+        final NoteDto HEADER = read( dir,
+                                     "# Title\nTag\n2025-01-02\n2025-01-03" );
+
+        assertEquals( "2025-01-03", HEADER.dateModification().toString() );
+    }
+
+    @Test
+    public void testLongHeader(@TempDir Path dir) throws IOException
+    {
+        final String TITLE = "Long title ".repeat( 200 ).trim();
+        final NoteDto HEADER = read( dir,
+                                     "# " + TITLE
+                                     + "\nTag\n2025-01-02\n2025-01-03\n" );
+
+        assertEquals( TITLE, HEADER.title() );
+    }
+
+    @Test
+    public void testHeaderAtMaxSize(@TempDir Path dir) throws IOException
+    {
+        final String REST = "\nTag\n2025-01-02\n2025-01-03\n";
+        final String TITLE = "x".repeat( NoteHeaderReader.MAX_HEADER_SIZE - 2 - REST.length() );
+
+        // The header takes all the bytes allowed, and no more are read
+        assertEquals( TITLE, read( dir, "# " + TITLE + REST + "Body.\n" ).title() );
+        assertThrows( NoSuchElementException.class,
+                      () -> read( dir, "# " + TITLE + "x" + REST + "Body.\n" ) );
+    }
+
+    @Test
+    public void testIncomplete(@TempDir Path dir)
+    {
+        assertThrows( NoSuchElementException.class,
+                      () -> read( dir, "# Title\nTag\n2025-01-02\n" ) );
+        assertThrows( NoSuchElementException.class,
+                      () -> read( dir, "" ) );
+    }
+
+    @Test
+    public void testBadDate(@TempDir Path dir)
+    {
+        assertThrows( IllegalArgumentException.class,
+                      () -> read( dir, "# Title\nTag\n2025/01/02\n2025-01-03\n" ) );
+        assertThrows( IllegalArgumentException.class,
+                      () -> read( dir, "# Title\nTag\n2025-01\n2025-01-03\n" ) );
+    }
+}
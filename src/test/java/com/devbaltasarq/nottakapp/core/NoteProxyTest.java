@@ -0,0 +1,119 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the detection of changes in the files of notes.
+  * @author baltasarq
+  */
+public class NoteProxyTest {
+    private static final String NOTE = TestNotes.noteText( "Note", TestNotes.TEXT );
+
+    private static NoteProxy loadNote(Path dir) throws IOException
+    {
+        final var ID = new Id();
+
+        TestNotes.writeNote( dir, ID, "Note", 1_000_000L );
+
+        final NoteProxy TORET = Notebook.restoreFrom( dir.toString() ).lookUp( ID );
+
+        TORET.getNote();
+        return TORET;
+    }
+
+    private static void touch(NoteProxy proxy, long time) throws IOException
+    {
+        Files.setLastModifiedTime( Path.of( proxy.getPath() ), FileTime.fromMillis( time ) );
+    }
+
+    @Test
+    public void testHashComputedOnLoad(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = loadNote( dir );
+
+        assertEquals( ContentHash.of( NOTE.getBytes( StandardCharsets.UTF_8 ) ),
+                      PROXY.getContentHash() );
+        assertEquals( ContentHash.of( Path.of( PROXY.getPath() ) ),
+                      PROXY.getContentHash() );
+    }
+
+    @Test
+    public void testTouchedIsNotOutdated(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = loadNote( dir );
+        final Note NOTE_LOADED = PROXY.getNote();
+
+        touch( PROXY, 2_000_000L );
+
+        assertFalse( PROXY.isOutdated() );
+        assertSame( NOTE_LOADED, PROXY.getNote() );
+        assertEquals( 2_000_000L, PROXY.getFileChangedTime() );
+    }
+
+    @Test
+    public void testChangedIsOutdated(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = loadNote( dir );
+
+        Files.writeString( Path.of( PROXY.getPath() ), NOTE + "More text.\n" );
+        touch( PROXY, 2_000_000L );
+
+        assertTrue( PROXY.isOutdated() );
+        assertEquals( "Some text.\nMore text.\n", PROXY.getNote().get() );
+    }
+
+    @Test
+    public void testSaveTouchedDoesNotMerge(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = loadNote( dir );
+
+        PROXY.getNote().replace( "Other text.\n" );
+        touch( PROXY, 2_000_000L );
+
+        assertFalse( PROXY.save() );
+        assertEquals( "Other text.\n", PROXY.getNote().get() );
+        assertEquals( ContentHash.of( Path.of( PROXY.getPath() ) ),
+                      PROXY.getContentHash() );
+    }
+
+    @Test
+    public void testSaveMergesFromBase(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = loadNote( dir );
+
+        PROXY.getNote().replace( "First.\nSome text.\n" );
+        Files.writeString( Path.of( PROXY.getPath() ), NOTE + "Last.\n" );
+        touch( PROXY, 2_000_000L );
+
+        assertTrue( PROXY.save() );
+        assertEquals( "First.\nSome text.\nLast.\n", PROXY.getNote().get() );
+        assertTrue( Files.readString( Path.of( PROXY.getPath() ) )
+                                    .endsWith( "\nFirst.\nSome text.\nLast.\n" ) );
+    }
+
+    @Test
+    public void testIncrementalHash()
+    {
+        final byte[] BYTES = NOTE.getBytes( StandardCharsets.UTF_8 );
+        final var HASH = new ContentHash();
+
+        HASH.update( BYTES, 0, 10 );
+        HASH.update( ByteBuffer.wrap( BYTES, 10, BYTES.length - 10 ) );
+
+        assertEquals( ContentHash.of( BYTES ), HASH.get() );
+        assertNotEquals( ContentHash.of( BYTES ), ContentHash.of( new byte[ 0 ] ) );
+    }
+}
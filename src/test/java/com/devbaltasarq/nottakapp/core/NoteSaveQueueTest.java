@@ -0,0 +1,169 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the write-behind queue of notes.
+  * @author baltasarq
+  */
+public class NoteSaveQueueTest {
+    private static NoteProxy writeNote(Path dir, String text) throws IOException
+    {
+        final var ID = new Id();
+
+        TestNotes.writeNote( dir, ID, "Note", text + "\n", 1_000_000L );
+        return Notebook.restoreFrom( dir.toString() ).lookUp( ID );
+    }
+
+    private static String readBody(NoteProxy proxy) throws IOException
+    {
+        return NoteDto.retrieveFrom( proxy.getId(), Path.of( proxy.getPath() ) ).text();
+    }
+
+    @Test
+    public void testWritesLatestContents(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = writeNote( dir, "First" );
+
+        try (final var QUEUE = new NoteSaveQueue( Runnable::run )) {
+            PROXY.getNote().replace( "Second\n" );
+            QUEUE.enqueue( PROXY );
+            PROXY.getNote().replace( "Third\n" );
+            QUEUE.enqueue( PROXY );
+            QUEUE.flush().join();
+        }
+
+        assertEquals( "Third\n", readBody( PROXY ) );
+        assertFalse( PROXY.isDirty() );
+    }
+
+    @Test
+    public void testCoalescesPendingSaves(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = writeNote( dir, "First" );
+        final var STARTED = new CountDownLatch( 1 );
+        final var RELEASE = new CountDownLatch( 1 );
+        final var TASKS = new ArrayList<Runnable>();
+
+        // The writer thread blocks when applying the first outcome
+        try (final var QUEUE = new NoteSaveQueue( (task) -> {
+            synchronized( TASKS ) {
+                TASKS.add( task );
+            }
+
+            STARTED.countDown();
+
+            try {
+                RELEASE.await();
+            } catch(InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }))
+        {
+            PROXY.getNote().replace( "Second\n" );
+            QUEUE.enqueue( PROXY );
+            STARTED.await();
+
+            for(String text: List.of( "Third\n", "Fourth\n", "Fifth\n" )) {
+                PROXY.getNote().replace( text );
+                QUEUE.enqueue( PROXY );
+            }
+
+            RELEASE.countDown();
+            QUEUE.flush().join();
+
+            assertEquals( 2, QUEUE.getNumWritten() );
+            assertEquals( 2, QUEUE.getNumCoalesced() );
+        } catch(InterruptedException exc) {
+            fail( exc );
+        }
+
+        assertEquals( "Fifth\n", readBody( PROXY ) );
+        TASKS.forEach( Runnable::run );
+        assertFalse( PROXY.isDirty() );
+    }
+
+    @Test
+    public void testKeepsEditsAfterSnapshot(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = writeNote( dir, "First" );
+        final var TASKS = new ArrayList<Runnable>();
+
+        try (final var QUEUE = new NoteSaveQueue( TASKS::add )) {
+            PROXY.getNote().replace( "Second\n" );
+            QUEUE.enqueue( PROXY );
+            QUEUE.flush().join();
+        }
+
+        PROXY.getNote().replace( "Third\n" );
+        TASKS.forEach( Runnable::run );
+
+        assertTrue( PROXY.isDirty() );
+        assertEquals( "Third\n", PROXY.getNote().get() );
+        assertEquals( "Second\n", readBody( PROXY ) );
+    }
+
+    @Test
+    public void testCloseAppliesOutcomes(@TempDir Path dir) throws IOException
+    {
+        final Id ID = writeNote( dir, "First" ).getId();
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy PROXY = NOTEBOOK.lookUp( ID );
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+
+        // The thread owning the notes is busy closing, so tasks never run
+        try (final var QUEUE = new NoteSaveQueue( (task) -> {} )) {
+            PROXY.getNote().replace( "Second\n" );
+            QUEUE.enqueue( PROXY );
+        }
+
+        assertFalse( PROXY.isDirty() );
+        assertEquals( NOTEBOOK.getStore().hash( PROXY.getPath() ), PROXY.getContentHash() );
+
+        NOTEBOOK.addChangeListener( BATCHES::add );
+        NOTEBOOK.update();
+        NOTEBOOK.saveIndex();
+
+        assertTrue( BATCHES.isEmpty() );
+        assertEquals( NOTEBOOK.getStore().stamp( PROXY.getPath() ),
+                      NotebookIndex.loadFrom( dir ).get( PROXY.getId() ).stamp() );
+    }
+
+    @Test
+    public void testMergesChangesOnDisk(@TempDir Path dir) throws IOException
+    {
+        final NoteProxy PROXY = writeNote( dir, "First" );
+        final Path PATH = Path.of( PROXY.getPath() );
+        final var MERGED = new ArrayList<NoteProxy>();
+
+        PROXY.getNote().replace( "Mine\n" );
+        Files.writeString( PATH, TestNotes.noteText( "Note", "Theirs\n" ) );
+        Files.setLastModifiedTime( PATH, FileTime.fromMillis( 2_000_000L ) );
+
+        try (final var QUEUE = new NoteSaveQueue( Runnable::run )) {
+            QUEUE.addMergeListener( MERGED::add );
+            QUEUE.enqueue( PROXY );
+            QUEUE.flush().join();
+        }
+
+        assertEquals( List.of( PROXY ), MERGED );
+        assertTrue( readBody( PROXY ).contains( "Mine" ) );
+        assertTrue( readBody( PROXY ).contains( "Theirs" ) );
+        assertEquals( readBody( PROXY ), PROXY.getNote().get() );
+        assertFalse( PROXY.isDirty() );
+    }
+}
@@ -0,0 +1,97 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+
+/** Shows the costs of scanning, loading and saving a notebook,
+  * in memory, in a directory and in a journal, so the cost of the notebook itself
+  * can be told apart from the cost of the file system.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.NoteStoreBenchmark [numNotes]
+  * @author baltasarq
+  */
+public class NoteStoreBenchmark {
+    private static final int ROUNDS = 3;
+
+    private static void fill(NoteStore store, int numNotes) throws IOException
+    {
+        for(int i = 0; i < numNotes; ++i) {
+            store.write( store.locationFor( new Id() ),
+                         ( "# Note " + i
+                           + "\nWork\n2025-01-02\n2025-01-03\n"
+                           + "Some text.\n".repeat( 20 ) )
+                                            .getBytes( StandardCharsets.UTF_8 ),
+                         NoteFileWriter.Durability.NONE );
+        }
+    }
+
+    private static void measure(String name, NoteStore store, int numNotes)
+            throws IOException
+    {
+        for(int round = 1; round <= ROUNDS; ++round) {
+            long start = System.nanoTime();
+            final var NOTEBOOK = Notebook.restoreFrom(
+                                            store,
+                                            NoteHeaderLoader.DEFAULT_CONCURRENCY );
+            final long SCAN = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(NoteProxy proxy: NOTEBOOK.getAllNotes()) {
+                proxy.getNote().append( "More text.\n" );
+            }
+            final long LOAD = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            NOTEBOOK.saveAll();
+            final long SAVE = System.nanoTime() - start;
+
+            System.out.printf( "#%d %s, %d notes: restore %.1f ms, load %.1f ms, save %.1f ms%n",
+                               round, name, numNotes,
+                               SCAN / 1_000_000.0,
+                               LOAD / 1_000_000.0,
+                               SAVE / 1_000_000.0 );
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        final int NUM_NOTES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 5_000;
+        final var MEMORY_STORE = new MemoryNoteStore();
+        final Path DIR = Files.createTempDirectory( "nottakapp" );
+
+        try {
+            final var DIR_STORE = new DirectoryNoteStore(
+                                            DIR,
+                                            NotesLayout.FLAT,
+                                            NoteHeaderLoader.DEFAULT_CONCURRENCY );
+
+            fill( MEMORY_STORE, NUM_NOTES );
+            fill( DIR_STORE, NUM_NOTES );
+            measure( "memory", MEMORY_STORE, NUM_NOTES );
+            measure( "directory", DIR_STORE, NUM_NOTES );
+
+            try (final var JOURNAL_STORE = new JournalNoteStore(
+                                                DIR.resolve( JournalNoteStore.DIR_NAME ) ))
+            {
+                fill( JOURNAL_STORE, NUM_NOTES );
+                measure( "journal", JOURNAL_STORE, NUM_NOTES );
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk( DIR )) {
+                for(Path path: files.sorted( Comparator.reverseOrder() ).toList()) {
+                    Files.delete( path );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the persistent index of note headers.
+  * @author baltasarq
+  */
+public class NotebookIndexTest {
+    @Test
+    public void testSaveAndLoad(@TempDir Path dir) throws IOException
+    {
+        final var INDEX = new NotebookIndex();
+        final var ID = new Id();
+        final var ENTRY = new NotebookIndex.Entry(
+                                        ID,
+                                        new FileStamp( 1234L, 56L ),
+                                        "Título",
+                                        "Work, Home",
+                                        new Date( 2025, 1, 1 ),
+                                        new Date( 2025, 12, 31 ) );
+
+        INDEX.put( ENTRY );
+        assertTrue( INDEX.isDirty() );
+        INDEX.save( dir );
+        assertFalse( INDEX.isDirty() );
+
+        final var LOADED = NotebookIndex.loadFrom( dir );
+
+        assertEquals( 1, LOADED.count() );
+        assertEquals( ENTRY.id(), LOADED.get( ID ).id() );
+        assertEquals( ENTRY.stamp(), LOADED.get( ID ).stamp() );
+        assertEquals( ENTRY.title(), LOADED.get( ID ).title() );
+        assertEquals( ENTRY.tags(), LOADED.get( ID ).tags() );
+        assertEquals( "2025-01-01", LOADED.get( ID ).creation().toString() );
+        assertEquals( "2025-12-31", LOADED.get( ID ).modification().toString() );
+    }
+
+    @Test
+    public void testCorruptedIsEmpty(@TempDir Path dir) throws IOException
+    {
+        Files.write( dir.resolve( NotebookIndex.FILE_NAME ),
+                     new byte[] { 1, 2, 3 } );
+
+        assertEquals( 0, NotebookIndex.loadFrom( dir ).count() );
+    }
+
+    @Test
+    public void testRestoreUsesIndex(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+
+        TestNotes.writeNote( dir, ID, "Before", 1_000_000L );
+        Notebook.restoreFrom( dir.toString() );
+        assertTrue( Files.exists( dir.resolve( NotebookIndex.FILE_NAME ) ) );
+
+        // Same stamp: the header is taken from the index, not the file
+        TestNotes.writeNote( dir, ID, "Behind", 1_000_000L );
+        assertEquals( "Before",
+                      Notebook.restoreFrom( dir.toString() ).lookUp( ID ).getTitle() );
+
+        // Stale entry: the file is read again
+        TestNotes.writeNote( dir, ID, "Behind", 2_000_000L );
+        assertEquals( "Behind",
+                      Notebook.restoreFrom( dir.toString() ).lookUp( ID ).getTitle() );
+    }
+
+    @Test
+    public void testRestoreForgetsDeleted(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+        final Path PATH = TestNotes.writeNote( dir, ID, "Gone", 1_000_000L );
+
+        Notebook.restoreFrom( dir.toString() );
+        Files.delete( PATH );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+
+        assertNull( NOTEBOOK.lookUp( ID ) );
+        assertEquals( 0, NotebookIndex.loadFrom( dir ).count() );
+    }
+
+    private static NotebookIndex.Entry entryFor(Id id, String title)
+    {
+        return new NotebookIndex.Entry(
+                                id,
+                                new FileStamp( 1234L, 56L ),
+                                title,
+                                "Work",
+                                new Date( 2025, 1, 1 ),
+                                new Date( 2025, 1, 2 ) );
+    }
+
+    @Test
+    public void testAppendsFewChanges(@TempDir Path dir) throws IOException
+    {
+        final var INDEX = new NotebookIndex();
+        final Path PATH = dir.resolve( NotebookIndex.FILE_NAME );
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        INDEX.put( entryFor( ID1, "One" ) );
+        INDEX.put( entryFor( ID2, "Two" ) );
+        INDEX.save( dir );
+
+        final long SIZE = Files.size( PATH );
+
+        INDEX.put( entryFor( ID1, "Uno" ) );
+        INDEX.remove( ID2 );
+        INDEX.save( dir );
+
+        assertTrue( Files.size( PATH ) > SIZE );
+
+        final var LOADED = NotebookIndex.loadFrom( dir );
+
+        assertEquals( 1, LOADED.count() );
+        assertEquals( "Uno", LOADED.get( ID1 ).title() );
+        assertNull( LOADED.get( ID2 ) );
+    }
+
+    @Test
+    public void testIgnoresTruncatedLog(@TempDir Path dir) throws IOException
+    {
+        final var INDEX = new NotebookIndex();
+        final Path PATH = dir.resolve( NotebookIndex.FILE_NAME );
+        final var ID = new Id();
+
+        INDEX.put( entryFor( ID, "One" ) );
+        INDEX.save( dir );
+        INDEX.put( entryFor( ID, "Uno" ) );
+        INDEX.save( dir );
+
+        // Cut the last record in half
+        final byte[] BYTES = Files.readAllBytes( PATH );
+
+        Files.write( PATH, Arrays.copyOf( BYTES, BYTES.length - 10 ) );
+
+        final var LOADED = NotebookIndex.loadFrom( dir );
+
+        assertEquals( "One", LOADED.get( ID ).title() );
+
+        // The next save rewrites the whole index
+        LOADED.put( entryFor( ID, "Eins" ) );
+        LOADED.save( dir );
+        assertEquals( "Eins", NotebookIndex.loadFrom( dir ).get( ID ).title() );
+    }
+}
@@ -0,0 +1,57 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+
+/** Shows the time taken by saveAll() on quit, when a single note was edited.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.NotebookSaveAllBenchmark [numNotes]
+  * The time should not depend on the number of notes.
+  * @author baltasarq
+  */
+public class NotebookSaveAllBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException
+    {
+        final int NUM_NOTES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 20_000;
+        final Path DIR = Files.createTempDirectory( "nottakapp" );
+
+        try {
+            for(int i = 0; i < NUM_NOTES; ++i) {
+                Files.writeString(
+                        DIR.resolve( new Id().toString() + NoteProxy.FILE_EXT ),
+                        "# Note " + i + "\nWork\n2025-01-02\n2025-01-03\nSome text.\n" );
+            }
+
+            final var NOTEBOOK = Notebook.restoreFrom( DIR.toString() );
+            final NoteProxy PROXY = NOTEBOOK.getAllNotes().get( 0 );
+
+            for(int round = 1; round <= ROUNDS; ++round) {
+                PROXY.getNote().append( "More text.\n" );
+
+                final long START = System.nanoTime();
+                NOTEBOOK.saveAll();
+                final long ELAPSED = System.nanoTime() - START;
+
+                System.out.printf( "#%d saveAll() with %d notes, 1 edited: %.2f ms%n",
+                                   round, NUM_NOTES, ELAPSED / 1_000_000.0 );
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk( DIR )) {
+                for(Path path: files.sorted( Comparator.reverseOrder() ).toList()) {
+                    Files.delete( path );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,515 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the notebook scanning.
+  * @author baltasarq
+  */
+public class NotebookTest {
+    /** A store in memory whose first read of a header waits until let go. */
+    private static final class SlowStore implements NoteStore {
+        @Override
+        public String getPath()
+        {
+            return this.store.getPath();
+        }
+
+        @Override
+        public String locationFor(Id id)
+        {
+            return this.store.locationFor( id );
+        }
+
+        @Override
+        public Map<String, FileStamp> list()
+        {
+            return this.store.list();
+        }
+
+        @Override
+        public FileStamp stamp(String location) throws IOException
+        {
+            return this.store.stamp( location );
+        }
+
+        @Override
+        public NoteDto readHeader(String location) throws IOException
+        {
+            if ( this.slow.getAndSet( false ) ) {
+                this.reading.countDown();
+
+                try {
+                    this.release.await();
+                } catch(InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return this.store.readHeader( location );
+        }
+
+        @Override
+        public NoteFileReader.Hashed read(Id id, String location) throws IOException
+        {
+            return this.store.read( id, location );
+        }
+
+        @Override
+        public byte[] readBytes(String location) throws IOException
+        {
+            return this.store.readBytes( location );
+        }
+
+        @Override
+        public long hash(String location) throws IOException
+        {
+            return this.store.hash( location );
+        }
+
+        @Override
+        public void write(String location, byte[] contents, NoteFileWriter.Durability durability)
+        {
+            this.store.write( location, contents, durability );
+        }
+
+        @Override
+        public boolean delete(String location)
+        {
+            return this.store.delete( location );
+        }
+
+        @Override
+        public void move(String from, String to) throws IOException
+        {
+            this.store.move( from, to );
+        }
+
+        @Override
+        public NotebookIndex loadIndex()
+        {
+            return this.store.loadIndex();
+        }
+
+        @Override
+        public void saveIndex(NotebookIndex index)
+        {
+            this.store.saveIndex( index );
+        }
+
+        final MemoryNoteStore store = new MemoryNoteStore();
+        final AtomicBoolean slow = new AtomicBoolean( false );
+        final CountDownLatch reading = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+    }
+
+    @Test
+    public void testRestore(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+
+        TestNotes.writeNote( dir, ID, "First", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy PROXY = NOTEBOOK.lookUp( ID );
+
+        assertNotNull( PROXY );
+        assertEquals( "First", PROXY.getTitle() );
+        assertEquals( 2, PROXY.getTags().count() );
+        assertEquals( "2025-01-02", PROXY.getModificationDate().toString() );
+    }
+
+    @Test
+    public void testUpdateSkipsUnchanged(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+
+        TestNotes.writeNote( dir, ID, "First", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy PROXY = NOTEBOOK.lookUp( ID );
+
+        NOTEBOOK.update();
+        assertSame( PROXY, NOTEBOOK.lookUp( ID ) );
+    }
+
+    @Test
+    public void testUpdatePicksChanges(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        TestNotes.writeNote( dir, ID1, "First", 1_000_000L );
+        final Path PATH2 = TestNotes.writeNote( dir, ID2, "Second", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+
+        TestNotes.writeNote( dir, ID1, "First changed", 2_000_000L );
+        Files.delete( PATH2 );
+        TestNotes.writeNote( dir, ID3, "Third", 1_000_000L );
+        NOTEBOOK.update();
+
+        assertEquals( "First changed", NOTEBOOK.lookUp( ID1 ).getTitle() );
+        assertNull( NOTEBOOK.lookUp( ID2 ) );
+        assertEquals( "Third", NOTEBOOK.lookUp( ID3 ).getTitle() );
+    }
+
+    @Test
+    public void testUpdateKeepsNewNotes(@TempDir Path dir)
+    {
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final var NOTE = new Note( "New note" );
+
+        NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+        NOTEBOOK.update();
+
+        assertNotNull( NOTEBOOK.lookUp( NOTE.getId() ) );
+    }
+
+    @Test
+    public void testChangesInOneBatch(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+
+        TestNotes.writeNote( dir, ID1, "First", 1_000_000L );
+        final Path PATH2 = TestNotes.writeNote( dir, ID2, "Second", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+
+        NOTEBOOK.addChangeListener( (changes) -> BATCHES.add( changes ) );
+        TestNotes.writeNote( dir, ID1, "First changed", 2_000_000L );
+        Files.delete( PATH2 );
+        TestNotes.writeNote( dir, ID3, "Third", 1_000_000L );
+        NOTEBOOK.update();
+        NOTEBOOK.update();
+
+        assertEquals( 1, BATCHES.size() );
+        assertEquals( 3, BATCHES.get( 0 ).size() );
+        assertTrue( BATCHES.get( 0 ).contains(
+                        new NotebookChange( NotebookChange.Kind.MODIFIED,
+                                            ID1,
+                                            NOTEBOOK.lookUp( ID1 ).getPath() ) ) );
+        assertTrue( BATCHES.get( 0 ).contains(
+                        new NotebookChange( NotebookChange.Kind.DELETED,
+                                            ID2,
+                                            PATH2.toString() ) ) );
+        assertTrue( BATCHES.get( 0 ).contains(
+                        new NotebookChange( NotebookChange.Kind.CREATED,
+                                            ID3,
+                                            NOTEBOOK.lookUp( ID3 ).getPath() ) ) );
+    }
+
+    @Test
+    public void testUpdateGivenPaths(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+
+        NOTEBOOK.addChangeListener( (changes) -> BATCHES.add( changes ) );
+        final Path PATH1 = TestNotes.writeNote( dir, ID1, "First", 1_000_000L );
+        TestNotes.writeNote( dir, ID2, "Second", 1_000_000L );
+        NOTEBOOK.update( List.of( PATH1.toString() ) );
+
+        assertEquals( 1, BATCHES.size() );
+        assertEquals( NotebookChange.Kind.CREATED,
+                      BATCHES.get( 0 ).get( 0 ).kind() );
+        assertNotNull( NOTEBOOK.lookUp( ID1 ) );
+        assertNull( NOTEBOOK.lookUp( ID2 ) );
+    }
+
+    @Test
+    public void testUpdateIgnoresOwnSaves(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+
+        TestNotes.writeNote( dir, ID, "First", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy PROXY = NOTEBOOK.lookUp( ID );
+
+        NOTEBOOK.addChangeListener( (changes) -> BATCHES.add( changes ) );
+        PROXY.getNote().replace( "Changed here." );
+        PROXY.save();
+        NOTEBOOK.update();
+
+        assertTrue( BATCHES.isEmpty() );
+        assertSame( PROXY, NOTEBOOK.lookUp( ID ) );
+    }
+
+    @Test
+    public void testUpdateReadsWithoutBlocking() throws Exception
+    {
+        final var STORE = new SlowStore();
+        final var ID = new Id();
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+
+        TestNotes.writeNote( STORE, ID, "First", "Some text.\n" );
+
+        final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+        final NoteProxy PROXY = NOTEBOOK.lookUp( ID );
+
+        PROXY.getNote();
+
+        // Changed outside, while its header is being read
+        TestNotes.writeNote( STORE, ID, "Outside", "Other text.\n" );
+        STORE.slow.set( true );
+
+        final var UPDATER = new Thread( () -> NOTEBOOK.update() );
+
+        UPDATER.start();
+        assertTrue( STORE.reading.await( 10, TimeUnit.SECONDS ) );
+
+        // Writers are not blocked meanwhile, and the save is kept
+        try {
+            assertTimeoutPreemptively( Duration.ofSeconds( 10 ), () -> {
+                NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, new Note( "Added" ) ) );
+                PROXY.getNote().replace( "Changed here.\n" );
+                PROXY.save();
+            });
+        } finally {
+            STORE.release.countDown();
+            UPDATER.join();
+        }
+
+        NOTEBOOK.addChangeListener( (changes) -> BATCHES.add( changes ) );
+        NOTEBOOK.update();
+
+        assertSame( PROXY, NOTEBOOK.lookUp( ID ) );
+        assertEquals( 2, NOTEBOOK.getAllIds().size() );
+        assertTrue( BATCHES.isEmpty() );
+    }
+
+    @Test
+    public void testSaveAllOnlyDirty(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        TestNotes.writeNote( dir, ID1, "First", 1_000_000L );
+        TestNotes.writeNote( dir, ID2, "Second", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NoteProxy PROXY1 = NOTEBOOK.lookUp( ID1 );
+        final NoteProxy PROXY2 = NOTEBOOK.lookUp( ID2 );
+
+        PROXY2.getNote();
+        assertTrue( NOTEBOOK.getDirtyNotes().isEmpty() );
+
+        PROXY1.getNote().getTags().add( new Tag( "Urgent" ) );
+        assertEquals( List.of( PROXY1 ), NOTEBOOK.getDirtyNotes() );
+
+        // No rescan: a new file is not noticed by saving
+        final var ID3 = new Id();
+
+        TestNotes.writeNote( dir, ID3, "Third", 1_000_000L );
+        NOTEBOOK.saveAll();
+
+        assertTrue( NOTEBOOK.getDirtyNotes().isEmpty() );
+        assertFalse( PROXY1.isDirty() );
+        assertNull( NOTEBOOK.lookUp( ID3 ) );
+        assertEquals( 1_000_000L,
+                      Files.getLastModifiedTime( Path.of( PROXY2.getPath() ) ).toMillis() );
+        assertTrue( Files.readString( Path.of( PROXY1.getPath() ) ).contains( "Urgent" ) );
+    }
+
+    @Test
+    public void testMigratesToSharded(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        TestNotes.writeNote( dir, ID1, "First", 1_000_000L );
+        TestNotes.writeNote( dir, ID2, "Second", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom(
+                                        dir.toString(),
+                                        NoteHeaderLoader.DEFAULT_CONCURRENCY,
+                                        NotesLayout.SHARDED );
+        final Path PATH1 = Path.of( NOTEBOOK.lookUp( ID1 ).getPath() );
+
+        assertEquals( "First", NOTEBOOK.lookUp( ID1 ).getTitle() );
+        assertEquals( ID1.toString().substring( 0, 2 ),
+                      PATH1.getParent().getFileName().toString() );
+        assertTrue( Files.exists( PATH1 ) );
+        assertFalse( Files.exists( dir.resolve( ID1.toString() + NoteProxy.FILE_EXT ) ) );
+
+        // The layout is found when reopened
+        final var REOPENED = Notebook.restoreFrom( dir.toString() );
+
+        assertEquals( NotesLayout.SHARDED, REOPENED.getLayout() );
+        assertEquals( "Second", REOPENED.lookUp( ID2 ).getTitle() );
+        assertEquals( "Some text.\n", REOPENED.lookUp( ID2 ).getNote().get() );
+
+        // New notes go to their shard, even if it does not exist yet
+        final var NOTE = new Note( "New note" );
+        final NoteProxy PROXY = NoteProxy.fromNote( REOPENED, NOTE );
+
+        REOPENED.add( PROXY );
+        PROXY.save( dir.toString(), NoteProxy.MANDATORY_SAVE );
+        REOPENED.update();
+
+        assertEquals( NOTE.getId().toString().substring( 0, 2 ),
+                      Path.of( PROXY.getPath() ).getParent().getFileName().toString() );
+        assertSame( PROXY, REOPENED.lookUp( NOTE.getId() ) );
+        assertEquals( 3, REOPENED.getAllNotes().size() );
+    }
+
+    @Test
+    public void testMigratesBackToFlat(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+        final var BATCHES = new ArrayList<List<NotebookChange>>();
+
+        TestNotes.writeNote( dir, ID, "First", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom(
+                                        dir.toString(),
+                                        NoteHeaderLoader.DEFAULT_CONCURRENCY,
+                                        NotesLayout.SHARDED );
+
+        NOTEBOOK.addChangeListener( (changes) -> BATCHES.add( changes ) );
+        NOTEBOOK.migrateTo( NotesLayout.FLAT );
+        NOTEBOOK.update();
+
+        assertEquals( dir.resolve( ID.toString() + NoteProxy.FILE_EXT ).toString(),
+                      NOTEBOOK.lookUp( ID ).getPath() );
+        assertTrue( Files.exists( Path.of( NOTEBOOK.lookUp( ID ).getPath() ) ) );
+        assertFalse( Files.exists( dir.resolve( ID.toString().substring( 0, 2 ) ) ) );
+        assertTrue( BATCHES.isEmpty() );
+    }
+
+    @Test
+    public void testSnapshots(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        TestNotes.writeNote( dir, ID1, "First", 1_000_000L );
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final NotebookSnapshot FIRST = NOTEBOOK.getSnapshot();
+
+        // Restoring publishes a single snapshot
+        assertEquals( 1, FIRST.getVersion() );
+        assertSame( FIRST, NOTEBOOK.getSnapshot() );
+        assertEquals( Set.of( ID1 ), FIRST.getIds() );
+        assertSame( NOTEBOOK.lookUp( ID1 ), FIRST.lookUp( ID1 ) );
+        assertThrows( UnsupportedOperationException.class,
+                      () -> NOTEBOOK.getAllNotes().clear() );
+
+        // Files on disk are only seen after an explicit update
+        TestNotes.writeNote( dir, ID2, "Second", 2_000_000L );
+        assertSame( FIRST, NOTEBOOK.getSnapshot() );
+
+        NOTEBOOK.update();
+
+        final NotebookSnapshot SECOND = NOTEBOOK.getSnapshot();
+
+        assertTrue( SECOND.getVersion() > FIRST.getVersion() );
+        assertEquals( Set.of( ID1, ID2 ), SECOND.getIds() );
+        assertEquals( 1, FIRST.count() );
+
+        // Updating with no changes keeps the snapshot
+        NOTEBOOK.update();
+        assertSame( SECOND, NOTEBOOK.getSnapshot() );
+
+        NOTEBOOK.delete( NOTEBOOK.lookUp( ID1 ) );
+
+        assertEquals( Set.of( ID2 ), NOTEBOOK.getAllIds() );
+        assertEquals( 2, SECOND.count() );
+        assertNull( NOTEBOOK.getSnapshot().lookUp( ID1 ) );
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters(@TempDir Path dir) throws Exception
+    {
+        final int NUM_NOTES = 200;
+        final var IDS = new ArrayList<Id>();
+
+        for(int i = 0; i < NUM_NOTES; ++i) {
+            final var ID = new Id();
+
+            TestNotes.writeNote( dir, ID, "Note " + i, 1_000_000L + i );
+            IDS.add( ID );
+        }
+
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final var ERRORS = new CopyOnWriteArrayList<Throwable>();
+        final var DONE = new AtomicBoolean( false );
+        final var THREADS = new ArrayList<Thread>();
+
+        // Scanning in the background, while files come and go
+        THREADS.add( new Thread( () -> {
+            while( !DONE.get() ) {
+                NOTEBOOK.update();
+            }
+        }));
+
+        // Reading, as the UI does
+        THREADS.add( new Thread( () -> {
+            while( !DONE.get() ) {
+                for(Id id: NOTEBOOK.getAllIds()) {
+                    NOTEBOOK.lookUp( id );
+                }
+
+                NOTEBOOK.lookUpByTitlePrefix( "note", 10 );
+                NOTEBOOK.getRecentNotes( 10 );
+            }
+        }));
+
+        for(Thread thread: THREADS) {
+            thread.setUncaughtExceptionHandler( (t, exc) -> ERRORS.add( exc ) );
+            thread.start();
+        }
+
+        // Writing notes, and removing their files
+        for(int i = 0; i < 100; ++i) {
+            final var NOTE = new Note( "Added " + i );
+
+            NOTE.replace( "Text " + i );
+            NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+            NOTEBOOK.lookUp( NOTE.getId() ).save();
+            Files.deleteIfExists( dir.resolve( IDS.get( i ) + NoteProxy.FILE_EXT ) );
+        }
+
+        DONE.set( true );
+
+        for(Thread thread: THREADS) {
+            thread.join();
+        }
+
+        NOTEBOOK.update();
+
+        assertTrue( ERRORS.isEmpty(), () -> ERRORS.toString() );
+        assertEquals( NUM_NOTES, NOTEBOOK.getAllIds().size() );
+        assertNull( NOTEBOOK.lookUp( IDS.getFirst() ) );
+        assertNotNull( NOTEBOOK.lookUp( IDS.getLast() ) );
+        assertEquals( NUM_NOTES, NOTEBOOK.getRecentNotes( NUM_NOTES * 2 ).size() );
+    }
+}
@@ -0,0 +1,71 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/** Shows the time taken by boolean queries on tags,
+  * over many notes with a few tags each.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.TagIndexBenchmark [numNotes]
+  * @author baltasarq
+  */
+public class TagIndexBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int QUERIES = 1000;
+    private static final int NUM_TAGS = 50;
+
+    public static void main(String[] args)
+    {
+        final int NUM_NOTES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 100_000;
+        final var RND = new Random( 42 );
+        final var TAGS = new ArrayList<Tag>();
+        final var INDEX = new TagIndex();
+
+        for(int i = 0; i < NUM_TAGS; ++i) {
+            TAGS.add( new Tag( "tag" + i ) );
+        }
+
+        long start = System.nanoTime();
+
+        for(int i = 0; i < NUM_NOTES; ++i) {
+            final var NOTE_TAGS = new ArrayList<Tag>();
+
+            // Skewed, so a few tags are in most notes
+            for(int j = 0; j < 3; ++j) {
+                NOTE_TAGS.add( TAGS.get( (int) ( NUM_TAGS * Math.pow( RND.nextDouble(), 3 ) ) ) );
+            }
+
+            INDEX.put( new Id(), NOTE_TAGS );
+        }
+
+        System.out.printf( "%d notes indexed in %.1f ms%n",
+                           NUM_NOTES,
+                           ( System.nanoTime() - start ) / 1_000_000.0 );
+
+        for(int round = 1; round <= ROUNDS; ++round) {
+            int found = 0;
+
+            start = System.nanoTime();
+
+            for(int i = 0; i < QUERIES; ++i) {
+                final List<Tag> ALL_OF = List.of( TAGS.get( i % 5 ) );
+                final List<Tag> ANY_OF = List.of( TAGS.get( i % 7 ), TAGS.get( 10 + i % 20 ) );
+                final List<Tag> NONE_OF = List.of( TAGS.get( 1 + i % 3 ) );
+
+                found += INDEX.count( ALL_OF, ANY_OF, NONE_OF );
+            }
+
+            System.out.printf( "#%d %.1f us per query (%d notes found per query)%n",
+                               round,
+                               ( System.nanoTime() - start ) / 1000.0 / QUERIES,
+                               found / QUERIES );
+        }
+    }
+}
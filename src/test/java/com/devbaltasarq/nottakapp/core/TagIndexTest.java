@@ -0,0 +1,101 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for finding notes by their tags.
+  * @author baltasarq
+  */
+public class TagIndexTest {
+    private static final Tag WORK = new Tag( "work" );
+    private static final Tag HOME = new Tag( "home" );
+    private static final Tag URGENT = new Tag( "urgent" );
+
+    @Test
+    public void testQueries()
+    {
+        final var INDEX = new TagIndex();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        INDEX.put( ID1, List.of( WORK, URGENT ) );
+        INDEX.put( ID2, List.of( HOME ) );
+        INDEX.put( ID3, List.of() );
+
+        assertEquals( List.of( ID1 ), INDEX.find( List.of( WORK ), List.of(), List.of() ) );
+        assertEquals( Set.of( ID1, ID2 ),
+                      Set.copyOf( INDEX.find( List.of(), List.of( WORK, HOME ), List.of() ) ) );
+        assertEquals( Set.of( ID2, ID3 ),
+                      Set.copyOf( INDEX.find( List.of(), List.of(), List.of( URGENT ) ) ) );
+        assertEquals( 0, INDEX.count( List.of( WORK, HOME ), List.of(), List.of() ) );
+        assertEquals( 3, INDEX.count( List.of(), List.of(), List.of() ) );
+        assertEquals( Map.of( HOME, 1, URGENT, 1, WORK, 1 ), INDEX.getCounts() );
+    }
+
+    @Test
+    public void testRetagAndRemove()
+    {
+        final var INDEX = new TagIndex();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        INDEX.put( ID1, List.of( WORK ) );
+        INDEX.put( ID1, List.of( HOME ) );
+
+        assertEquals( 0, INDEX.count( WORK ) );
+        assertEquals( 1, INDEX.count( HOME ) );
+
+        INDEX.remove( ID1 );
+        INDEX.put( ID2, List.of( WORK ) );
+
+        assertEquals( 1, INDEX.count() );
+        assertEquals( Map.of( WORK, 1 ), INDEX.getCounts() );
+        assertEquals( List.of( ID2 ), INDEX.find( List.of(), List.of(), List.of( HOME ) ) );
+    }
+
+    @Test
+    public void testNotebookFollowsTags(@TempDir Path dir) throws IOException
+    {
+        final var NOTEBOOK = Notebook.restoreFrom( dir.toString() );
+        final var NOTE = new Note( "Report" );
+
+        NOTE.getTags().add( WORK );
+        NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+
+        final NoteProxy PROXY = NOTEBOOK.lookUp( NOTE.getId() );
+
+        assertEquals( List.of( PROXY ),
+                      NOTEBOOK.lookUpByTags( List.of( WORK ), List.of(), List.of() ) );
+
+        // Changes in tags are picked up right away
+        NOTE.getTags().add( URGENT );
+
+        assertEquals( List.of( PROXY ),
+                      NOTEBOOK.lookUpByTags( List.of( URGENT ), List.of(), List.of() ) );
+
+        NOTEBOOK.saveAll();
+        NOTEBOOK.saveIndex();
+
+        // Tags are restored from the index of headers
+        final var RESTORED = Notebook.restoreFrom( dir.toString() );
+
+        assertEquals( Map.of( URGENT, 1, WORK, 1 ), RESTORED.getTagCounts() );
+        assertEquals( 1, RESTORED.lookUpByTags(
+                                    List.of( WORK, URGENT ),
+                                    List.of(),
+                                    List.of( HOME ) ).size() );
+    }
+}
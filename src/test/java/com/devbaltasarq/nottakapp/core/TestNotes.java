@@ -0,0 +1,110 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+
+/** Writes the notes the tests work with.
+  * All of them share the same tags and dates, and differ in title and text.
+  * @author baltasarq
+  */
+final class TestNotes {
+    public static final String TAGS = "Work, Home";
+    public static final String TEXT = "Some text.\n";
+
+    private TestNotes()
+    {
+    }
+
+    /** Builds the contents of a note.
+      * @param title the title of the note.
+      * @param text the body of the note.
+      * @return the note, as it is stored.
+      */
+    static String noteText(String title, String text)
+    {
+        return "# " + title
+               + "\n" + TAGS
+               + "\n2025-01-01"
+               + "\n2025-01-02"
+               + "\n" + text;
+    }
+
+    /** Builds the contents of a note, as bytes.
+      * @param title the title of the note.
+      * @param text the body of the note.
+      * @return the note, as it is stored, in UTF-8.
+      */
+    static byte[] noteBytes(String title, String text)
+    {
+        return noteText( title, text ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /** Writes a note file in a directory.
+      * @param dir the directory of the notebook.
+      * @param id the id of the note.
+      * @param title the title of the note.
+      * @param text the body of the note.
+      * @return the path to the file written.
+      * @throws IOException if writing goes wrong.
+      */
+    static Path writeNote(Path dir, Id id, String title, String text)
+            throws IOException
+    {
+        final Path TORET = dir.resolve( id.toString() + NoteProxy.FILE_EXT );
+
+        Files.writeString( TORET, noteText( title, text ) );
+        return TORET;
+    }
+
+    /** Writes a note file in a directory, changed at the given time.
+      * @param dir the directory of the notebook.
+      * @param id the id of the note.
+      * @param title the title of the note.
+      * @param text the body of the note.
+      * @param time the modification time of the file, in milliseconds.
+      * @return the path to the file written.
+      * @throws IOException if writing goes wrong.
+      */
+    static Path writeNote(Path dir, Id id, String title, String text, long time)
+            throws IOException
+    {
+        final Path TORET = writeNote( dir, id, title, text );
+
+        Files.setLastModifiedTime( TORET, FileTime.fromMillis( time ) );
+        return TORET;
+    }
+
+    /** Writes a note file with the default text in a directory.
+      * @see #writeNote(Path, Id, String, String, long)
+      */
+    static Path writeNote(Path dir, Id id, String title, long time)
+            throws IOException
+    {
+        return writeNote( dir, id, title, TEXT, time );
+    }
+
+    /** Writes a note in a store.
+      * @param store the store of the notebook.
+      * @param id the id of the note.
+      * @param title the title of the note.
+      * @param text the body of the note.
+      * @return the location of the note in the store.
+      * @throws IOException if writing goes wrong.
+      */
+    static String writeNote(NoteStore store, Id id, String title, String text)
+            throws IOException
+    {
+        final String TORET = store.locationFor( id );
+
+        store.write( TORET, noteBytes( title, text ), NoteFileWriter.Durability.NONE );
+        return TORET;
+    }
+}
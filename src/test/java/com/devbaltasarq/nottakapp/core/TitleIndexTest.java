@@ -0,0 +1,94 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for finding notes by their titles.
+  * @author baltasarq
+  */
+public class TitleIndexTest {
+    @Test
+    public void testFind()
+    {
+        final var INDEX = new TitleIndex();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        INDEX.put( ID1, "Shopping list" );
+        INDEX.put( ID2, "shopping LIST" );
+
+        assertEquals( List.of( ID1 ), INDEX.find( "Shopping list" ) );
+        assertEquals( List.of( ID2 ), INDEX.find( " shopping LIST " ) );
+        assertEquals( 2, INDEX.findIgnoringCase( "SHOPPING LIST" ).size() );
+        assertTrue( INDEX.find( "Shopping" ).isEmpty() );
+    }
+
+    @Test
+    public void testFindByPrefix()
+    {
+        final var INDEX = new TitleIndex();
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+
+        INDEX.put( ID1, "Recipes: bread" );
+        INDEX.put( ID2, "recipes: apple pie" );
+        INDEX.put( ID3, "Receipts" );
+
+        assertEquals( List.of( ID2, ID1 ), INDEX.findByPrefix( "RECIPES", 10 ) );
+        assertEquals( List.of( ID3, ID2 ), INDEX.findByPrefix( "rec", 2 ) );
+        assertTrue( INDEX.findByPrefix( "x", 10 ).isEmpty() );
+    }
+
+    @Test
+    public void testRenameAndRemove()
+    {
+        final var INDEX = new TitleIndex();
+        final var ID = new Id();
+
+        INDEX.put( ID, "Old title" );
+        INDEX.put( ID, "New title" );
+
+        assertTrue( INDEX.findIgnoringCase( "old title" ).isEmpty() );
+        assertEquals( List.of( ID ), INDEX.find( "New title" ) );
+
+        INDEX.remove( ID );
+
+        assertEquals( 0, INDEX.count() );
+        assertTrue( INDEX.findByPrefix( "", 10 ).isEmpty() );
+    }
+
+    @Test
+    public void testNotebookResolvesRefs() throws IOException
+    {
+        final var STORE = new MemoryNoteStore();
+        final var NOTEBOOK = Notebook.restoreFrom( STORE, 1 );
+        final var NOTE = new Note( "Meeting notes" );
+
+        NOTEBOOK.add( NoteProxy.fromNote( NOTEBOOK, NOTE ) );
+
+        final NoteProxy PROXY = NOTEBOOK.lookUp( NOTE.getId() );
+
+        assertSame( PROXY, NOTEBOOK.resolveRef( "Meeting notes" ) );
+        assertSame( PROXY, NOTEBOOK.resolveRef( "meeting NOTES" ) );
+        assertSame( PROXY, NOTEBOOK.resolveRef( NOTE.getId() + NoteProxy.FILE_EXT ) );
+        assertNull( NOTEBOOK.resolveRef( "Other" ) );
+
+        // Renaming is picked up right away
+        NOTE.replaceTitle( "Minutes" );
+
+        assertNull( NOTEBOOK.resolveRef( "Meeting notes" ) );
+        assertSame( PROXY, NOTEBOOK.lookUpByTitlePrefix( "min", 5 ).getFirst() );
+
+        NOTEBOOK.delete( PROXY );
+        assertNull( NOTEBOOK.resolveRef( "Minutes" ) );
+    }
+}
@@ -0,0 +1,124 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the trigram index.
+  * @author baltasarq
+  */
+public class TrigramIndexTest {
+    @Test
+    public void testRequiredLiterals()
+    {
+        assertEquals( List.of( "err-4431" ),
+                      TrigramIndex.requiredLiterals( Pattern.compile( "err-4431" ) ) );
+        assertEquals( List.of( "a.b*c" ),
+                      TrigramIndex.requiredLiterals( Pattern.compile( "a.b*c", Pattern.LITERAL ) ) );
+        assertEquals( List.of( "ERR-", "done" ),
+                      TrigramIndex.requiredLiterals( Pattern.compile( "ERR-\\d+ (not )?done" ) ) );
+        assertEquals( List.of( "colo", "r.txt" ),
+                      TrigramIndex.requiredLiterals( Pattern.compile( "colou?r\\.txt" ) ) );
+        assertEquals( List.of( "abc", "def" ),
+                      TrigramIndex.requiredLiterals( Pattern.compile( "abc[]x-z]def" ) ) );
+
+        // Might match without any literal text
+        assertTrue( TrigramIndex.requiredLiterals( Pattern.compile( "cat|dog" ) ).isEmpty() );
+        assertTrue( TrigramIndex.requiredLiterals( Pattern.compile( "\\Qabc\\E" ) ).isEmpty() );
+        assertTrue( TrigramIndex.requiredLiterals( Pattern.compile( "(?x) a b c" ) ).isEmpty() );
+        assertTrue( TrigramIndex.requiredLiterals( Pattern.compile( "ab*" ) ).isEmpty() );
+    }
+
+    @Test
+    public void testCandidatesSurviveReopen(@TempDir Path dir) throws IOException
+    {
+        final Path PATH = dir.resolve( FullTextIndex.TRIGRAMS_FILE );
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final var ID3 = new Id();
+        final var INDEX = new TrigramIndex();
+
+        INDEX.put( ID1, 1, "Server failed with ERR-4431 at boot" );
+        INDEX.put( ID2, 1, "Error 4431 is unrelated" );
+        INDEX.put( ID3, 1, "Nothing to see here" );
+
+        assertEquals( List.of( ID1 ), INDEX.findCandidates( "err-4431" ) );
+        assertEquals( Set.of( ID1, ID2 ), Set.copyOf( INDEX.findCandidates( "4431" ) ) );
+        assertEquals( 3, INDEX.findCandidates( "ee" ).size() );
+        assertTrue( INDEX.findCandidates( "missing" ).isEmpty() );
+
+        INDEX.put( ID1, 2, "Server booted" );
+        INDEX.remove( ID3 );
+
+        assertTrue( INDEX.findCandidates( "ERR-4431" ).isEmpty() );
+        assertTrue( INDEX.findCandidates( "see here" ).isEmpty() );
+        assertEquals( List.of( ID1 ), INDEX.findCandidates( Pattern.compile( "Serv[a-z]+ boot" ) ) );
+
+        INDEX.save( PATH );
+
+        final TrigramIndex LOADED = TrigramIndex.load( PATH );
+
+        assertEquals( 2, LOADED.count() );
+        assertEquals( 2, LOADED.stampOf( ID1 ) );
+        assertEquals( FullTextIndex.NOT_INDEXED, LOADED.stampOf( ID3 ) );
+        assertEquals( List.of( ID2 ), LOADED.findCandidates( "4431" ) );
+
+        // Ordinals of notes removed are reused after loading
+        LOADED.put( ID3, 3, "Back again" );
+        assertEquals( List.of( ID3 ), LOADED.findCandidates( "back" ) );
+
+        Files.write( PATH, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 } );
+        assertThrows( IOException.class, () -> TrigramIndex.load( PATH ) );
+    }
+
+    @Test
+    public void testNotebookChecksCandidates(@TempDir Path dir) throws IOException
+    {
+        final Path NOTES_DIR = Files.createDirectory( dir.resolve( "notes" ) );
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+
+        Files.writeString( NOTES_DIR.resolve( ID1 + NoteProxy.FILE_EXT ),
+                           "# Incident\nWork\n2025-01-01\n2025-01-02\n"
+                           + "The build failed: ERR-4431.\n" );
+        Files.writeString( NOTES_DIR.resolve( ID2 + NoteProxy.FILE_EXT ),
+                           "# Shopping\n\n2025-01-01\n2025-01-02\n"
+                           + "err, 4431 eggs and ERR milk\n" );
+
+        try (final var INDEX = new FullTextIndex( dir.resolve( "search" ) )) {
+            final var NOTEBOOK = Notebook.restoreFrom( NOTES_DIR.toString() );
+
+            NOTEBOOK.attachSearchIndex( INDEX );
+            INDEX.waitForPending();
+
+            // Both have the trigrams of "4431", only one has the text
+            assertEquals( List.of( NOTEBOOK.lookUp( ID1 ) ), NOTEBOOK.lookUpText( "err-4431", 10 ) );
+            assertEquals( List.of( NOTEBOOK.lookUp( ID1 ) ),
+                          NOTEBOOK.lookUpPattern( Pattern.compile( "ERR-\\d{4}" ), 10 ) );
+            assertEquals( 2, NOTEBOOK.lookUpPattern( Pattern.compile( "44[0-9]1" ), 10 ).size() );
+            assertEquals( 1, NOTEBOOK.lookUpPattern( Pattern.compile( "44[0-9]1" ), 1 ).size() );
+            assertTrue( NOTEBOOK.lookUpText( "ERR-4432", 10 ).isEmpty() );
+
+            // Changes are indexed when saved
+            final NoteProxy PROXY = NOTEBOOK.lookUp( ID2 );
+
+            PROXY.getNote().replace( "Fixed ERR-4431 by buying milk" );
+            PROXY.save();
+            INDEX.waitForPending();
+
+            assertEquals( 2, NOTEBOOK.lookUpText( "ERR-4431", 10 ).size() );
+        }
+    }
+}
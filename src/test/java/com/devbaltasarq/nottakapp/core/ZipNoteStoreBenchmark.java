@@ -0,0 +1,67 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.stream.Stream;
+
+
+/** Shows the cost of opening an archived notebook, both the first time,
+  * when all headers are read from the entries, and the next ones,
+  * when they are taken from the index kept apart.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.ZipNoteStoreBenchmark [numNotes]
+  * @author baltasarq
+  */
+public class ZipNoteStoreBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException
+    {
+        final int NUM_NOTES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 100_000;
+        final Path DIR = Files.createTempDirectory( "nottakapp" );
+        final Path ARCHIVE = DIR.resolve( "notes.zip" );
+        final Path INDEX_DIR = DIR.resolve( "index" );
+        final var ENTRIES = new LinkedHashMap<String, String>();
+
+        try {
+            for(int i = 0; i < NUM_NOTES; ++i) {
+                final var ID = new Id();
+
+                ENTRIES.put( "notes/" + ID.toString().substring( 0, 2 )
+                                      + "/" + ID + NoteProxy.FILE_EXT,
+                             "Note " + i );
+            }
+
+            ZipNoteStoreTest.createArchive( ARCHIVE, ENTRIES );
+
+            for(int round = 1; round <= ROUNDS; ++round) {
+                final long START = System.nanoTime();
+
+                try (final var STORE = new ZipNoteStore( ARCHIVE, INDEX_DIR )) {
+                    final var NOTEBOOK = Notebook.restoreFrom(
+                                                    STORE,
+                                                    NoteHeaderLoader.DEFAULT_CONCURRENCY );
+
+                    System.out.printf( "#%d %d notes archived: opened in %.1f ms%n",
+                                       round,
+                                       NOTEBOOK.getAllIds().size(),
+                                       ( System.nanoTime() - START ) / 1_000_000.0 );
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk( DIR )) {
+                for(Path path: files.sorted( Comparator.reverseOrder() ).toList()) {
+                    Files.delete( path );
+                }
+            }
+        }
+    }
+}
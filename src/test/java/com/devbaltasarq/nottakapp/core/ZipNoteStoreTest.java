@@ -0,0 +1,103 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for notebooks archived as zip files.
+  * @author baltasarq
+  */
+public class ZipNoteStoreTest {
+    /** Creates a zip file with the given entries.
+      * @param archive the path to the zip file.
+      * @param entries a map of entry names to titles.
+      */
+    static void createArchive(Path archive, Map<String, String> entries) throws IOException
+    {
+        try (var zip = new ZipOutputStream( Files.newOutputStream( archive ) )) {
+            for(Map.Entry<String, String> entry: entries.entrySet()) {
+                zip.putNextEntry( new ZipEntry( entry.getKey() ) );
+                zip.write( TestNotes.noteBytes( entry.getValue(),
+                                                "Text of " + entry.getValue() + ".\n" ) );
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testBrowseArchive(@TempDir Path dir) throws IOException
+    {
+        final var ID1 = new Id();
+        final var ID2 = new Id();
+        final Path ARCHIVE = dir.resolve( "notes.zip" );
+
+        createArchive( ARCHIVE, Map.of(
+                        "notes/" + ID1 + NoteProxy.FILE_EXT, "First",
+                        "notes/" + ID2.toString().substring( 0, 2 )
+                                 + "/" + ID2 + NoteProxy.FILE_EXT, "Second" ) );
+
+        try (final var STORE = new ZipNoteStore( ARCHIVE )) {
+            final var NOTEBOOK = Notebook.restoreFrom( STORE, 2 );
+
+            assertTrue( NOTEBOOK.isReadOnly() );
+            assertEquals( 2, NOTEBOOK.getAllIds().size() );
+            assertEquals( "First", NOTEBOOK.lookUp( ID1 ).getTitle() );
+            assertEquals( "Second", NOTEBOOK.lookUp( ID2 ).getTitle() );
+            assertEquals( "Text of Second.\n", NOTEBOOK.lookUp( ID2 ).getNote().get() );
+        }
+    }
+
+    @Test
+    public void testCannotWrite(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+        final Path ARCHIVE = dir.resolve( "notes.zip" );
+
+        createArchive( ARCHIVE, Map.of( ID + NoteProxy.FILE_EXT, "First" ) );
+
+        try (final var STORE = new ZipNoteStore( ARCHIVE )) {
+            final String LOCATION = STORE.list().keySet().iterator().next();
+
+            assertEquals( STORE.locationFor( ID ), LOCATION );
+            assertThrows( IOException.class,
+                          () -> STORE.write( LOCATION, new byte[ 0 ],
+                                             NoteFileWriter.Durability.NONE ) );
+            assertThrows( IOException.class, () -> STORE.delete( LOCATION ) );
+            assertEquals( "First", STORE.readHeader( LOCATION ).title() );
+        }
+    }
+
+    @Test
+    public void testIndexKeptApart(@TempDir Path dir) throws IOException
+    {
+        final var ID = new Id();
+        final Path ARCHIVE = dir.resolve( "notes.zip" );
+        final Path INDEX_DIR = dir.resolve( "index" );
+
+        createArchive( ARCHIVE, Map.of( ID + NoteProxy.FILE_EXT, "First" ) );
+
+        try (final var STORE = new ZipNoteStore( ARCHIVE, INDEX_DIR )) {
+            Notebook.restoreFrom( STORE, 1 );
+        }
+
+        try (final var STORE = new ZipNoteStore( ARCHIVE, INDEX_DIR )) {
+            final NotebookIndex.Entry ENTRY = STORE.loadIndex().get( ID );
+
+            assertNotNull( ENTRY );
+            assertEquals( "First", ENTRY.title() );
+            assertEquals( STORE.stamp( STORE.locationFor( ID ) ), ENTRY.stamp() );
+        }
+    }
+}
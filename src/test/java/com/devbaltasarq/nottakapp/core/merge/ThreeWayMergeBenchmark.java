@@ -0,0 +1,67 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core.merge;
+
+
+import java.util.Random;
+
+
+/** Shows the time taken to merge two divergent versions of a long note.
+  * Not run with the tests. Run it with:
+  *     java -cp target/classes:target/test-classes \
+  *          com.devbaltasarq.nottakapp.core.merge.ThreeWayMergeBenchmark [numLines]
+  * Each version changes about one line in twenty, at random.
+  * @author baltasarq
+  */
+public class ThreeWayMergeBenchmark {
+    private static final int ROUNDS = 10;
+
+    private static String edit(String[] lines, Random rnd, String tag)
+    {
+        final var TORET = new StringBuilder();
+
+        for(String line: lines) {
+            final int DICE = rnd.nextInt( 40 );
+
+            if ( DICE == 0 ) {
+                TORET.append( line ).append( ' ' ).append( tag ).append( '\n' );
+            }
+            else
+            if ( DICE == 1 ) {
+                TORET.append( tag ).append( '\n' ).append( line ).append( '\n' );
+            }
+            else
+            if ( DICE != 2 ) {
+                TORET.append( line ).append( '\n' );
+            }
+        }
+
+        return TORET.toString();
+    }
+
+    public static void main(String[] args)
+    {
+        final int NUM_LINES = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 10_000;
+        final var RND = new Random( 42 );
+        final String[] LINES = new String[ NUM_LINES ];
+
+        for(int i = 0; i < NUM_LINES; ++i) {
+            LINES[ i ] = "Line " + i + " of the note, with some text.";
+        }
+
+        final String BASE = String.join( "\n", LINES ) + "\n";
+        final String MINE = edit( LINES, RND, "mine" );
+        final String THEIRS = edit( LINES, RND, "theirs" );
+
+        for(int round = 1; round <= ROUNDS; ++round) {
+            final long START = System.nanoTime();
+            final ThreeWayMerge.Result RESULT = ThreeWayMerge.merge( BASE, MINE, THEIRS );
+            final long ELAPSED = System.nanoTime() - START;
+
+            System.out.printf( "#%d merge of %d lines: %.2f ms, %d conflicts, %d chars%n",
+                               round, NUM_LINES, ELAPSED / 1_000_000.0,
+                               RESULT.numConflicts(), RESULT.text().length() );
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// NottakApp (c) Baltasar 2025 MIT License <baltasarq@gmail.com>
+
+
+package com.devbaltasarq.nottakapp.core.merge;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/** Tests for the line diff and the three-way merge of texts.
+  * @author baltasarq
+  */
+public class ThreeWayMergeTest {
+    @Test
+    public void testMatchCommonLines()
+    {
+        final int[] A = { 1, 2, 3, 4, 5, 6, 7 };
+        final int[] B = { 2, 3, 9, 5, 6, 1, 7 };
+
+        assertArrayEquals( new int[] { -1, 0, 1, -1, 3, 4, 6 },
+                           LineDiff.match( A, B ) );
+        assertArrayEquals( new int[] { -1, -1 },
+                           LineDiff.match( new int[] { 1, 2 }, new int[ 0 ] ) );
+        assertArrayEquals( new int[ 0 ],
+                           LineDiff.match( new int[ 0 ], new int[] { 1, 2 } ) );
+    }
+
+    @Test
+    public void testMatchIsLongestSubsequence()
+    {
+        // A, B, C, A, B, B, A vs. C, B, A, B, A, C: the LCS has 4 elements
+        final int[] A = { 1, 2, 3, 1, 2, 2, 1 };
+        final int[] B = { 3, 2, 1, 2, 1, 3 };
+        final int[] MATCHES = LineDiff.match( A, B );
+        int count = 0;
+        int last = -1;
+
+        for(int i = 0; i < A.length; ++i) {
+            if ( MATCHES[ i ] >= 0 ) {
+                assertEquals( A[ i ], B[ MATCHES[ i ] ] );
+                assertTrue( MATCHES[ i ] > last );
+                last = MATCHES[ i ];
+                ++count;
+            }
+        }
+
+        assertEquals( 4, count );
+    }
+
+    @Test
+    public void testMergeChangesInBoth()
+    {
+        final String BASE = "one\ntwo\nthree\nfour\nfive\n";
+        final String MINE = "one\n2\nthree\nfour\nfive\n";
+        final String THEIRS = "one\ntwo\nthree\nfour\nfive\nsix\n";
+        final ThreeWayMerge.Result RESULT = ThreeWayMerge.merge( BASE, MINE, THEIRS );
+
+        assertEquals( "one\n2\nthree\nfour\nfive\nsix\n", RESULT.text() );
+        assertFalse( RESULT.hasConflicts() );
+    }
+
+    @Test
+    public void testMergeDeletions()
+    {
+        final String BASE = "one\ntwo\nthree\nfour\nfive\n";
+        final String MINE = "two\nthree\nfour\nfive\n";
+        final String THEIRS = "one\ntwo\nthree\nfive\n";
+        final ThreeWayMerge.Result RESULT = ThreeWayMerge.merge( BASE, MINE, THEIRS );
+
+        assertEquals( "two\nthree\nfive\n", RESULT.text() );
+        assertFalse( RESULT.hasConflicts() );
+    }
+
+    @Test
+    public void testMergeSameChange()
+    {
+        final String BASE = "one\ntwo\nthree\n";
+        final String CHANGED = "one\nTWO\nthree\n";
+        final ThreeWayMerge.Result RESULT = ThreeWayMerge.merge( BASE, CHANGED, CHANGED );
+
+        assertEquals( CHANGED, RESULT.text() );
+        assertFalse( RESULT.hasConflicts() );
+    }
+
+    @Test
+    public void testConflictOnlyAroundHunk()
+    {
+        final String BASE = "one\ntwo\nthree\nfour\nfive\n";
+        final String MINE = "one\nmine\nthree\nfour\nfive\n";
+        final String THEIRS = "one\ntheirs\nthree\nfour\n5\n";
+        final ThreeWayMerge.Result RESULT = ThreeWayMerge.merge(
+                                                BASE, MINE, THEIRS, "A", "B" );
+
+        assertEquals( "one\n"
+                      + "<<<<<<< A\n"
+                      + "mine\n"
+                      + "=======\n"
+                      + "theirs\n"
+                      + ">>>>>>> B\n"
+                      + "three\nfour\n5\n",
+                      RESULT.text() );
+        assertEquals( 1, RESULT.numConflicts() );
+    }
+
+    @Test
+    public void testMergeWithoutFinalNewLine()
+    {
+        final ThreeWayMerge.Result RESULT = ThreeWayMerge.merge(
+                                                "one\ntwo", "zero\none\ntwo", "one\ntwo" );
+
+        assertEquals( "zero\none\ntwo", RESULT.text() );
+        assertEquals( "", ThreeWayMerge.merge( "one\n", "", "" ).text() );
+    }
+}